@@ -1,5 +1,7 @@
 package com.computablefacts.asterix;
 
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.Var;
 import java.io.Serializable;
@@ -25,43 +27,64 @@ import java.util.Collection;
 @CheckReturnValue
 final public class BloomFilter<E> implements Serializable {
 
+  // The serialized form of filters created before the hashing strategy was added must remain readable
+  private static final long serialVersionUID = -853360169066469907L;
+
   // encoding used for storing hash values
   private static final Charset CHARSET = StandardCharsets.UTF_8;
 
   // MD5 gives good enough accuracy in most circumstances
   // Change to SHA1 if it's needed
   private static final String HASH_NAME = "MD5";
-  private static final MessageDigest DIGEST_FUNCTION;
 
-  static { // The digest method is reused between instances
-    @Var MessageDigest tmp;
+  // The digest method is reused between calls made by the same thread
+  private static final ThreadLocal<MessageDigest> DIGEST_FUNCTION = ThreadLocal.withInitial(() -> {
     try {
-      tmp = java.security.MessageDigest.getInstance(HASH_NAME);
+      return MessageDigest.getInstance(HASH_NAME);
     } catch (NoSuchAlgorithmException e) {
-      tmp = null;
+      throw new IllegalStateException(e);
     }
-    DIGEST_FUNCTION = tmp;
-  }
+  });
 
   private final int bitSetSize_;
   private final double bitsPerElement_;
   private final int expectedNumberOfElements_; // expected (maximum) number of elements to be added
   private final int k_; // number of hash functions
+  private final eHashingStrategy hashingStrategy_; // null for filters serialized before the strategy was pluggable
 
   private int numberOfAddedElements_; // number of elements actually added to the Bloom filter
   private BitSet bitSet_;
+  private transient BitArray bitArray_; // lazily created view of bitSet_ used by the hashing strategy
 
   /**
-   * Constructs a Bloom filter from an existing one.
+   * Constructs a Bloom filter from an existing one. The bit set is assumed to have been filled using
+   * {@link eHashingStrategy#MD5}, the only strategy available before the strategy became configurable.
    *
    * @param falsePositiveProbability is the desired false positive probability.
    * @param expectedNumberOfElements is the expected number of elements in the Bloom filter.
    * @param actualNumberOfElements   is the actual number of elements in the Bloom filter.
    * @param bitSet                   a previously initialized {@link BitSet}.
+   * @deprecated use {@link #BloomFilter(double, int, int, BitSet, eHashingStrategy)} instead.
    */
+  @Deprecated
   public BloomFilter(double falsePositiveProbability, int expectedNumberOfElements, int actualNumberOfElements,
       BitSet bitSet) {
+    this(falsePositiveProbability, expectedNumberOfElements, actualNumberOfElements, bitSet, eHashingStrategy.MD5);
+  }
+
+  /**
+   * Constructs a Bloom filter from an existing one.
+   *
+   * @param falsePositiveProbability is the desired false positive probability.
+   * @param expectedNumberOfElements is the expected number of elements in the Bloom filter.
+   * @param actualNumberOfElements   is the actual number of elements in the Bloom filter.
+   * @param bitSet                   a previously initialized {@link BitSet}.
+   * @param hashingStrategy          the hashing strategy used to fill the {@link BitSet}.
+   */
+  public BloomFilter(double falsePositiveProbability, int expectedNumberOfElements, int actualNumberOfElements,
+      BitSet bitSet, eHashingStrategy hashingStrategy) {
     expectedNumberOfElements_ = expectedNumberOfElements;
+    hashingStrategy_ = Preconditions.checkNotNull(hashingStrategy, "hashingStrategy should not be null");
     k_ = (int) Math.ceil(-(Math.log(falsePositiveProbability) / Math.log(2)));
     bitsPerElement_ = Math.ceil(-(Math.log(falsePositiveProbability) / Math.log(2))) / Math.log(2);
     bitSetSize_ = (int) Math.ceil(bitsPerElement_ * expectedNumberOfElements_);
@@ -77,7 +100,20 @@ final public class BloomFilter<E> implements Serializable {
    * @param k is the number of hash functions used.
    */
   public BloomFilter(double c, int n, int k) {
+    this(c, n, k, eHashingStrategy.MURMUR3_128);
+  }
+
+  /**
+   * Constructs an empty Bloom filter. The total length of the Bloom filter will be c*n.
+   *
+   * @param c               is the number of bits used per element.
+   * @param n               is the expected number of elements the filter will contain.
+   * @param k               is the number of hash functions used.
+   * @param hashingStrategy is the strategy used to map an element to k bits.
+   */
+  public BloomFilter(double c, int n, int k, eHashingStrategy hashingStrategy) {
     expectedNumberOfElements_ = n;
+    hashingStrategy_ = Preconditions.checkNotNull(hashingStrategy, "hashingStrategy should not be null");
     k_ = k;
     bitsPerElement_ = c;
     bitSetSize_ = (int) Math.ceil(c * n);
@@ -105,10 +141,22 @@ final public class BloomFilter<E> implements Serializable {
    * @param expectedNumberOfElements is the expected number of elements in the Bloom filter.
    */
   public BloomFilter(double falsePositiveProbability, int expectedNumberOfElements) {
+    this(falsePositiveProbability, expectedNumberOfElements, eHashingStrategy.MURMUR3_128);
+  }
+
+  /**
+   * Constructs an empty Bloom filter with a given false positive probability. The number of bits per element and the
+   * number of hash functions is estimated to match the false positive probability.
+   *
+   * @param falsePositiveProbability is the desired false positive probability.
+   * @param expectedNumberOfElements is the expected number of elements in the Bloom filter.
+   * @param hashingStrategy          is the strategy used to map an element to k bits.
+   */
+  public BloomFilter(double falsePositiveProbability, int expectedNumberOfElements, eHashingStrategy hashingStrategy) {
     // c = k / ln(2)
     // k = ceil(-log_2(false prob.))
     this(Math.ceil(-(Math.log(falsePositiveProbability) / Math.log(2))) / Math.log(2), expectedNumberOfElements,
-        (int) Math.ceil(-(Math.log(falsePositiveProbability) / Math.log(2))));
+        (int) Math.ceil(-(Math.log(falsePositiveProbability) / Math.log(2))), hashingStrategy);
   }
 
   /**
@@ -118,11 +166,30 @@ final public class BloomFilter<E> implements Serializable {
    * @param expectedNumberOfFilterElements defines the maximum number of elements the filter is expected to contain.
    * @param actualNumberOfFilterElements   specifies how many elements have been inserted into the
    *                                       <code>filterData</code> BitSet.
-   * @param filterData                     a BitSet representing an existing Bloom filter.
+   * @param filterData                     a BitSet representing an existing Bloom filter, filled using
+   *                                       {@link eHashingStrategy#MD5}.
+   * @deprecated use {@link #BloomFilter(int, int, int, BitSet, eHashingStrategy)} instead.
    */
+  @Deprecated
   public BloomFilter(int bitSetSize, int expectedNumberOfFilterElements, int actualNumberOfFilterElements,
       BitSet filterData) {
-    this(bitSetSize, expectedNumberOfFilterElements);
+    this(bitSetSize, expectedNumberOfFilterElements, actualNumberOfFilterElements, filterData, eHashingStrategy.MD5);
+  }
+
+  /**
+   * Construct a new Bloom filter based on existing Bloom filter data.
+   *
+   * @param bitSetSize                     defines how many bits should be used for the filter.
+   * @param expectedNumberOfFilterElements defines the maximum number of elements the filter is expected to contain.
+   * @param actualNumberOfFilterElements   specifies how many elements have been inserted into the
+   *                                       <code>filterData</code> BitSet.
+   * @param filterData                     a BitSet representing an existing Bloom filter.
+   * @param hashingStrategy                the hashing strategy used to fill <code>filterData</code>.
+   */
+  public BloomFilter(int bitSetSize, int expectedNumberOfFilterElements, int actualNumberOfFilterElements,
+      BitSet filterData, eHashingStrategy hashingStrategy) {
+    this(bitSetSize / (double) expectedNumberOfFilterElements, expectedNumberOfFilterElements,
+        (int) Math.round((bitSetSize / (double) expectedNumberOfFilterElements) * Math.log(2.0)), hashingStrategy);
     bitSet_ = filterData;
     numberOfAddedElements_ = actualNumberOfFilterElements;
   }
@@ -175,13 +242,10 @@ final public class BloomFilter<E> implements Serializable {
 
     while (k < hashes) {
 
-      @Var byte[] digest;
-
-      synchronized (DIGEST_FUNCTION) {
-        DIGEST_FUNCTION.update(salt);
-        salt++;
-        digest = DIGEST_FUNCTION.digest(data);
-      }
+      MessageDigest digestFunction = DIGEST_FUNCTION.get();
+      digestFunction.update(salt);
+      salt++;
+      byte[] digest = digestFunction.digest(data);
 
       for (int i = 0; i < digest.length / 4 && k < hashes; i++) {
 
@@ -223,6 +287,9 @@ final public class BloomFilter<E> implements Serializable {
     if (bitSetSize_ != other.bitSetSize_) {
       return false;
     }
+    if (hashingStrategy() != other.hashingStrategy()) {
+      return false;
+    }
     return bitSet_ == other.bitSet_ || (bitSet_ != null && bitSet_.equals(other.bitSet_));
   }
 
@@ -238,6 +305,7 @@ final public class BloomFilter<E> implements Serializable {
     hash = 61 * hash + expectedNumberOfElements_;
     hash = 61 * hash + bitSetSize_;
     hash = 61 * hash + k_;
+    hash = 61 * hash + hashingStrategy().hashCode();
     return hash;
   }
 
@@ -285,6 +353,16 @@ final public class BloomFilter<E> implements Serializable {
     return k_;
   }
 
+  /**
+   * Returns the strategy used to map an element to k bits. Filters serialized before the strategy became configurable
+   * have been filled using {@link eHashingStrategy#MD5}.
+   *
+   * @return the hashing strategy.
+   */
+  public eHashingStrategy hashingStrategy() {
+    return hashingStrategy_ == null ? eHashingStrategy.MD5 : hashingStrategy_;
+  }
+
   /**
    * Sets all bits to false in the Bloom filter.
    */
@@ -309,10 +387,7 @@ final public class BloomFilter<E> implements Serializable {
    * @param bytes array of bytes to add to the Bloom filter.
    */
   public void add(byte[] bytes) {
-    int[] hashes = createHashes(bytes, k_);
-    for (int hash : hashes) {
-      bitSet_.set(Math.abs(hash % bitSetSize_), true);
-    }
+    hashingStrategy().add(bytes, k_, bitSetSize_, bitArray());
     numberOfAddedElements_++;
   }
 
@@ -346,13 +421,7 @@ final public class BloomFilter<E> implements Serializable {
    * @return true if the array could have been inserted into the Bloom filter.
    */
   public boolean contains(byte[] bytes) {
-    int[] hashes = createHashes(bytes, k_);
-    for (int hash : hashes) {
-      if (!bitSet_.get(Math.abs(hash % bitSetSize_))) {
-        return false;
-      }
-    }
-    return true;
+    return hashingStrategy().contains(bytes, k_, bitSetSize_, bitArray());
   }
 
   /**
@@ -400,6 +469,25 @@ final public class BloomFilter<E> implements Serializable {
     return bitSet_;
   }
 
+  private BitArray bitArray() {
+    if (bitArray_ == null) {
+      BitSet bitSet = bitSet_;
+      bitArray_ = new BitArray() {
+
+        @Override
+        public boolean get(int bit) {
+          return bitSet.get(bit);
+        }
+
+        @Override
+        public void set(int bit) {
+          bitSet.set(bit);
+        }
+      };
+    }
+    return bitArray_;
+  }
+
   /**
    * Returns the number of bits in the Bloom filter. Use count() to retrieve the number of inserted elements.
    *
@@ -456,4 +544,247 @@ final public class BloomFilter<E> implements Serializable {
   public double bitsPerElement() {
     return bitSetSize_ / (double) numberOfAddedElements_;
   }
+
+  /**
+   * The storage backing a Bloom filter, as seen by a {@link eHashingStrategy}.
+   */
+  interface BitArray {
+
+    boolean get(int bit);
+
+    void set(int bit);
+  }
+
+  /**
+   * The strategies available to map an element to the k bits of the filter.
+   */
+  public enum eHashingStrategy {
+
+    /**
+     * Salted MD5 digests split into 4-byte int's (see {@link #createHashes(byte[], int)}). This strategy is kept for
+     * compatibility with filters built before {@link #MURMUR3_128} became the default.
+     */
+    MD5(0) {
+      @Override
+      void add(byte[] bytes, int k, int m, BitArray bits) {
+        int[] hashes = createHashes(bytes, k);
+        for (int hash : hashes) {
+          bits.set(Math.abs(hash % m));
+        }
+      }
+
+      @Override
+      boolean contains(byte[] bytes, int k, int m, BitArray bits) {
+        int[] hashes = createHashes(bytes, k);
+        for (int hash : hashes) {
+          if (!bits.get(Math.abs(hash % m))) {
+            return false;
+          }
+        }
+        return true;
+      }
+    },
+
+    /**
+     * Kirsch-Mitzenmacher double hashing i.e. g_i(x) = h1(x) + i * h2(x) where h1 and h2 are the two halves of the
+     * 128-bit MurmurHash3 (x64 variant) of the element. The k probes are computed from a single hash, without locking
+     * and without allocating.
+     *
+     * See "Less Hashing, Same Performance: Building a Better Bloom Filter" (Kirsch and Mitzenmacher, 2006).
+     */
+    MURMUR3_128(1) {
+      @Override
+      void add(byte[] bytes, int k, int m, BitArray bits) {
+        murmur3(bytes, k, m, bits, true);
+      }
+
+      @Override
+      boolean contains(byte[] bytes, int k, int m, BitArray bits) {
+        return murmur3(bytes, k, m, bits, false);
+      }
+    };
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final int id_; // stable identifier written to disk, never reuse nor change it
+
+    eHashingStrategy(int id) {
+      id_ = id;
+    }
+
+    /**
+     * Find a strategy from its identifier.
+     *
+     * @param id the strategy identifier (see {@link #id()}).
+     * @return the strategy or null if the identifier is unknown.
+     */
+    public static eHashingStrategy fromId(int id) {
+      for (eHashingStrategy strategy : values()) {
+        if (strategy.id_ == id) {
+          return strategy;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Returns the stable identifier of the strategy. Unlike the ordinal, it does not depend on the declaration order.
+     *
+     * @return the strategy identifier.
+     */
+    public int id() {
+      return id_;
+    }
+
+    /**
+     * Set the k bits associated with an array of bytes.
+     *
+     * @param bytes the element to add.
+     * @param k     the number of hash functions.
+     * @param m     the number of bits in the filter.
+     * @param bits  the filter bits.
+     */
+    abstract void add(byte[] bytes, int k, int m, BitArray bits);
+
+    /**
+     * Check if the k bits associated with an array of bytes are all set.
+     *
+     * @param bytes the element to check.
+     * @param k     the number of hash functions.
+     * @param m     the number of bits in the filter.
+     * @param bits  the filter bits.
+     * @return true iif all the k bits are set.
+     */
+    abstract boolean contains(byte[] bytes, int k, int m, BitArray bits);
+
+    /**
+     * Compute the 128-bit MurmurHash3 of an array of bytes and either set or check the derived k bits.
+     *
+     * @param bytes the element.
+     * @param k     the number of hash functions.
+     * @param m     the number of bits in the filter.
+     * @param bits  the filter bits.
+     * @param set   true iif the bits must be set, false iif the bits must be checked.
+     * @return true iif all the k bits are set (always true when {@code set} is true).
+     */
+    @CanIgnoreReturnValue
+    private static boolean murmur3(byte[] bytes, int k, int m, BitArray bits, boolean set) {
+
+      int length = bytes.length;
+      int nbBlocks = length / 16;
+      @Var long h1 = 0;
+      @Var long h2 = 0;
+
+      for (int i = 0; i < nbBlocks; i++) {
+
+        int offset = i * 16;
+        long k1 = getLong(bytes, offset);
+        long k2 = getLong(bytes, offset + 8);
+
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+      }
+
+      int offset = nbBlocks * 16;
+      @Var long k1 = 0;
+      @Var long k2 = 0;
+
+      switch (length & 15) {
+        case 15:
+          k2 ^= (long) (bytes[offset + 14] & 0xFF) << 48; // fall through
+        case 14:
+          k2 ^= (long) (bytes[offset + 13] & 0xFF) << 40; // fall through
+        case 13:
+          k2 ^= (long) (bytes[offset + 12] & 0xFF) << 32; // fall through
+        case 12:
+          k2 ^= (long) (bytes[offset + 11] & 0xFF) << 24; // fall through
+        case 11:
+          k2 ^= (long) (bytes[offset + 10] & 0xFF) << 16; // fall through
+        case 10:
+          k2 ^= (long) (bytes[offset + 9] & 0xFF) << 8; // fall through
+        case 9:
+          k2 ^= bytes[offset + 8] & 0xFF;
+          h2 ^= mixK2(k2); // fall through
+        case 8:
+          k1 ^= (long) (bytes[offset + 7] & 0xFF) << 56; // fall through
+        case 7:
+          k1 ^= (long) (bytes[offset + 6] & 0xFF) << 48; // fall through
+        case 6:
+          k1 ^= (long) (bytes[offset + 5] & 0xFF) << 40; // fall through
+        case 5:
+          k1 ^= (long) (bytes[offset + 4] & 0xFF) << 32; // fall through
+        case 4:
+          k1 ^= (long) (bytes[offset + 3] & 0xFF) << 24; // fall through
+        case 3:
+          k1 ^= (long) (bytes[offset + 2] & 0xFF) << 16; // fall through
+        case 2:
+          k1 ^= (long) (bytes[offset + 1] & 0xFF) << 8; // fall through
+        case 1:
+          k1 ^= bytes[offset] & 0xFF;
+          h1 ^= mixK1(k1);
+          break;
+        default:
+          break;
+      }
+
+      h1 ^= length;
+      h2 ^= length;
+      h1 += h2;
+      h2 += h1;
+      h1 = fmix64(h1);
+      h2 = fmix64(h2);
+      h1 += h2;
+      h2 += h1;
+
+      @Var long combinedHash = h1;
+
+      for (int i = 0; i < k; i++) {
+        int bit = (int) ((combinedHash & Long.MAX_VALUE) % m);
+        if (set) {
+          bits.set(bit);
+        } else if (!bits.get(bit)) {
+          return false;
+        }
+        combinedHash += h2;
+      }
+      return true;
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+      return (bytes[offset] & 0xFFL) | (bytes[offset + 1] & 0xFFL) << 8 | (bytes[offset + 2] & 0xFFL) << 16
+          | (bytes[offset + 3] & 0xFFL) << 24 | (bytes[offset + 4] & 0xFFL) << 32 | (bytes[offset + 5] & 0xFFL) << 40
+          | (bytes[offset + 6] & 0xFFL) << 48 | (bytes[offset + 7] & 0xFFL) << 56;
+    }
+
+    private static long mixK1(@Var long k1) {
+      k1 *= C1;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= C2;
+      return k1;
+    }
+
+    private static long mixK2(@Var long k2) {
+      k2 *= C2;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= C1;
+      return k2;
+    }
+
+    private static long fmix64(@Var long k) {
+      k ^= k >>> 33;
+      k *= 0xff51afd7ed558ccdL;
+      k ^= k >>> 33;
+      k *= 0xc4ceb9fe1a85ec53L;
+      k ^= k >>> 33;
+      return k;
+    }
+  }
 }
@@ -0,0 +1,515 @@
+package com.computablefacts.asterix;
+
+import com.computablefacts.asterix.BloomFilter.BitArray;
+import com.computablefacts.asterix.BloomFilter.eHashingStrategy;
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe Bloom filter.
+ * <p>
+ * Contrary to {@link BloomFilter}, the bits are stored in an {@link AtomicLongArray} : {@link #add(byte[])} sets bits
+ * using CAS operations and {@link #contains(byte[])} never blocks. Thus, a single filter can be shared by many worker
+ * threads.
+ * <p>
+ * A filter can be dumped to disk using {@link #writeTo(File)} and mapped back in memory using {@link #mapFrom(File)}.
+ * The mapped filter reads its bits directly from the OS page cache, so many processes can share the same filter
+ * without copying or rebuilding it. A mapped filter is read-only : use {@link #copy()} to obtain a mutable copy.
+ * <p>
+ * File format (big-endian) :
+ * <pre>
+ * [magic:int][version:int][strategy:int][k:int][size:int][expected:int][count:long][words:long*]
+ * </pre>
+ * The strategy is stored using its stable identifier (see {@link eHashingStrategy#id()}).
+ *
+ * @param <E> Object type that is to be inserted into the Bloom filter, e.g. String or Integer.
+ */
+@CheckReturnValue
+final public class ConcurrentBloomFilter<E> {
+
+  private static final Charset CHARSET = StandardCharsets.UTF_8;
+  private static final int MAGIC = 0xB100F117;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 32; // in bytes, a multiple of 8 so the words are aligned
+
+  private final int bitSetSize_;
+  private final int expectedNumberOfElements_;
+  private final int k_;
+  private final eHashingStrategy hashingStrategy_;
+  private final Words words_;
+  private final LongAdder numberOfAddedElements_ = new LongAdder();
+
+  /**
+   * Constructs an empty Bloom filter with a given false positive probability. The number of bits per element and the
+   * number of hash functions is estimated to match the false positive probability.
+   *
+   * @param falsePositiveProbability is the desired false positive probability.
+   * @param expectedNumberOfElements is the expected number of elements in the Bloom filter.
+   */
+  public ConcurrentBloomFilter(double falsePositiveProbability, int expectedNumberOfElements) {
+    this(falsePositiveProbability, expectedNumberOfElements, eHashingStrategy.MURMUR3_128);
+  }
+
+  /**
+   * Constructs an empty Bloom filter with a given false positive probability. The number of bits per element and the
+   * number of hash functions is estimated to match the false positive probability.
+   *
+   * @param falsePositiveProbability is the desired false positive probability.
+   * @param expectedNumberOfElements is the expected number of elements in the Bloom filter.
+   * @param hashingStrategy          is the strategy used to map an element to k bits.
+   */
+  public ConcurrentBloomFilter(double falsePositiveProbability, int expectedNumberOfElements,
+      eHashingStrategy hashingStrategy) {
+
+    Preconditions.checkArgument(0.0 < falsePositiveProbability && falsePositiveProbability < 1.0,
+        "falsePositiveProbability must be such as 0 < falsePositiveProbability < 1");
+    Preconditions.checkArgument(expectedNumberOfElements > 0, "expectedNumberOfElements must be > 0");
+    Preconditions.checkNotNull(hashingStrategy, "hashingStrategy should not be null");
+
+    // c = k / ln(2)
+    // k = ceil(-log_2(false prob.))
+    int k = (int) Math.ceil(-(Math.log(falsePositiveProbability) / Math.log(2)));
+    double c = k / Math.log(2);
+
+    expectedNumberOfElements_ = expectedNumberOfElements;
+    k_ = k;
+    bitSetSize_ = (int) Math.ceil(c * expectedNumberOfElements);
+    hashingStrategy_ = hashingStrategy;
+    words_ = new HeapWords(nbWords(bitSetSize_));
+  }
+
+  private ConcurrentBloomFilter(int bitSetSize, int expectedNumberOfElements, int k, eHashingStrategy hashingStrategy,
+      Words words, long count) {
+    bitSetSize_ = bitSetSize;
+    expectedNumberOfElements_ = expectedNumberOfElements;
+    k_ = k;
+    hashingStrategy_ = hashingStrategy;
+    words_ = words;
+    numberOfAddedElements_.add(count);
+  }
+
+  /**
+   * Map a Bloom filter previously written with {@link #writeTo(File)}. The bits are not copied : they are read from the
+   * memory-mapped file. The returned filter is read-only.
+   *
+   * @param file the file to map.
+   * @param <E>  Object type that has been inserted into the Bloom filter.
+   * @return a read-only Bloom filter.
+   */
+  public static <E> ConcurrentBloomFilter<E> mapFrom(File file) throws IOException {
+
+    Preconditions.checkNotNull(file, "file should not be null");
+    Preconditions.checkArgument(file.exists(), "file does not exist : %s", file);
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+      Preconditions.checkState(buffer.remaining() >= HEADER_SIZE, "invalid Bloom filter file : %s", file);
+      Preconditions.checkState(buffer.getInt(0) == MAGIC, "invalid Bloom filter file : %s", file);
+      Preconditions.checkState(buffer.getInt(4) == VERSION, "unsupported Bloom filter version : %s",
+          buffer.getInt(4));
+
+      eHashingStrategy hashingStrategy = eHashingStrategy.fromId(buffer.getInt(8));
+      int k = buffer.getInt(12);
+      int bitSetSize = buffer.getInt(16);
+      int expectedNumberOfElements = buffer.getInt(20);
+      long count = buffer.getLong(24);
+
+      Preconditions.checkState(hashingStrategy != null, "unknown hashing strategy : %s", buffer.getInt(8));
+      Preconditions.checkState(k > 0, "invalid Bloom filter file : %s", file);
+      Preconditions.checkState(bitSetSize > 0, "invalid Bloom filter file : %s", file);
+
+      int nbWords = nbWords(bitSetSize);
+
+      Preconditions.checkState(buffer.remaining() == HEADER_SIZE + nbWords * 8L, "truncated Bloom filter file : %s",
+          file);
+
+      buffer.position(HEADER_SIZE);
+      LongBuffer words = buffer.slice().asLongBuffer();
+
+      // The mapping remains valid after the channel has been closed
+      return new ConcurrentBloomFilter<>(bitSetSize, expectedNumberOfElements, k, hashingStrategy,
+          new MappedWords(words), count);
+    }
+  }
+
+  private static int nbWords(int bitSetSize) {
+    return (int) ((bitSetSize + 63L) >>> 6);
+  }
+
+  /**
+   * Write the Bloom filter to a file. The words are dumped as-is so the file can be later memory-mapped using
+   * {@link #mapFrom(File)}.
+   *
+   * @param file the file to write.
+   */
+  public void writeTo(File file) throws IOException {
+
+    Preconditions.checkNotNull(file, "file should not be null");
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+
+      int nbWords = words_.length();
+      raf.setLength(HEADER_SIZE + nbWords * 8L);
+
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + nbWords * 8L);
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putInt(hashingStrategy_.id());
+      buffer.putInt(k_);
+      buffer.putInt(bitSetSize_);
+      buffer.putInt(expectedNumberOfElements_);
+      buffer.putLong(count());
+
+      for (int i = 0; i < nbWords; i++) {
+        buffer.putLong(words_.word(i));
+      }
+      buffer.force();
+    }
+  }
+
+  /**
+   * Returns true iif both filters can be merged i.e. they have the same size, the same number of hash functions and the
+   * same hashing strategy.
+   *
+   * @param other the other Bloom filter.
+   * @return true iif the filters are compatible, false otherwise.
+   */
+  public boolean isCompatible(ConcurrentBloomFilter<E> other) {
+    return other != null && bitSetSize_ == other.bitSetSize_ && k_ == other.k_
+        && hashingStrategy_ == other.hashingStrategy_;
+  }
+
+  /**
+   * Returns a mutable copy of this Bloom filter.
+   *
+   * @return a new mutable Bloom filter.
+   */
+  public ConcurrentBloomFilter<E> copy() {
+
+    HeapWords words = new HeapWords(words_.length());
+
+    for (int i = 0; i < words.length(); i++) {
+      words.array_.set(i, words_.word(i));
+    }
+    return new ConcurrentBloomFilter<>(bitSetSize_, expectedNumberOfElements_, k_, hashingStrategy_, words, count());
+  }
+
+  /**
+   * Returns a new Bloom filter containing the elements of both filters.
+   *
+   * @param other a compatible Bloom filter.
+   * @return a new mutable Bloom filter.
+   */
+  public ConcurrentBloomFilter<E> union(ConcurrentBloomFilter<E> other) {
+
+    Preconditions.checkArgument(isCompatible(other), "filters are not compatible");
+
+    HeapWords words = new HeapWords(words_.length());
+
+    for (int i = 0; i < words.length(); i++) {
+      words.array_.set(i, words_.word(i) | other.words_.word(i));
+    }
+
+    ConcurrentBloomFilter<E> filter = new ConcurrentBloomFilter<>(bitSetSize_, expectedNumberOfElements_, k_,
+        hashingStrategy_, words, 0);
+    filter.numberOfAddedElements_.add(filter.approximateNumberOfElements());
+    return filter;
+  }
+
+  /**
+   * Returns a new Bloom filter approximating the elements common to both filters. Note that the false positive
+   * probability of the result is bounded by the false positive probability of the union.
+   *
+   * @param other a compatible Bloom filter.
+   * @return a new mutable Bloom filter.
+   */
+  public ConcurrentBloomFilter<E> intersect(ConcurrentBloomFilter<E> other) {
+
+    Preconditions.checkArgument(isCompatible(other), "filters are not compatible");
+
+    HeapWords words = new HeapWords(words_.length());
+
+    for (int i = 0; i < words.length(); i++) {
+      words.array_.set(i, words_.word(i) & other.words_.word(i));
+    }
+
+    ConcurrentBloomFilter<E> filter = new ConcurrentBloomFilter<>(bitSetSize_, expectedNumberOfElements_, k_,
+        hashingStrategy_, words, 0);
+    filter.numberOfAddedElements_.add(filter.approximateNumberOfElements());
+    return filter;
+  }
+
+  /**
+   * Adds an object to the Bloom filter. The output from the object's toString() method is used as input to the hash
+   * functions.
+   *
+   * @param element is an element to register in the Bloom filter.
+   */
+  public void add(E element) {
+    add(element.toString().getBytes(CHARSET));
+  }
+
+  /**
+   * Adds an array of bytes to the Bloom filter.
+   *
+   * @param bytes array of bytes to add to the Bloom filter.
+   */
+  public void add(byte[] bytes) {
+
+    Preconditions.checkState(!isReadOnly(), "the Bloom filter is read-only");
+
+    hashingStrategy_.add(bytes, k_, bitSetSize_, words_);
+    numberOfAddedElements_.increment();
+  }
+
+  /**
+   * Adds all elements from a Collection to the Bloom filter.
+   *
+   * @param c Collection of elements.
+   */
+  public void addAll(Collection<? extends E> c) {
+    for (E element : c) {
+      add(element);
+    }
+  }
+
+  /**
+   * Returns true if the element could have been inserted into the Bloom filter.
+   *
+   * @param element element to check.
+   * @return true if the element could have been inserted into the Bloom filter.
+   */
+  public boolean contains(E element) {
+    return contains(element.toString().getBytes(CHARSET));
+  }
+
+  /**
+   * Returns true if the array of bytes could have been inserted into the Bloom filter.
+   *
+   * @param bytes array of bytes to check.
+   * @return true if the array could have been inserted into the Bloom filter.
+   */
+  public boolean contains(byte[] bytes) {
+    return hashingStrategy_.contains(bytes, k_, bitSetSize_, words_);
+  }
+
+  /**
+   * Returns true if all the elements of a Collection could have been inserted into the Bloom filter.
+   *
+   * @param c elements to check.
+   * @return true if all the elements in c could have been inserted into the Bloom filter.
+   */
+  public boolean containsAll(Collection<? extends E> c) {
+    for (E element : c) {
+      if (!contains(element)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Read a single bit from the Bloom filter.
+   *
+   * @param bit the bit to read.
+   * @return true if the bit is set, false if it is not.
+   */
+  public boolean getBit(int bit) {
+    return words_.get(bit);
+  }
+
+  /**
+   * Returns true iif the Bloom filter has been mapped from a file.
+   *
+   * @return true iif the Bloom filter cannot be updated.
+   */
+  public boolean isReadOnly() {
+    return words_ instanceof MappedWords;
+  }
+
+  /**
+   * Returns the value chosen for K.
+   *
+   * @return optimal k.
+   */
+  public int k() {
+    return k_;
+  }
+
+  /**
+   * Returns the strategy used to map an element to k bits.
+   *
+   * @return the hashing strategy.
+   */
+  public eHashingStrategy hashingStrategy() {
+    return hashingStrategy_;
+  }
+
+  /**
+   * Returns the number of bits in the Bloom filter.
+   *
+   * @return the number of bits used by the Bloom filter.
+   */
+  public int size() {
+    return bitSetSize_;
+  }
+
+  /**
+   * Returns the expected number of elements to be inserted into the filter.
+   *
+   * @return expected number of elements.
+   */
+  public int expectedNumberOfElements() {
+    return expectedNumberOfElements_;
+  }
+
+  /**
+   * Returns the number of elements added to the Bloom filter. For filters resulting from a union or an intersection,
+   * this number is estimated from the number of bits set.
+   *
+   * @return number of elements added to the Bloom filter.
+   */
+  public long count() {
+    return numberOfAddedElements_.sum();
+  }
+
+  /**
+   * Returns the number of bits set.
+   *
+   * @return the cardinality of the underlying bit array.
+   */
+  public long cardinality() {
+    @Var long cardinality = 0;
+    for (int i = 0; i < words_.length(); i++) {
+      cardinality += Long.bitCount(words_.word(i));
+    }
+    return cardinality;
+  }
+
+  /**
+   * Estimate the number of distinct elements in the filter from the number of bits set (Swamidass and Baldi, 2007) :
+   * n = -m/k * ln(1 - X/m).
+   *
+   * @return the approximate number of distinct elements.
+   */
+  public long approximateNumberOfElements() {
+    double bitsSet = cardinality();
+    if (bitsSet >= bitSetSize_) {
+      return Long.MAX_VALUE;
+    }
+    return Math.round(-(double) bitSetSize_ / k_ * Math.log(1.0 - bitsSet / bitSetSize_));
+  }
+
+  /**
+   * Calculate the probability of a false positive given the specified number of inserted elements.
+   *
+   * @param numberOfElements number of inserted elements.
+   * @return probability of a false positive.
+   */
+  public double falsePositiveProbability(double numberOfElements) {
+    // (1 - e^(-k * n / m)) ^ k
+    return Math.pow((1 - Math.exp(-k_ * numberOfElements / (double) bitSetSize_)), k_);
+  }
+
+  /**
+   * Get the current probability of a false positive.
+   *
+   * @return probability of false positives.
+   */
+  public double falsePositiveProbability() {
+    return falsePositiveProbability(count());
+  }
+
+  /**
+   * The bit array, as seen by the hashing strategy, packed into 64-bit words.
+   */
+  private interface Words extends BitArray {
+
+    int length();
+
+    long word(int index);
+  }
+
+  private static final class HeapWords implements Words {
+
+    private final AtomicLongArray array_;
+
+    HeapWords(int nbWords) {
+      array_ = new AtomicLongArray(nbWords);
+    }
+
+    @Override
+    public int length() {
+      return array_.length();
+    }
+
+    @Override
+    public long word(int index) {
+      return array_.get(index);
+    }
+
+    @Override
+    public boolean get(int bit) {
+      return (array_.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    @Override
+    public void set(int bit) {
+
+      int word = bit >>> 6;
+      long mask = 1L << bit;
+
+      @Var long oldValue;
+      do {
+        oldValue = array_.get(word);
+        if ((oldValue & mask) != 0) {
+          return; // the bit is already set
+        }
+      } while (!array_.compareAndSet(word, oldValue, oldValue | mask));
+    }
+  }
+
+  private static final class MappedWords implements Words {
+
+    private final LongBuffer buffer_;
+
+    MappedWords(LongBuffer buffer) {
+      buffer_ = buffer;
+    }
+
+    @Override
+    public int length() {
+      return buffer_.limit();
+    }
+
+    @Override
+    public long word(int index) {
+      return buffer_.get(index);
+    }
+
+    @Override
+    public boolean get(int bit) {
+      return (buffer_.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    @Override
+    public void set(int bit) {
+      throw new UnsupportedOperationException("the Bloom filter is read-only");
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package com.computablefacts.asterix;
+
+import com.computablefacts.asterix.BloomFilter.eHashingStrategy;
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Implementation of a Scalable Bloom filter, as described in "Scalable Bloom Filters" (Almeida, Baquero, Preguiça and
+ * Hutchison, 2007).
+ * <p>
+ * The filter starts with a small {@link BloomFilter} and, each time the current slice is full, chains a new slice
+ * whose capacity is {@code growthFactor} times larger and whose false positive probability is
+ * {@code tighteningRatio} times smaller. The false positive probability of the whole filter is bounded by
+ * {@code P0 / (1 - r)} where {@code P0} is the false positive probability of the first slice and {@code r} the
+ * tightening ratio. Thus, the memory used tracks the actual number of elements instead of a guesstimate made up
+ * front.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <E> Object type that is to be inserted into the Bloom filter, e.g. String or Integer.
+ */
+@CheckReturnValue
+final public class ScalableBloomFilter<E> {
+
+  private static final Charset CHARSET = StandardCharsets.UTF_8;
+  private static final int DEFAULT_INITIAL_CAPACITY = 1_000;
+  private static final int DEFAULT_GROWTH_FACTOR = 2;
+  private static final double DEFAULT_TIGHTENING_RATIO = 0.5;
+
+  private final double falsePositiveProbability_; // global bound
+  private final int growthFactor_;
+  private final double tighteningRatio_;
+  private final eHashingStrategy hashingStrategy_;
+  private final List<BloomFilter<E>> slices_ = new ArrayList<>();
+
+  private int capacity_; // capacity of the current slice
+  private double sliceFalsePositiveProbability_; // false positive probability of the current slice
+  private int numberOfAddedElements_;
+
+  /**
+   * Constructs an empty Scalable Bloom filter with an initial capacity of 1000 elements.
+   *
+   * @param falsePositiveProbability is the desired (global) false positive probability.
+   */
+  public ScalableBloomFilter(double falsePositiveProbability) {
+    this(falsePositiveProbability, DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /**
+   * Constructs an empty Scalable Bloom filter.
+   *
+   * @param falsePositiveProbability is the desired (global) false positive probability.
+   * @param initialCapacity          is the number of elements the first slice can hold.
+   */
+  public ScalableBloomFilter(double falsePositiveProbability, int initialCapacity) {
+    this(falsePositiveProbability, initialCapacity, DEFAULT_GROWTH_FACTOR, DEFAULT_TIGHTENING_RATIO,
+        eHashingStrategy.MURMUR3_128);
+  }
+
+  /**
+   * Constructs an empty Scalable Bloom filter.
+   *
+   * @param falsePositiveProbability is the desired (global) false positive probability.
+   * @param initialCapacity          is the number of elements the first slice can hold.
+   * @param growthFactor             is the ratio between the capacities of two consecutive slices.
+   * @param tighteningRatio          is the ratio between the false positive probabilities of two consecutive slices.
+   * @param hashingStrategy          is the strategy used to map an element to k bits.
+   */
+  public ScalableBloomFilter(double falsePositiveProbability, int initialCapacity, int growthFactor,
+      double tighteningRatio, eHashingStrategy hashingStrategy) {
+
+    Preconditions.checkArgument(0.0 < falsePositiveProbability && falsePositiveProbability < 1.0,
+        "falsePositiveProbability must be such as 0 < falsePositiveProbability < 1");
+    Preconditions.checkArgument(initialCapacity > 0, "initialCapacity must be > 0");
+    Preconditions.checkArgument(growthFactor > 0, "growthFactor must be > 0");
+    Preconditions.checkArgument(0.0 < tighteningRatio && tighteningRatio < 1.0,
+        "tighteningRatio must be such as 0 < tighteningRatio < 1");
+    Preconditions.checkNotNull(hashingStrategy, "hashingStrategy should not be null");
+
+    falsePositiveProbability_ = falsePositiveProbability;
+    growthFactor_ = growthFactor;
+    tighteningRatio_ = tighteningRatio;
+    hashingStrategy_ = hashingStrategy;
+    capacity_ = initialCapacity;
+
+    // P = P0 / (1 - r) => P0 = P * (1 - r)
+    sliceFalsePositiveProbability_ = falsePositiveProbability * (1.0 - tighteningRatio);
+    numberOfAddedElements_ = 0;
+
+    slices_.add(new BloomFilter<>(sliceFalsePositiveProbability_, capacity_, hashingStrategy_));
+  }
+
+  /**
+   * Removes all slices but the first one and sets all its bits to false.
+   */
+  public void clear() {
+    BloomFilter<E> first = slices_.get(0);
+    first.clear();
+    slices_.clear();
+    slices_.add(first);
+    capacity_ = first.expectedNumberOfElements();
+    sliceFalsePositiveProbability_ = falsePositiveProbability_ * (1.0 - tighteningRatio_);
+    numberOfAddedElements_ = 0;
+  }
+
+  /**
+   * Adds an object to the Bloom filter. The output from the object's toString() method is used as input to the hash
+   * functions.
+   *
+   * @param element is an element to register in the Bloom filter.
+   */
+  public void add(E element) {
+    add(element.toString().getBytes(CHARSET));
+  }
+
+  /**
+   * Adds an array of bytes to the Bloom filter.
+   *
+   * @param bytes array of bytes to add to the Bloom filter.
+   */
+  public void add(byte[] bytes) {
+
+    @Var BloomFilter<E> slice = slices_.get(slices_.size() - 1);
+
+    if (slice.count() >= capacity_) {
+
+      // The current slice is full : chain a larger and more selective one
+      capacity_ = (int) Math.min(Integer.MAX_VALUE, (long) capacity_ * growthFactor_);
+      sliceFalsePositiveProbability_ *= tighteningRatio_;
+      slice = new BloomFilter<>(sliceFalsePositiveProbability_, capacity_, hashingStrategy_);
+      slices_.add(slice);
+    }
+
+    slice.add(bytes);
+    numberOfAddedElements_++;
+  }
+
+  /**
+   * Adds all elements from a Collection to the Bloom filter.
+   *
+   * @param c Collection of elements.
+   */
+  public void addAll(Collection<? extends E> c) {
+    for (E element : c) {
+      add(element);
+    }
+  }
+
+  /**
+   * Returns true if the element could have been inserted into the Bloom filter.
+   *
+   * @param element element to check.
+   * @return true if the element could have been inserted into the Bloom filter.
+   */
+  public boolean contains(E element) {
+    return contains(element.toString().getBytes(CHARSET));
+  }
+
+  /**
+   * Returns true if the array of bytes could have been inserted into the Bloom filter.
+   *
+   * @param bytes array of bytes to check.
+   * @return true if the array could have been inserted into the Bloom filter.
+   */
+  public boolean contains(byte[] bytes) {
+
+    // Most recent slices are the largest ones, hence the most likely to contain the element
+    for (int i = slices_.size() - 1; i >= 0; i--) {
+      if (slices_.get(i).contains(bytes)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if all the elements of a Collection could have been inserted into the Bloom filter.
+   *
+   * @param c elements to check.
+   * @return true if all the elements in c could have been inserted into the Bloom filter.
+   */
+  public boolean containsAll(Collection<? extends E> c) {
+    for (E element : c) {
+      if (!contains(element)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the upper bound on the false positive probability of the filter, whatever the number of slices.
+   *
+   * @return the false positive probability bound.
+   */
+  public double expectedFalsePositiveProbability() {
+    return falsePositiveProbability_;
+  }
+
+  /**
+   * Get the current probability of a false positive i.e. 1 - prod(1 - P_i) where P_i is the current false positive
+   * probability of the i-th slice.
+   *
+   * @return probability of false positives.
+   */
+  public double falsePositiveProbability() {
+    @Var double probabilityOfNoFalsePositive = 1.0;
+    for (BloomFilter<E> slice : slices_) {
+      probabilityOfNoFalsePositive *= 1.0 - slice.falsePositiveProbability();
+    }
+    return 1.0 - probabilityOfNoFalsePositive;
+  }
+
+  /**
+   * Returns the number of slices.
+   *
+   * @return the number of chained Bloom filters.
+   */
+  public int nbSlices() {
+    return slices_.size();
+  }
+
+  /**
+   * Returns the total number of bits allocated by the slices.
+   *
+   * @return the size of the filter in bits.
+   */
+  public long size() {
+    @Var long size = 0;
+    for (BloomFilter<E> slice : slices_) {
+      size += slice.size();
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of elements added to the Bloom filter after it was constructed or after clear() was called.
+   *
+   * @return number of elements added to the Bloom filter.
+   */
+  public int count() {
+    return numberOfAddedElements_;
+  }
+}
@@ -11,6 +11,7 @@ import com.google.common.annotations.Beta;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.AbstractSequentialIterator;
 import com.google.common.collect.ImmutableList;
@@ -18,6 +19,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.Var;
 import java.io.BufferedReader;
@@ -30,20 +32,33 @@ import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
@@ -822,6 +837,10 @@ public class View<T> extends AbstractIterator<T> implements AutoCloseable {
   /**
    * Performs the given action for each remaining element of the view in parallel until all elements have been
    * processed.
+   * <p>
+   * The action is executed by a shared executor and at most {@code 8 * cores} elements are pulled from the view ahead
+   * of the completed ones. If an action throws an exception, the remaining actions are cancelled and the exception is
+   * rethrown in the calling thread.
    *
    * @param consumer the action to be performed for each element.
    */
@@ -832,6 +851,10 @@ public class View<T> extends AbstractIterator<T> implements AutoCloseable {
   /**
    * Performs the given action for each remaining element of the view in parallel until all elements have been
    * processed.
+   * <p>
+   * The action is executed by a shared executor and at most {@code 8 * cores} elements are pulled from the view ahead
+   * of the completed ones. If an action throws an exception, the remaining actions are cancelled and the exception is
+   * rethrown in the calling thread.
    *
    * @param consumer the action to be performed for each element.
    * @param timeout  the maximum time to wait.
@@ -840,23 +863,71 @@ public class View<T> extends AbstractIterator<T> implements AutoCloseable {
   public void forEachRemainingInParallel(Consumer<? super T> consumer, long timeout, TimeUnit unit) {
 
     Preconditions.checkNotNull(consumer, "consumer should not be null");
+    Preconditions.checkNotNull(unit, "unit should not be null");
 
     int cores = Runtime.getRuntime().availableProcessors();
-    ExecutorService executorService = Executors.newFixedThreadPool(cores * 8);
+    ParallelIterator<T, Boolean> iterator = new ParallelIterator<>(this, element -> {
+      consumer.accept(element);
+      return Boolean.TRUE;
+    }, sharedExecutor(), cores * 8, false, unit.toNanos(timeout));
 
-    while (hasNext()) {
-      T element = next();
-      executorService.execute(() -> consumer.accept(element));
+    while (iterator.hasNext()) {
+      iterator.next(); // wait for completion
     }
-    try {
-      executorService.shutdown();
-      if (!executorService.awaitTermination(timeout, unit)) {
-        logger_.error(
-            LogFormatter.create().message("forEachRemainingInParallel(...) - The timeout elapsed before termination.")
-                .formatError());
-      }
-    } catch (InterruptedException e) {
-      logger_.error(LogFormatter.create().message(e).formatError());
+  }
+
+  /**
+   * Performs the given action for each remaining element of the view in parallel until all elements have been
+   * processed.
+   * <p>
+   * At most {@code maxInFlight} elements are pulled from the view ahead of the completed ones. Thus, huge views can be
+   * processed in constant memory. If an action throws an exception, the remaining actions are cancelled and the
+   * exception is rethrown in the calling thread.
+   *
+   * @param consumer    the action to be performed for each element.
+   * @param executor    the executor used to perform the actions.
+   * @param maxInFlight the maximum number of elements being processed at the same time.
+   */
+  public void forEachRemainingInParallel(Consumer<? super T> consumer, ExecutorService executor, int maxInFlight) {
+
+    Preconditions.checkNotNull(consumer, "consumer should not be null");
+
+    forEachRemainingInParallel(element -> {
+      consumer.accept(element);
+      return Boolean.TRUE;
+    }, done -> {
+    }, false, executor, maxInFlight);
+  }
+
+  /**
+   * Applies a function to each remaining element of the view in parallel, then performs the given action on each
+   * result in the calling thread. Thus, the action does not have to be thread-safe.
+   * <p>
+   * At most {@code maxInFlight} elements are pulled from the view ahead of the consumed ones. Thus, huge views can be
+   * processed in constant memory. If the function throws an exception, the remaining computations are cancelled and the
+   * exception is rethrown in the calling thread.
+   *
+   * @param fn          the function to apply to each element.
+   * @param consumer    the action to be performed for each result.
+   * @param ordered     true iif the results must be consumed in the view order, false to consume them as soon as they
+   *                    are available.
+   * @param executor    the executor used to apply the function.
+   * @param maxInFlight the maximum number of elements being processed at the same time.
+   * @param <U>
+   */
+  public <U> void forEachRemainingInParallel(Function<? super T, ? extends U> fn, Consumer<? super U> consumer,
+      boolean ordered, ExecutorService executor, int maxInFlight) {
+
+    Preconditions.checkNotNull(fn, "fn should not be null");
+    Preconditions.checkNotNull(consumer, "consumer should not be null");
+    Preconditions.checkNotNull(executor, "executor should not be null");
+    Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be > 0");
+
+    ParallelIterator<T, U> iterator = new ParallelIterator<>(this, fn, executor, maxInFlight, ordered,
+        Long.MAX_VALUE);
+
+    while (iterator.hasNext()) {
+      consumer.accept(iterator.next());
     }
   }
 
@@ -1118,6 +1189,106 @@ public class View<T> extends AbstractIterator<T> implements AutoCloseable {
     return of(Iterators.transform(this, fn::apply));
   }
 
+  /**
+   * Returns a view consisting of the results of applying the given function, in parallel, to the elements of this
+   * view. The view order is preserved and at most {@code 4 * cores} elements are pulled ahead of the consumed ones.
+   *
+   * @param fn  the function to apply.
+   * @param <U>
+   * @return a new {@link View}.
+   */
+  public <U> View<U> mapParallel(Function<? super T, ? extends U> fn) {
+    int cores = Runtime.getRuntime().availableProcessors();
+    return mapParallel(fn, cores, 4 * cores);
+  }
+
+  /**
+   * Returns a view consisting of the results of applying the given function, in parallel, to the elements of this
+   * view. The view order is preserved.
+   *
+   * @param fn          the function to apply.
+   * @param parallelism the maximum number of elements being processed at the same time.
+   * @param bufferSize  the maximum number of elements pulled ahead of the consumed ones.
+   * @param <U>
+   * @return a new {@link View}.
+   */
+  public <U> View<U> mapParallel(Function<? super T, ? extends U> fn, int parallelism, int bufferSize) {
+    return mapParallel(fn, parallelism, bufferSize, true);
+  }
+
+  /**
+   * Returns a view consisting of the results of applying the given function, in parallel, to the elements of this
+   * view.
+   * <p>
+   * The returned view is lazy : elements are pulled from this view (in the calling thread) only when the returned view
+   * is consumed and at most {@code bufferSize} elements are pulled ahead of the consumed ones. If the function throws
+   * an exception, the exception is rethrown when the matching element is consumed. Closing the returned view cancels
+   * the pending computations and closes this view.
+   *
+   * @param fn          the function to apply.
+   * @param parallelism the maximum number of elements being processed at the same time.
+   * @param bufferSize  the maximum number of elements pulled ahead of the consumed ones.
+   * @param ordered     true iif the view order must be preserved, false to return the results as soon as they are
+   *                    available.
+   * @param <U>
+   * @return a new {@link View}.
+   */
+  public <U> View<U> mapParallel(Function<? super T, ? extends U> fn, int parallelism, int bufferSize,
+      boolean ordered) {
+
+    Preconditions.checkNotNull(fn, "fn should not be null");
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be > 0");
+    Preconditions.checkArgument(bufferSize >= parallelism, "bufferSize must be >= parallelism");
+
+    return new View<>(
+        new ParallelIterator<>(this, fn, new LimitedExecutor(sharedExecutor(), parallelism), bufferSize, ordered,
+            Long.MAX_VALUE));
+  }
+
+  /**
+   * Returns a view consisting of the elements of this view matching the given predicate. The predicate is evaluated in
+   * parallel and the view order is preserved.
+   *
+   * @param predicate   the predicate to satisfy.
+   * @param parallelism the maximum number of elements being processed at the same time.
+   * @param bufferSize  the maximum number of elements pulled ahead of the consumed ones.
+   * @return a new {@link View}.
+   */
+  public View<T> filterParallel(Predicate<? super T> predicate, int parallelism, int bufferSize) {
+
+    Preconditions.checkNotNull(predicate, "predicate should not be null");
+
+    View<Map.Entry<T, Boolean>> view = mapParallel(
+        element -> new AbstractMap.SimpleImmutableEntry<>(element, predicate.test(element)), parallelism, bufferSize);
+
+    return new View<>(new ConcatIterator<>(view.map(e -> e.getValue() ? Collections.singletonList(e.getKey())
+        : Collections.<T>emptyList()), view));
+  }
+
+  /**
+   * Returns a view consisting of the concatenation of the views obtained by applying the given function, in parallel,
+   * to the elements of this view. The view order is preserved.
+   * <p>
+   * Each view returned by the function is materialized by the thread that computed it.
+   *
+   * @param fn          the function to apply.
+   * @param parallelism the maximum number of elements being processed at the same time.
+   * @param bufferSize  the maximum number of elements pulled ahead of the consumed ones.
+   * @param <U>
+   * @return a new {@link View}.
+   */
+  public <U> View<U> flattenParallel(Function<T, View<U>> fn, int parallelism, int bufferSize) {
+
+    Preconditions.checkNotNull(fn, "fn should not be null");
+
+    View<List<U>> view = mapParallel(element -> {
+      View<U> v = fn.apply(element);
+      return v == null ? Collections.<U>emptyList() : v.toList();
+    }, parallelism, bufferSize);
+
+    return new View<>(new ConcatIterator<>(view, view));
+  }
+
   /**
    * Returns a view consisting of the elements of this view matching the given predicate.
    *
@@ -1620,6 +1791,16 @@ public class View<T> extends AbstractIterator<T> implements AutoCloseable {
     return new View<>(new SlidingWindowIterator<>(this, length, false, true));
   }
 
+  /**
+   * The executor shared by all the parallel operations that are not given an executor. Threads are created on demand,
+   * reclaimed when idle and do not prevent the JVM from exiting.
+   *
+   * @return an executor.
+   */
+  static ExecutorService sharedExecutor() {
+    return SharedExecutorHolder.EXECUTOR;
+  }
+
   public static class Breaker {
 
     private boolean shouldBreak_ = false;
@@ -1633,6 +1814,252 @@ public class View<T> extends AbstractIterator<T> implements AutoCloseable {
     }
   }
 
+  private static final class SharedExecutorHolder {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("view-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Applies a function to the elements of an upstream iterator using an executor. The upstream iterator is only ever
+   * accessed from the consuming thread and at most {@code maxInFlight} elements are pulled from it ahead of the
+   * consumed ones (backpressure).
+   */
+  private static class ParallelIterator<T, U> extends AbstractIterator<U> implements AutoCloseable {
+
+    private final Iterator<T> iterator_;
+    private final Function<? super T, ? extends U> fn_;
+    private final Executor executor_;
+    private final int maxInFlight_;
+    private final boolean ordered_;
+    private final long deadline_; // in nanoseconds, Long.MAX_VALUE if none
+    private final Deque<Future<U>> inFlight_ = new ArrayDeque<>();
+    private final BlockingQueue<Future<U>> completed_ = new LinkedBlockingQueue<>();
+
+    public ParallelIterator(Iterator<T> iterator, Function<? super T, ? extends U> fn, Executor executor,
+        int maxInFlight, boolean ordered, long timeoutInNanos) {
+
+      Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be > 0");
+      Preconditions.checkArgument(timeoutInNanos >= 0, "timeoutInNanos must be >= 0");
+
+      iterator_ = Preconditions.checkNotNull(iterator, "iterator should not be null");
+      fn_ = Preconditions.checkNotNull(fn, "fn should not be null");
+      executor_ = Preconditions.checkNotNull(executor, "executor should not be null");
+      maxInFlight_ = maxInFlight;
+      ordered_ = ordered;
+
+      long now = System.nanoTime();
+      deadline_ = timeoutInNanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeoutInNanos;
+    }
+
+    @Override
+    public void close() {
+
+      for (Future<U> future : inFlight_) {
+        future.cancel(true);
+      }
+
+      inFlight_.clear();
+      completed_.clear();
+
+      if (iterator_ instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) iterator_).close();
+        } catch (Exception e) {
+          logger_.error(LogFormatter.create().message(e).formatError());
+        }
+      }
+    }
+
+    @Override
+    protected U computeNext() {
+
+      while (inFlight_.size() < maxInFlight_ && iterator_.hasNext()) {
+        submit(iterator_.next());
+      }
+      if (inFlight_.isEmpty()) {
+        close();
+        return endOfData();
+      }
+      try {
+
+        Future<U> future = ordered_ ? inFlight_.peekFirst() : completed_.poll(remaining(), TimeUnit.NANOSECONDS);
+
+        if (future == null) {
+          return timeout();
+        }
+
+        U result = future.get(remaining(), TimeUnit.NANOSECONDS);
+        inFlight_.remove(future);
+        return result;
+      } catch (TimeoutException e) {
+        return timeout();
+      } catch (CancellationException e) {
+        close(); // the task has been rejected by the executor
+        throw e;
+      } catch (ExecutionException e) {
+        close();
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new IllegalStateException(e.getCause());
+      } catch (InterruptedException e) {
+        close();
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private void submit(T element) {
+
+      // Once done, the task is enqueued in the completion queue
+      FutureTask<U> task = new FutureTask<U>(() -> fn_.apply(element)) {
+
+        @Override
+        protected void done() {
+          if (!ordered_) {
+            completed_.add(this);
+          }
+        }
+      };
+
+      try {
+        executor_.execute(task);
+      } catch (RejectedExecutionException e) {
+        close();
+        throw e;
+      }
+      inFlight_.addLast(task);
+    }
+
+    private long remaining() {
+      return deadline_ == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, deadline_ - System.nanoTime());
+    }
+
+    private U timeout() {
+      logger_.error(
+          LogFormatter.create().message("forEachRemainingInParallel(...) - The timeout elapsed before termination.")
+              .formatError());
+      close();
+      return endOfData();
+    }
+  }
+
+  /**
+   * An executor that runs at most {@code limit} tasks at the same time on a (possibly shared) delegate executor.
+   * <p>
+   * If the delegate rejects a task (e.g. because it has been shut down), the rejected task and the pending ones are
+   * cancelled, so no one waits for them forever, and the {@link RejectedExecutionException} is rethrown to the caller of
+   * {@link #execute(Runnable)}.
+   */
+  private static class LimitedExecutor implements Executor {
+
+    private final Executor delegate_;
+    private final int limit_;
+    private final Queue<Runnable> queue_ = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nbRunning_ = new AtomicInteger(0);
+
+    public LimitedExecutor(Executor delegate, int limit) {
+
+      Preconditions.checkArgument(limit > 0, "limit must be > 0");
+
+      delegate_ = Preconditions.checkNotNull(delegate, "delegate should not be null");
+      limit_ = limit;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      queue_.add(Preconditions.checkNotNull(task, "task should not be null"));
+      drain();
+    }
+
+    private void drain() {
+      while (!queue_.isEmpty()) {
+
+        int nbRunning = nbRunning_.get();
+
+        if (nbRunning >= limit_) {
+          return;
+        }
+        if (!nbRunning_.compareAndSet(nbRunning, nbRunning + 1)) {
+          continue;
+        }
+
+        Runnable task = queue_.poll();
+
+        if (task == null) {
+          nbRunning_.decrementAndGet();
+          continue;
+        }
+
+        try {
+          delegate_.execute(() -> {
+            try {
+              task.run();
+            } finally {
+              nbRunning_.decrementAndGet();
+              try {
+                drain();
+              } catch (RejectedExecutionException e) {
+                // The pending tasks have been cancelled and there is no caller to notify
+              }
+            }
+          });
+        } catch (RejectedExecutionException e) {
+
+          nbRunning_.decrementAndGet();
+          cancel(task);
+
+          @Var Runnable pending;
+
+          while ((pending = queue_.poll()) != null) {
+            cancel(pending);
+          }
+          throw e;
+        }
+      }
+    }
+
+    private void cancel(Runnable task) {
+      if (task instanceof Future) {
+        ((Future<?>) task).cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Concatenate the lists returned by an iterator.
+   */
+  private static class ConcatIterator<T> extends AbstractIterator<T> implements AutoCloseable {
+
+    private final Iterator<? extends List<T>> lists_;
+    private final AutoCloseable closeable_;
+    private Iterator<T> list_ = Collections.emptyIterator();
+
+    public ConcatIterator(Iterator<? extends List<T>> lists, AutoCloseable closeable) {
+      lists_ = Preconditions.checkNotNull(lists, "lists should not be null");
+      closeable_ = Preconditions.checkNotNull(closeable, "closeable should not be null");
+    }
+
+    @Override
+    public void close() {
+      try {
+        closeable_.close();
+      } catch (Exception e) {
+        logger_.error(LogFormatter.create().message(e).formatError());
+      }
+    }
+
+    @Override
+    protected T computeNext() {
+      while (!list_.hasNext()) {
+        if (!lists_.hasNext()) {
+          return endOfData();
+        }
+        list_ = lists_.next().iterator();
+      }
+      return list_.next();
+    }
+  }
+
   private static class StitchingIterator<T> extends AbstractIterator<List<T>> {
 
     private final List<? extends Iterator<T>> views_;
@@ -0,0 +1,388 @@
+package com.computablefacts.asterix.nlp;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton that finds, in a single pass over a text, all the occurrences of the keywords of a
+ * dictionary. Matching ignores case, only reports whole words and removes overlapping matches : the longest match
+ * wins, then the leftmost one.
+ * <p>
+ * The automaton is stored in flat arrays. It can be dumped to disk using {@link #writeTo(File)} and mapped back in
+ * memory using {@link #mapFrom(File)}. A mapped automaton reads its states directly from the OS page cache, so many
+ * threads and processes can share the same automaton without rebuilding it. An automaton is immutable and thread-safe.
+ * <p>
+ * File format (big-endian) :
+ * <pre>
+ * [magic:int][version:int][nbStates:int][nbTransitions:int][nbKeywords:int][reserved:int]
+ * [sourceLength:long][sourceLastModified:long]
+ * [firstTransition:int*(nbStates+1)][target:int*nbTransitions][fail:int*nbStates][output:int*nbStates]
+ * [length:int*nbStates][label:char*nbTransitions]
+ * </pre>
+ * The transitions of a state are sorted by label. The output of a state is the nearest state, along the fail links,
+ * that ends a keyword (0 if none). The length of a state is the length of the keyword it ends (0 if none). The source
+ * length and last modification time identify the version of the dictionary the automaton has been built from (0 if
+ * unknown).
+ */
+@CheckReturnValue
+final public class DictionaryAutomaton {
+
+  private static final int MAGIC = 0xAC0DA7A0;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 40; // in bytes
+
+  private final int nbStates_;
+  private final int nbTransitions_;
+  private final int nbKeywords_;
+  private final int sizeInBytes_;
+  private final long sourceLength_;
+  private final long sourceLastModified_;
+  private final IntBuffer firstTransition_;
+  private final IntBuffer target_;
+  private final IntBuffer fail_;
+  private final IntBuffer output_;
+  private final IntBuffer length_;
+  private final CharBuffer label_;
+  private final ByteBuffer buffer_;
+
+  private DictionaryAutomaton(ByteBuffer buffer) {
+
+    Preconditions.checkState(buffer.remaining() >= HEADER_SIZE, "invalid dictionary automaton");
+    Preconditions.checkState(buffer.getInt(0) == MAGIC, "invalid dictionary automaton");
+    Preconditions.checkState(buffer.getInt(4) == VERSION, "unsupported dictionary automaton version : %s",
+        buffer.getInt(4));
+
+    nbStates_ = buffer.getInt(8);
+    nbTransitions_ = buffer.getInt(12);
+    nbKeywords_ = buffer.getInt(16);
+    sizeInBytes_ = sizeInBytes(nbStates_, nbTransitions_);
+    sourceLength_ = buffer.getLong(24);
+    sourceLastModified_ = buffer.getLong(32);
+
+    Preconditions.checkState(buffer.remaining() == sizeInBytes_, "truncated dictionary automaton");
+
+    @Var int offset = HEADER_SIZE;
+    firstTransition_ = slice(buffer, offset, (nbStates_ + 1) * 4).asIntBuffer();
+    offset += (nbStates_ + 1) * 4;
+    target_ = slice(buffer, offset, nbTransitions_ * 4).asIntBuffer();
+    offset += nbTransitions_ * 4;
+    fail_ = slice(buffer, offset, nbStates_ * 4).asIntBuffer();
+    offset += nbStates_ * 4;
+    output_ = slice(buffer, offset, nbStates_ * 4).asIntBuffer();
+    offset += nbStates_ * 4;
+    length_ = slice(buffer, offset, nbStates_ * 4).asIntBuffer();
+    offset += nbStates_ * 4;
+    label_ = slice(buffer, offset, nbTransitions_ * 2).asCharBuffer();
+    buffer_ = buffer;
+  }
+
+  /**
+   * Build an automaton from a list of keywords. Keywords are lowercased. Empty keywords are ignored.
+   *
+   * @param keywords the keywords.
+   * @return an automaton stored on-heap.
+   */
+  public static DictionaryAutomaton build(Iterable<String> keywords) {
+    return build(keywords, 0, 0);
+  }
+
+  /**
+   * Build an automaton from a list of keywords. Keywords are lowercased. Empty keywords are ignored.
+   *
+   * @param keywords           the keywords.
+   * @param sourceLength       the length of the file the keywords have been read from.
+   * @param sourceLastModified the last modification time of the file the keywords have been read from.
+   * @return an automaton stored on-heap.
+   */
+  public static DictionaryAutomaton build(Iterable<String> keywords, long sourceLength, long sourceLastModified) {
+
+    Preconditions.checkNotNull(keywords, "keywords should not be null");
+
+    // Build the trie
+    Map<Long, Integer> transitions = new HashMap<>();
+    @Var int[] lengths = new int[16];
+    @Var int nbStates = 1;
+    @Var int nbKeywords = 0;
+
+    for (String keyword : keywords) {
+      if (!Strings.isNullOrEmpty(keyword)) {
+
+        @Var int state = 0;
+
+        for (int i = 0; i < keyword.length(); i++) {
+
+          long key = key(state, Character.toLowerCase(keyword.charAt(i)));
+          Integer next = transitions.get(key);
+
+          if (next != null) {
+            state = next;
+          } else {
+            if (nbStates == lengths.length) {
+              lengths = Arrays.copyOf(lengths, 2 * nbStates);
+            }
+            transitions.put(key, nbStates);
+            state = nbStates++;
+          }
+        }
+        if (lengths[state] == 0) {
+          lengths[state] = keyword.length();
+          nbKeywords++;
+        }
+      }
+    }
+
+    // Flatten the transitions : sorting the keys sorts the transitions by state, then by label
+    long[] keys = new long[transitions.size()];
+    @Var int k = 0;
+
+    for (long key : transitions.keySet()) {
+      keys[k++] = key;
+    }
+
+    Arrays.sort(keys);
+
+    int nbTransitions = keys.length;
+    ByteBuffer buffer = ByteBuffer.allocate(sizeInBytes(nbStates, nbTransitions));
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    buffer.putInt(8, nbStates);
+    buffer.putInt(12, nbTransitions);
+    buffer.putInt(16, nbKeywords);
+    buffer.putLong(24, sourceLength);
+    buffer.putLong(32, sourceLastModified);
+
+    DictionaryAutomaton automaton = new DictionaryAutomaton(buffer);
+    @Var int transition = 0;
+
+    for (int state = 0; state < nbStates; state++) {
+      automaton.firstTransition_.put(state, transition);
+      while (transition < nbTransitions && (int) (keys[transition] >>> 16) == state) {
+        automaton.label_.put(transition, (char) (keys[transition] & 0xFFFF));
+        automaton.target_.put(transition, transitions.get(keys[transition]));
+        transition++;
+      }
+      automaton.length_.put(state, lengths[state]);
+    }
+    automaton.firstTransition_.put(nbStates, transition);
+
+    // Compute the fail and output links, breadth-first
+    int[] queue = new int[nbStates];
+    @Var int head = 0;
+    @Var int tail = 0;
+
+    for (int t = automaton.firstTransition_.get(0); t < automaton.firstTransition_.get(1); t++) {
+      queue[tail++] = automaton.target_.get(t);
+    }
+    while (head < tail) {
+
+      int state = queue[head++];
+
+      for (int t = automaton.firstTransition_.get(state); t < automaton.firstTransition_.get(state + 1); t++) {
+
+        char label = automaton.label_.get(t);
+        int next = automaton.target_.get(t);
+        @Var int fail = automaton.fail_.get(state);
+        @Var int target;
+
+        while ((target = automaton.next(fail, label)) < 0 && fail != 0) {
+          fail = automaton.fail_.get(fail);
+        }
+
+        int failure = target < 0 ? 0 : target;
+        automaton.fail_.put(next, failure);
+        automaton.output_.put(next, lengths[failure] > 0 ? failure : automaton.output_.get(failure));
+        queue[tail++] = next;
+      }
+    }
+    return automaton;
+  }
+
+  /**
+   * Map an automaton previously written with {@link #writeTo(File)}. The states are not copied : they are read from
+   * the memory-mapped file.
+   *
+   * @param file the file to map.
+   * @return an automaton.
+   */
+  public static DictionaryAutomaton mapFrom(File file) throws IOException {
+
+    Preconditions.checkNotNull(file, "file should not be null");
+    Preconditions.checkArgument(file.exists(), "file does not exist : %s", file);
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+      // The mapping remains valid after the channel has been closed
+      return new DictionaryAutomaton(buffer);
+    }
+  }
+
+  private static int sizeInBytes(int nbStates, int nbTransitions) {
+    long size = HEADER_SIZE + (nbStates + 1L) * 4 + nbTransitions * 4L + nbStates * 12L + nbTransitions * 2L;
+    Preconditions.checkState(size <= Integer.MAX_VALUE, "the dictionary automaton is too large");
+    return (int) size;
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(offset);
+    slice.limit(offset + length);
+    return slice.slice();
+  }
+
+  private static long key(int state, char label) {
+    return ((long) state << 16) | label;
+  }
+
+  /**
+   * Write the automaton to a file, so it can be later memory-mapped using {@link #mapFrom(File)}.
+   *
+   * @param file the file to write.
+   */
+  public void writeTo(File file) throws IOException {
+
+    Preconditions.checkNotNull(file, "file should not be null");
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+
+      ByteBuffer buffer = buffer_.duplicate();
+      buffer.position(0);
+
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Returns the number of distinct keywords.
+   *
+   * @return the number of keywords.
+   */
+  public int nbKeywords() {
+    return nbKeywords_;
+  }
+
+  /**
+   * Returns the length of the file the keywords have been read from.
+   *
+   * @return the length in bytes (0 if unknown).
+   */
+  public long sourceLength() {
+    return sourceLength_;
+  }
+
+  /**
+   * Returns the last modification time of the file the keywords have been read from.
+   *
+   * @return the modification time in milliseconds (0 if unknown).
+   */
+  public long sourceLastModified() {
+    return sourceLastModified_;
+  }
+
+  /**
+   * Returns the size of the automaton i.e. the size of its file.
+   *
+   * @return the size in bytes.
+   */
+  public int sizeInBytes() {
+    return sizeInBytes_;
+  }
+
+  /**
+   * Find all the keywords occurring in a text.
+   *
+   * @param text the text.
+   * @return the matches, sorted by position.
+   */
+  public SpanSequence match(String text) {
+
+    Preconditions.checkNotNull(text, "text should not be null");
+
+    // Find all the whole-word occurrences, longest first then leftmost first
+    List<int[]> matches = new ArrayList<>();
+    @Var int state = 0;
+
+    for (int i = 0; i < text.length(); i++) {
+
+      char label = Character.toLowerCase(text.charAt(i));
+      @Var int next;
+
+      while ((next = next(state, label)) < 0 && state != 0) {
+        state = fail_.get(state);
+      }
+
+      state = next < 0 ? 0 : next;
+
+      for (int s = length_.get(state) > 0 ? state : output_.get(state); s != 0; s = output_.get(s)) {
+
+        int begin = i - length_.get(s) + 1;
+        int end = i + 1;
+
+        if ((begin == 0 || !Character.isAlphabetic(text.charAt(begin - 1))) && (end == text.length()
+            || !Character.isAlphabetic(text.charAt(end)))) {
+          matches.add(new int[]{begin, end});
+        }
+      }
+    }
+
+    matches.sort((m1, m2) -> m1[1] - m1[0] != m2[1] - m2[0] ? (m2[1] - m2[0]) - (m1[1] - m1[0]) : m1[0] - m2[0]);
+
+    // Remove the overlapping matches
+    TreeMap<Integer, Integer> kept = new TreeMap<>();
+
+    for (int[] match : matches) {
+
+      Map.Entry<Integer, Integer> previous = kept.lowerEntry(match[1]);
+
+      if (previous == null || previous.getValue() <= match[0]) {
+        kept.put(match[0], match[1]);
+      }
+    }
+
+    SpanSequence sequence = new SpanSequence();
+    kept.forEach((begin, end) -> sequence.add(new Span(text, begin, end)));
+    return sequence;
+  }
+
+  private int next(int state, char label) {
+
+    @Var int lo = firstTransition_.get(state);
+    @Var int hi = firstTransition_.get(state + 1) - 1;
+
+    while (lo <= hi) {
+
+      int mid = (lo + hi) >>> 1;
+      char c = label_.get(mid);
+
+      if (c < label) {
+        lo = mid + 1;
+      } else if (c > label) {
+        hi = mid - 1;
+      } else {
+        return target_.get(mid);
+      }
+    }
+    return -1;
+  }
+}
@@ -1,7 +1,7 @@
 package com.computablefacts.asterix.nlp;
 
-import com.computablefacts.asterix.BloomFilter;
 import com.computablefacts.asterix.Document;
+import com.computablefacts.asterix.ScalableBloomFilter;
 import com.computablefacts.asterix.View;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
@@ -84,7 +84,7 @@ final public class Vocabulary {
 
     View<List<String>> docs = Document.of(documents.get(0), true)
         .concat(View.of(documents).drop(1).flatten(doc -> Document.of(doc, true))).map(doc -> (String) doc.text())
-        .filter(text -> !Strings.isNullOrEmpty(text)).map(tokenizer).displayProgress(10_000);
+        .filter(text -> !Strings.isNullOrEmpty(text)).mapParallel(tokenizer).displayProgress(10_000);
 
     Vocabulary vocabulary = new Vocabulary();
     vocabulary.add(docs);
@@ -529,7 +529,7 @@ final public class Vocabulary {
 
     private final int threshold_;
     private Set<String> set_ = null;
-    private BloomFilter<String> bloomFilter_ = null;
+    private ScalableBloomFilter<String> bloomFilter_ = null;
 
     public TermsSeen(int threshold) {
 
@@ -558,7 +558,7 @@ final public class Vocabulary {
         }
         set_.add(term);
         if (set_.size() > threshold_) {
-          bloomFilter_ = new BloomFilter<>(0.01, 1_000_000_000);
+          bloomFilter_ = new ScalableBloomFilter<>(0.01, 1_000_000);
           set_.forEach(bloomFilter_::add);
           set_ = null;
         }
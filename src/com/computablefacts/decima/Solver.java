@@ -17,19 +17,31 @@ import com.computablefacts.junon.Provenance;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.errorprone.annotations.CheckReturnValue;
 import java.io.File;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Answer the questions of a queries file against a knowledge base made of a rules file and a facts file.
+ * <p>
+ * With {@code -nb_threads n} (n > 1), the questions are answered concurrently by a pool of n workers sharing the same
+ * knowledge base. Each question is given its own solver. The answers are always written in the order of the questions
+ * in the queries file.
+ */
 @CheckReturnValue
 final public class Solver extends ConsoleApp {
 
@@ -48,9 +60,12 @@ final public class Solver extends ConsoleApp {
     String dataset = getStringCommand(args, "dataset", null);
     boolean showLogs = getBooleanCommand(args, "show_logs", false);
     boolean computeProbabilities = getBooleanCommand(args, "compute_probabilities", true);
+    int nbThreads = getIntCommand(args, "nb_threads", 1);
 
     Stopwatch stopwatch = Stopwatch.createStarted();
-    Map<Literal, BigDecimal> answers = apply(rules, facts, queries, computeProbabilities);
+    List<Answers> answersByQuestion = apply(rules, facts, queries, computeProbabilities, nbThreads);
+    Map<Literal, BigDecimal> answers = new LinkedHashMap<>();
+    answersByQuestion.forEach(question -> question.answers_.forEach(answers::putIfAbsent));
 
     if ("problob".equals(type)) {
 
@@ -102,16 +117,23 @@ final public class Solver extends ConsoleApp {
     stopwatch.stop();
 
     if (showLogs) {
+      for (Answers question : answersByQuestion) {
+        System.out.println(
+            "question " + question.question_ + " : " + question.answers_.size() + " answers in " + question.elapsedTimeInMs_
+                + " ms");
+      }
       System.out.println("number of answers : " + answers.size());
       System.out.println("elapsed time : " + stopwatch.elapsed(TimeUnit.MILLISECONDS) + " ms");
     }
   }
 
-  private static Map<Literal, BigDecimal> apply(File rules, File facts, File queries, boolean computeProbabilities) {
+  private static List<Answers> apply(File rules, File facts, File queries, boolean computeProbabilities,
+      int nbThreads) {
 
     Preconditions.checkNotNull(rules, "rules should not be null");
     Preconditions.checkNotNull(facts, "facts should not be null");
     Preconditions.checkNotNull(queries, "queries should not be null");
+    Preconditions.checkArgument(nbThreads > 0, "nbThreads must be > 0");
 
     Preconditions.checkArgument(rules.exists(), "Missing rules : %s", rules);
     Preconditions.checkArgument(facts.exists(), "Missing facts : %s", facts);
@@ -120,53 +142,73 @@ final public class Solver extends ConsoleApp {
     Set<AbstractClause> clauses = View.of(rules).map(Parser::parseClause)
         .concat(View.of(facts).map(Parser::parseClause)).toSet();
 
-    Set<Literal> questions = View.of(queries).map(Parser::parseQuery).toSet();
-
-    return computeProbabilities ? applyWithProbabilities(questions, clauses)
-        : applyWithoutProbabilities(questions, clauses);
-  }
-
-  private static Map<Literal, BigDecimal> applyWithProbabilities(Set<Literal> questions, Set<AbstractClause> rules) {
-
-    Preconditions.checkNotNull(questions, "questions should not be null");
-    Preconditions.checkNotNull(rules, "clauses should not be null");
-
-    Map<Literal, BigDecimal> answers = new HashMap<>();
+    // The knowledge base is loaded once, then only read : it is shared by all the solvers
     AbstractKnowledgeBase kb = new KnowledgeBaseMemoryBacked();
-    rules.forEach(kb::azzert);
+    clauses.forEach(kb::azzert);
 
-    com.computablefacts.decima.problog.Proofer solver = new com.computablefacts.decima.problog.Proofer(kb);
+    // Questions are deduplicated but kept in input order
+    List<Literal> questions = new ArrayList<>(new LinkedHashSet<>(View.of(queries).map(Parser::parseQuery).toList()));
+    List<Answers> answers = new ArrayList<>(questions.size());
 
-    for (Literal question : questions) {
+    if (nbThreads == 1) {
+      questions.forEach(question -> answers.add(apply(kb, question, computeProbabilities)));
+      return answers;
+    }
 
-      Result<BigDecimal> probability = solver.probability(question, 5);
+    ExecutorService executor = Executors.newFixedThreadPool(nbThreads,
+        new ThreadFactoryBuilder().setNameFormat("decima-solver-%d").setDaemon(true).build());
 
-      if (probability.isSuccess()) {
-        answers.put(question, probability.getOrThrow());
-      }
+    try {
+      View.of(questions)
+          .forEachRemainingInParallel(question -> apply(kb, question, computeProbabilities), answers::add, true,
+              executor, 2 * nbThreads);
+    } finally {
+      executor.shutdownNow();
     }
     return answers;
   }
 
-  private static Map<Literal, BigDecimal> applyWithoutProbabilities(Set<Literal> questions, Set<AbstractClause> rules) {
+  private static Answers apply(AbstractKnowledgeBase kb, Literal question, boolean computeProbabilities) {
 
-    Preconditions.checkNotNull(questions, "questions should not be null");
-    Preconditions.checkNotNull(rules, "clauses should not be null");
+    Preconditions.checkNotNull(kb, "kb should not be null");
+    Preconditions.checkNotNull(question, "question should not be null");
 
-    Map<Literal, BigDecimal> answers = new HashMap<>();
-    AbstractKnowledgeBase kb = new KnowledgeBaseMemoryBacked();
-    rules.forEach(kb::azzert);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Map<Literal, BigDecimal> answers = new LinkedHashMap<>();
 
-    com.computablefacts.decima.problog.Solver solver = new com.computablefacts.decima.problog.Solver(kb);
+    if (computeProbabilities) {
 
-    for (Literal question : questions) {
+      com.computablefacts.decima.problog.Proofer solver = new com.computablefacts.decima.problog.Proofer(kb);
+      Result<BigDecimal> probability = solver.probability(question, 5);
+
+      if (probability.isSuccess()) {
+        answers.put(question, probability.getOrThrow());
+      }
+    } else {
 
+      com.computablefacts.decima.problog.Solver solver = new com.computablefacts.decima.problog.Solver(kb);
       Iterator<com.computablefacts.decima.problog.Fact> iterator = solver.solve(question);
 
       while (iterator.hasNext()) {
         answers.put(iterator.next().head(), BigDecimal.ONE);
       }
     }
-    return answers;
+    return new Answers(question, answers, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * The answers to a single question.
+   */
+  private static final class Answers {
+
+    private final Literal question_;
+    private final Map<Literal, BigDecimal> answers_;
+    private final long elapsedTimeInMs_;
+
+    Answers(Literal question, Map<Literal, BigDecimal> answers, long elapsedTimeInMs) {
+      question_ = question;
+      answers_ = answers;
+      elapsedTimeInMs_ = elapsedTimeInMs;
+    }
   }
-}
\ No newline at end of file
+}
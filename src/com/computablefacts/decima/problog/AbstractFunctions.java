@@ -11,6 +11,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -18,6 +19,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class AbstractFunctions {
 
   private final Map<String, Function> definitions_ = new ConcurrentHashMap<>();
+  private volatile Map<String, Function> snapshot_; // reset each time a primitive is registered or unregistered
 
   public AbstractFunctions() {
 
@@ -37,12 +39,25 @@ public class AbstractFunctions {
   }
 
   /**
-   * Return the list of available definitions for primitives.
+   * Return the list of available definitions for primitives. The same immutable map is returned until a primitive is
+   * registered or unregistered.
    *
    * @return list of definitions.
    */
   public Map<String, Function> definitions() {
-    return ImmutableMap.copyOf(definitions_);
+
+    @Var Map<String, Function> snapshot = snapshot_;
+
+    if (snapshot == null) {
+      synchronized (this) {
+        snapshot = snapshot_;
+        if (snapshot == null) {
+          snapshot = ImmutableMap.copyOf(definitions_);
+          snapshot_ = snapshot;
+        }
+      }
+    }
+    return snapshot;
   }
 
   /**
@@ -51,7 +66,7 @@ public class AbstractFunctions {
    * @param name     the primitive name.
    * @param function the primitive implementation.
    */
-  public void register(String name, Function function) {
+  public synchronized void register(String name, Function function) {
 
     Preconditions.checkNotNull(name, "name should not be null");
     Preconditions.checkNotNull(function, "function should not be null");
@@ -62,6 +77,7 @@ public class AbstractFunctions {
         "a function with the same name already exists");
 
     definitions_.put("FN_" + name.trim().toUpperCase(), function);
+    snapshot_ = null;
   }
 
   /**
@@ -69,7 +85,7 @@ public class AbstractFunctions {
    *
    * @param name the primitive name.
    */
-  public void unregister(String name) {
+  public synchronized void unregister(String name) {
 
     Preconditions.checkNotNull(name, "name should not be null");
     Preconditions.checkArgument(!Strings.isNullOrEmpty(name), "function name should neither be null nor empty");
@@ -79,5 +95,6 @@ public class AbstractFunctions {
         "a function with the given name cannot be found");
 
     definitions_.remove("FN_" + name.trim().toUpperCase());
+    snapshot_ = null;
   }
 }
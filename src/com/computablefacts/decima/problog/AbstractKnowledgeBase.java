@@ -18,6 +18,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import javax.validation.constraints.NotNull;
 
@@ -28,6 +29,7 @@ import javax.validation.constraints.NotNull;
 public abstract class AbstractKnowledgeBase {
 
   private final RandomString randomString_ = new RandomString(7);
+  private final AtomicLong generation_ = new AtomicLong(); // incremented each time a clause is asserted
 
   public AbstractKnowledgeBase() {
   }
@@ -99,6 +101,9 @@ public abstract class AbstractKnowledgeBase {
 
       azzertRule(newRule);
     }
+
+    // Must happen after the clause is visible : see Functions#existInKb()
+    generation_.incrementAndGet();
   }
 
   /**
@@ -113,6 +118,16 @@ public abstract class AbstractKnowledgeBase {
     clauses.forEach(this::azzert);
   }
 
+  /**
+   * Returns a counter incremented each time a clause is asserted. Two calls returning the same value ensure no clause
+   * has been added to the database in between.
+   *
+   * @return the current generation of the database.
+   */
+  long generation() {
+    return generation_.get();
+  }
+
   protected abstract void azzertFact(@NotNull Fact fact);
 
   protected abstract void azzertRule(@NotNull Rule rule);
@@ -64,12 +64,11 @@ public abstract class AbstractSubgoal {
   /**
    * Add a new waiter i.e. a subgoal that should be resumed when this subgoal has been evaluated.
    *
-   * @param subgoal the subgoal to resume.
-   * @param rule    the rule being evaluated.
-   * @param idx     the position of the rule body literal that should be evaluated next.
+   * @param subgoal      the subgoal to resume.
+   * @param continuation the rule being evaluated, positioned on the rule body literal that should be evaluated next.
    */
-  void waiter(AbstractSubgoal subgoal, Rule rule, int idx) {
-    waiters_.add(new Waiter(subgoal, rule, idx));
+  void waiter(AbstractSubgoal subgoal, Continuation continuation) {
+    waiters_.add(new Waiter(subgoal, continuation));
   }
 
   public abstract void fact(Fact fact);
@@ -89,19 +88,15 @@ public abstract class AbstractSubgoal {
   static final class Waiter {
 
     public final AbstractSubgoal subgoal_;
-    public final Rule rule_;
-    public final int idx_;
+    public final Continuation continuation_;
 
-    public Waiter(AbstractSubgoal subgoal, Rule rule, int idx) {
+    public Waiter(AbstractSubgoal subgoal, Continuation continuation) {
 
       Preconditions.checkNotNull(subgoal, "subgoal should not be null");
-      Preconditions.checkNotNull(rule, "clause should not be null");
-      Preconditions.checkArgument(0 <= idx && idx < rule.body().size(), "idx must be such as 0 <= idx < %s",
-          rule.body().size());
+      Preconditions.checkNotNull(continuation, "continuation should not be null");
 
       subgoal_ = subgoal;
-      rule_ = rule;
-      idx_ = idx;
+      continuation_ = continuation;
     }
 
     @Override
@@ -113,20 +108,19 @@ public abstract class AbstractSubgoal {
         return false;
       }
       Waiter waiter = (Waiter) obj;
-      return Objects.equals(subgoal_, waiter.subgoal_) && Objects.equals(rule_, waiter.rule_) && Objects.equals(idx_,
-          waiter.idx_);
+      return Objects.equals(subgoal_, waiter.subgoal_) && Objects.equals(continuation_, waiter.continuation_);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(subgoal_, rule_, idx_);
+      return Objects.hash(subgoal_, continuation_);
     }
 
     @Generated
     @Override
     public String toString() {
-      return MoreObjects.toStringHelper(this).add("literal", subgoal_.literal_).add("rule", rule_).add("idx", idx_)
-          .toString();
+      return MoreObjects.toStringHelper(this).add("literal", subgoal_.literal_).add("rule", continuation_)
+          .add("idx", continuation_.idx()).toString();
     }
   }
-}
\ No newline at end of file
+}
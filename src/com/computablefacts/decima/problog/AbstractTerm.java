@@ -4,9 +4,7 @@ import com.computablefacts.Generated;
 import com.computablefacts.asterix.codecs.JsonCodec;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.MapMaker;
-import com.google.common.hash.Hashing;
 import com.google.errorprone.annotations.CheckReturnValue;
-import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
@@ -33,12 +31,19 @@ public abstract class AbstractTerm {
   private final static ConcurrentMap<String, Const> idToConst_ = new MapMaker().weakValues().makeMap();
   private final static AtomicLong hits_ = new AtomicLong(0);
   private final static AtomicLong misses_ = new AtomicLong(0);
+  private final static AtomicInteger constGenerator_ = new AtomicInteger(0);
   private final static AtomicInteger idGenerator_ = new AtomicInteger(0);
 
-  private final String id_;
+  /**
+   * Dense integer encoding of the term. Constants are mapped to positive integers and variables to negative ones. Thus,
+   * two terms are equal iif they share the same code and comparing (or hashing) terms never requires materializing
+   * their string identifiers. Once the generators wrap around, in long-running processes, a variable and a constant
+   * may share the same code : {@link #equals(Object)} also compares the kind of the terms.
+   */
+  private final int code_;
 
-  protected AbstractTerm(String id) {
-    id_ = Preconditions.checkNotNull(id, "id should not be null");
+  protected AbstractTerm(int code) {
+    code_ = code;
   }
 
   public static Const newConst(Object value) {
@@ -57,17 +62,14 @@ public abstract class AbstractTerm {
       hits_.incrementAndGet();
     } else {
 
-      String id;
+      Const newConzt = new Const(constGenerator_.getAndIncrement(), newValue);
 
-      if (newValue.length() <= 32 /* murmur3_128 hash length */) {
-        id = newValue;
-      } else {
-        id = Hashing.murmur3_128().newHasher().putString(newValue, StandardCharsets.UTF_8).hash().toString();
-      }
+      // Terms are compared using their codes : two threads must never end up with distinct constants for a given value
+      conzt = idToConst_.putIfAbsent(newValue, newConzt);
 
-      conzt = new Const(id, newValue);
-
-      idToConst_.putIfAbsent(newValue, conzt);
+      if (conzt == null) {
+        conzt = newConzt;
+      }
       misses_.incrementAndGet();
     }
     return conzt;
@@ -78,7 +80,7 @@ public abstract class AbstractTerm {
   }
 
   public static Var newVar(boolean isWildcard) {
-    return new Var(Integer.toString(idGenerator_.getAndIncrement(), 10), isWildcard);
+    return new Var(~idGenerator_.getAndIncrement(), isWildcard);
   }
 
   @Generated
@@ -97,12 +99,12 @@ public abstract class AbstractTerm {
       return false;
     }
     AbstractTerm term = (AbstractTerm) obj;
-    return id().equals(term.id());
+    return code_ == term.code_ && isConst() == term.isConst();
   }
 
   @Override
   final public int hashCode() {
-    return id().hashCode();
+    return code_;
   }
 
   /**
@@ -121,9 +123,34 @@ public abstract class AbstractTerm {
    * term is a variable (or wildcard) and a 'c' character otherwise.
    */
   final public String id() {
-    return (isConst() ? "c" : "v") + id_;
+    return (isConst() ? "c" : "v") + rawId();
+  }
+
+  /**
+   * Term dense integer encoding.
+   *
+   * @return a positive integer if the current term is a constant and a negative integer otherwise.
+   */
+  final int code() {
+    return code_;
   }
 
+  /**
+   * Term tag encoded as an integer.
+   *
+   * @return the term code if the current term is a constant and {@link Integer#MIN_VALUE} otherwise.
+   */
+  final int tagCode() {
+    return isConst() ? code_ : Integer.MIN_VALUE;
+  }
+
+  /**
+   * Term identifier, without the 'c' or 'v' prefix. The identifier is materialized on demand.
+   *
+   * @return an identifier.
+   */
+  protected abstract String rawId();
+
   /**
    * Try to bind the current term to an environment constant.
    *
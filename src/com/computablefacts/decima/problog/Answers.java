@@ -0,0 +1,147 @@
+package com.computablefacts.decima.problog;
+
+import com.computablefacts.Generated;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.errorprone.annotations.CheckReturnValue;
+
+/**
+ * The answers to a query, computed lazily (see {@link Solver#stream(Literal, long, int, int)}).
+ * <p>
+ * Each call to {@link #hasNext()} resumes the search until a new answer is found, the search is over or a budget is
+ * exhausted. The search can be cancelled at any time, from any thread : cancellation is cooperative and takes effect
+ * between two search steps.
+ * <p>
+ * This class is not thread-safe, except for {@link #cancel()}.
+ */
+@CheckReturnValue
+final public class Answers extends AbstractIterator<Fact> implements AutoCloseable {
+
+  private final Solver solver_;
+  private final long deadline_; // Long.MAX_VALUE iif the wall time is not bounded
+  private final int maxNbSubgoals_;
+  private final int maxNbAnswers_;
+  private volatile boolean isCancelled_ = false;
+  private Status status_ = Status.RUNNING;
+  private int nbAnswers_ = 0;
+
+  Answers(Solver solver, long maxDurationInMs, int maxNbSubgoals, int maxNbAnswers) {
+
+    Preconditions.checkNotNull(solver, "solver should not be null");
+
+    solver_ = solver;
+    deadline_ = maxDurationInMs <= 0 ? Long.MAX_VALUE : System.currentTimeMillis() + maxDurationInMs;
+    maxNbSubgoals_ = maxNbSubgoals;
+    maxNbAnswers_ = maxNbAnswers;
+  }
+
+  @Generated
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("status", status_).add("nb_answers", nbAnswers_).toString();
+  }
+
+  @Override
+  public void close() {
+    cancel();
+  }
+
+  /**
+   * Ask the search to stop. Answers already found but not yet returned are discarded.
+   */
+  public void cancel() {
+    isCancelled_ = true;
+  }
+
+  /**
+   * Get the search status. The status is updated each time an answer is requested.
+   *
+   * @return the search status.
+   */
+  public Status status() {
+    return status_;
+  }
+
+  /**
+   * Get the number of answers returned so far.
+   *
+   * @return the number of answers.
+   */
+  public int nbAnswers() {
+    return nbAnswers_;
+  }
+
+  @Override
+  protected Fact computeNext() {
+    while (true) {
+      if (status_ != Status.RUNNING) {
+        return endOfData();
+      }
+      if (isCancelled_ || !solver_.isStreaming(this)) {
+        return stop(Status.CANCELLED);
+      }
+      if (maxNbAnswers_ > 0 && nbAnswers_ >= maxNbAnswers_) {
+        return stop(Status.MAX_NB_ANSWERS_REACHED);
+      }
+
+      Fact answer = solver_.pollAnswer();
+
+      if (answer != null) {
+        nbAnswers_++;
+        return answer;
+      }
+      if (System.currentTimeMillis() >= deadline_) {
+        return stop(Status.TIMED_OUT);
+      }
+      if (maxNbSubgoals_ > 0 && solver_.nbSubgoals() > maxNbSubgoals_) {
+        return stop(Status.MAX_NB_SUBGOALS_REACHED);
+      }
+      if (!solver_.step()) {
+        return stop(Status.COMPLETED);
+      }
+    }
+  }
+
+  private Fact stop(Status status) {
+    status_ = status;
+    solver_.endStream(this, status == Status.COMPLETED);
+    return endOfData();
+  }
+
+  /**
+   * The search status.
+   */
+  public enum Status {
+
+    /**
+     * The search is not over yet.
+     */
+    RUNNING,
+
+    /**
+     * All the answers have been found.
+     */
+    COMPLETED,
+
+    /**
+     * The search has been cancelled, either explicitly or because the solver started another evaluation.
+     */
+    CANCELLED,
+
+    /**
+     * The search has been stopped because the wall time budget has been exhausted.
+     */
+    TIMED_OUT,
+
+    /**
+     * The search has been stopped because it created more subgoals than allowed.
+     */
+    MAX_NB_SUBGOALS_REACHED,
+
+    /**
+     * The search has been stopped because the maximum number of answers has been returned.
+     */
+    MAX_NB_ANSWERS_REACHED
+  }
+}
@@ -0,0 +1,297 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newVar;
+
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A trail-based binding store for the slots of a {@link Rule.Template}.
+ * <p>
+ * Each slot is either unbound, bound to a constant or aliased to another slot. Unifying a template literal with a
+ * literal binds slots in place and records each binding onto a trail, so a failed (or explored) unification can be
+ * undone by unwinding the trail down to a previous mark. Thus, resolving a rule body literal against many facts does not
+ * allocate a new environment, literal or rule per fact.
+ * <p>
+ * This class is not thread-safe.
+ */
+@CheckReturnValue
+final class Bindings {
+
+  private final Rule.Template template_;
+  private final int[] refs_; // slot -> aliased slot or the slot itself if it is a root
+  private final Const[] values_; // root slot -> constant or null if the slot is unbound
+  private int[] trail_; // modified root slots, in order
+  private int top_ = 0;
+
+  Bindings(Rule.Template template) {
+
+    template_ = Preconditions.checkNotNull(template, "template should not be null");
+    refs_ = new int[template.nbSlots()];
+    values_ = new Const[template.nbSlots()];
+    trail_ = new int[Math.max(4, template.nbSlots())];
+
+    for (int i = 0; i < refs_.length; i++) {
+      refs_[i] = i;
+    }
+  }
+
+  private Bindings(Bindings bindings) {
+    template_ = bindings.template_;
+    refs_ = bindings.refs_.clone();
+    values_ = bindings.values_.clone();
+    trail_ = new int[Math.max(4, refs_.length)];
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof Bindings)) {
+      return false;
+    }
+    Bindings bindings = (Bindings) obj;
+    return template_ == bindings.template_ && Arrays.equals(refs_, bindings.refs_) && Arrays.equals(values_,
+        bindings.values_);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * System.identityHashCode(template_) + Arrays.hashCode(refs_)) + Arrays.hashCode(values_);
+  }
+
+  Rule.Template template() {
+    return template_;
+  }
+
+  /**
+   * Copy the current bindings. The trail of the copy is empty.
+   *
+   * @return a new binding store.
+   */
+  Bindings copy() {
+    return new Bindings(this);
+  }
+
+  /**
+   * Get the current trail position.
+   *
+   * @return a mark to give to {@link #undo(int)}.
+   */
+  int mark() {
+    return top_;
+  }
+
+  /**
+   * Undo all the bindings made since a given mark.
+   *
+   * @param mark a mark returned by {@link #mark()}.
+   */
+  void undo(int mark) {
+
+    Preconditions.checkArgument(0 <= mark && mark <= top_, "mark must be such as 0 <= mark <= %s", top_);
+
+    while (top_ > mark) {
+      int slot = trail_[--top_];
+      refs_[slot] = slot;
+      values_[slot] = null;
+    }
+  }
+
+  /**
+   * Unify the rule head with a literal. On failure, the bindings are left untouched.
+   *
+   * @param literal literal.
+   * @return true iif the two literals can be unified.
+   */
+  boolean unifyHead(Literal literal) {
+    return unify(template_.head(), template_.headSlots(), literal);
+  }
+
+  /**
+   * Unify a rule body literal with a literal. On failure, the bindings are left untouched.
+   *
+   * @param idx     the rule body literal.
+   * @param literal literal.
+   * @return true iif the two literals can be unified.
+   */
+  boolean unifyBody(int idx, Literal literal) {
+    return unify(template_.body(idx), template_.bodySlots(idx), literal);
+  }
+
+  /**
+   * Materialize the rule head. Unbound slots are mapped to fresh variables.
+   *
+   * @return a literal.
+   */
+  Literal head() {
+    return materialize(template_.head(), template_.headSlots());
+  }
+
+  /**
+   * Materialize a rule body literal. Unbound slots are mapped to fresh variables.
+   *
+   * @param idx the rule body literal.
+   * @return a literal.
+   */
+  Literal body(int idx) {
+    return materialize(template_.body(idx), template_.bodySlots(idx));
+  }
+
+  /**
+   * Compute the key of a rule body literal without materializing it.
+   *
+   * @param idx the rule body literal.
+   * @return the literal key.
+   */
+  Literal.Key key(int idx) {
+
+    Literal literal = template_.body(idx);
+    List<AbstractTerm> terms = literal.terms();
+    int[] slots = template_.bodySlots(idx);
+    int[] codes = new int[slots.length + 2 /* predicate */];
+    codes[0] = literal.predicate().symbol();
+    codes[1] = literal.predicate().arity();
+
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i] < 0) {
+        codes[i + 2] = terms.get(i).tagCode();
+      } else {
+        Const value = values_[root(slots[i])];
+        codes[i + 2] = value == null ? Integer.MIN_VALUE : value.code();
+      }
+    }
+    return new Literal.Key(codes);
+  }
+
+  private boolean unify(Literal pattern, int[] slots, Literal literal) {
+
+    Preconditions.checkNotNull(literal, "literal should not be null");
+
+    if (!pattern.predicate().equals(literal.predicate())) {
+      return false;
+    }
+
+    List<AbstractTerm> patternTerms = pattern.terms();
+    List<AbstractTerm> terms = literal.terms();
+    int mark = mark();
+
+    for (int i = 0; i < slots.length; i++) {
+
+      AbstractTerm term = terms.get(i);
+      @com.google.errorprone.annotations.Var boolean isUnified = true;
+
+      if (term.isConst()) {
+        isUnified = slots[i] < 0 ? patternTerms.get(i).equals(term) : bind(slots[i], (Const) term);
+      } else {
+
+        // A variable of the literal only constrains the pattern terms found at the positions where it occurs
+        int first = terms.indexOf(term);
+
+        if (first < i) {
+          isUnified = unify(patternTerms, slots, first, i);
+        }
+      }
+      if (!isUnified) {
+        undo(mark);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean unify(List<AbstractTerm> terms, int[] slots, int i, int j) {
+    if (slots[i] < 0 && slots[j] < 0) {
+      return terms.get(i).equals(terms.get(j));
+    }
+    if (slots[i] < 0) {
+      return bind(slots[j], (Const) terms.get(i));
+    }
+    if (slots[j] < 0) {
+      return bind(slots[i], (Const) terms.get(j));
+    }
+    return alias(slots[i], slots[j]);
+  }
+
+  private Literal materialize(Literal pattern, int[] slots) {
+
+    List<AbstractTerm> terms = pattern.terms();
+    List<AbstractTerm> newTerms = new ArrayList<>(slots.length);
+    @com.google.errorprone.annotations.Var Var[] vars = null; // root slot -> fresh variable
+
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i] < 0) {
+        newTerms.add(terms.get(i));
+      } else {
+
+        int root = root(slots[i]);
+
+        if (values_[root] != null) {
+          newTerms.add(values_[root]);
+        } else {
+          if (vars == null) {
+            vars = new Var[refs_.length];
+          }
+          if (vars[root] == null) {
+            vars[root] = newVar(template_.isWildcard(root));
+          }
+          newTerms.add(vars[root]);
+        }
+      }
+    }
+    return pattern.withTerms(newTerms);
+  }
+
+  private int root(int slot) {
+    @com.google.errorprone.annotations.Var int root = slot;
+    while (refs_[root] != root) {
+      root = refs_[root];
+    }
+    return root;
+  }
+
+  private boolean bind(int slot, Const value) {
+
+    int root = root(slot);
+
+    if (values_[root] != null) {
+      return values_[root].equals(value);
+    }
+
+    values_[root] = value;
+    trail(root);
+    return true;
+  }
+
+  private boolean alias(int slot1, int slot2) {
+
+    int root1 = root(slot1);
+    int root2 = root(slot2);
+
+    if (root1 == root2) {
+      return true;
+    }
+    if (values_[root1] != null && values_[root2] != null) {
+      return values_[root1].equals(values_[root2]);
+    }
+    if (values_[root1] == null) {
+      refs_[root1] = root2;
+      trail(root1);
+    } else {
+      refs_[root2] = root1;
+      trail(root2);
+    }
+    return true;
+  }
+
+  private void trail(int slot) {
+    if (top_ >= trail_.length) {
+      trail_ = Arrays.copyOf(trail_, 2 * trail_.length);
+    }
+    trail_[top_++] = slot;
+  }
+}
@@ -0,0 +1,178 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.AbstractTerm.newVar;
+
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of facts and rules. Decoding a clause neither tokenizes nor parses text : constants are
+ * directly interned from their stored value.
+ * <p>
+ * A clause is encoded as a type tag, the number of body literals and the head literal followed by the body literals. A
+ * literal is encoded as its probability (scale and unscaled value), its predicate name, its arity and its terms. A
+ * constant is encoded as its value and a variable as its index of first occurrence in the clause. Thus, two clauses
+ * equal up to a renaming of their variables share the same encoding.
+ * <p>
+ * The functions attached to primitives are not encoded.
+ */
+@CheckReturnValue
+final class ClauseCodec {
+
+  private static final byte FACT = 'F';
+  private static final byte RULE = 'R';
+  private static final byte CONST = 'c';
+  private static final byte VAR = 'v';
+
+  private ClauseCodec() {
+  }
+
+  /**
+   * Encode a fact or a rule.
+   *
+   * @param clause the clause to encode.
+   * @return the encoded clause.
+   */
+  static byte[] encode(AbstractClause clause) {
+
+    Preconditions.checkNotNull(clause, "clause should not be null");
+
+    try {
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+      DataOutputStream out = new DataOutputStream(bytes);
+      Map<Var, Integer> vars = new HashMap<>();
+
+      if (clause.isFact()) {
+        out.writeByte(FACT);
+        out.writeInt(0);
+        encode(out, vars, clause.head());
+      } else {
+
+        List<Literal> body = ((Rule) clause).body();
+
+        out.writeByte(RULE);
+        out.writeInt(body.size());
+        encode(out, vars, clause.head());
+
+        for (Literal literal : body) {
+          encode(out, vars, literal);
+        }
+      }
+
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Decode a fact or a rule previously encoded using {@link #encode(AbstractClause)}.
+   *
+   * @param clause the encoded clause.
+   * @return the decoded clause.
+   */
+  static AbstractClause decode(byte[] clause) {
+
+    Preconditions.checkNotNull(clause, "clause should not be null");
+
+    try {
+
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(clause));
+      List<Var> vars = new ArrayList<>();
+      byte type = in.readByte();
+      int nbBodyLiterals = in.readInt();
+      Literal head = decode(in, vars);
+
+      if (type == FACT) {
+        return new Fact(head);
+      }
+
+      Preconditions.checkState(type == RULE, "invalid clause type : %s", type);
+
+      List<Literal> body = new ArrayList<>(nbBodyLiterals);
+
+      for (int i = 0; i < nbBodyLiterals; i++) {
+        body.add(decode(in, vars));
+      }
+      return new Rule(head, body);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void encode(DataOutputStream out, Map<Var, Integer> vars, Literal literal) throws IOException {
+
+    BigDecimal probability = literal.probability();
+
+    out.writeInt(probability.scale());
+    writeBytes(out, probability.unscaledValue().toByteArray());
+    writeBytes(out, literal.predicate().name().getBytes(StandardCharsets.UTF_8));
+    out.writeInt(literal.terms().size());
+
+    for (AbstractTerm term : literal.terms()) {
+      if (term.isConst()) {
+        out.writeByte(CONST);
+        writeBytes(out, ((Const) term).value().toString().getBytes(StandardCharsets.UTF_8));
+      } else {
+        out.writeByte(VAR);
+        out.writeInt(vars.computeIfAbsent((Var) term, v -> vars.size()));
+      }
+    }
+  }
+
+  private static Literal decode(DataInputStream in, List<Var> vars) throws IOException {
+
+    int scale = in.readInt();
+    BigDecimal probability = new BigDecimal(new BigInteger(readBytes(in)), scale);
+    String predicate = new String(readBytes(in), StandardCharsets.UTF_8);
+    int arity = in.readInt();
+    List<AbstractTerm> terms = new ArrayList<>(arity);
+
+    for (int i = 0; i < arity; i++) {
+
+      byte type = in.readByte();
+
+      if (type == CONST) {
+        terms.add(newConst(new String(readBytes(in), StandardCharsets.UTF_8)));
+      } else {
+
+        Preconditions.checkState(type == VAR, "invalid term type : %s", type);
+
+        int index = in.readInt();
+
+        while (vars.size() <= index) {
+          vars.add(newVar());
+        }
+        terms.add(vars.get(index));
+      }
+    }
+    return new Literal(probability, predicate, terms);
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
@@ -1,6 +1,8 @@
 package com.computablefacts.decima.problog;
 
+import com.google.common.hash.Hashing;
 import com.google.errorprone.annotations.CheckReturnValue;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Constants as simple objects.
@@ -10,8 +12,8 @@ final public class Const extends AbstractTerm {
 
   private final String value_;
 
-  Const(String id, String value) {
-    super(id);
+  Const(int code, String value) {
+    super(code);
     value_ = value;
   }
 
@@ -33,4 +35,12 @@ final public class Const extends AbstractTerm {
   public Object value() {
     return value_;
   }
+
+  @Override
+  protected String rawId() {
+    if (value_.length() <= 32 /* murmur3_128 hash length */) {
+      return value_;
+    }
+    return Hashing.murmur3_128().newHasher().putString(value_, StandardCharsets.UTF_8).hash().toString();
+  }
 }
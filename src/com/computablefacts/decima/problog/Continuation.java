@@ -0,0 +1,223 @@
+package com.computablefacts.decima.problog;
+
+import com.computablefacts.Generated;
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A suspended rule evaluation : the rule, the bindings of its slots, the next rule body literal to evaluate and the
+ * facts already matched by the previous rule body literals.
+ * <p>
+ * A continuation is immutable. The bindings are copied once per continuation and the matched facts are stored as a
+ * linked list shared by all the continuations derived from this one. The equivalent {@link Rule} is only materialized
+ * on demand.
+ */
+@CheckReturnValue
+final class Continuation {
+
+  private final Bindings bindings_;
+  private final int idx_;
+  private final Matched matched_; // null iif idx_ == 0
+
+  /**
+   * Start the evaluation of a rule.
+   *
+   * @param bindings the bindings of the rule slots, usually obtained by unifying the rule head with a subgoal.
+   */
+  Continuation(Bindings bindings) {
+    this(bindings.copy(), 0, null);
+  }
+
+  private Continuation(Bindings bindings, int idx, Matched matched) {
+
+    Preconditions.checkArgument(0 <= idx && idx < bindings.template().bodySize(), "idx must be such as 0 <= idx < %s",
+        bindings.template().bodySize());
+
+    bindings_ = bindings;
+    idx_ = idx;
+    matched_ = matched;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof Continuation)) {
+      return false;
+    }
+    Continuation continuation = (Continuation) obj;
+    return idx_ == continuation.idx_ && Objects.equals(bindings_, continuation.bindings_) && Objects.equals(matched_,
+        continuation.matched_);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(bindings_, idx_, matched_);
+  }
+
+  @Generated
+  @Override
+  public String toString() {
+    return rule().toString();
+  }
+
+  /**
+   * The position of the rule body literal that should be evaluated next.
+   *
+   * @return a position.
+   */
+  int idx() {
+    return idx_;
+  }
+
+  /**
+   * Check if the next rule body literal is the last one.
+   *
+   * @return true iif the next rule body literal is the last one.
+   */
+  boolean isLast() {
+    return idx_ == bindings_.template().bodySize() - 1;
+  }
+
+  /**
+   * The predicate of the next rule body literal.
+   *
+   * @return a predicate.
+   */
+  Predicate predicate() {
+    return bindings_.template().body(idx_).predicate();
+  }
+
+  /**
+   * The key of the next rule body literal.
+   *
+   * @return a key.
+   */
+  Literal.Key key() {
+    return bindings_.key(idx_);
+  }
+
+  /**
+   * Materialize the next rule body literal.
+   *
+   * @return a literal.
+   */
+  Literal literal() {
+    return bindings_.body(idx_);
+  }
+
+  /**
+   * Get a mutable copy of the bindings, to resume the rule evaluation.
+   *
+   * @return the bindings.
+   */
+  Bindings bindings() {
+    return bindings_.copy();
+  }
+
+  /**
+   * Move to the next rule body literal.
+   *
+   * @param bindings the bindings obtained by unifying the current rule body literal with a fact.
+   * @param fact     the fact matched by the current rule body literal.
+   * @return a new continuation.
+   */
+  Continuation next(Bindings bindings, Literal fact) {
+    return new Continuation(bindings.copy(), idx_ + 1, new Matched(fact, matched_));
+  }
+
+  /**
+   * Materialize the proof obtained when the last rule body literal matches a given fact.
+   *
+   * @param head the rule head, materialized using the final bindings.
+   * @param fact the fact matched by the last rule body literal.
+   * @return a grounded rule.
+   */
+  Rule proof(Literal head, Literal fact) {
+
+    Preconditions.checkState(isLast(), "the rule evaluation is not over");
+
+    List<Literal> body = matched();
+    body.add(fact);
+    return new Rule(head, body);
+  }
+
+  /**
+   * Materialize the rule being evaluated : the matched facts followed by the remaining rule body literals.
+   *
+   * @return a rule.
+   */
+  Rule rule() {
+
+    List<Literal> body = matched();
+
+    for (int i = idx_; i < bindings_.template().bodySize(); i++) {
+      body.add(bindings_.body(i));
+    }
+    return new Rule(bindings_.head(), body);
+  }
+
+  private List<Literal> matched() {
+
+    Literal[] facts = new Literal[idx_];
+    @com.google.errorprone.annotations.Var Matched matched = matched_;
+
+    for (int i = idx_ - 1; i >= 0; i--) {
+      facts[i] = matched.fact_;
+      matched = matched.previous_;
+    }
+
+    List<Literal> body = new ArrayList<>(bindings_.template().bodySize());
+    body.addAll(Arrays.asList(facts));
+    return body;
+  }
+
+  /**
+   * The facts matched so far, most recent first.
+   */
+  private static final class Matched {
+
+    private final Literal fact_;
+    private final Matched previous_;
+    private final int hash_;
+
+    Matched(Literal fact, Matched previous) {
+      fact_ = fact;
+      previous_ = previous;
+      hash_ = 31 * Objects.hashCode(previous) + fact.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof Matched)) {
+        return false;
+      }
+      @com.google.errorprone.annotations.Var Matched m1 = this;
+      @com.google.errorprone.annotations.Var Matched m2 = (Matched) obj;
+      while (m1 != null && m2 != null) {
+        if (m1 == m2) {
+          return true;
+        }
+        if (m1.hash_ != m2.hash_ || !m1.fact_.equals(m2.fact_)) {
+          return false;
+        }
+        m1 = m1.previous_;
+        m2 = m2.previous_;
+      }
+      return m1 == m2;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash_;
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.computablefacts.decima.problog;
 
 import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.AbstractTerm.newVar;
 
 import com.computablefacts.asterix.BoxedType;
 import com.computablefacts.asterix.codecs.Base64Codec;
@@ -9,7 +10,6 @@ import com.computablefacts.decima.Builder;
 import com.computablefacts.logfmt.LogFormatter;
 import com.computablefacts.nona.Function;
 import com.computablefacts.nona.types.Csv;
-import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
@@ -27,6 +27,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,8 +38,13 @@ final public class Functions extends AbstractFunctions {
 
   private static final Logger logger_ = LoggerFactory.getLogger(Functions.class);
 
+  private static final int MAX_NB_MISSES = 100_000;
+
   private final AbstractKnowledgeBase kb_;
 
+  // Negative answers of EXIST_IN_KB along with the KB generation they were computed at
+  private final Map<Literal.Key, Long> misses_ = new ConcurrentHashMap<>();
+
   public Functions(AbstractKnowledgeBase kb) {
 
     super();
@@ -138,18 +144,26 @@ final public class Functions extends AbstractFunctions {
         Preconditions.checkArgument(parameters.size() > 1, "EXIST_IN_KB takes at least two parameters.");
 
         String predicate = parameters.get(0).asString();
-        List<String> terms = parameters.subList(1, parameters.size()).stream().map(bt -> {
+        List<AbstractTerm> terms = new ArrayList<>(parameters.size() - 1);
 
-          String term = bt.asString();
+        for (int i = 1; i < parameters.size(); i++) {
 
-          if (bt.isNumber() || bt.isBoolean()) {
-            return term;
-          }
-          return "_".equals(term) ? "_" : "\"" + term + "\"";
-        }).collect(Collectors.toList());
+          String term = parameters.get(i).asString();
+
+          terms.add("_".equals(term) ? newVar(true) : newConst(term));
+        }
+
+        Literal query = new Literal(predicate, terms);
+        Literal.Key key = query.key();
+
+        // Read the generation before querying the KB : a fact asserted concurrently invalidates the answer
+        long generation = kb_.generation();
+        Long miss = misses_.get(key);
+
+        if (miss != null && miss == generation) {
+          return BoxedType.create(false);
+        }
 
-        String fact = predicate + "(" + Joiner.on(',').join(terms) + ")?";
-        Literal query = Parser.parseQuery(fact);
         Iterator<Fact> facts = kb_.facts(query);
 
         while (facts.hasNext()) {
@@ -157,6 +171,10 @@ final public class Functions extends AbstractFunctions {
             return BoxedType.create(true);
           }
         }
+        if (misses_.size() >= MAX_NB_MISSES) {
+          misses_.clear();
+        }
+        misses_.put(key, generation);
         return BoxedType.create(false);
       }
     };
@@ -1,65 +1,192 @@
 package com.computablefacts.decima.problog;
 
+import com.google.common.base.Preconditions;
 import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import javax.validation.constraints.NotNull;
 
+/**
+ * An in-memory knowledge base.
+ * <p>
+ * Clauses are grouped by predicate. For each predicate, argument indexes are built just-in-time, i.e. the first time a
+ * lookup binds a given argument position, and are maintained incrementally afterward. A lookup with at least one bound
+ * argument thus becomes a hash lookup on the most selective indexed position instead of a scan of all the clauses
+ * sharing the same predicate.
+ */
 @CheckReturnValue
 final public class KnowledgeBaseMemoryBacked extends AbstractKnowledgeBase {
 
-  private final Map<Predicate, Set<Fact>> facts_ = new ConcurrentHashMap<>();
-  private final Map<Predicate, Set<Rule>> rules_ = new ConcurrentHashMap<>();
+  private final Map<Predicate, ClauseIndex<Fact>> facts_ = new ConcurrentHashMap<>();
+  private final Map<Predicate, ClauseIndex<Rule>> rules_ = new ConcurrentHashMap<>();
 
   public KnowledgeBaseMemoryBacked() {
   }
 
   @Override
   protected void azzertFact(@NotNull Fact fact) {
-
-    Literal head = fact.head();
-    Predicate predicate = head.predicate();
-
-    if (!facts_.containsKey(predicate)) {
-      facts_.put(predicate, ConcurrentHashMap.newKeySet());
-    }
-    facts_.get(predicate).add(fact);
+    facts_.computeIfAbsent(fact.head().predicate(), p -> new ClauseIndex<>()).add(fact);
   }
 
   @Override
   protected void azzertRule(@NotNull Rule rule) {
-
-    Literal head = rule.head();
-    Predicate predicate = head.predicate();
-
-    if (!rules_.containsKey(predicate)) {
-      rules_.put(predicate, ConcurrentHashMap.newKeySet());
-    }
-    rules_.get(predicate).add(rule);
+    rules_.computeIfAbsent(rule.head().predicate(), p -> new ClauseIndex<>()).add(rule);
   }
 
   @Override
   protected Iterator<Fact> facts(@NotNull Literal literal) {
-    return facts_.getOrDefault(literal.predicate(), ConcurrentHashMap.newKeySet()).stream()
-        .filter(f -> f.head().isRelevant(literal)).iterator();
+    ClauseIndex<Fact> index = facts_.get(literal.predicate());
+    return index == null ? Collections.emptyIterator() : index.lookup(literal);
   }
 
   @Override
   protected Iterator<Rule> rules(@NotNull Literal literal) {
-    return rules_.getOrDefault(literal.predicate(), ConcurrentHashMap.newKeySet()).stream()
-        .filter(r -> r.head().isRelevant(literal)).iterator();
+    ClauseIndex<Rule> index = rules_.get(literal.predicate());
+    return index == null ? Collections.emptyIterator() : index.lookup(literal);
   }
 
   @Override
   public Iterator<Fact> facts() {
-    return facts_.values().stream().flatMap(Collection::stream).iterator();
+    return facts_.values().stream().map(ClauseIndex::clauses).flatMap(Collection::stream).iterator();
   }
 
   @Override
   public Iterator<Rule> rules() {
-    return rules_.values().stream().flatMap(Collection::stream).iterator();
+    return rules_.values().stream().map(ClauseIndex::clauses).flatMap(Collection::stream).iterator();
+  }
+
+  /**
+   * Get the argument positions indexed so far for a given predicate. For tests purposes.
+   *
+   * @param predicate predicate.
+   * @return the indexed argument positions.
+   */
+  Set<Integer> indexedPositions(Predicate predicate) {
+
+    Preconditions.checkNotNull(predicate, "predicate should not be null");
+
+    ClauseIndex<Fact> index = facts_.get(predicate);
+    return index == null ? Collections.emptySet() : Collections.unmodifiableSet(index.positions_.keySet());
+  }
+
+  /**
+   * All the clauses sharing the same predicate, along with the argument indexes built so far.
+   * <p>
+   * An argument index maps each constant seen at a given position to the clauses holding this constant at this
+   * position. Clauses holding a variable at this position (rules heads, mostly) can unify with any constant : they are
+   * kept aside and returned for every lookup.
+   */
+  private static final class ClauseIndex<C extends AbstractClause> {
+
+    // Below this threshold, a scan is cheaper than building and maintaining an index
+    private static final int MIN_NB_CLAUSES_TO_INDEX = 16;
+
+    private final Set<C> clauses_ = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, ArgumentIndex<C>> positions_ = new ConcurrentHashMap<>();
+
+    ClauseIndex() {
+    }
+
+    Set<C> clauses() {
+      return clauses_;
+    }
+
+    synchronized void add(C clause) {
+      if (clauses_.add(clause)) {
+        positions_.forEach((position, index) -> index.add(clause));
+      }
+    }
+
+    Iterator<C> lookup(Literal literal) {
+
+      @Var Collection<C> candidates = clauses_;
+
+      if (clauses_.size() >= MIN_NB_CLAUSES_TO_INDEX) {
+
+        List<AbstractTerm> terms = literal.terms();
+
+        for (int i = 0; i < terms.size(); i++) {
+
+          AbstractTerm term = terms.get(i);
+
+          if (term.isConst()) {
+
+            Collection<C> bucket = index(i).lookup(term);
+
+            if (bucket.size() < candidates.size()) {
+              candidates = bucket;
+            }
+            if (candidates.isEmpty()) {
+              return Collections.emptyIterator();
+            }
+          }
+        }
+      }
+      return candidates.stream().filter(c -> c.head().isRelevant(literal)).iterator();
+    }
+
+    private ArgumentIndex<C> index(int position) {
+
+      ArgumentIndex<C> index = positions_.get(position);
+
+      if (index != null) {
+        return index;
+      }
+      synchronized (this) {
+        return positions_.computeIfAbsent(position, pos -> {
+          ArgumentIndex<C> newIndex = new ArgumentIndex<>(pos);
+          clauses_.forEach(newIndex::add);
+          return newIndex;
+        });
+      }
+    }
+  }
+
+  /**
+   * An index on a single argument position.
+   */
+  private static final class ArgumentIndex<C extends AbstractClause> {
+
+    private final int position_;
+    private final Map<AbstractTerm, Set<C>> consts_ = new ConcurrentHashMap<>();
+    private final Set<C> vars_ = ConcurrentHashMap.newKeySet();
+
+    ArgumentIndex(int position) {
+      position_ = position;
+    }
+
+    void add(C clause) {
+
+      AbstractTerm term = clause.head().terms().get(position_);
+
+      if (term.isConst()) {
+        consts_.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(clause);
+      } else {
+        vars_.add(clause);
+      }
+    }
+
+    Collection<C> lookup(AbstractTerm term) {
+
+      Set<C> bucket = consts_.getOrDefault(term, Collections.emptySet());
+
+      if (vars_.isEmpty()) {
+        return bucket;
+      }
+      if (bucket.isEmpty()) {
+        return vars_;
+      }
+
+      Set<C> candidates = ConcurrentHashMap.newKeySet();
+      candidates.addAll(bucket);
+      candidates.addAll(vars_);
+      return candidates;
+    }
   }
-}
\ No newline at end of file
+}
@@ -4,6 +4,7 @@ import static com.computablefacts.decima.problog.AbstractTerm.newConst;
 import static com.computablefacts.decima.problog.AbstractTerm.newVar;
 
 import com.computablefacts.asterix.BoxedType;
+import com.computablefacts.nona.CompiledFunction;
 import com.computablefacts.nona.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
@@ -11,14 +12,15 @@ import com.google.common.collect.Lists;
 import com.google.errorprone.annotations.CheckReturnValue;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * A literal is a predicate and a sequence of terms, the number of which must match the predicate's arity.
@@ -34,9 +36,11 @@ final public class Literal {
   private final List<AbstractTerm> terms_;
   private final List<Literal> functions_; // a sequence of functions to execute
   private final BigDecimal probability_;
+  private final Compiled compiled_; // shared by all the literals derived from this one through substitution
 
   private String id_ = null;
   private String tag_ = null;
+  private Key key_ = null;
   private Boolean isGrounded_ = null;
   private Boolean isSemiGrounded_ = null;
 
@@ -68,6 +72,15 @@ final public class Literal {
     predicate_ = new Predicate(predicate, terms.size());
     functions_ = new ArrayList<>(functions);
     terms_ = new ArrayList<>(terms);
+    compiled_ = new Compiled();
+  }
+
+  private Literal(Literal literal, List<AbstractTerm> terms) {
+    probability_ = literal.probability_;
+    predicate_ = literal.predicate_;
+    functions_ = literal.functions_;
+    terms_ = terms;
+    compiled_ = literal.compiled_;
   }
 
   @Override
@@ -79,12 +92,12 @@ final public class Literal {
       return false;
     }
     Literal literal = (Literal) obj;
-    return probability_.compareTo(literal.probability_) == 0 && tag().equals(literal.tag());
+    return probability_.compareTo(literal.probability_) == 0 && key().equals(literal.key());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(probability(), tag());
+    return 31 * probability_.hashCode() + key().hashCode();
   }
 
   @Override
@@ -183,6 +196,28 @@ final public class Literal {
     return tag_;
   }
 
+  /**
+   * Literal tag encoded as a packed array of integers. Two literals have the same key iif they have the same tag. The
+   * key is used by the subgoal table instead of the (costlier to build) tag.
+   *
+   * @return a key.
+   */
+  Key key() {
+    if (key_ == null) {
+
+      int[] codes = new int[terms_.size() + 2 /* predicate */];
+      codes[0] = predicate_.symbol();
+      codes[1] = predicate_.arity();
+
+      for (int i = 0; i < terms_.size(); i++) {
+        codes[i + 2] = terms_.get(i).tagCode();
+      }
+
+      key_ = new Key(codes);
+    }
+    return key_;
+  }
+
   /**
    * Literal predicate.
    *
@@ -267,7 +302,7 @@ final public class Literal {
 
     Preconditions.checkNotNull(literal, "literal should not be null");
 
-    if (!predicate().id().equals(literal.predicate().id())) {
+    if (!predicate_.equals(literal.predicate_)) {
       return false;
     }
     for (int i = 0; i < terms_.size(); i++) {
@@ -330,7 +365,21 @@ final public class Literal {
     for (AbstractTerm term : terms_) {
       terms.add(term.subst(env));
     }
-    return new Literal(probability_, predicate_.name(), terms, functions_);
+    return new Literal(this, terms);
+  }
+
+  /**
+   * Replace the literal terms. The new literal shares the predicate, the probability and the functions of the current
+   * one.
+   *
+   * @param terms the new terms.
+   * @return a new literal.
+   */
+  Literal withTerms(List<AbstractTerm> terms) {
+
+    Preconditions.checkArgument(terms.size() == terms_.size(), "terms.size() should be equal to terms_.size()");
+
+    return new Literal(this, terms);
   }
 
   /**
@@ -408,8 +457,7 @@ final public class Literal {
 
       if (predicate.endsWith("_MATERIALIZE_FACTS")) {
 
-        Function function = compile2();
-        BoxedType<?> result = function.evaluate(definitions);
+        BoxedType<?> result = compiled_.materialization(this).evaluate(definitions, terms_);
 
         return result == null ? null : result.isCollection() ? ((Collection<Literal>) result.asCollection()).iterator()
             : result.value() instanceof Iterator ? (Iterator<Literal>) result.value() : null;
@@ -418,15 +466,15 @@ final public class Literal {
 
     Preconditions.checkState(isValidPrimitive(), "Literal is not a valid primitive : %s", this);
 
-    Function function = compile();
-    BoxedType<?> result = function.evaluate(definitions);
+    BoxedType<?> result = compiled_.function(this).evaluate(definitions, terms_);
     boolean isValid = result != null && (result.isString() || result.isNumber() || result.isBoolean() || result.isDate()
         || result.isCollection() || result.isMap());
 
     if (!isValid) {
       Preconditions.checkState(isValid,
           "The only return types allowed are String, Number, Boolean, Date, Collection and Map : %s(\n  %s\n)",
-          function.name(), function.parameters().stream().map(Function::name).collect(Collectors.joining("\n  , ")));
+          predicate_.name().toUpperCase(),
+          terms_.stream().skip(1).map(AbstractTerm::toString).collect(Collectors.joining("\n  , ")));
     }
     if (!isFirstTermVariable) { // => FN_IS()
 
@@ -499,7 +547,7 @@ final public class Literal {
     return functionVariables;
   }
 
-  private String mergeFunctions() {
+  private String mergeFunctions(Primitive.Builder builder) {
 
     // The functions_ class member is a list such as :
     //
@@ -509,18 +557,18 @@ final public class Literal {
 
     List<AbstractTerm> functionVariables = functionVariables();
 
-    // Compute the mapping between the current literal terms and the functions parameters
-    Map<AbstractTerm, AbstractTerm> functionVariablesMapping = new HashMap<>();
+    // Compute the mapping between the functions parameters and the current literal terms positions
+    Map<AbstractTerm, Integer> functionVariablesMapping = new HashMap<>();
 
     for (int i = 0; i < terms_.size(); i++) {
-      functionVariablesMapping.put(functionVariables.get(i), terms_.get(i));
+      functionVariablesMapping.put(functionVariables.get(i), i);
     }
 
     // Merge all functions together to create a single one :
     //
-    // fn_if(O, fn_and(fn_lt(X, 0), fn_gt(Y, 0)), 1, 0)
+    // fn_if(O, fn_and(fn_lt(¤0, ¤1), fn_gt(¤2, ¤3)), ¤4, ¤5)
     //
-    // where all terms are const but the first one.
+    // where each ¤i is a slot bound either to a constant of the functions or to a term of the current literal.
 
     // Compute the mapping between the intermediary variables and the partial functions
     Map<AbstractTerm, String> functionOutputsMapping = new HashMap<>();
@@ -536,23 +584,9 @@ final public class Literal {
         AbstractTerm term = terms.get(k);
 
         if (term.isConst()) {
-
-          Object value = ((Const) term).value();
-
-          if (value instanceof String) {
-            fnParams.add(Function.wrap((String) value));
-          } else {
-            fnParams.add(value.toString());
-          }
+          fnParams.add(builder.constant(term));
         } else if (functionVariablesMapping.containsKey(term)) {
-
-          Object value = ((Const) functionVariablesMapping.get(term)).value();
-
-          if (value instanceof String) {
-            fnParams.add(Function.wrap((String) value));
-          } else {
-            fnParams.add(value.toString());
-          }
+          fnParams.add(builder.position(functionVariablesMapping.get(term)));
         } else if (functionOutputsMapping.containsKey(term)) {
           fnParams.add(functionOutputsMapping.get(term));
         } else {
@@ -569,25 +603,185 @@ final public class Literal {
     return functionOutputsMapping.get(functionVariables.get(0));
   }
 
-  private Function compile() {
+  private Primitive compile() {
+
+    Primitive.Builder builder = new Primitive.Builder();
+
     if (functions_.size() <= 0) {
-      String function = predicate_.name().toUpperCase() + "(" + terms_.stream().skip(1)
-          .map(term -> Function.wrap(((Const) term).value().toString())).collect(Collectors.joining(", ")) + ")";
-      return new Function(function);
+      String function = predicate_.name().toUpperCase() + "(" + IntStream.range(1, terms_.size())
+          .mapToObj(builder::position).collect(Collectors.joining(", ")) + ")";
+      return builder.build(function);
     }
-    return new Function(mergeFunctions());
+    return builder.build(mergeFunctions(builder));
   }
 
-  private Function compile2() {
+  private Primitive compile2() {
+
+    Primitive.Builder builder = new Primitive.Builder();
+
     if (functions_.size() <= 0) {
-      String function = predicate_.name().toUpperCase() + "(" + terms_.stream().map(term -> {
-        if (term.isConst()) {
-          return Function.wrap(((Const) term).value().toString());
+      String function = predicate_.name().toUpperCase() + "(" + IntStream.range(0, terms_.size())
+          .mapToObj(builder::position).collect(Collectors.joining(", ")) + ")";
+      return builder.build(function);
+    }
+    return builder.build(mergeFunctions(builder));
+  }
+
+  /**
+   * A literal tag as a packed array of integers : the predicate symbol, the predicate arity and, for each term, either
+   * the constant code or {@link Integer#MIN_VALUE} for variables.
+   */
+  static final class Key {
+
+    private final int[] codes_;
+    private final int hash_;
+
+    Key(int[] codes) {
+      codes_ = codes;
+      hash_ = Arrays.hashCode(codes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) obj;
+      return hash_ == key.hash_ && Arrays.equals(codes_, key.codes_);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash_;
+    }
+  }
+
+  /**
+   * The primitives compiled so far. Compilation happens at most once per mode and the result is reused by all the
+   * literals sharing the same function chain, whatever their terms.
+   */
+  private static final class Compiled {
+
+    private volatile Primitive function_;
+    private volatile Primitive materialization_;
+
+    Compiled() {
+    }
+
+    Primitive function(Literal literal) {
+      @com.google.errorprone.annotations.Var Primitive function = function_;
+      if (function == null) {
+        function = literal.compile();
+        function_ = function;
+      }
+      return function;
+    }
+
+    Primitive materialization(Literal literal) {
+      @com.google.errorprone.annotations.Var Primitive materialization = materialization_;
+      if (materialization == null) {
+        materialization = literal.compile2();
+        materialization_ = materialization;
+      }
+      return materialization;
+    }
+  }
+
+  /**
+   * A nona function parameterized by slots. Each slot is either bound to a constant, once and for all, or to the term
+   * of the literal at a given position, at evaluation time. The function is compiled against the definitions it is
+   * evaluated with and the compiled function is reused as long as the same definitions are passed.
+   */
+  private static final class Primitive {
+
+    private final Function function_;
+    private final String[] slots_;
+    private final int[] positions_; // the literal term bound to each slot, -1 if the slot is bound to a constant
+    private final BoxedType<?>[] constants_;
+    private volatile Compilation compilation_;
+
+    private Primitive(Function function, String[] slots, int[] positions, BoxedType<?>[] constants) {
+      function_ = function;
+      slots_ = slots;
+      positions_ = positions;
+      constants_ = constants;
+    }
+
+    private static BoxedType<?> box(AbstractTerm term) {
+      return Function.box(term.isConst() ? ((Const) term).value().toString() : "_");
+    }
+
+    BoxedType<?> evaluate(Map<String, Function> definitions, List<AbstractTerm> terms) {
+
+      BoxedType<?>[] values = new BoxedType<?>[slots_.length];
+
+      for (int i = 0; i < values.length; i++) {
+        values[i] = positions_[i] < 0 ? constants_[i] : box(terms.get(positions_[i]));
+      }
+      return compiled(definitions).evaluate(values);
+    }
+
+    private CompiledFunction compiled(Map<String, Function> definitions) {
+
+      @com.google.errorprone.annotations.Var Compilation compilation = compilation_;
+
+      if (compilation == null || compilation.definitions_ != definitions) {
+        compilation = new Compilation(definitions, function_.compile(definitions, Arrays.asList(slots_)));
+        compilation_ = compilation;
+      }
+      return compilation.function_;
+    }
+
+    /**
+     * A function compiled against a given set of definitions.
+     */
+    private static final class Compilation {
+
+      private final Map<String, Function> definitions_;
+      private final CompiledFunction function_;
+
+      Compilation(Map<String, Function> definitions, CompiledFunction function) {
+        definitions_ = definitions;
+        function_ = function;
+      }
+    }
+
+    static final class Builder {
+
+      private final List<Integer> positions_ = new ArrayList<>();
+      private final List<BoxedType<?>> constants_ = new ArrayList<>();
+
+      Builder() {
+      }
+
+      String position(int position) {
+        return slot(position, null);
+      }
+
+      String constant(AbstractTerm term) {
+        return slot(-1, box(term));
+      }
+
+      Primitive build(String expression) {
+
+        String[] slots = new String[positions_.size()];
+        int[] positions = new int[positions_.size()];
+
+        for (int i = 0; i < slots.length; i++) {
+          slots[i] = SEPARATOR_CURRENCY_SIGN + Integer.toString(i);
+          positions[i] = positions_.get(i);
         }
-        return Function.wrap("_");
-      }).collect(Collectors.joining(", ")) + ")";
-      return new Function(function);
+        return new Primitive(new Function(expression), slots, positions, constants_.toArray(new BoxedType<?>[0]));
+      }
+
+      private String slot(int position, BoxedType<?> constant) {
+        positions_.add(position);
+        constants_.add(constant);
+        return SEPARATOR_CURRENCY_SIGN + Integer.toString(positions_.size() - 1);
+      }
     }
-    return new Function(mergeFunctions());
   }
 }
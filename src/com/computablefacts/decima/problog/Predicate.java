@@ -2,6 +2,9 @@ package com.computablefacts.decima.problog;
 
 import com.google.common.base.Preconditions;
 import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A predicate symbol has a name and an arity. Negated predicates are prefixed with "~". Primitives are prefixed with
@@ -10,6 +13,14 @@ import com.google.errorprone.annotations.CheckReturnValue;
 @CheckReturnValue
 final public class Predicate {
 
+  /**
+   * Symbol table. Each predicate name is mapped to a dense integer so predicates (and literals) can be compared and
+   * hashed without building string identifiers.
+   */
+  private final static Map<String, Integer> nameToSymbol_ = new ConcurrentHashMap<>();
+  private final static AtomicInteger symbolGenerator_ = new AtomicInteger(0);
+
+  private final int symbol_;
   private final String name_;
   private final int arity_;
   private final boolean isNegated_;
@@ -28,6 +39,7 @@ final public class Predicate {
 
     String newName = name.startsWith("~") ? name.substring(1) : name;
 
+    symbol_ = nameToSymbol_.computeIfAbsent(name, n -> symbolGenerator_.getAndIncrement());
     name_ = name;
     arity_ = arity;
     isNegated_ = !name.equals(newName);
@@ -45,12 +57,12 @@ final public class Predicate {
       return false;
     }
     Predicate predicate = (Predicate) obj;
-    return id().equals(predicate.id());
+    return symbol_ == predicate.symbol_ && arity_ == predicate.arity_;
   }
 
   @Override
   public int hashCode() {
-    return id().hashCode();
+    return 31 * symbol_ + arity_;
   }
 
   @Override
@@ -67,6 +79,15 @@ final public class Predicate {
     return name_ + "/" + arity_;
   }
 
+  /**
+   * Predicate name encoded as an integer.
+   *
+   * @return a dense integer, unique for each predicate name.
+   */
+  int symbol() {
+    return symbol_;
+  }
+
   /**
    * Predicate name.
    *
@@ -1,6 +1,7 @@
 package com.computablefacts.decima.problog;
 
 import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.AbstractTerm.newVar;
 
 import com.computablefacts.Generated;
 import com.computablefacts.asterix.RandomString;
@@ -8,6 +9,8 @@ import com.computablefacts.asterix.Result;
 import com.computablefacts.asterix.View;
 import com.computablefacts.decima.robdd.BddManager;
 import com.computablefacts.decima.robdd.BddNode;
+import com.computablefacts.decima.robdd.Pair;
+import com.computablefacts.logfmt.LogFormatter;
 import com.google.common.annotations.Beta;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
@@ -20,14 +23,29 @@ import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.Var;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,7 +68,12 @@ final public class Proofer extends Solver {
         newConst(((Const) fact.terms().get(0)).value() + "_" + idx));
   };
 
+  // The proof trees are built while the tables are filled : they cannot be kept consistent with tables kept across
+  // queries, hence the Proofer never enables incremental tabling
   private final List<Node> trees_ = new ArrayList<>(); // proofs
+  private VariableOrdering variableOrdering_ = VariableOrdering.CREATION;
+  private int reorderingThreshold_ = 0; // 0 iif dynamic reordering is disabled
+  private BddReport bddReport_ = null;
 
   @Deprecated
   public Proofer(AbstractKnowledgeBase kb) {
@@ -77,6 +100,44 @@ final public class Proofer extends Solver {
     return super.solve(query, -1 /* override parameter otherwise proofs will be missing */);
   }
 
+  /**
+   * Set the heuristic used to order the BDD variables before the BDD is built.
+   *
+   * @param variableOrdering the static ordering heuristic.
+   */
+  public void variableOrdering(VariableOrdering variableOrdering) {
+    variableOrdering_ = Preconditions.checkNotNull(variableOrdering, "variableOrdering should not be null");
+  }
+
+  /**
+   * Enable the dynamic reordering (sifting) of the BDD variables while the BDD is built. See
+   * {@link BddManager#enableDynamicReordering(int)}.
+   *
+   * @param threshold the number of BDD nodes that triggers the first reordering.
+   */
+  public void enableDynamicReordering(int threshold) {
+
+    Preconditions.checkArgument(threshold > 0, "threshold must be > 0");
+
+    reorderingThreshold_ = threshold;
+  }
+
+  /**
+   * Disable the dynamic reordering of the BDD variables.
+   */
+  public void disableDynamicReordering() {
+    reorderingThreshold_ = 0;
+  }
+
+  /**
+   * Get the statistics of the last BDD built.
+   *
+   * @return the statistics of the last BDD built, if any.
+   */
+  public Result<BddReport> bddReport() {
+    return Result.of(bddReport_);
+  }
+
   @Override
   protected void trackProofs(AbstractSubgoal subgoal, Rule rule) {
 
@@ -125,151 +186,538 @@ final public class Proofer extends Solver {
    */
   public Result<BigDecimal> probability(Literal query, int nbSignificantDigits) {
 
+    Preconditions.checkArgument(nbSignificantDigits > 0, "nbSignificantDigits should be > 0");
+
+    Pair<BiMap<Integer, Literal>, BddNode> bdd = bdd(query, Integer.MAX_VALUE);
+    long start = System.nanoTime();
+    BigDecimal upperBound = exactWeightedModelCount(bdd.t, bdd.u);
+    weightedModelCountDone(start);
+
+    int newScale = nbSignificantDigits - upperBound.precision() + upperBound.scale();
+    return Result.success(upperBound.setScale(newScale, RoundingMode.HALF_UP));
+  }
+
+  /**
+   * Same as {@link #probability(Literal, int)} but the weighted model count is computed using floating-point
+   * arithmetic. It is much faster than the exact computation on large BDDs but comes with a rounding error.
+   *
+   * @param query goal.
+   * @return a probability estimation (key) and an upper bound on the absolute rounding error of the estimation
+   * (value).
+   */
+  public Result<Map.Entry<Double, Double>> approximateProbability(Literal query) {
+    Pair<BiMap<Integer, Literal>, BddNode> bdd = bdd(query, Integer.MAX_VALUE);
+    long start = System.nanoTime();
+    Map.Entry<Double, Double> estimate = approximateWeightedModelCount(bdd.t, bdd.u);
+    weightedModelCountDone(start);
+    return Result.success(estimate);
+  }
+
+  /**
+   * Same as {@link #probability(Literal, int)} but only the k most probable proofs are unfolded. Proofs are unfolded
+   * best-first : the probability of a partial proof is an upper bound of the probability of all the proofs it expands
+   * to, so proofs are found by decreasing probability.
+   * <p>
+   * Because the DNF formula describing sets of proofs is monotone, the result is a lower bound on the query's success
+   * probability. It is exact if the query has at most k proofs.
+   *
+   * @param query               goal.
+   * @param k                   the maximum number of proofs to unfold.
+   * @param nbSignificantDigits number of significant digits.
+   * @return a lower bound of the query probability.
+   */
+  public Result<BigDecimal> kBestProbability(Literal query, int k, int nbSignificantDigits) {
+
+    Preconditions.checkArgument(k > 0, "k should be > 0");
+    Preconditions.checkArgument(nbSignificantDigits > 0, "nbSignificantDigits should be > 0");
+
+    Pair<BiMap<Integer, Literal>, BddNode> bdd = bdd(query, k);
+    long start = System.nanoTime();
+    BigDecimal lowerBound = exactWeightedModelCount(bdd.t, bdd.u);
+    weightedModelCountDone(start);
+
+    int newScale = nbSignificantDigits - lowerBound.precision() + lowerBound.scale();
+    return Result.success(lowerBound.setScale(newScale, RoundingMode.DOWN));
+  }
+
+  /**
+   * Estimate the query probability by Monte Carlo sampling. Each sample draws a possible world, i.e. keeps each
+   * probabilistic fact with its probability, and checks if the query holds in this world. Proofs are never unfolded.
+   * <p>
+   * Sampling stops as soon as either {@code maxNbSamples} samples have been drawn or {@code maxDurationInMs}
+   * milliseconds have elapsed. At least one sample is always drawn.
+   *
+   * @param query           goal.
+   * @param maxNbSamples    the maximum number of samples to draw.
+   * @param maxDurationInMs the maximum sampling duration in milliseconds.
+   * @param seed            the seed of the random number generator.
+   * @return a probability estimation and its 95% confidence interval.
+   */
+  public Result<Estimate> sampledProbability(Literal query, int maxNbSamples, long maxDurationInMs, long seed) {
+
+    Preconditions.checkNotNull(query, "query should not be null");
+    Preconditions.checkArgument(query.isGrounded(), "query should be grounded");
+    Preconditions.checkArgument(maxNbSamples > 0, "maxNbSamples should be > 0");
+    Preconditions.checkArgument(maxDurationInMs > 0, "maxDurationInMs should be > 0");
+
+    SplittableRandom random = new SplittableRandom(seed);
+    Map<String, BigDecimal> probabilities = new HashMap<>(); // 'proba' fact -> probability
+    Map<Rule, Rule> rules = new IdentityHashMap<>(); // rule -> rule with one 'proba' fact per grounding
+    Iterator<Fact> facts = kb_.facts(new Literal("proba", newVar()));
+
+    while (facts.hasNext()) {
+      Literal fact = facts.next().head();
+      probabilities.put(((Const) fact.terms().get(0)).value().toString(), fact.probability());
+    }
+
+    long deadline = System.currentTimeMillis() + maxDurationInMs;
+    @Var int nbSamples = 0;
+    @Var int nbSuccesses = 0;
+
+    while (nbSamples < maxNbSamples && (nbSamples == 0 || System.currentTimeMillis() < deadline)) {
+
+      PossibleWorld world = new PossibleWorld(kb_, probabilities, rules, random);
+
+      if (new Solver(world, functions_).solve(query, 1).hasNext()) {
+        nbSuccesses++;
+      }
+      nbSamples++;
+    }
+    return Result.success(new Estimate(nbSuccesses, nbSamples));
+  }
+
+  /**
+   * Compute the exact weighted model count of a BDD i.e. the probability that the formula it represents is true. Each
+   * node is evaluated exactly once, children first.
+   *
+   * @param bddVars mapping between the BDD variables and the probabilistic literals.
+   * @param root    the BDD root.
+   * @return the BDD probability.
+   */
+  static BigDecimal exactWeightedModelCount(BiMap<Integer, Literal> bddVars, BddNode root) {
+
+    Preconditions.checkNotNull(bddVars, "bddVars should not be null");
+    Preconditions.checkNotNull(root, "root should not be null");
+
+    List<BddNode> nodes = childrenFirst(root);
+    BigDecimal[] probabilities = new BigDecimal[maxId(nodes) + 1];
+
+    for (BddNode node : nodes) {
+      if (node.isOne()) {
+        probabilities[node.id()] = BigDecimal.ONE;
+      } else if (node.isZero()) {
+        probabilities[node.id()] = BigDecimal.ZERO;
+      } else {
+
+        BigDecimal probH = probabilities[node.high().id()];
+        BigDecimal probL = probabilities[node.low().id()];
+        BigDecimal probability = bddVars.get(node.index()).probability();
+
+        probabilities[node.id()] = probability.multiply(probH)
+            .add(BigDecimal.ONE.subtract(probability).multiply(probL));
+      }
+    }
+    return probabilities[root.id()];
+  }
+
+  /**
+   * Compute the weighted model count of a BDD using floating-point arithmetic. Each node is evaluated exactly once,
+   * children first.
+   * <p>
+   * The error bound is computed as follows : evaluating {@code p * h + (1 - p) * l} with {@code p}, {@code h} and
+   * {@code l} in [0, 1] adds at most 5 rounding errors of at most {@code u = 2^-53} each (conversion of {@code p}, one
+   * subtraction, two multiplications and one addition) to the largest error carried by the children. Thus, the error
+   * on the root is at most {@code 5 * u * height} where {@code height} is the length of the longest path from the root
+   * to a sink.
+   *
+   * @param bddVars mapping between the BDD variables and the probabilistic literals.
+   * @param root    the BDD root.
+   * @return the BDD probability (key) and an upper bound on the absolute error (value).
+   */
+  static Map.Entry<Double, Double> approximateWeightedModelCount(BiMap<Integer, Literal> bddVars, BddNode root) {
+
+    Preconditions.checkNotNull(bddVars, "bddVars should not be null");
+    Preconditions.checkNotNull(root, "root should not be null");
+
+    double errorPerNode = 5.0 * Math.ulp(1.0) / 2.0;
+    List<BddNode> nodes = childrenFirst(root);
+    double[] probabilities = new double[maxId(nodes) + 1];
+    double[] errors = new double[probabilities.length];
+
+    for (BddNode node : nodes) {
+      if (node.isOne()) {
+        probabilities[node.id()] = 1.0;
+      } else if (node.isZero()) {
+        probabilities[node.id()] = 0.0;
+      } else {
+
+        int high = node.high().id();
+        int low = node.low().id();
+        double probability = bddVars.get(node.index()).probability().doubleValue();
+
+        probabilities[node.id()] = probability * probabilities[high] + (1.0 - probability) * probabilities[low];
+        errors[node.id()] = Math.max(errors[high], errors[low]) + errorPerNode;
+      }
+    }
+    return new AbstractMap.SimpleImmutableEntry<>(probabilities[root.id()], errors[root.id()]);
+  }
+
+  /**
+   * List the distinct nodes of a BDD such as each node comes after its children.
+   *
+   * @param root the BDD root.
+   * @return a list of nodes.
+   */
+  private static List<BddNode> childrenFirst(BddNode root) {
+
+    List<BddNode> nodes = new ArrayList<>();
+    BitSet expanded = new BitSet();
+    BitSet emitted = new BitSet();
+    Deque<BddNode> stack = new ArrayDeque<>();
+    stack.push(root);
+
+    while (!stack.isEmpty()) {
+
+      BddNode node = stack.peek();
+
+      if (emitted.get(node.id())) {
+        stack.pop();
+      } else if (node.value() != null || expanded.get(node.id())) {
+        stack.pop();
+        emitted.set(node.id());
+        nodes.add(node);
+      } else {
+        expanded.set(node.id());
+        if (!emitted.get(node.high().id())) {
+          stack.push(node.high());
+        }
+        if (!emitted.get(node.low().id())) {
+          stack.push(node.low());
+        }
+      }
+    }
+    return nodes;
+  }
+
+  private static int maxId(List<BddNode> nodes) {
+    @Var int maxId = 0;
+    for (BddNode node : nodes) {
+      maxId = Math.max(maxId, node.id());
+    }
+    return maxId;
+  }
+
+  /**
+   * Build the BDD associated with the (k most probable) proofs of a given query.
+   *
+   * @param query goal.
+   * @param k     the maximum number of proofs to unfold.
+   * @return the BDD variables (mapped to their probabilistic literals) and the BDD root.
+   */
+  private Pair<BiMap<Integer, Literal>, BddNode> bdd(Literal query, int k) {
+
     Preconditions.checkNotNull(query, "query should not be null");
     Preconditions.checkArgument(query.isGrounded(), "query should be grounded");
-    Preconditions.checkArgument(nbSignificantDigits > 0, "nbSignificantDigits should be > 0");
 
     List<List<Literal>> facts = View.of(solve(query, -1))
         .filter(fact -> BigDecimal.ZERO.compareTo(fact.head().probability()) != 0)
         .map(fact -> (List<Literal>) Lists.newArrayList(fact.head())).toList();
 
     List<List<Literal>> proofs = View.of(trees_).findFirst(tree -> tree.head_.isRelevant(root_.literal()))
-        .map(proof -> View.of(unfold(proof)).concat(facts).toList()).mapIfFailure(t -> facts).mapIfEmpty(() -> facts)
+        .map(proof -> View.of(unfold(proof, k)).concat(facts).toList()).mapIfFailure(t -> facts).mapIfEmpty(() -> facts)
         .getOrThrow();
 
-    BigDecimal upperBound = probability(query, proofs);
-
-    int newScale = nbSignificantDigits - upperBound.precision() + upperBound.scale();
-    return Result.success(upperBound.setScale(newScale, RoundingMode.HALF_UP));
+    return bdd(query, proofs);
   }
 
-  private List<List<Literal>> unfold(Node tree) {
+  /**
+   * Unfold the proofs of a tree, best-first.
+   *
+   * @param tree the tree to unfold.
+   * @param k    the maximum number of proofs to unfold.
+   * @return the k most probable proofs, plus the proofs with probability of 1 found along the way.
+   */
+  private List<List<Literal>> unfold(Node tree, int k) {
 
     Preconditions.checkNotNull(tree, "tree should not be null");
 
     RandomString randomString = new RandomString(5);
     List<List<Literal>> unfolded = new ArrayList<>();
-    List<Proof> unfolding = View.of(tree.bodies_).map(body -> new Proof(View.of(body)
-        .map(l -> tree.rules_.size() == 1 ? l : rewriteProbabilisticFact_.apply(randomString.nextString(), l)).toList(),
-        Sets.newHashSet(tree))).toList(); // (proof, visited trees)
+    PriorityQueue<Map.Entry<Double, Proof>> unfolding = new PriorityQueue<>(
+        Map.Entry.<Double, Proof>comparingByKey().reversed()); // (upper bound, (proof, visited trees))
 
-    while (!unfolding.isEmpty()) {
+    View.of(tree.bodies_).map(body -> new Proof(View.of(body)
+            .map(l -> tree.rules_.size() == 1 ? l : rewriteProbabilisticFact_.apply(randomString.nextString(), l))
+            .toList(), Sets.newHashSet(tree)))
+        .forEachRemaining(p -> unfolding.add(new AbstractMap.SimpleImmutableEntry<>(p.upperBound(), p)));
 
-      List<Proof> copyOfUnfolding = new ArrayList<>(unfolding);
-      unfolding.clear();
+    @Var int nbProbabilisticProofs = 0;
 
-      for (Proof proof : copyOfUnfolding) {
+    while (!unfolding.isEmpty() && nbProbabilisticProofs < k) {
 
-        List<Proof> expanded = new ArrayList<>();
-        expanded.add(proof);
+      Map.Entry<Double, Proof> proof = unfolding.poll();
 
-        @Var Set<Rule> visited = null;
+      if (proof.getValue().isUnfolded()) {
 
-        for (int i = proof.proof_.size() - 1; i >= 0; i--) {
+        unfolded.add(proof.getValue().unfoldedProof());
 
-          Object obj = proof.proof_.get(i);
+        // Proofs made of literals with probability of 1 only do not contribute to the final score
+        if (proof.getKey() < 1.0) {
+          nbProbabilisticProofs++;
+        }
+      } else {
+        for (Proof p : expand(proof.getValue(), randomString)) {
+          unfolding.add(new AbstractMap.SimpleImmutableEntry<>(p.upperBound(), p));
+        }
+      }
+    }
+    return unfolded;
+  }
 
-          if (obj instanceof Node) {
+  /**
+   * Replace all the trees of a proof by their subtrees.
+   *
+   * @param proof        the proof to expand.
+   * @param randomString the generator used to rename probabilistic facts.
+   * @return the expanded proofs.
+   */
+  private List<Proof> expand(Proof proof, RandomString randomString) {
 
-            List<Proof> copyOfExpanded = new ArrayList<>(expanded);
-            expanded.clear();
+    List<Proof> expanded = new ArrayList<>();
+    expanded.add(proof);
 
-            if (visited == null) {
-              visited = new HashSet<>(((Node) obj).rules_);
-            } else {
-              visited = Sets.intersection(visited, ((Node) obj).rules_);
-            }
+    @Var Set<Rule> visited = null;
 
-            for (Proof p : copyOfExpanded) {
-              List<Proof> tmp = p.expand(i, (Node) obj, visited.isEmpty() ? null : randomString.nextString());
-              expanded.addAll(tmp);
-            }
-          }
+    for (int i = proof.proof_.size() - 1; i >= 0; i--) {
+
+      Object obj = proof.proof_.get(i);
+
+      if (obj instanceof Node) {
+
+        List<Proof> copyOfExpanded = new ArrayList<>(expanded);
+        expanded.clear();
+
+        if (visited == null) {
+          visited = new HashSet<>(((Node) obj).rules_);
+        } else {
+          visited = Sets.intersection(visited, ((Node) obj).rules_);
         }
 
-        View.of(expanded).forEachRemaining(p -> {
-          if (p.isUnfolded()) {
-            unfolded.add(p.unfoldedProof());
-          } else {
-            unfolding.add(p);
-          }
-        });
+        for (Proof p : copyOfExpanded) {
+          List<Proof> tmp = p.expand(i, (Node) obj, visited.isEmpty() ? null : randomString.nextString());
+          expanded.addAll(tmp);
+        }
       }
     }
-    return unfolded;
+    return expanded;
   }
 
-  private BigDecimal probability(Literal query, List<List<Literal>> proofs) {
+  private Pair<BiMap<Integer, Literal>, BddNode> bdd(Literal query, List<List<Literal>> proofs) {
 
     Preconditions.checkNotNull(query, "query should not be null");
     Preconditions.checkNotNull(proofs, "proofs should not be null");
     Preconditions.checkArgument(query.isGrounded(), "query should be grounded");
 
+    long start = System.nanoTime();
+    BddManager mgr = new BddManager(10);
+
+    if (reorderingThreshold_ > 0) {
+      mgr.enableDynamicReordering(reorderingThreshold_);
+    }
     if (proofs.isEmpty()) {
-      return BigDecimal.ZERO;
+      bddReport_ = new BddReport(0, 1, 1, 0, System.nanoTime() - start, 0);
+      return new Pair<>(HashBiMap.create(), mgr.Zero);
     }
 
-    BddManager mgr = new BddManager(10);
-    BiMap<BddNode, Literal> bddVars = HashBiMap.create();
-    Set<AbstractClause> clauses = View.of(proofs)
+    Set<AbstractClause> clauses = new LinkedHashSet<>(View.of(proofs)
         .map(proof -> proof.size() == 1 ? new Fact(proof.get(0)) : new Rule(query, proof)).map(this::rewriteClause)
         .filter(clause -> (clause.isFact() && BigDecimal.ONE.compareTo(clause.head().probability())
             != 0 /* Literals with probability of 1 do not contribute to the final score */) || (clause.isRule()
-            && ((Rule) clause).body().size() > 0)).peek(clause -> {
+            && ((Rule) clause).body().size() > 0)).toList());
+    List<List<Literal>> bodies = View.of(clauses)
+        .map(clause -> clause.isFact() ? ImmutableList.of(clause.head()) : ((Rule) clause).body()).toList();
 
-          List<Literal> literals = clause.isFact() ? ImmutableList.of(clause.head()) : ((Rule) clause).body();
-          View.of(literals).filter(literal -> literal.predicate().isNegated() ? !bddVars.containsValue(literal.negate())
-              : !bddVars.containsValue(literal)).forEachRemaining(literal -> {
-            if (literal.predicate().isNegated()) {
-              bddVars.put(mgr.create(mgr.createVariable(), mgr.One, mgr.Zero), literal.negate());
-            } else {
-              bddVars.put(mgr.create(mgr.createVariable(), mgr.One, mgr.Zero), literal);
-            }
-          });
-
-        }).toSet();
+    // The variables are created in the order chosen by the static ordering heuristic
+    BiMap<BddNode, Literal> bddVars = HashBiMap.create();
+    View.of(orderVariables(bodies))
+        .forEachRemaining(literal -> bddVars.put(mgr.create(mgr.createVariable(), mgr.One, mgr.Zero), literal));
 
     List<BddNode> trees = new ArrayList<>();
 
-    for (AbstractClause clause : clauses) {
+    for (List<Literal> body : bodies) {
 
-      List<Literal> body = clause.isFact() ? ImmutableList.of(clause.head()) : ((Rule) clause).body();
       BddNode bddNode = and(mgr, bddVars.inverse(), body);
 
       if (bddNode != null) {
         trees.add(bddNode);
+        reorderIfNeeded(mgr, bddVars.keySet(), trees, null);
       }
     }
 
     if (trees.isEmpty()) {
-      return BigDecimal.ONE;
+      bddReport_ = new BddReport(0, 1, 1, 0, System.nanoTime() - start, 0);
+      return new Pair<>(HashBiMap.create(), mgr.One);
     }
 
     BiMap<Integer, Literal> newBddVars = HashBiMap.create();
     View.of(bddVars).forEachRemaining(var -> newBddVars.put(var.getKey().index(), var.getValue()));
 
-    BddNode node = mgr.reduce(or(mgr, trees));
-    // String str = mgr.toDot(mgr.reduce(node), n -> newBddVars.get(n.index()).toString().replace("\"", ""), true);
-    return probability(newBddVars, mgr.reduce(node));
+    BddNode root = or(mgr, bddVars.keySet(), trees);
+    int nbNodesBeforeReordering = mgr.size(root);
+
+    // At this point, the nodes of the other roots can be discarded
+    if (mgr.isReorderingNeeded()) {
+      mgr.reorderIfNeeded(Collections.singletonList(root));
+    }
+
+    BddNode node = mgr.reduce(root);
+    // String str = mgr.toDot(node, n -> newBddVars.get(n.index()).toString().replace("\"", ""), true);
+
+    bddReport_ = new BddReport(newBddVars.size(), nbNodesBeforeReordering, mgr.size(node), mgr.nbReorderings(),
+        System.nanoTime() - start, 0);
+
+    if (logger_.isDebugEnabled()) {
+      logger_.debug(LogFormatter.create().message("BDD built").add("query", query)
+          .add("variable_ordering", variableOrdering_).add("nb_variables", bddReport_.nbVariables())
+          .add("nb_nodes_before_reordering", bddReport_.nbNodesBeforeReordering())
+          .add("nb_nodes_after_reordering", bddReport_.nbNodesAfterReordering())
+          .add("nb_reorderings", bddReport_.nbReorderings())
+          .add("build_time_in_ms", bddReport_.buildTimeInMs()).formatDebug());
+    }
+    return new Pair<>(newBddVars, node);
   }
 
-  private BigDecimal probability(BiMap<Integer, Literal> bddVars, BddNode node) {
+  /**
+   * Order the probabilistic literals of a set of proofs according to the static ordering heuristic.
+   *
+   * @param bodies the proofs.
+   * @return the distinct positive probabilistic literals, ordered.
+   */
+  private List<Literal> orderVariables(List<List<Literal>> bodies) {
+
+    Map<Literal, Integer> depths = new LinkedHashMap<>(); // literal -> min. position in a proof, by first appearance
+    Map<Literal, Integer> fanIns = new HashMap<>(); // literal -> number of proofs the literal appears in
+    List<Set<Literal>> proofs = new ArrayList<>(bodies.size());
 
-    Preconditions.checkNotNull(bddVars, "bddVars should not be null");
-    Preconditions.checkNotNull(node, "node should not be null");
+    for (List<Literal> body : bodies) {
+
+      Set<Literal> proof = new LinkedHashSet<>();
+
+      for (int i = 0; i < body.size(); i++) {
+
+        Literal literal = body.get(i).predicate().isNegated() ? body.get(i).negate() : body.get(i);
+
+        depths.merge(literal, i, Math::min);
+
+        if (proof.add(literal)) {
+          fanIns.merge(literal, 1, Integer::sum);
+        }
+      }
+      proofs.add(proof);
+    }
+
+    List<Literal> literals = new ArrayList<>(depths.keySet());
+
+    if (VariableOrdering.FAN_IN.equals(variableOrdering_)) {
+
+      // Shallow literals first, then the literals shared by the largest number of proofs. The sort is stable.
+      literals.sort(Comparator.<Literal>comparingInt(depths::get)
+          .thenComparing(Comparator.<Literal>comparingInt(fanIns::get).reversed()));
+      return literals;
+    }
+    if (!VariableOrdering.CO_OCCURRENCE.equals(variableOrdering_)) {
+      return literals;
+    }
+
+    Map<Literal, Map<Literal, Integer>> coOccurrences = new HashMap<>(); // literal -> literal -> number of proofs
+
+    for (Set<Literal> proof : proofs) {
+      for (Literal literal1 : proof) {
+        for (Literal literal2 : proof) {
+          if (!literal1.equals(literal2)) {
+            coOccurrences.computeIfAbsent(literal1, l -> new HashMap<>()).merge(literal2, 1, Integer::sum);
+          }
+        }
+      }
+    }
+
+    // Greedily append the literal that co-occurs the most with the literals already placed, so literals that appear
+    // together in proofs end up close to each other. Ties are broken by fan-in, then by first appearance.
+    Set<Literal> remaining = new LinkedHashSet<>(literals);
+    Map<Literal, Integer> scores = new HashMap<>();
+    List<Literal> ordered = new ArrayList<>(literals.size());
+
+    while (!remaining.isEmpty()) {
+
+      @Var Literal best = null;
+
+      for (Literal literal : remaining) {
+        if (best == null) {
+          best = literal;
+        } else {
+
+          int cmp = Integer.compare(scores.getOrDefault(literal, 0), scores.getOrDefault(best, 0));
+
+          if (cmp > 0 || (cmp == 0 && fanIns.get(literal) > fanIns.get(best))) {
+            best = literal;
+          }
+        }
+      }
+
+      remaining.remove(best);
+      ordered.add(best);
 
-    if (node.isOne()) {
-      return BigDecimal.ONE;
+      coOccurrences.getOrDefault(best, Collections.emptyMap()).forEach((literal, nb) -> {
+        if (remaining.contains(literal)) {
+          scores.merge(literal, nb, Integer::sum);
+        }
+      });
     }
-    if (node.isZero()) {
-      return BigDecimal.ZERO;
+    return ordered;
+  }
+
+  /**
+   * Sift the BDD variables if the BDD has grown enough. Every node held by the caller must be passed as a root.
+   *
+   * @param mgr   the BDD manager.
+   * @param vars  the BDD variables.
+   * @param trees the BDDs built so far.
+   * @param bdd   the BDD being built, if any.
+   */
+  private void reorderIfNeeded(BddManager mgr, Set<BddNode> vars, List<BddNode> trees, BddNode bdd) {
+    if (mgr.isReorderingNeeded()) {
+
+      List<BddNode> roots = new ArrayList<>(vars.size() + trees.size() + 1);
+      roots.addAll(vars);
+      roots.addAll(trees);
+
+      if (bdd != null) {
+        roots.add(bdd);
+      }
+
+      int nbNodesBefore = mgr.nbNodes();
+      long start = System.nanoTime();
+      mgr.reorderIfNeeded(roots);
+
+      if (logger_.isDebugEnabled()) {
+        logger_.debug(LogFormatter.create().message("BDD variables reordered").add("nb_nodes_before", nbNodesBefore)
+            .add("nb_nodes_after", mgr.nbNodes()).add("nb_live_nodes_after", mgr.size(roots))
+            .add("reordering_time_in_ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).formatDebug());
+      }
     }
+  }
+
+  private void weightedModelCountDone(long start) {
+
+    Preconditions.checkState(bddReport_ != null, "no BDD has been built");
 
-    BigDecimal probH = probability(bddVars, node.high());
-    BigDecimal probL = probability(bddVars, node.low());
+    bddReport_ = bddReport_.withWeightedModelCountTime(System.nanoTime() - start);
 
-    BigDecimal probability = bddVars.get(node.index()).probability();
-    return probability.multiply(probH).add(BigDecimal.ONE.subtract(probability).multiply(probL));
+    if (logger_.isDebugEnabled()) {
+      logger_.debug(LogFormatter.create().message("BDD weighted model count computed")
+          .add("nb_nodes", bddReport_.nbNodesAfterReordering())
+          .add("weighted_model_count_time_in_ms", bddReport_.weightedModelCountTimeInMs()).formatDebug());
+    }
   }
 
   private BddNode and(BddManager mgr, BiMap<Literal, BddNode> bddVars, List<Literal> body) {
@@ -302,7 +750,7 @@ final public class Proofer extends Solver {
     return bdd;
   }
 
-  private BddNode or(BddManager mgr, List<BddNode> trees) {
+  private BddNode or(BddManager mgr, Set<BddNode> vars, List<BddNode> trees) {
 
     Preconditions.checkNotNull(mgr, "mgr should not be null");
     Preconditions.checkNotNull(trees, "trees should not be null");
@@ -315,6 +763,7 @@ final public class Proofer extends Solver {
         bdd = trees.get(i);
       } else {
         bdd = mgr.or(bdd, trees.get(i));
+        reorderIfNeeded(mgr, vars, trees.subList(i + 1, trees.size()), bdd);
       }
     }
     return bdd;
@@ -360,6 +809,275 @@ final public class Proofer extends Solver {
     return new Rule(head, body);
   }
 
+  /**
+   * The heuristics used to order the BDD variables before the BDD is built.
+   */
+  public enum VariableOrdering {
+
+    /**
+     * The variables are ordered by first appearance in the proofs.
+     */
+    CREATION,
+
+    /**
+     * The variables that appear together in proofs are kept close to each other : the most frequent variable first,
+     * then, greedily, the variable that co-occurs the most with the variables already placed.
+     */
+    CO_OCCURRENCE,
+
+    /**
+     * The variables are ordered by depth in the proofs (the variables found near the root of the proof trees first),
+     * then by fan-in (the variables shared by the largest number of proofs first).
+     */
+    FAN_IN
+  }
+
+  /**
+   * The statistics of a BDD build.
+   */
+  final public static class BddReport {
+
+    private final int nbVariables_;
+    private final int nbNodesBeforeReordering_;
+    private final int nbNodesAfterReordering_;
+    private final int nbReorderings_;
+    private final long buildTimeInNs_;
+    private final long weightedModelCountTimeInNs_;
+
+    private BddReport(int nbVariables, int nbNodesBeforeReordering, int nbNodesAfterReordering, int nbReorderings,
+        long buildTimeInNs, long weightedModelCountTimeInNs) {
+      nbVariables_ = nbVariables;
+      nbNodesBeforeReordering_ = nbNodesBeforeReordering;
+      nbNodesAfterReordering_ = nbNodesAfterReordering;
+      nbReorderings_ = nbReorderings;
+      buildTimeInNs_ = buildTimeInNs;
+      weightedModelCountTimeInNs_ = weightedModelCountTimeInNs;
+    }
+
+    @Generated
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("nb_variables", nbVariables_)
+          .add("nb_nodes_before_reordering", nbNodesBeforeReordering_)
+          .add("nb_nodes_after_reordering", nbNodesAfterReordering_).add("nb_reorderings", nbReorderings_)
+          .add("build_time_in_ms", buildTimeInMs()).add("weighted_model_count_time_in_ms", weightedModelCountTimeInMs())
+          .omitNullValues().toString();
+    }
+
+    public int nbVariables() {
+      return nbVariables_;
+    }
+
+    /**
+     * The number of nodes of the BDD built using the static variable order (and the dynamic reorderings, if any).
+     *
+     * @return a number of nodes.
+     */
+    public int nbNodesBeforeReordering() {
+      return nbNodesBeforeReordering_;
+    }
+
+    /**
+     * The number of nodes of the final (reordered and reduced) BDD.
+     *
+     * @return a number of nodes.
+     */
+    public int nbNodesAfterReordering() {
+      return nbNodesAfterReordering_;
+    }
+
+    public int nbReorderings() {
+      return nbReorderings_;
+    }
+
+    public long buildTimeInMs() {
+      return TimeUnit.NANOSECONDS.toMillis(buildTimeInNs_);
+    }
+
+    public long weightedModelCountTimeInMs() {
+      return TimeUnit.NANOSECONDS.toMillis(weightedModelCountTimeInNs_);
+    }
+
+    private BddReport withWeightedModelCountTime(long weightedModelCountTimeInNs) {
+      return new BddReport(nbVariables_, nbNodesBeforeReordering_, nbNodesAfterReordering_, nbReorderings_,
+          buildTimeInNs_, weightedModelCountTimeInNs);
+    }
+  }
+
+  /**
+   * A probability estimated by sampling.
+   */
+  final public static class Estimate {
+
+    private static final double Z_95 = 1.959964; // the 97.5th percentile of the standard normal distribution
+
+    private final int nbSuccesses_;
+    private final int nbSamples_;
+
+    Estimate(int nbSuccesses, int nbSamples) {
+
+      Preconditions.checkArgument(0 <= nbSuccesses && nbSuccesses <= nbSamples,
+          "nbSuccesses must be such as 0 <= nbSuccesses <= %s", nbSamples);
+      Preconditions.checkArgument(nbSamples > 0, "nbSamples should be > 0");
+
+      nbSuccesses_ = nbSuccesses;
+      nbSamples_ = nbSamples;
+    }
+
+    @Generated
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("probability", probability()).add("lower_bound", lowerBound())
+          .add("upper_bound", upperBound()).add("nb_samples", nbSamples_).toString();
+    }
+
+    public int nbSamples() {
+      return nbSamples_;
+    }
+
+    /**
+     * The fraction of samples in which the query holds.
+     *
+     * @return the estimated probability.
+     */
+    public double probability() {
+      return (double) nbSuccesses_ / (double) nbSamples_;
+    }
+
+    /**
+     * The lower bound of the Wilson score interval at the 95% confidence level.
+     *
+     * @return a lower bound of the probability.
+     */
+    public double lowerBound() {
+      return confidenceInterval(Z_95).getKey();
+    }
+
+    /**
+     * The upper bound of the Wilson score interval at the 95% confidence level.
+     *
+     * @return an upper bound of the probability.
+     */
+    public double upperBound() {
+      return confidenceInterval(Z_95).getValue();
+    }
+
+    /**
+     * The Wilson score interval for a given quantile of the standard normal distribution (e.g. 1.96 for a 95%
+     * confidence level).
+     *
+     * @param z the quantile.
+     * @return the lower bound (key) and the upper bound (value) of the probability.
+     */
+    public Map.Entry<Double, Double> confidenceInterval(double z) {
+
+      Preconditions.checkArgument(z > 0, "z should be > 0");
+
+      double n = nbSamples_;
+      double p = probability();
+      double center = (p + z * z / (2 * n)) / (1 + z * z / n);
+      double halfWidth = z / (1 + z * z / n) * Math.sqrt(p * (1 - p) / n + z * z / (4 * n * n));
+      double lowerBound = nbSuccesses_ == 0 ? 0.0 : Math.max(0.0, center - halfWidth);
+      double upperBound = nbSuccesses_ == nbSamples_ ? 1.0 : Math.min(1.0, center + halfWidth);
+
+      return new AbstractMap.SimpleImmutableEntry<>(lowerBound, upperBound);
+    }
+  }
+
+  /**
+   * A possible world drawn from a knowledge base : each probabilistic fact is kept with its probability and the kept
+   * facts become certain. A fact is drawn at most once per world, the first time it is looked up.
+   * <p>
+   * Each grounding of a probabilistic rule must be drawn independently. Thus, the 'proba' fact created by
+   * {@link AbstractKnowledgeBase#rewriteProbabilisticRule(Rule)} is extended with the rule head terms.
+   */
+  private static final class PossibleWorld extends AbstractKnowledgeBase {
+
+    private final AbstractKnowledgeBase kb_;
+    private final Map<String, BigDecimal> probabilities_; // 'proba' fact -> probability
+    private final Map<Rule, Rule> rules_; // rule -> rule with one 'proba' fact per grounding, shared by all worlds
+    private final SplittableRandom random_;
+    private final Map<Literal, Boolean> drawn_ = new HashMap<>(); // fact -> true iif the fact has been kept
+
+    PossibleWorld(AbstractKnowledgeBase kb, Map<String, BigDecimal> probabilities, Map<Rule, Rule> rules,
+        SplittableRandom random) {
+      kb_ = kb;
+      probabilities_ = probabilities;
+      rules_ = rules;
+      random_ = random;
+    }
+
+    private static boolean isProba(Literal literal) {
+      return literal.predicate().name().equals("proba") && literal.terms().size() == 1;
+    }
+
+    @Override
+    protected void azzertFact(@NotNull Fact fact) {
+      throw new UnsupportedOperationException("a possible world is read-only");
+    }
+
+    @Override
+    protected void azzertRule(@NotNull Rule rule) {
+      throw new UnsupportedOperationException("a possible world is read-only");
+    }
+
+    @Override
+    protected Iterator<Fact> facts(@NotNull Literal literal) {
+
+      if (literal.predicate().name().equals("proba") && literal.terms().size() > 1) {
+
+        Preconditions.checkState(literal.isGrounded(), "'proba' facts should be grounded : %s", literal);
+
+        BigDecimal probability = probabilities_.get(((Const) literal.terms().get(0)).value().toString());
+
+        if (probability == null || !draw(literal, probability)) {
+          return Collections.emptyIterator();
+        }
+        return Collections.singletonList(new Fact(literal)).iterator();
+      }
+      return View.of(kb_.facts(literal)).filter(fact -> draw(fact.head(), fact.head().probability()))
+          .map(fact -> new Fact(new Literal(fact.head().predicate().name(), fact.head().terms())));
+    }
+
+    @Override
+    protected Iterator<Rule> rules(@NotNull Literal literal) {
+      return View.of(kb_.rules(literal)).map(rule -> rules_.computeIfAbsent(rule, r -> {
+
+        if (r.body().stream().noneMatch(PossibleWorld::isProba)) {
+          return r;
+        }
+
+        List<Literal> body = View.of(r.body()).map(l -> {
+          if (!isProba(l)) {
+            return l;
+          }
+          List<AbstractTerm> terms = new ArrayList<>(l.terms());
+          terms.addAll(r.head().terms());
+          return new Literal(l.predicate().name(), terms);
+        }).toList();
+        return new Rule(r.head(), body);
+      }));
+    }
+
+    @Override
+    public Iterator<Fact> facts() {
+      return View.of(kb_.facts()).filter(fact -> draw(fact.head(), fact.head().probability()))
+          .map(fact -> new Fact(new Literal(fact.head().predicate().name(), fact.head().terms())));
+    }
+
+    @Override
+    public Iterator<Rule> rules() {
+      return View.of(kb_.rules()).map(rule -> rules_.getOrDefault(rule, rule));
+    }
+
+    private boolean draw(Literal fact, BigDecimal probability) {
+      if (BigDecimal.ONE.compareTo(probability) == 0) {
+        return true;
+      }
+      return drawn_.computeIfAbsent(fact, f -> random_.nextDouble() < probability.doubleValue());
+    }
+  }
+
   final static class Node {
 
     public final Literal head_;
@@ -440,6 +1158,17 @@ final public class Proofer extends Solver {
       return MoreObjects.toStringHelper(this).add("proof", proof_).add("visited2", visited_).toString();
     }
 
+    /**
+     * The probability of a partial proof is at most the product of the probabilities of the literals it already
+     * contains.
+     *
+     * @return an upper bound of the probability of the proofs this proof expands to.
+     */
+    public double upperBound() {
+      return View.of(proof_).filter(l -> l instanceof Literal).map(l -> (Literal) l).toSet().stream()
+          .mapToDouble(l -> l.probability().doubleValue()).reduce(1.0, (p1, p2) -> p1 * p2);
+    }
+
     public boolean isUnfolded() {
       return View.of(proof_).allMatch(l -> l instanceof Literal);
     }
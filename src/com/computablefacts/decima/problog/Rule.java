@@ -14,6 +14,7 @@ final public class Rule extends AbstractClause {
 
   private final List<Literal> body_;
   private Boolean isGrounded_ = null;
+  private volatile Template template_ = null;
 
   /**
    * Initialize a rule.
@@ -224,6 +225,21 @@ final public class Rule extends AbstractClause {
     return new Rule(head, body);
   }
 
+  /**
+   * The current clause compiled for structure-sharing evaluation (see {@link Bindings}). The compilation happens at
+   * most once per clause.
+   *
+   * @return a template.
+   */
+  Template template() {
+    @com.google.errorprone.annotations.Var Template template = template_;
+    if (template == null) {
+      template = new Template(this);
+      template_ = template;
+    }
+    return template;
+  }
+
   /**
    * Check if the current clause body contains a given term.
    *
@@ -241,4 +257,87 @@ final public class Rule extends AbstractClause {
     }
     return false;
   }
-}
\ No newline at end of file
+
+  /**
+   * A rule where each distinct variable has been mapped, by order of first occurrence, to a slot. Renaming the rule
+   * amounts to allocating a fresh set of slots : no new variable or literal has to be created.
+   */
+  static final class Template {
+
+    private final Literal head_;
+    private final List<Literal> body_;
+    private final int[] headSlots_; // term position -> slot or -1 for constants
+    private final int[][] bodySlots_; // body literal -> term position -> slot or -1 for constants
+    private final boolean[] isWildcard_; // slot -> true iif the slot stands for a wildcard
+
+    Template(Rule rule) {
+
+      Map<Var, Integer> slots = new HashMap<>();
+      List<Boolean> isWildcard = new ArrayList<>();
+
+      head_ = rule.head();
+      body_ = rule.body_;
+      headSlots_ = slots(head_, slots, isWildcard);
+      bodySlots_ = new int[body_.size()][];
+
+      for (int i = 0; i < bodySlots_.length; i++) {
+        bodySlots_[i] = slots(body_.get(i), slots, isWildcard);
+      }
+
+      isWildcard_ = new boolean[isWildcard.size()];
+
+      for (int i = 0; i < isWildcard_.length; i++) {
+        isWildcard_[i] = isWildcard.get(i);
+      }
+    }
+
+    private static int[] slots(Literal literal, Map<Var, Integer> slots, List<Boolean> isWildcard) {
+
+      List<AbstractTerm> terms = literal.terms();
+      int[] positions = new int[terms.size()];
+
+      for (int i = 0; i < positions.length; i++) {
+
+        AbstractTerm term = terms.get(i);
+
+        if (term.isConst()) {
+          positions[i] = -1;
+        } else {
+          positions[i] = slots.computeIfAbsent((Var) term, t -> {
+            isWildcard.add(t.isWildcard());
+            return isWildcard.size() - 1;
+          });
+        }
+      }
+      return positions;
+    }
+
+    int nbSlots() {
+      return isWildcard_.length;
+    }
+
+    boolean isWildcard(int slot) {
+      return isWildcard_[slot];
+    }
+
+    int bodySize() {
+      return body_.size();
+    }
+
+    Literal head() {
+      return head_;
+    }
+
+    int[] headSlots() {
+      return headSlots_;
+    }
+
+    Literal body(int idx) {
+      return body_.get(idx);
+    }
+
+    int[] bodySlots(int idx) {
+      return bodySlots_[idx];
+    }
+  }
+}
@@ -5,15 +5,26 @@ import static com.computablefacts.decima.problog.AbstractTerm.newConst;
 import com.computablefacts.asterix.View;
 import com.computablefacts.decima.problog.AbstractSubgoal.Waiter;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.Var;
 import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -34,18 +45,50 @@ import java.util.stream.Collectors;
  * <li>Mantadelis, Theofrastos &amp; Janssens, Gerda. (2010). "Dedicated Tabling for a Probabilistic
  * Setting.". Technical Communications of ICLP. 7. 124-133. 10.4230/LIPIcs.ICLP.2010.124.</li>
  * </ul>
+ * <p>
+ * When a {@link ForkJoinPool} is given, the solver runs in parallel mode : the search of each new subgoal, the
+ * evaluation of each rule and the propagation of each new fact to the subgoal waiters are scheduled as independent
+ * tasks onto the pool. The solver returns when no task is pending anymore. In parallel mode, subgoals must be
+ * thread-safe (e.g. {@link SubgoalMemoryBacked}) and negated literals are evaluated sequentially, in isolation, in
+ * order to ensure the positive literal has been fully evaluated before it is negated.
+ * <p>
+ * In incremental mode (see {@link #Solver(AbstractKnowledgeBase, AbstractFunctions, Function, ForkJoinPool, boolean)}),
+ * the tables completed by a query are kept and reused by
+ * the next queries. Clauses asserted through {@link #azzert(AbstractClause)} extend the affected tables in place when
+ * the update is monotonic and invalidate them otherwise. Any other modification of the knowledge base invalidates all
+ * the tables.
+ * <p>
+ * In sequential mode, the answers to a query can also be computed lazily (see {@link #stream(Literal, long, int, int)}).
+ * The tasks are then queued onto an agenda instead of being run immediately and the search only runs the tasks needed
+ * to produce the next answer. The agenda is first-in first-out so the shallowest derivations are explored first.
  */
 @CheckReturnValue
 public class Solver {
 
   protected final AbstractKnowledgeBase kb_;
-  protected final Map<String, AbstractSubgoal> subgoals_;
+  protected final Map<Literal.Key, AbstractSubgoal> subgoals_;
   protected final Function<Literal, AbstractSubgoal> newSubgoal_;
   protected final AbstractFunctions functions_;
+  protected final ForkJoinPool pool_; // null in sequential mode
 
   protected AbstractSubgoal root_ = null;
   protected int maxSampleSize_ = -1;
 
+  // Completion detection in parallel mode
+  private final AtomicInteger nbPendingTasks_ = new AtomicInteger(0);
+  private final AtomicReference<Throwable> error_ = new AtomicReference<>();
+  private CountDownLatch quiescence_ = null;
+
+  // Incremental tabling
+  private final boolean isIncremental_;
+  private final Set<Literal.Key> completed_ = ConcurrentHashMap.newKeySet();
+  private long generation_ = -1; // the knowledge base generation the completed tables are consistent with
+
+  // Streaming
+  private final Deque<Runnable> agenda_ = new ArrayDeque<>(); // pending tasks
+  private final Deque<Fact> answers_ = new ArrayDeque<>(); // answers found but not returned yet
+  private Answers stream_ = null; // the answers being streamed, if any
+
   @Deprecated
   public Solver(AbstractKnowledgeBase kb) {
     this(kb, new Functions(kb), SubgoalMemoryBacked::new);
@@ -56,6 +99,37 @@ public class Solver {
   }
 
   public Solver(AbstractKnowledgeBase kb, AbstractFunctions functions, Function<Literal, AbstractSubgoal> newSubgoal) {
+    this(kb, functions, newSubgoal, null);
+  }
+
+  /**
+   * Create a solver.
+   *
+   * @param kb         the knowledge base.
+   * @param functions  the primitives.
+   * @param newSubgoal the subgoal factory.
+   * @param pool       the pool used to evaluate subgoals in parallel. If null, subgoals are evaluated sequentially.
+   */
+  public Solver(AbstractKnowledgeBase kb, AbstractFunctions functions, Function<Literal, AbstractSubgoal> newSubgoal,
+      ForkJoinPool pool) {
+    this(kb, functions, newSubgoal, pool, false);
+  }
+
+  /**
+   * Create a solver.
+   * <p>
+   * In incremental mode, the tables completed by a query are kept and reused by the next queries. Tables are kept as long
+   * as the knowledge base is only modified through {@link #azzert(AbstractClause)}. Primitives are assumed to be pure,
+   * i.e. their outcome must only depend on their parameters.
+   *
+   * @param kb            the knowledge base.
+   * @param functions     the primitives.
+   * @param newSubgoal    the subgoal factory.
+   * @param pool          the pool used to evaluate subgoals in parallel. If null, subgoals are evaluated sequentially.
+   * @param isIncremental true iif the tables must be kept across queries.
+   */
+  public Solver(AbstractKnowledgeBase kb, AbstractFunctions functions, Function<Literal, AbstractSubgoal> newSubgoal,
+      ForkJoinPool pool, boolean isIncremental) {
 
     Preconditions.checkNotNull(kb, "kb should not be null");
     Preconditions.checkNotNull(functions, "functions should not be null");
@@ -65,6 +139,8 @@ public class Solver {
     functions_ = functions;
     subgoals_ = new ConcurrentHashMap<>();
     newSubgoal_ = newSubgoal;
+    pool_ = pool;
+    isIncremental_ = isIncremental;
   }
 
   /**
@@ -89,14 +165,376 @@ public class Solver {
 
     Preconditions.checkNotNull(query, "query should not be null");
 
-    root_ = newSubgoal_.apply(query);
-    subgoals_.put(query.tag(), root_);
+    abandonStream();
+
     maxSampleSize_ = maxSampleSize <= 0 ? -1 : maxSampleSize;
 
-    search(root_, 0);
+    if (isIncremental_) {
+
+      if (generation_ != kb_.generation()) {
+        invalidateAll();
+      }
+
+      AbstractSubgoal table = completed_.contains(query.key()) ? subgoals_.get(query.key()) : null;
+
+      if (table != null) {
+        root_ = table;
+        return maxSampleSize_ > 0 ? View.of(table.facts()).take(maxSampleSize_) : table.facts();
+      }
+    }
+
+    root_ = newSubgoal_.apply(query);
+    subgoals_.put(query.key(), root_);
+
+    AbstractSubgoal root = root_;
+    run(() -> search(root, 0));
+
+    if (isIncremental_) {
+      if (generation_ != kb_.generation()) {
+        invalidateAll(); // a primitive modified the knowledge base during the search
+      } else if (maxSampleSizeReached()) {
+        invalidateIncomplete(); // the search stopped early
+      } else {
+        completed_.addAll(subgoals_.keySet());
+      }
+    }
     return root_.facts();
   }
 
+  /**
+   * Lazily compute the answers to a query. See {@link #stream(Literal, long, int, int)}.
+   *
+   * @param query goal.
+   * @return facts answering the query.
+   */
+  public Answers stream(Literal query) {
+    return stream(query, -1, -1, -1);
+  }
+
+  /**
+   * Lazily compute the answers to a query : each answer is returned as soon as it is proven, without waiting for the
+   * whole search to complete. The search stops as soon as a budget is exhausted or the answers are cancelled. A budget
+   * less than or equal to 0 is unbounded.
+   * <p>
+   * The answers are only valid as long as the solver is not used to evaluate another query or to assert a clause :
+   * doing so cancels the stream. Streaming is not available in parallel mode.
+   *
+   * @param query           goal.
+   * @param maxDurationInMs the wall time budget, in milliseconds.
+   * @param maxNbSubgoals   the maximum number of subgoals the search can create.
+   * @param maxNbAnswers    the maximum number of answers to return.
+   * @return facts answering the query.
+   */
+  public Answers stream(Literal query, long maxDurationInMs, int maxNbSubgoals, int maxNbAnswers) {
+
+    Preconditions.checkNotNull(query, "query should not be null");
+    Preconditions.checkState(pool_ == null, "streaming is not supported in parallel mode");
+
+    abandonStream();
+
+    maxSampleSize_ = -1;
+    stream_ = new Answers(this, maxDurationInMs, maxNbSubgoals, maxNbAnswers);
+
+    if (isIncremental_) {
+
+      if (generation_ != kb_.generation()) {
+        invalidateAll();
+      }
+
+      AbstractSubgoal table = completed_.contains(query.key()) ? subgoals_.get(query.key()) : null;
+
+      if (table != null) {
+        root_ = table;
+        table.facts().forEachRemaining(answers_::add);
+        return stream_;
+      }
+    }
+
+    root_ = newSubgoal_.apply(query);
+    subgoals_.put(query.key(), root_);
+
+    AbstractSubgoal root = root_;
+    agenda_.add(() -> search(root, 0));
+    return stream_;
+  }
+
+  /**
+   * Check if some answers are being streamed.
+   *
+   * @param answers the answers.
+   * @return true iif the given answers are the ones being streamed.
+   */
+  boolean isStreaming(Answers answers) {
+    return stream_ != null && stream_ == answers;
+  }
+
+  /**
+   * Get the next answer found by the search, if any.
+   *
+   * @return an answer or null.
+   */
+  Fact pollAnswer() {
+    return answers_.poll();
+  }
+
+  /**
+   * Run the next pending task.
+   *
+   * @return false iif there is no pending task left i.e. the search is over.
+   */
+  boolean step() {
+
+    Runnable task = agenda_.poll();
+
+    if (task == null) {
+      return false;
+    }
+
+    task.run();
+    return true;
+  }
+
+  /**
+   * Stop streaming answers.
+   *
+   * @param answers    the answers being streamed.
+   * @param isComplete true iif the search is over.
+   */
+  void endStream(Answers answers, boolean isComplete) {
+
+    if (!isStreaming(answers)) {
+      return;
+    }
+
+    stream_ = null;
+    agenda_.clear();
+    answers_.clear();
+
+    if (isIncremental_ && generation_ != kb_.generation()) {
+      invalidateAll(); // a primitive modified the knowledge base during the search
+    } else if (!isComplete) {
+      invalidateIncomplete(); // the pending tasks have been dropped : the tables may lack some answers
+    } else if (isIncremental_) {
+      completed_.addAll(subgoals_.keySet());
+    }
+  }
+
+  /**
+   * Cancel the answers being streamed, if any.
+   */
+  private void abandonStream() {
+    if (stream_ != null) {
+      endStream(stream_, false);
+    }
+  }
+
+  /**
+   * Add a new fact or rule to the knowledge base.
+   * <p>
+   * In incremental mode, the tables that may be affected by the new clause are updated. Asserting a fact or a
+   * non-probabilistic rule is a monotonic update : the tables whose literal unifies with the clause head are extended in
+   * place and the new answers are propagated to their dependents. However, the tables reached through a negated literal
+   * are invalidated. Asserting a probabilistic rule invalidates all the affected tables.
+   *
+   * @param clause fact or rule.
+   */
+  public void azzert(AbstractClause clause) {
+
+    Preconditions.checkNotNull(clause, "clause should not be null");
+
+    abandonStream();
+
+    boolean isUpToDate = generation_ == kb_.generation();
+
+    kb_.azzert(clause);
+
+    if (!isIncremental_) {
+      return;
+    }
+    if (!isUpToDate) {
+      invalidateAll();
+      return;
+    }
+
+    generation_ = kb_.generation();
+
+    Literal head = clause.head();
+
+    if (head.predicate().isPrimitive()) {
+      return;
+    }
+
+    boolean isMonotonic = clause.isFact() || BigDecimal.ONE.compareTo(head.probability()) == 0;
+
+    invalidate(head.predicate(), isMonotonic);
+
+    if (!isMonotonic) {
+      return;
+    }
+
+    List<AbstractSubgoal> tables = subgoals_.values().stream()
+        .filter(table -> table.literal().predicate().equals(head.predicate())).collect(Collectors.toList());
+
+    root_ = null;
+    maxSampleSize_ = -1;
+
+    run(() -> {
+      for (AbstractSubgoal table : tables) {
+        if (clause.isFact()) {
+
+          Map<com.computablefacts.decima.problog.Var, AbstractTerm> env = table.literal().unify(head);
+
+          if (env != null) {
+            fact(table, new Fact(head.subst(env)));
+          }
+        } else {
+
+          Bindings bindings = new Bindings(((Rule) clause).template());
+
+          if (bindings.unifyHead(table.literal())) {
+            Continuation continuation = new Continuation(bindings);
+            schedule(() -> rule(table, continuation));
+          }
+        }
+      }
+    });
+
+    completed_.addAll(subgoals_.keySet());
+  }
+
+  /**
+   * Returns the number of subgoals created so far.
+   *
+   * @return the number of subgoals.
+   */
+  public int nbSubgoals() {
+    return subgoals_.size();
+  }
+
+  /**
+   * Returns the number of subgoals whose facts and proofs have been spilled to disk (see {@link SubgoalAdaptive}).
+   *
+   * @return the number of spilled subgoals.
+   */
+  public int nbSpilledSubgoals() {
+    return (int) subgoals_.values().stream()
+        .filter(subgoal -> subgoal instanceof SubgoalAdaptive && ((SubgoalAdaptive) subgoal).isSpilled()).count();
+  }
+
+  /**
+   * Run a task and wait for all the tasks it spawns to complete.
+   *
+   * @param task the task to run.
+   */
+  private void run(Runnable task) {
+
+    if (pool_ == null) {
+      task.run();
+      return;
+    }
+
+    error_.set(null);
+    quiescence_ = new CountDownLatch(1);
+
+    schedule(task);
+
+    try {
+      quiescence_.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+
+    Throwable error = error_.getAndSet(null);
+
+    if (error != null) {
+      Throwables.throwIfUnchecked(error);
+      throw new IllegalStateException(error);
+    }
+  }
+
+  /**
+   * Drop all the tables.
+   */
+  private void invalidateAll() {
+    subgoals_.clear();
+    completed_.clear();
+    generation_ = kb_.generation();
+  }
+
+  /**
+   * Drop the tables created by a query whose search stopped early.
+   */
+  private void invalidateIncomplete() {
+    subgoals_.keySet().retainAll(completed_);
+    dropWaitersOfInvalidatedTables();
+  }
+
+  /**
+   * Drop the tables that cannot be incrementally updated after a clause with a given head predicate is asserted.
+   * <p>
+   * The predicates that may be affected by the clause are found by walking the rules backward, from body literals to
+   * heads. A table is dropped iif its predicate is reached through a negated body literal, or if the clause itself is a
+   * non-monotonic update, or if it is the negation of an affected predicate.
+   *
+   * @param predicate   the head predicate of the asserted clause.
+   * @param isMonotonic true iif the asserted clause can only add answers to the tables.
+   */
+  private void invalidate(Predicate predicate, boolean isMonotonic) {
+
+    // Map each predicate to the heads of the rules referencing it, along with the polarity of the reference
+    Map<String, Set<Map.Entry<String, Boolean>>> dependents = new HashMap<>();
+    Iterator<Rule> rules = kb_.rules();
+
+    while (rules.hasNext()) {
+
+      Rule rule = rules.next();
+      String head = rule.head().predicate().baseName();
+
+      for (Literal literal : rule.body()) {
+        if (!literal.predicate().isPrimitive()) {
+          dependents.computeIfAbsent(literal.predicate().baseName(), p -> new HashSet<>())
+              .add(new AbstractMap.SimpleImmutableEntry<>(head, literal.predicate().isNegated()));
+        }
+      }
+    }
+
+    Set<String> affected = new HashSet<>();
+    Set<String> stale = new HashSet<>();
+    Deque<Map.Entry<String, Boolean>> queue = new ArrayDeque<>();
+    queue.add(new AbstractMap.SimpleImmutableEntry<>(predicate.baseName(), !isMonotonic));
+
+    while (!queue.isEmpty()) {
+
+      Map.Entry<String, Boolean> entry = queue.poll();
+      String name = entry.getKey();
+      boolean isStale = entry.getValue();
+
+      if (isStale ? stale.add(name) : affected.add(name)) {
+        affected.add(name);
+        for (Map.Entry<String, Boolean> dependent : dependents.getOrDefault(name, Collections.emptySet())) {
+          queue.add(new AbstractMap.SimpleImmutableEntry<>(dependent.getKey(), isStale || dependent.getValue()));
+        }
+      }
+    }
+
+    subgoals_.values().removeIf(table -> {
+      Predicate p = table.literal().predicate();
+      return stale.contains(p.baseName()) || (p.isNegated() && affected.contains(p.baseName()));
+    });
+    completed_.retainAll(subgoals_.keySet());
+    dropWaitersOfInvalidatedTables();
+  }
+
+  /**
+   * Ensure the remaining tables do not propagate their answers to the dropped ones.
+   */
+  private void dropWaitersOfInvalidatedTables() {
+    for (AbstractSubgoal table : subgoals_.values()) {
+      table.waiters().removeIf(waiter -> subgoals_.get(waiter.subgoal_.literal().key()) != waiter.subgoal_);
+    }
+  }
+
   /**
    * Called each time a rule has been unfolded.
    *
@@ -106,6 +544,42 @@ public class Solver {
   protected void trackProofs(AbstractSubgoal subgoal, Rule rule) {
   }
 
+  /**
+   * In sequential mode, run the task immediately or, if answers are streamed, queue it onto the agenda. In parallel
+   * mode, submit the task to the pool and keep track of the
+   * number of pending tasks. Because a task is always scheduled by a running (hence pending) task, the number of pending
+   * tasks drops to zero iif the whole search is over.
+   *
+   * @param task the task to run.
+   */
+  private void schedule(Runnable task) {
+
+    if (pool_ == null) {
+      if (stream_ != null) {
+        agenda_.add(task);
+      } else {
+        task.run();
+      }
+      return;
+    }
+
+    nbPendingTasks_.incrementAndGet();
+
+    pool_.execute(() -> {
+      try {
+        if (error_.get() == null && !maxSampleSizeReached()) {
+          task.run();
+        }
+      } catch (Throwable t) {
+        error_.compareAndSet(null, t);
+      } finally {
+        if (nbPendingTasks_.decrementAndGet() == 0) {
+          quiescence_.countDown();
+        }
+      }
+    });
+  }
+
   /**
    * Check if the number of samples asked by the caller has been reached.
    *
@@ -137,11 +611,23 @@ public class Solver {
 
       // Evaluate the positive version of the rule (i.e. negation as failure)
       Literal base = new Literal(predicate.baseName(), literal.terms());
-      AbstractSubgoal sub = newSubgoal_.apply(base);
-
-      subgoals_.put(sub.literal().tag(), sub);
-
-      search(sub, idx);
+      // In incremental mode, the positive version of the rule may have already been fully evaluated
+      AbstractSubgoal table = isIncremental_ && completed_.contains(base.key()) ? subgoals_.get(base.key()) : null;
+      AbstractSubgoal sub = table != null ? table : newSubgoal_.apply(base);
+
+      if (table == null) {
+        if (pool_ == null && stream_ == null) {
+          subgoals_.put(sub.literal().key(), sub);
+          search(sub, idx);
+        } else {
+
+          // In parallel or streaming mode, the subgoals shared with other tasks may not be complete yet : evaluate the
+          // positive version of the rule sequentially, in isolation, to ensure all its facts have been found
+          Solver solver = new Solver(kb_, functions_, newSubgoal_);
+          solver.subgoals_.put(sub.literal().key(), sub);
+          solver.search(sub, idx);
+        }
+      }
 
       String newPredicate = literal.predicate().name();
       List<AbstractTerm> newTerms = literal.terms().stream().map(t -> t.isConst() ? t : newConst("_"))
@@ -181,7 +667,7 @@ public class Solver {
                 for (Literal lit : rule.body()) {
                   if (!lit.predicate().isPrimitive()) {
                     Rule negatedRule = new Rule(new Literal(newPredicate, newTerms), Lists.newArrayList(lit.negate()));
-                    rule(subgoal, negatedRule, idx);
+                    rule(subgoal, new Continuation(new Bindings(negatedRule.template())));
                   }
                 }
               }
@@ -214,12 +700,12 @@ public class Solver {
 
       while (rules.hasNext()) {
 
-        Rule rule = rules.next();
-        Rule renamed = rule.rename();
-        Map<com.computablefacts.decima.problog.Var, AbstractTerm> env = literal.unify(renamed.head());
+        // Renaming the rule amounts to allocating a fresh set of slots
+        Bindings bindings = new Bindings(rules.next().template());
 
-        if (env != null) {
-          rule(subgoal, renamed.subst(env), idx);
+        if (bindings.unifyHead(literal)) {
+          Continuation continuation = new Continuation(bindings);
+          schedule(() -> rule(subgoal, continuation));
         }
         if (maxSampleSizeReached()) {
           break;
@@ -243,11 +729,26 @@ public class Solver {
       return;
     }
 
-    subgoal.fact(fact);
+    if (pool_ != null && maxSampleSize_ > 0 && subgoal == root_) {
+
+      // In parallel mode, ensure concurrent tasks do not add more than maxSampleSize facts to the root subgoal
+      synchronized (subgoal) {
+        if (maxSampleSizeReached() || subgoal.contains(fact)) {
+          return;
+        }
+        subgoal.fact(fact);
+      }
+    } else {
+      subgoal.fact(fact);
+    }
+
+    if (stream_ != null && subgoal == root_) {
+      answers_.add(fact);
+    }
 
     for (Waiter waiter : subgoal.waiters()) {
 
-      ground(waiter.subgoal_, waiter.rule_, fact, waiter.idx_);
+      schedule(() -> ground(waiter.subgoal_, waiter.continuation_, waiter.continuation_.bindings(), fact));
 
       if (maxSampleSizeReached()) {
         return;
@@ -258,26 +759,25 @@ public class Solver {
   /**
    * Evaluate a newly derived rule.
    *
-   * @param subgoal subgoal.
-   * @param rule    the rule to add to the subgoal.
-   * @param idx     the next rule body literal to evaluate.
+   * @param subgoal      subgoal.
+   * @param continuation the rule to add to the subgoal, positioned on the next rule body literal to evaluate.
    */
-  private void rule(AbstractSubgoal subgoal, Rule rule, int idx) {
+  private void rule(AbstractSubgoal subgoal, Continuation continuation) {
 
     Preconditions.checkNotNull(subgoal, "subgoal should not be null");
-    Preconditions.checkNotNull(rule, "rule should not be null");
-    Preconditions.checkArgument(0 <= idx && idx < rule.body().size(), "idx must be such as 0 <= idx");
-
-    Literal first = rule.body().get(idx);
+    Preconditions.checkNotNull(continuation, "continuation should not be null");
 
-    if (first.predicate().isPrimitive()) {
+    if (continuation.predicate().isPrimitive()) {
 
-      Iterator<Literal> facts = first.execute(functions_.definitions());
+      Iterator<Literal> facts = continuation.literal().execute(functions_.definitions());
 
       if (facts != null) {
+
+        Bindings bindings = continuation.bindings();
+
         while (facts.hasNext()) {
 
-          ground(subgoal, rule, new Fact(facts.next()), idx);
+          ground(subgoal, continuation, bindings, new Fact(facts.next()));
 
           if (maxSampleSizeReached()) {
             break;
@@ -288,59 +788,76 @@ public class Solver {
       return;
     }
 
-    @Var AbstractSubgoal sub = subgoals_.get(first.tag());
+    Literal.Key key = continuation.key();
+    @Var AbstractSubgoal sub = subgoals_.get(key);
 
     if (sub != null) {
-      sub.waiter(subgoal, rule, idx);
+      sub.waiter(subgoal, continuation);
     } else {
 
-      sub = newSubgoal_.apply(first);
-      sub.waiter(subgoal, rule, idx);
+      AbstractSubgoal newSub = newSubgoal_.apply(continuation.literal());
+      newSub.waiter(subgoal, continuation);
+
+      sub = subgoals_.putIfAbsent(key, newSub);
 
-      subgoals_.put(sub.literal().tag(), sub);
+      if (sub != null) {
 
-      search(sub, 0);
+        // In parallel mode, another task created the same subgoal in the meantime
+        sub.waiter(subgoal, continuation);
+      } else {
+        sub = newSub;
+        schedule(() -> search(newSub, 0));
+      }
     }
 
     Iterator<Fact> facts = sub.facts();
 
-    while (facts.hasNext()) {
+    if (facts.hasNext()) {
 
-      ground(subgoal, rule, facts.next(), idx);
+      Bindings bindings = continuation.bindings();
 
-      if (maxSampleSizeReached()) {
-        return;
+      while (facts.hasNext()) {
+
+        ground(subgoal, continuation, bindings, facts.next());
+
+        if (maxSampleSizeReached()) {
+          return;
+        }
       }
     }
   }
 
   /**
-   * Start grounding a rule.
+   * Resolve the next rule body literal with a fact.
    *
-   * @param subgoal subgoal.
-   * @param rule    the rule to ground.
-   * @param fact    the fact associated with the rule's first body literal.
-   * @param idx     the next rule body literal to evaluate.
+   * @param subgoal      subgoal.
+   * @param continuation the rule to ground.
+   * @param bindings     a mutable copy of the continuation bindings. They are restored before this method returns.
+   * @param fact         the fact associated with the next rule body literal.
    */
-  private void ground(AbstractSubgoal subgoal, Rule rule, Fact fact, int idx) {
+  private void ground(AbstractSubgoal subgoal, Continuation continuation, Bindings bindings, Fact fact) {
 
     Preconditions.checkNotNull(subgoal, "subgoal should not be null");
-    Preconditions.checkNotNull(rule, "rule should not be null");
+    Preconditions.checkNotNull(continuation, "continuation should not be null");
+    Preconditions.checkNotNull(bindings, "bindings should not be null");
     Preconditions.checkNotNull(fact, "fact should not be null");
 
-    // Rule minus first body literal
-    List<Literal> bodyTmp = Collections.unmodifiableList(rule.body().subList(idx, rule.body().size()));
-    Rule ruleTmp = new Rule(rule.head(), bodyTmp).resolve(fact.head());
+    int mark = bindings.mark();
 
-    Preconditions.checkState(ruleTmp != null, "resolution failed : rule = %s / head = %s", rule, fact);
+    // The table may have been shared with a literal that differs only by its variables (e.g. p(X, X) and p(X, Y))
+    if (!bindings.unifyBody(continuation.idx(), fact.head())) {
+      return;
+    }
+    if (continuation.isLast()) {
 
-    Rule newRule = new Rule(ruleTmp.head(), View.of(rule.body().subList(0, idx)).concat(ruleTmp.body()).toList());
+      Literal head = bindings.head();
 
-    if (ruleTmp.body().size() == 1) {
-      trackProofs(subgoal, newRule);
-      fact(subgoal, new Fact(newRule.head()));
+      trackProofs(subgoal, continuation.proof(head, fact.head()));
+      fact(subgoal, new Fact(head));
     } else {
-      rule(subgoal, newRule, idx + 1);
+      rule(subgoal, continuation.next(bindings, fact.head()));
     }
+
+    bindings.undo(mark);
   }
-}
\ No newline at end of file
+}
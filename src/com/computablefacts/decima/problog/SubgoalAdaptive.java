@@ -0,0 +1,221 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A subgoal that keeps its facts and proofs in memory (see {@link SubgoalMemoryBacked}) until a memory budget is
+ * exceeded, then transparently spills them to disk (see {@link SubgoalDiskBacked}).
+ * <p>
+ * The budget, shared by all the subgoals of a solver run, is twofold : a subgoal exceeding the per-subgoal budget is
+ * spilled right away and, when all the in-memory subgoals together exceed the global budget, the largest ones are
+ * spilled until the global budget is met again. Memory usage is estimated from the shape of the stored clauses.
+ * <p>
+ * Spilling copies the in-memory clauses to disk and swaps the underlying subgoal. Iterators created before the swap
+ * keep enumerating the in-memory clauses. The subgoals to spill are chosen while holding the budget lock but are spilled
+ * after releasing it, so a thread holding a subgoal lock never waits for a thread holding the budget lock and
+ * vice versa.
+ */
+@CheckReturnValue
+final public class SubgoalAdaptive extends AbstractSubgoal {
+
+  private final Budget budget_;
+  private final Consumer<Fact> peek_;
+  private volatile AbstractSubgoal subgoal_;
+  private volatile boolean isSpilled_ = false;
+  private boolean isEvicted_ = false; // true iif the subgoal has been chosen to be spilled (guarded by the budget lock)
+
+  public SubgoalAdaptive(Literal literal, Budget budget) {
+    this(literal, budget, null);
+  }
+
+  public SubgoalAdaptive(Literal literal, Budget budget, Consumer<Fact> peek) {
+
+    super(literal);
+
+    budget_ = Preconditions.checkNotNull(budget, "budget should not be null");
+    peek_ = peek;
+    subgoal_ = new SubgoalMemoryBacked(literal);
+  }
+
+  private static long nbBytes(Literal literal) {
+    return 64 + 8L * literal.terms().size(); // the literal, its probability and its list of (interned) terms
+  }
+
+  private static long nbBytes(Rule rule) {
+    return 32 + nbBytes(rule.head()) + rule.body().stream().mapToLong(SubgoalAdaptive::nbBytes).sum();
+  }
+
+  /**
+   * Check if the facts and proofs of this subgoal have been moved to disk.
+   *
+   * @return true iif this subgoal has been spilled to disk.
+   */
+  public boolean isSpilled() {
+    return isSpilled_;
+  }
+
+  @Override
+  public void fact(Fact fact) {
+
+    Preconditions.checkNotNull(fact, "fact should not be null");
+
+    synchronized (this) {
+      subgoal_.fact(fact);
+    }
+
+    budget_.allocate(this, 32 + nbBytes(fact.head())).forEach(budget_::spill);
+
+    if (peek_ != null) {
+      peek_.accept(fact);
+    }
+  }
+
+  @Override
+  public Iterator<Fact> facts() {
+    return subgoal_.facts();
+  }
+
+  @Override
+  public boolean contains(Fact fact) {
+    return subgoal_.contains(fact);
+  }
+
+  @Override
+  public int nbFacts() {
+    return subgoal_.nbFacts();
+  }
+
+  @Override
+  public void proof(Rule proof) {
+
+    Preconditions.checkNotNull(proof, "proof should not be null");
+
+    synchronized (this) {
+      subgoal_.proof(proof);
+    }
+
+    budget_.allocate(this, nbBytes(proof)).forEach(budget_::spill);
+  }
+
+  @Override
+  public Iterator<Rule> proofs() {
+    return subgoal_.proofs();
+  }
+
+  @Override
+  public int nbProofs() {
+    return subgoal_.nbProofs();
+  }
+
+  /**
+   * Move the facts and proofs of this subgoal to disk.
+   *
+   * @param store where the facts and proofs must be written.
+   */
+  private synchronized void spill(SubgoalStore store) {
+
+    AbstractSubgoal memory = subgoal_;
+    SubgoalDiskBacked disk = new SubgoalDiskBacked(literal(), store);
+    memory.facts().forEachRemaining(disk::fact);
+    memory.proofs().forEachRemaining(disk::proof);
+
+    subgoal_ = disk;
+    isSpilled_ = true;
+  }
+
+  /**
+   * The memory budget shared by the subgoals of a solver run.
+   */
+  final public static class Budget {
+
+    private final SubgoalStore store_;
+    private final long maxBytesPerSubgoal_;
+    private final long maxBytes_;
+    private final Map<SubgoalAdaptive, Long> subgoals_ = new IdentityHashMap<>(); // in-memory subgoal -> bytes
+    private final AtomicInteger nbSpilled_ = new AtomicInteger();
+    private long nbBytes_ = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param store              where the spilled subgoals are written.
+     * @param maxBytesPerSubgoal the estimated number of bytes a single subgoal can hold in memory.
+     * @param maxBytes           the estimated number of bytes all the subgoals together can hold in memory.
+     */
+    public Budget(SubgoalStore store, long maxBytesPerSubgoal, long maxBytes) {
+
+      Preconditions.checkNotNull(store, "store should not be null");
+      Preconditions.checkArgument(maxBytesPerSubgoal > 0, "maxBytesPerSubgoal must be > 0");
+      Preconditions.checkArgument(maxBytes >= maxBytesPerSubgoal, "maxBytes must be >= maxBytesPerSubgoal");
+
+      store_ = store;
+      maxBytesPerSubgoal_ = maxBytesPerSubgoal;
+      maxBytes_ = maxBytes;
+    }
+
+    /**
+     * Returns the number of subgoals spilled to disk so far.
+     *
+     * @return the number of spilled subgoals.
+     */
+    public int nbSpilled() {
+      return nbSpilled_.get();
+    }
+
+    /**
+     * Returns the estimated number of bytes held in memory by the subgoals.
+     *
+     * @return the estimated number of bytes.
+     */
+    public synchronized long nbBytes() {
+      return nbBytes_;
+    }
+
+    /**
+     * Account for the bytes added to a subgoal and choose the subgoals to spill. The subgoals are not spilled here : the
+     * caller must spill them using {@link #spill(SubgoalAdaptive)} once the budget lock has been released.
+     *
+     * @param subgoal the subgoal.
+     * @param nbBytes the estimated number of bytes added to the subgoal.
+     * @return the subgoals to spill.
+     */
+    private synchronized List<SubgoalAdaptive> allocate(SubgoalAdaptive subgoal, long nbBytes) {
+
+      if (subgoal.isEvicted_) {
+        return Collections.emptyList(); // The subgoal has been chosen to be spilled since the clause has been added
+      }
+
+      nbBytes_ += nbBytes;
+
+      List<SubgoalAdaptive> evicted = new ArrayList<>();
+
+      if (subgoals_.merge(subgoal, nbBytes, Long::sum) > maxBytesPerSubgoal_) {
+        evict(subgoal, evicted);
+      }
+      while (nbBytes_ > maxBytes_ && !subgoals_.isEmpty()) {
+        evict(Collections.max(subgoals_.entrySet(), Map.Entry.comparingByValue()).getKey(), evicted);
+      }
+      return evicted;
+    }
+
+    private void evict(SubgoalAdaptive subgoal, List<SubgoalAdaptive> evicted) {
+      nbBytes_ -= subgoals_.remove(subgoal);
+      subgoal.isEvicted_ = true;
+      evicted.add(subgoal);
+    }
+
+    private void spill(SubgoalAdaptive subgoal) {
+      subgoal.spill(store_);
+      nbSpilled_.incrementAndGet();
+    }
+  }
+}
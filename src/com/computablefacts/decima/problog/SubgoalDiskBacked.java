@@ -1,92 +1,50 @@
 package com.computablefacts.decima.problog;
 
-import static com.computablefacts.decima.problog.Parser.parseClause;
-
-import com.computablefacts.asterix.BloomFilter;
-import com.computablefacts.asterix.RandomString;
+import com.computablefacts.asterix.ScalableBloomFilter;
 import com.computablefacts.asterix.View;
-import com.computablefacts.logfmt.LogFormatter;
-import com.github.davidmoten.bplustree.BPlusTree;
-import com.github.davidmoten.bplustree.Serializer;
 import com.google.common.base.Preconditions;
 import com.google.errorprone.annotations.CheckReturnValue;
-import java.io.File;
 import java.util.Iterator;
 import java.util.function.Consumer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+/**
+ * A subgoal whose facts and proofs are stored in a {@link SubgoalStore}, possibly shared with other subgoals. Clauses
+ * are stored using a compact binary encoding (see {@link ClauseCodec}) and decoded on the fly when read.
+ */
 @CheckReturnValue
 final public class SubgoalDiskBacked extends AbstractSubgoal {
 
-  private static final char SEPARATOR = '¤';
   private static final double FALSE_POSITIVE_PROBABILITY = 0.05;
-  private static final int EXPECTED_NUMBER_OF_ELEMENTS = 10_000_000;
-  private static final Logger logger_ = LoggerFactory.getLogger(SubgoalDiskBacked.class);
+  private static final int INITIAL_CAPACITY = 1_000;
 
-  // B+-Tree
-  private final BPlusTree<Integer, String> facts_;
-  private final BPlusTree<Integer, String> proofs_;
+  private final SubgoalStore store_;
+  private final int facts_; // stream of facts
+  private final int proofs_; // stream of proofs
   private final Consumer<Fact> peek_;
-  private final BloomFilter<String> bf_; // by default, around ~72MB in size
+  private final ScalableBloomFilter<Fact> bf_; // filled with the encoded facts, grows with the number of facts
 
   // Metrics
-  private int nbFacts_ = 0;
-  private int nbProofs_ = 0;
+  private volatile int nbFacts_ = 0;
+  private volatile int nbProofs_ = 0;
 
-  public SubgoalDiskBacked(Literal literal, String directory) {
-    this(literal, directory, null, FALSE_POSITIVE_PROBABILITY, EXPECTED_NUMBER_OF_ELEMENTS);
+  public SubgoalDiskBacked(Literal literal, SubgoalStore store) {
+    this(literal, store, null, FALSE_POSITIVE_PROBABILITY, INITIAL_CAPACITY);
   }
 
-  public SubgoalDiskBacked(Literal literal, String directory, Consumer<Fact> peek) {
-    this(literal, directory, peek, FALSE_POSITIVE_PROBABILITY, EXPECTED_NUMBER_OF_ELEMENTS);
+  public SubgoalDiskBacked(Literal literal, SubgoalStore store, Consumer<Fact> peek) {
+    this(literal, store, peek, FALSE_POSITIVE_PROBABILITY, INITIAL_CAPACITY);
   }
 
-  public SubgoalDiskBacked(Literal literal, String directory, Consumer<Fact> peek, double falsePositiveProbability,
-      int expectedNumberOfElements) {
+  public SubgoalDiskBacked(Literal literal, SubgoalStore store, Consumer<Fact> peek, double falsePositiveProbability,
+      int initialCapacity) {
 
     super(literal);
 
-    RandomString randomString = new RandomString(10);
-    String uuid = randomString.nextString();
-    File dirFacts = new File(String.format("%s%s%s_facts", directory, File.separator, uuid));
-
-    if (!dirFacts.exists()) {
-      dirFacts.mkdirs();
-    }
-
-    File dirProofs = new File(String.format("%s%s%s_proofs", directory, File.separator, uuid));
-
-    if (!dirProofs.exists()) {
-      dirProofs.mkdirs();
-    }
-
+    store_ = Preconditions.checkNotNull(store, "store should not be null");
+    facts_ = store.newStream();
+    proofs_ = store.newStream();
     peek_ = peek;
-    facts_ = BPlusTree.file().directory(dirFacts.getAbsolutePath()).deleteOnClose().maxLeafKeys(32).maxNonLeafKeys(8)
-        .segmentSizeMB(1).uniqueKeys(false).keySerializer(Serializer.INTEGER).valueSerializer(Serializer.utf8())
-        .naturalOrder();
-    proofs_ = BPlusTree.file().directory(dirProofs.getAbsolutePath()).deleteOnClose().maxLeafKeys(32).maxNonLeafKeys(8)
-        .segmentSizeMB(1).uniqueKeys(false).keySerializer(Serializer.INTEGER).valueSerializer(Serializer.utf8())
-        .naturalOrder();
-    bf_ = new BloomFilter<>(falsePositiveProbability, expectedNumberOfElements);
-  }
-
-  @Override
-  protected void finalize() {
-    if (facts_ != null) {
-      try {
-        facts_.close();
-      } catch (Exception e) {
-        logger_.error(LogFormatter.create().message(e).formatError());
-      }
-    }
-    if (proofs_ != null) {
-      try {
-        proofs_.close();
-      } catch (Exception e) {
-        logger_.error(LogFormatter.create().message(e).formatError());
-      }
-    }
+    bf_ = new ScalableBloomFilter<>(falsePositiveProbability, initialCapacity);
   }
 
   @Override
@@ -94,10 +52,13 @@ final public class SubgoalDiskBacked extends AbstractSubgoal {
 
     Preconditions.checkNotNull(fact, "fact should not be null");
 
-    String cacheKey = cacheKey(fact);
-    bf_.add(cacheKey);
-    facts_.insert(cacheKey.hashCode(), cacheKey + SEPARATOR + fact.toString());
-    nbFacts_++;
+    byte[] clause = ClauseCodec.encode(fact);
+
+    synchronized (this) {
+      bf_.add(clause);
+      store_.append(facts_, nbFacts_, clause, true);
+      nbFacts_++;
+    }
 
     if (peek_ != null) {
       peek_.accept(fact);
@@ -106,7 +67,7 @@ final public class SubgoalDiskBacked extends AbstractSubgoal {
 
   @Override
   public Iterator<Fact> facts() {
-    return View.of(facts_.findAll()).map(value -> (Fact) parseClause(value.substring(value.indexOf(SEPARATOR) + 1)));
+    return View.of(store_.read(facts_)).map(clause -> (Fact) ClauseCodec.decode(clause));
   }
 
   @Override
@@ -114,9 +75,14 @@ final public class SubgoalDiskBacked extends AbstractSubgoal {
 
     Preconditions.checkNotNull(fact, "fact should not be null");
 
-    String cacheKey = cacheKey(fact);
-    return bf_.contains(cacheKey) && View.of(facts_.find(cacheKey.hashCode()))
-        .contains(value -> value.startsWith(cacheKey + SEPARATOR));
+    byte[] clause = ClauseCodec.encode(fact);
+
+    synchronized (this) {
+      if (!bf_.contains(clause)) {
+        return false;
+      }
+    }
+    return store_.contains(facts_, clause);
   }
 
   @Override
@@ -130,26 +96,21 @@ final public class SubgoalDiskBacked extends AbstractSubgoal {
     Preconditions.checkNotNull(proof, "proof should not be null");
     Preconditions.checkArgument(proof.isGrounded(), "proof should be grounded : %s", proof);
 
-    String cacheKey = cacheKey(proof);
-    proofs_.insert(cacheKey.hashCode(), cacheKey + SEPARATOR + proof.toString());
-    nbProofs_++;
+    byte[] clause = ClauseCodec.encode(proof);
+
+    synchronized (this) {
+      store_.append(proofs_, nbProofs_, clause, false);
+      nbProofs_++;
+    }
   }
 
   @Override
   public Iterator<Rule> proofs() {
-    return View.of(proofs_.findAll()).map(value -> (Rule) parseClause(value.substring(value.indexOf(SEPARATOR) + 1)));
+    return View.of(store_.read(proofs_)).map(clause -> (Rule) ClauseCodec.decode(clause));
   }
 
   @Override
   public int nbProofs() {
     return nbProofs_;
   }
-
-  private String cacheKey(Fact fact) {
-    return fact.head().id();
-  }
-
-  private String cacheKey(Rule proof) {
-    return View.of(proof.head()).concat(proof.body()).map(Literal::id).join("");
-  }
-}
\ No newline at end of file
+}
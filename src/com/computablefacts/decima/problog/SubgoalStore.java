@@ -0,0 +1,198 @@
+package com.computablefacts.decima.problog;
+
+import com.computablefacts.asterix.RandomString;
+import com.computablefacts.logfmt.LogFormatter;
+import com.github.davidmoten.bplustree.BPlusTree;
+import com.github.davidmoten.bplustree.Serializer;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A disk-backed store shared by many {@link SubgoalDiskBacked}. Each subgoal owns one or more append-only streams of
+ * clauses encoded using {@link ClauseCodec}.
+ * <p>
+ * Clauses are stored in a B+-tree keyed by (stream, sequence number) so a stream can be read back in insertion order
+ * using range queries. A second B+-tree maps a 64-bit hash of (stream, encoded clause) to the clause key. Since two
+ * clauses may share the same hash, membership tests always compare the stored bytes.
+ * <p>
+ * The store must be explicitly closed once the solver is done. Closing the store deletes its files.
+ */
+@CheckReturnValue
+final public class SubgoalStore implements AutoCloseable {
+
+  private static final Logger logger_ = LoggerFactory.getLogger(SubgoalStore.class);
+  private static final HashFunction MURMUR3_128 = Hashing.murmur3_128();
+  private static final int BATCH_SIZE = 256;
+
+  private final BPlusTree<Long, byte[]> clauses_; // (stream, sequence number) -> encoded clause
+  private final BPlusTree<Long, Long> hashes_; // hash of (stream, encoded clause) -> (stream, sequence number)
+  private final AtomicInteger nbStreams_ = new AtomicInteger();
+  private boolean isClosed_ = false;
+
+  public SubgoalStore(String directory) {
+    this(directory, 16);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param directory     where the segments will be written.
+   * @param segmentSizeMB the size of each segment in megabytes.
+   */
+  public SubgoalStore(String directory, int segmentSizeMB) {
+
+    Preconditions.checkNotNull(directory, "directory should not be null");
+    Preconditions.checkArgument(segmentSizeMB > 0, "segmentSizeMB must be > 0");
+
+    String uuid = new RandomString(10).nextString();
+
+    clauses_ = BPlusTree.file().directory(mkdirs(directory, uuid + "_clauses")).deleteOnClose().maxLeafKeys(32)
+        .maxNonLeafKeys(8).segmentSizeMB(segmentSizeMB).uniqueKeys(true).keySerializer(Serializer.LONG)
+        .valueSerializer(Serializer.bytes(0)).naturalOrder();
+    hashes_ = BPlusTree.file().directory(mkdirs(directory, uuid + "_hashes")).deleteOnClose().maxLeafKeys(32)
+        .maxNonLeafKeys(8).segmentSizeMB(segmentSizeMB).uniqueKeys(false).keySerializer(Serializer.LONG)
+        .valueSerializer(Serializer.LONG).naturalOrder();
+  }
+
+  private static String mkdirs(String directory, String name) {
+
+    File dir = new File(String.format("%s%s%s", directory, File.separator, name));
+
+    if (!dir.exists()) {
+      dir.mkdirs();
+    }
+    return dir.getAbsolutePath();
+  }
+
+  private static long key(int stream, int seq) {
+    return ((long) stream << 32) | (seq & 0xffffffffL);
+  }
+
+  private static long hash(int stream, byte[] clause) {
+    return MURMUR3_128.newHasher().putInt(stream).putBytes(clause).hash().asLong();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!isClosed_) {
+      isClosed_ = true;
+      try {
+        clauses_.close();
+      } catch (Exception e) {
+        logger_.error(LogFormatter.create().message(e).formatError());
+      }
+      try {
+        hashes_.close();
+      } catch (Exception e) {
+        logger_.error(LogFormatter.create().message(e).formatError());
+      }
+    }
+  }
+
+  /**
+   * Allocate a new stream.
+   *
+   * @return the stream identifier.
+   */
+  int newStream() {
+
+    int stream = nbStreams_.getAndIncrement();
+
+    Preconditions.checkState(stream >= 0, "too many streams");
+
+    return stream;
+  }
+
+  /**
+   * Append a clause to a stream.
+   *
+   * @param stream  the stream identifier.
+   * @param seq     the clause sequence number in the stream i.e. the number of clauses already in the stream.
+   * @param clause  the encoded clause.
+   * @param indexed true iif the clause should be visible to {@link #contains(int, byte[])}.
+   */
+  synchronized void append(int stream, int seq, byte[] clause, boolean indexed) {
+
+    Preconditions.checkState(!isClosed_, "the store is closed");
+
+    long key = key(stream, seq);
+    clauses_.insert(key, clause);
+
+    if (indexed) {
+      hashes_.insert(hash(stream, clause), key);
+    }
+  }
+
+  /**
+   * Check if an indexed clause belongs to a given stream.
+   *
+   * @param stream the stream identifier.
+   * @param clause the encoded clause.
+   * @return true iif the clause has been appended to the stream.
+   */
+  synchronized boolean contains(int stream, byte[] clause) {
+
+    Preconditions.checkState(!isClosed_, "the store is closed");
+
+    for (Long key : hashes_.find(hash(stream, clause))) {
+      if (Arrays.equals(clause, clauses_.findFirst(key))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Read a stream in insertion order. Clauses appended while iterating are returned as well.
+   *
+   * @param stream the stream identifier.
+   * @return the encoded clauses.
+   */
+  Iterator<byte[]> read(int stream) {
+    return new AbstractIterator<byte[]>() {
+
+      private int seq_ = 0;
+      private Iterator<byte[]> batch_ = Collections.emptyIterator();
+
+      @Override
+      protected byte[] computeNext() {
+        if (!batch_.hasNext()) {
+          batch_ = batch(stream, seq_);
+          if (!batch_.hasNext()) {
+            return endOfData();
+          }
+        }
+        seq_++;
+        return batch_.next();
+      }
+    };
+  }
+
+  private synchronized Iterator<byte[]> batch(int stream, int seq) {
+
+    Preconditions.checkState(!isClosed_, "the store is closed");
+
+    List<byte[]> batch = new ArrayList<>(BATCH_SIZE);
+    long end = stream == Integer.MAX_VALUE ? Long.MAX_VALUE : key(stream + 1, 0);
+
+    for (byte[] clause : clauses_.find(key(stream, seq), end)) {
+      batch.add(clause);
+      if (batch.size() >= BATCH_SIZE) {
+        break;
+      }
+    }
+    return batch.iterator();
+  }
+}
@@ -10,8 +10,8 @@ final public class Var extends AbstractTerm {
 
   private final boolean isWildcard_;
 
-  Var(String id, boolean isWildcard) {
-    super(id);
+  Var(int code, boolean isWildcard) {
+    super(code);
     isWildcard_ = isWildcard;
   }
 
@@ -29,4 +29,9 @@ final public class Var extends AbstractTerm {
   public boolean isWildcard() {
     return isWildcard_;
   }
+
+  @Override
+  protected String rawId() {
+    return Integer.toUnsignedString(~code(), 10); // the code of a variable is only negative until the generator wraps
+  }
 }
@@ -4,13 +4,10 @@ import com.google.common.base.Preconditions;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.Var;
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -21,16 +18,22 @@ import java.util.function.Function;
 final public class BddManager {
 
   private static final int MIN_INIT_SIZE = 4;
+  private static final int MIN_CACHE_SIZE = 1 << 10;
   private static final double MAX_GROWTH = 1.2;
+  private static final double REORDERING_GROWTH = 2.0;
 
   private final Table uniqueTable_ = new Table();
   public BddNode Zero;
   public BddNode One;
   private int nextId = 0;
   private int n_;
-  private final Map<Tuple<Integer, Integer, Integer>, WeakReference> iteCache_;
-  private final List<Integer> variableOrder_;
+  private final ComputedTable cache_ = new ComputedTable(MIN_CACHE_SIZE);
+  private final List<Integer> variableOrder_; // level -> variable index
+  private final List<Integer> levels_; // variable index -> level
   private Function<Integer, String> variableString_;
+  private int reorderingThreshold_ = 0; // 0 iif dynamic reordering is disabled
+  private int nextReordering_ = Integer.MAX_VALUE;
+  private int nbReorderings_ = 0;
 
   /**
    * Initializes a new instance of the {@link BddManager} class.
@@ -43,11 +46,12 @@ final public class BddManager {
     this.One = create(n, true);
 
     n_ = n;
-    iteCache_ = new HashMap<>();
     variableOrder_ = new ArrayList<>(n);
+    levels_ = new ArrayList<>(n);
 
     for (int i = 0; i < n; i++) {
       variableOrder_.add(i);
+      levels_.add(i);
     }
 
     variableString_ = Object::toString;
@@ -166,6 +170,9 @@ final public class BddManager {
     low.incRefCount();
 
     uniqueTable_.put(unique);
+
+    // Keep the computed table in proportion with the unique table
+    cache_.growTo(uniqueTable_.size());
     return unique;
   }
 
@@ -194,10 +201,95 @@ final public class BddManager {
     int temp = N();
     N(N() + 1);
     variableOrder_.add(temp);
+    levels_.add(temp);
 
     return temp;
   }
 
+  /**
+   * Get the position of a variable in the current variable order. The sinks are below all the variables.
+   *
+   * @param index Variable index.
+   * @return The variable level.
+   */
+  public int level(int index) {
+    return index >= N() ? N() : levels_.get(index);
+  }
+
+  /**
+   * Get the number of nodes in the unique table, including the nodes no longer referenced by a root.
+   *
+   * @return The number of nodes.
+   */
+  public int nbNodes() {
+    return uniqueTable_.size();
+  }
+
+  /**
+   * Get the number of automatic reorderings performed so far.
+   *
+   * @return The number of reorderings.
+   */
+  public int nbReorderings() {
+    return nbReorderings_;
+  }
+
+  /**
+   * Enable dynamic variable reordering : once the unique table holds at least {@code threshold} nodes,
+   * {@link #reorderIfNeeded(List)} sifts the variables. The next reordering is then postponed until the unique table
+   * doubles in size, so the manager does not thrash on BDDs that sifting cannot shrink.
+   *
+   * @param threshold The number of nodes that triggers the first reordering.
+   */
+  public void enableDynamicReordering(int threshold) {
+
+    Preconditions.checkArgument(threshold > 0, "threshold must be > 0");
+
+    reorderingThreshold_ = threshold;
+    nextReordering_ = threshold;
+  }
+
+  /**
+   * Disable dynamic variable reordering.
+   */
+  public void disableDynamicReordering() {
+    reorderingThreshold_ = 0;
+    nextReordering_ = Integer.MAX_VALUE;
+  }
+
+  /**
+   * Check if the unique table has grown enough to trigger a dynamic reordering.
+   *
+   * @return true iif {@link #reorderIfNeeded(List)} would sift the variables.
+   */
+  public boolean isReorderingNeeded() {
+    return uniqueTable_.size() >= nextReordering_;
+  }
+
+  /**
+   * Sift the variables if dynamic reordering is enabled and the unique table has grown enough. This method must not
+   * be called during a BDD operation. The caller must pass every node it holds : the other nodes may be discarded.
+   *
+   * @param roots The root nodes of the BDDs to keep.
+   * @return true iif the variables have been reordered.
+   */
+  @CanIgnoreReturnValue
+  public boolean reorderIfNeeded(List<BddNode> roots) {
+
+    Preconditions.checkNotNull(roots, "roots should not be null");
+
+    if (!isReorderingNeeded()) {
+      return false;
+    }
+
+    sifting(roots);
+
+    nbReorderings_++;
+    nextReordering_ = (int) Math.max(reorderingThreshold_,
+        Math.min(Integer.MAX_VALUE, REORDERING_GROWTH * uniqueTable_.size()));
+    return true;
+  }
+
   /**
    * Swap the specified variables. The two variables shall be adjacent. index shall be followed by index2 in the
    * variable order.
@@ -212,7 +304,13 @@ final public class BddManager {
 
     Preconditions.checkNotNull(root, "root should not be null");
 
-    int i = variableOrder_.indexOf(index) + 1;
+    swap(index, index2);
+    return root;
+  }
+
+  private void swap(int index, int index2) {
+
+    int i = levels_.get(index) + 1;
 
     Preconditions.checkState(i < variableOrder_.size(), "'" + index + "' is the last variable in the variable order.");
 
@@ -222,13 +320,17 @@ final public class BddManager {
 
     variableOrder_.set(i - 1, nextIndex);
     variableOrder_.set(i, index);
+    levels_.set(nextIndex, i - 1);
+    levels_.set(index, i);
+
+    // Swapping may delete nodes : cached results cannot be trusted anymore
+    cache_.clear();
 
     List<BddNode> nodesAtIndex = uniqueTable_.nodes(index);
 
     for (BddNode n : nodesAtIndex) {
       swapStep(n, index, nextIndex);
     }
-    return root;
   }
 
   /**
@@ -283,30 +385,29 @@ final public class BddManager {
       b = create(node.index(), f10, f00);
     }
 
-    @Var BddNode oldLow, oldHigh;
-
     uniqueTable_.delete(node);
     node.index(nextIndex);
 
-    oldLow = node.low();
-    oldHigh = node.high();
+    BddNode oldLow = node.low();
+    BddNode oldHigh = node.high();
+
+    // Reference the new children first : a or b may be a grandchild only referenced through the old children
+    node.high(a);
+    node.low(b);
+
+    uniqueTable_.put(node);
 
     oldLow.decRefCount();
 
-    if (node.low().refCount() == 0) {
-      deleteNode(node.low());
+    if (oldLow.refCount() == 0) {
+      deleteNode(oldLow);
     }
 
     oldHigh.decRefCount();
 
-    if (node.high().refCount() == 0) {
-      deleteNode(node.high());
+    if (oldHigh.refCount() == 0) {
+      deleteNode(oldHigh);
     }
-
-    node.high(a);
-    node.low(b);
-
-    uniqueTable_.put(node);
   }
 
   /**
@@ -349,6 +450,20 @@ final public class BddManager {
     return size(root, new HashSet<>());
   }
 
+  /**
+   * Returns the number of nodes shared by a set of BDDs.
+   *
+   * @param roots The root nodes of the BDDs.
+   * @return The BDDs size.
+   */
+  public int size(List<BddNode> roots) {
+
+    Preconditions.checkNotNull(roots, "roots should not be null");
+
+    Set<Integer> visited = new HashSet<>();
+    return roots.stream().mapToInt(root -> size(root, visited)).sum();
+  }
+
   /**
    * Returns the size of a given BDD.
    *
@@ -380,27 +495,37 @@ final public class BddManager {
 
     Preconditions.checkNotNull(root, "root should not be null");
 
-    // int initial_size = GetSize(root);
-    int[] reverseOrder = new int[N()];
+    sifting(Collections.singletonList(root));
+    return root;
+  }
 
-    for (int i = 0; i < N(); i++) {
-      reverseOrder[variableOrder_.get(i)] = i;
-    }
+  /**
+   * Applies the sifting algorithm to reduce the number of nodes shared by a set of BDDs by changing the variable order.
+   * The nodes are modified in place : the roots remain valid.
+   *
+   * @param roots The root nodes of the BDDs.
+   */
+  public void sifting(List<BddNode> roots) {
+
+    Preconditions.checkNotNull(roots, "roots should not be null");
+
+    // Prevent the roots from being deleted while swapping (a root may also be the child of a discarded node)
+    roots.forEach(BddNode::incRefCount);
 
     for (int i = 0; i < N(); i++) {
 
       // Move variable xi through the order
-      @Var int optSize = size(root);
-      @Var int optPos, curPos, startPos = reverseOrder[i];
+      @Var int optSize = size(roots);
+      @Var int optPos, curPos, startPos = levels_.get(i);
       optPos = startPos;
       curPos = startPos;
 
       for (int j = startPos - 1; j >= 0; j--) {
 
         curPos = j;
-        Swap(root, variableOrder_.get(j), variableOrder_.get(j + 1));
+        swap(variableOrder_.get(j), variableOrder_.get(j + 1));
 
-        int new_size = size(root);
+        int new_size = size(roots);
 
         if (new_size < optSize) {
           optSize = new_size;
@@ -413,9 +538,9 @@ final public class BddManager {
       for (int j = curPos + 1; j < N(); j++) {
 
         curPos = j;
-        Swap(root, variableOrder_.get(j - 1), variableOrder_.get(j));
+        swap(variableOrder_.get(j - 1), variableOrder_.get(j));
 
-        int newSize = size(root);
+        int newSize = size(roots);
 
         if (newSize < optSize) {
           optSize = newSize;
@@ -427,15 +552,16 @@ final public class BddManager {
 
       if (curPos > optPos) {
         for (int j = curPos - 1; j >= optPos; j--) {
-          Swap(root, variableOrder_.get(j), variableOrder_.get(j + 1));
+          swap(variableOrder_.get(j), variableOrder_.get(j + 1));
         }
       } else {
         for (int j = curPos + 1; j <= optPos; j++) {
-          Swap(root, variableOrder_.get(j - 1), variableOrder_.get(j));
+          swap(variableOrder_.get(j - 1), variableOrder_.get(j));
         }
       }
     }
-    return root;
+
+    roots.forEach(BddNode::decRefCount);
   }
 
   /**
@@ -452,6 +578,9 @@ final public class BddManager {
     List<BddNode> nodes = root.nodes();
     int size = nodes.size();
 
+    // Nodes identifiers are about to be reassigned : cached results cannot be trusted anymore
+    cache_.clear();
+
     BddNode[] subgraph = new BddNode[size];
     List<BddNode>[] vlist = new ArrayList[N() + 1];
 
@@ -631,39 +760,38 @@ final public class BddManager {
       return g;
     }
 
-    Tuple<Integer, Integer, Integer> cacheKey = new Tuple<>(f.id(), g.id(), h.id());
+    BddNode cached = cache_.get(f.id(), g.id(), h.id());
 
-    if (iteCache_.containsKey(cacheKey)) {
-
-      WeakReference wr = iteCache_.get(cacheKey);
-
-      if (wr.get() != null) {
-        return (BddNode) wr.get();
-      } else {
-        iteCache_.remove(cacheKey);
-      }
+    if (cached != null) {
+      return cached;
     }
 
+    // The top variable is the one with the lowest level : the variable order may differ from the creation order
     @Var int index = f.index();
 
-    if (g.index() < index) {
+    if (level(g.index()) < level(index)) {
       index = g.index();
     }
-    if (h.index() < index) {
+    if (level(h.index()) < level(index)) {
       index = h.index();
     }
 
-    BddNode fv0 = restrict(f, -1, index);
-    BddNode gv0 = restrict(g, -1, index);
-    BddNode hv0 = restrict(h, -1, index);
+    // The cofactors w.r.t. the top variable only depend on the roots
+    BddNode fv0 = f.index() == index ? f.low() : f;
+    BddNode gv0 = g.index() == index ? g.low() : g;
+    BddNode hv0 = h.index() == index ? h.low() : h;
+
+    BddNode fv1 = f.index() == index ? f.high() : f;
+    BddNode gv1 = g.index() == index ? g.high() : g;
+    BddNode hv1 = h.index() == index ? h.high() : h;
 
-    BddNode fv1 = restrict(f, index, -1);
-    BddNode gv1 = restrict(g, index, -1);
-    BddNode hv1 = restrict(h, index, -1);
+    BddNode high = ite(fv1, gv1, hv1);
+    BddNode low = ite(fv0, gv0, hv0);
 
-    BddNode node = create(index, ite(fv1, gv1, hv1), ite(fv0, gv0, hv0));
+    // Never create redundant nodes : swapping variables relies on the BDD being canonical
+    BddNode node = high.equals(low) ? high : create(index, high, low);
 
-    iteCache_.put(cacheKey, new WeakReference<>(node));
+    cache_.put(f.id(), g.id(), h.id(), node);
     return node;
   }
 
@@ -683,7 +811,17 @@ final public class BddManager {
     if (node.isOne()) {
       return Zero;
     }
-    return create(node.index(), negate(node.high()), negate(node.low()));
+
+    // Identifiers are >= 0 so the (f, -1, -1) key cannot collide with an ite(f, g, h) key
+    BddNode cached = cache_.get(node.id(), -1, -1);
+
+    if (cached != null) {
+      return cached;
+    }
+
+    BddNode negation = create(node.index(), negate(node.high()), negate(node.low()));
+    cache_.put(node.id(), -1, -1, negation);
+    return negation;
   }
 
   /**
@@ -0,0 +1,95 @@
+package com.computablefacts.decima.robdd;
+
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.Arrays;
+
+/**
+ * The computed table i.e. a fixed-size, lossy, cache of the results of the BDD operations. An entry is keyed by the
+ * identifiers of the operands. When two keys collide, the newest entry overwrites the oldest one.
+ * <p>
+ * See "Efficient implementation of a BDD package" (Brace, Rudell and Bryant, 1990).
+ * <p>
+ * This class is not thread-safe.
+ */
+@CheckReturnValue
+final class ComputedTable {
+
+  private static final int MAX_CAPACITY = 1 << 20;
+
+  private int[] keys_; // (f, g, h) triplets
+  private BddNode[] results_;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity the number of entries. Must be a power of two.
+   */
+  ComputedTable(int capacity) {
+
+    Preconditions.checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "capacity must be a power of two");
+
+    keys_ = new int[3 * capacity];
+    results_ = new BddNode[capacity];
+  }
+
+  /**
+   * Returns the cached result of an operation.
+   *
+   * @param f first operand identifier.
+   * @param g second operand identifier.
+   * @param h third operand identifier.
+   * @return the cached result, null if no such result.
+   */
+  BddNode get(int f, int g, int h) {
+    int slot = Table.hash(f, g, h) & (results_.length - 1);
+    BddNode result = results_[slot];
+    return result != null && keys_[3 * slot] == f && keys_[3 * slot + 1] == g && keys_[3 * slot + 2] == h ? result
+        : null;
+  }
+
+  /**
+   * Cache the result of an operation, possibly evicting a previous entry.
+   *
+   * @param f      first operand identifier.
+   * @param g      second operand identifier.
+   * @param h      third operand identifier.
+   * @param result the result of the operation.
+   */
+  void put(int f, int g, int h, BddNode result) {
+    int slot = Table.hash(f, g, h) & (results_.length - 1);
+    keys_[3 * slot] = f;
+    keys_[3 * slot + 1] = g;
+    keys_[3 * slot + 2] = h;
+    results_[slot] = result;
+  }
+
+  /**
+   * Double the number of entries until it reaches the given size. Cached results are discarded.
+   *
+   * @param n the expected number of entries.
+   */
+  void growTo(int n) {
+    if (n > results_.length && results_.length < MAX_CAPACITY) {
+      int capacity = Math.min(MAX_CAPACITY, Integer.highestOneBit(n - 1) << 1);
+      keys_ = new int[3 * capacity];
+      results_ = new BddNode[capacity];
+    }
+  }
+
+  /**
+   * Remove all the cached results.
+   */
+  void clear() {
+    Arrays.fill(results_, null);
+  }
+
+  /**
+   * Returns the number of entries.
+   *
+   * @return the number of entries.
+   */
+  int capacity() {
+    return results_.length;
+  }
+}
@@ -1,29 +1,40 @@
 package com.computablefacts.decima.robdd;
 
 import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * The unique table i.e. a hash-consing table mapping a key (index, low identifier, high identifier) to a {@link BddNode}.
+ * <p>
+ * The table uses open addressing with linear probing. Keys are stored in a primitive array so lookups neither allocate
+ * nor box integers. Deleted slots are marked with a tombstone and reclaimed when the table is resized.
+ * <p>
+ * This class is not thread-safe.
+ */
 @CheckReturnValue
 final public class Table {
 
-  private final Map<Integer, List<BddNode>> table_ = new ConcurrentHashMap<>();
+  private static final int MIN_CAPACITY = 16;
+  private static final BddNode TOMBSTONE = new BddNode();
+
+  private int[] keys_; // (index, low, high) triplets
+  private BddNode[] nodes_;
+  private int size_; // number of nodes
+  private int used_; // number of nodes + number of tombstones
 
   public Table() {
+    allocate(MIN_CAPACITY);
   }
 
   /**
    * Initializes a new instance of the {@link Table} class.
    *
-   * @param n The initial number of buckets.
+   * @param n The expected number of nodes.
    */
   public void init(int n) {
-    for (int i = 0; i < n; i++) {
-      table_.put(i, new CopyOnWriteArrayList<>());
-    }
+    allocate(capacityFor(n));
   }
 
   /**
@@ -32,7 +43,7 @@ final public class Table {
    * @return The number of key-value pairs in this symbol table.
    */
   public int size() {
-    return table_.keySet().size();
+    return size_;
   }
 
   /**
@@ -45,13 +56,19 @@ final public class Table {
    */
   public BddNode get(int index, int low, int high) {
 
-    if (!table_.containsKey(index)) {
-      return null;
-    }
+    int mask = nodes_.length - 1;
+
+    for (int slot = hash(index, low, high) & mask; ; slot = (slot + 1) & mask) {
 
-    Optional<BddNode> node = table_.get(index).stream().filter(n -> n.low().id() == low && n.high().id() == high)
-        .findFirst();
-    return node.orElse(null);
+      BddNode node = nodes_[slot];
+
+      if (node == null) {
+        return null;
+      }
+      if (node != TOMBSTONE && matches(slot, index, low, high)) {
+        return node;
+      }
+    }
   }
 
   /**
@@ -72,14 +89,20 @@ final public class Table {
    */
   public void delete(int index, int low, int high) {
 
-    if (!table_.containsKey(index)) {
-      return;
-    }
+    int mask = nodes_.length - 1;
 
-    BddNode node = get(index, low, high);
+    for (int slot = hash(index, low, high) & mask; ; slot = (slot + 1) & mask) {
 
-    if (node != null) {
-      table_.get(index).remove(node);
+      BddNode node = nodes_[slot];
+
+      if (node == null) {
+        return;
+      }
+      if (node != TOMBSTONE && matches(slot, index, low, high)) {
+        nodes_[slot] = TOMBSTONE;
+        size_--;
+        return;
+      }
     }
   }
 
@@ -107,24 +130,105 @@ final public class Table {
       return;
     }
 
-    if (!table_.containsKey(index)) {
-      table_.put(index, new CopyOnWriteArrayList<>());
+    int mask = nodes_.length - 1;
+    @Var int free = -1;
+
+    for (int slot = hash(index, low, high) & mask; ; slot = (slot + 1) & mask) {
+
+      BddNode node = nodes_[slot];
+
+      if (node == null) {
+        if (free < 0) {
+          free = slot;
+          used_++;
+        }
+        break;
+      }
+      if (node == TOMBSTONE) {
+        if (free < 0) {
+          free = slot;
+        }
+      } else if (node.equals(val) && matches(slot, index, low, high)) {
+        return; // Already there
+      }
     }
 
-    List<BddNode> nodes = table_.get(index);
+    keys_[3 * free] = index;
+    keys_[3 * free + 1] = low;
+    keys_[3 * free + 2] = high;
+    nodes_[free] = val;
+    size_++;
 
-    if (!nodes.contains(val)) {
-      nodes.add(val);
+    if (used_ > (nodes_.length >> 1) + (nodes_.length >> 2) /* 0.75 load factor */) {
+      rehash(capacityFor(size_));
     }
   }
 
   /**
-   * Returns the nodes contained in a given bucket index.
+   * Returns the nodes contained in a given bucket index. The returned list is a snapshot : the table can be safely
+   * modified while iterating over it.
    *
    * @param index Bucket index.
    * @return List of nodes.
    */
   public List<BddNode> nodes(int index) {
-    return table_.get(index);
+
+    List<BddNode> nodes = new ArrayList<>();
+
+    for (int slot = 0; slot < nodes_.length; slot++) {
+
+      BddNode node = nodes_[slot];
+
+      if (node != null && node != TOMBSTONE && keys_[3 * slot] == index) {
+        nodes.add(node);
+      }
+    }
+    return nodes;
+  }
+
+  private static int capacityFor(int n) {
+    @Var int capacity = MIN_CAPACITY;
+    while (capacity < 2 * n) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  static int hash(int a, int b, int c) {
+    @Var int h = a * 0x9E3779B1;
+    h ^= b * 0x85EBCA77;
+    h ^= c * 0xC2B2AE3D;
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    return h;
+  }
+
+  private boolean matches(int slot, int index, int low, int high) {
+    return keys_[3 * slot] == index && keys_[3 * slot + 1] == low && keys_[3 * slot + 2] == high;
+  }
+
+  private void allocate(int capacity) {
+    keys_ = new int[3 * capacity];
+    nodes_ = new BddNode[capacity];
+    size_ = 0;
+    used_ = 0;
+  }
+
+  private void rehash(int capacity) {
+
+    int[] keys = keys_;
+    BddNode[] nodes = nodes_;
+
+    allocate(capacity);
+
+    for (int slot = 0; slot < nodes.length; slot++) {
+
+      BddNode node = nodes[slot];
+
+      if (node != null && node != TOMBSTONE) {
+        put(keys[3 * slot], keys[3 * slot + 1], keys[3 * slot + 2], node);
+      }
+    }
   }
 }
@@ -0,0 +1,294 @@
+package com.computablefacts.nona;
+
+import com.computablefacts.asterix.BoxedType;
+import com.computablefacts.nona.functions.booleanlogicoperators.And;
+import com.computablefacts.nona.functions.booleanlogicoperators.Or;
+import com.computablefacts.nona.functions.controlflowoperators.If;
+import com.computablefacts.nona.functions.controlflowoperators.Switch;
+import com.computablefacts.nona.functions.controlflowoperators.Which;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Function} compiled against a fixed set of definitions. Function names are resolved, the expression is
+ * validated and the bodies of the user-defined functions are compiled once and for all. Variables are bound by
+ * position and {@code IF}, {@code SWITCH}, {@code WHICH}, {@code AND} and {@code OR} only evaluate the parameters they
+ * need.
+ * <p>
+ * A compiled function is immutable and can be evaluated concurrently by several threads.
+ */
+@CheckReturnValue
+final public class CompiledFunction {
+
+  private static final BoxedType<?> DEFAULT_STATEMENT = Function.box("_");
+
+  private final List<String> variables_;
+  private final Node root_;
+
+  private CompiledFunction(List<String> variables, Node root) {
+    variables_ = variables;
+    root_ = root;
+  }
+
+  static CompiledFunction compile(Function function, Map<String, Function> definitions, List<String> variables) {
+
+    Preconditions.checkNotNull(function, "function should not be null");
+    Preconditions.checkNotNull(variables, "variables should not be null");
+
+    Map<String, Integer> scope = new HashMap<>();
+
+    for (int i = 0; i < variables.size(); i++) {
+      scope.putIfAbsent(Preconditions.checkNotNull(variables.get(i), "variables should not contain null"), i);
+    }
+
+    Node root = function.isValid() ? new Compiler(definitions).compile(function.head(), scope, true) : frame -> null;
+    return new CompiledFunction(ImmutableList.copyOf(variables), root);
+  }
+
+  /**
+   * The variables of the expression, in the order expected by {@link #evaluate(BoxedType[])}.
+   *
+   * @return the variable names.
+   */
+  public List<String> variables() {
+    return variables_;
+  }
+
+  /**
+   * Evaluate the expression. The i-th value is bound to the i-th variable. A missing or null value leaves the variable
+   * unbound i.e. it evaluates to its own name, as {@link Function#evaluate(Map, Map)} does.
+   *
+   * @param values the variable values.
+   * @return computed value.
+   */
+  public BoxedType<?> evaluate(BoxedType<?>... values) {
+
+    Preconditions.checkNotNull(values, "values should not be null");
+    Preconditions.checkArgument(values.length <= variables_.size(), "at most %s values expected : %s found",
+        variables_.size(), values.length);
+
+    return root_.evaluate(values.length == variables_.size() ? values : Arrays.copyOf(values, variables_.size()));
+  }
+
+  /**
+   * Evaluate the expression. Variables are bound by name.
+   *
+   * @param substitutions the variable values.
+   * @return computed value.
+   */
+  public BoxedType<?> evaluate(Map<String, BoxedType<?>> substitutions) {
+
+    BoxedType<?>[] frame = new BoxedType<?>[variables_.size()];
+
+    if (substitutions != null) {
+      for (int i = 0; i < frame.length; i++) {
+        frame[i] = substitutions.get(variables_.get(i));
+      }
+    }
+    return root_.evaluate(frame);
+  }
+
+  @FunctionalInterface
+  private interface Node {
+
+    BoxedType<?> evaluate(BoxedType<?>[] frame);
+  }
+
+  /**
+   * The compiled body of a user-defined function. The node is set once the body has been compiled, which allows
+   * recursive definitions.
+   */
+  private static final class Body {
+
+    private Node node_;
+  }
+
+  private static final class Compiler {
+
+    private final Map<String, Function> definitions_;
+    private final Map<Function, Body> bodies_ = new IdentityHashMap<>();
+
+    Compiler(Map<String, Function> definitions) {
+      definitions_ = definitions;
+    }
+
+    Node compile(Function.Atom atom, Map<String, Integer> scope, boolean isTopLevel) {
+
+      if (Strings.isNullOrEmpty(atom.name()) && !atom.parameters().isEmpty()) {
+        return frame -> null;
+      }
+
+      Function function = definitions_ == null ? null : definitions_.get(atom.name());
+
+      if (function == null) {
+
+        Integer slot = scope.get(atom.name());
+
+        if (slot == null) {
+          BoxedType<?> constant = Function.box(atom.name());
+          return frame -> constant;
+        }
+
+        int index = slot;
+
+        if (!isTopLevel) {
+          return frame -> frame[index];
+        }
+
+        BoxedType<?> unbound = Function.box(atom.name());
+
+        return frame -> {
+          BoxedType<?> value = frame[index];
+          return value == null ? unbound : value;
+        };
+      }
+
+      Node[] args = new Node[atom.arity()];
+
+      for (int i = 0; i < args.length; i++) {
+        args[i] = compile(atom.parameters().get(i).head(), scope, isTopLevel);
+      }
+
+      if (function.body() == null) {
+        return primitive(function, args);
+      }
+
+      Preconditions.checkState(atom.arity() == function.arity(),
+          "Mismatch between the head arity and the function definition: %s found vs %s expected", atom.arity(),
+          function.arity());
+
+      Body body = body(function);
+
+      return frame -> {
+
+        BoxedType<?>[] callee = new BoxedType<?>[args.length];
+
+        for (int i = 0; i < args.length; i++) {
+          callee[i] = args[i].evaluate(frame);
+        }
+        return body.node_.evaluate(callee);
+      };
+    }
+
+    private Body body(Function function) {
+
+      @Var Body body = bodies_.get(function);
+
+      if (body == null) {
+
+        body = new Body();
+        bodies_.put(function, body);
+
+        Map<String, Integer> scope = new HashMap<>();
+
+        for (int i = 0; i < function.arity(); i++) {
+          scope.put(function.parameters().get(i).evaluate(definitions_).asString(), i);
+        }
+
+        body.node_ = compile(function.body(), scope, false);
+      }
+      return body;
+    }
+
+    private Node primitive(Function function, Node[] args) {
+
+      Class<?> clazz = function.getClass();
+
+      if (clazz == If.class && args.length == 3) {
+        return frame -> {
+
+          BoxedType<?> condition = args[0].evaluate(frame);
+
+          Preconditions.checkArgument(condition.isBoolean(), "%s should be a boolean", condition);
+
+          return condition.asBool() ? args[1].evaluate(frame) : args[2].evaluate(frame);
+        };
+      }
+      if ((clazz == And.class || clazz == Or.class) && args.length >= 2) {
+
+        boolean isAnd = clazz == And.class;
+
+        return frame -> {
+          for (Node arg : args) {
+
+            BoxedType<?> parameter = arg.evaluate(frame);
+
+            Preconditions.checkArgument(parameter.isBoolean(), "%s should be a boolean", parameter);
+
+            if (parameter.asBool() != isAnd) {
+              return Function.box(!isAnd);
+            }
+          }
+          return Function.box(isAnd);
+        };
+      }
+      if (clazz == Switch.class && args.length >= 3 && (args.length - 1) % 2 == 0) {
+        return frame -> {
+
+          @Var int defaultOutput = -1;
+          BoxedType<?> input = args[0].evaluate(frame);
+
+          for (int i = 1; i < args.length; i += 2) {
+
+            BoxedType<?> statement = args[i].evaluate(frame);
+
+            if (statement.equals(input)) {
+              return args[i + 1].evaluate(frame);
+            }
+            if (statement.equals(DEFAULT_STATEMENT)) {
+              defaultOutput = i + 1;
+            }
+          }
+
+          Preconditions.checkState(defaultOutput >= 0, "Neither a valid nor a default statement has been found.");
+
+          return args[defaultOutput].evaluate(frame);
+        };
+      }
+      if (clazz == Which.class && args.length >= 2 && args.length % 2 == 0) {
+        return frame -> {
+
+          @Var int defaultOutput = -1;
+
+          for (int i = 0; i < args.length; i += 2) {
+
+            BoxedType<?> statement = args[i].evaluate(frame);
+
+            if (statement.equals(DEFAULT_STATEMENT)) {
+              defaultOutput = i + 1;
+            } else {
+
+              Preconditions.checkState(statement.isBoolean(), "%s should be a boolean", statement);
+
+              if (statement.asBool()) {
+                return args[i + 1].evaluate(frame);
+              }
+            }
+          }
+
+          Preconditions.checkState(defaultOutput >= 0, "Neither a valid nor a default statement has been found.");
+
+          return args[defaultOutput].evaluate(frame);
+        };
+      }
+      return frame -> {
+
+        List<BoxedType<?>> parameters = new ArrayList<>(args.length);
+
+        for (Node arg : args) {
+          parameters.add(arg.evaluate(frame));
+        }
+        return function.call(parameters);
+      };
+    }
+  }
+}
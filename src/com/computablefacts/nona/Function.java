@@ -60,7 +60,9 @@ import com.computablefacts.nona.functions.stringoperators.Hash;
 import com.computablefacts.nona.functions.stringoperators.IndexOf;
 import com.computablefacts.nona.functions.stringoperators.MatchDictionary;
 import com.computablefacts.nona.functions.stringoperators.MatchFuzzy;
+import com.computablefacts.nona.functions.stringoperators.MatchFuzzyDictionary;
 import com.computablefacts.nona.functions.stringoperators.MatchRegex;
+import com.computablefacts.nona.functions.stringoperators.MatchRegexSet;
 import com.computablefacts.nona.functions.stringoperators.MatchWildcard;
 import com.computablefacts.nona.functions.stringoperators.Snippet;
 import com.computablefacts.nona.functions.stringoperators.StartWith;
@@ -78,31 +80,29 @@ import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
+import com.google.common.cache.CacheStats;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.Var;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 @CheckReturnValue
 public class Function {
 
   private static final java.util.Base64.Decoder b64Decoder_ = java.util.Base64.getDecoder();
   private static final java.util.Base64.Encoder b64Encoder_ = java.util.Base64.getEncoder();
-  private static final Cache<String, BoxedType<?>> cache_ = CacheBuilder.newBuilder().recordStats().maximumSize(1000)
-      .expireAfterWrite(1, TimeUnit.HOURS).build();
-  private static final HashFunction MURMUR3_128 = Hashing.murmur3_128();
 
   private Atom head_;
   private Atom body_;
+  private volatile Memoization memoization_ = Memoization.defaults();
+  private volatile Cache<Key, BoxedType<?>> memo_;
 
   public Function(String expression) {
     parseFunction(Preconditions.checkNotNull(expression, "expression should not be null"));
@@ -196,7 +196,9 @@ public class Function {
     definitions.put("INDEX_OF", new IndexOf());
     definitions.put("MATCH_DICTIONARY", new MatchDictionary());
     definitions.put("MATCH_FUZZY", new MatchFuzzy());
+    definitions.put("MATCH_FUZZY_DICTIONARY", new MatchFuzzyDictionary());
     definitions.put("MATCH_REGEX", new MatchRegex());
+    definitions.put("MATCH_REGEX_SET", new MatchRegexSet());
     definitions.put("MATCH_WILDCARD", new MatchWildcard());
     definitions.put("SNIPPET", new Snippet());
     definitions.put("START_WITH", new StartWith());
@@ -274,6 +276,32 @@ public class Function {
     return head_.arity();
   }
 
+  /**
+   * Set how the results of the current function are memoized. The results memoized so far are discarded.
+   *
+   * @param memoization the memoization settings.
+   */
+  public synchronized void memoize(Memoization memoization) {
+    memoization_ = Preconditions.checkNotNull(memoization, "memoization should not be null");
+    memo_ = null;
+  }
+
+  @Generated
+  public Memoization memoization() {
+    return memoization_;
+  }
+
+  /**
+   * Returns the hit, miss and eviction counts of the memoized results since the last call to
+   * {@link #memoize(Memoization)}.
+   *
+   * @return the memoization statistics.
+   */
+  public CacheStats memoizationStats() {
+    Cache<Key, BoxedType<?>> memo = memo_;
+    return memo == null ? new CacheStats(0, 0, 0, 0, 0, 0) : memo.stats();
+  }
+
   public boolean isValid() {
     if (!Strings.isNullOrEmpty(head_.name())) {
       for (Function fn : head_.parameters()) {
@@ -301,6 +329,28 @@ public class Function {
     return false;
   }
 
+  /**
+   * Compile the current expression against a set of definitions. See {@link CompiledFunction} for details.
+   *
+   * @param definitions functions definitions.
+   * @return a compiled function.
+   */
+  public CompiledFunction compile(Map<String, Function> definitions) {
+    return compile(definitions, new ArrayList<>());
+  }
+
+  /**
+   * Compile the current expression against a set of definitions. The names in {@code variables} are bound at
+   * evaluation time, either by name or by position.
+   *
+   * @param definitions functions definitions.
+   * @param variables   the variables of the expression.
+   * @return a compiled function.
+   */
+  public CompiledFunction compile(Map<String, Function> definitions, List<String> variables) {
+    return CompiledFunction.compile(this, definitions, variables);
+  }
+
   public BoxedType evaluate() {
     return evaluate(null, null);
   }
@@ -366,6 +416,14 @@ public class Function {
     return true;
   }
 
+  Atom head() {
+    return head_;
+  }
+
+  Atom body() {
+    return body_;
+  }
+
   private void parseFunction(String expression) {
 
     int indexBody = expression.indexOf(":=");
@@ -450,26 +508,129 @@ public class Function {
       parameters.add(fn.evaluate(definitions, substitutions));
     }
 
-    Function function = definitions.get(atom.name());
+    return definitions.get(atom.name()).call(parameters);
+  }
+
+  /**
+   * Execute the current function and memoize its result if the function is cacheable.
+   *
+   * @param parameters the function parameters.
+   * @return computed value.
+   */
+  BoxedType<?> call(List<BoxedType<?>> parameters) {
 
-    if (!function.isCacheable()) {
-      return function.evaluate(parameters);
+    if (!isCacheable()) {
+      return evaluate(parameters);
     }
 
+    Cache<Key, BoxedType<?>> memo = memo();
+    Key key = memo == null ? null : Key.of(parameters, memoization_.maxArgumentLength());
+
+    if (key == null) {
+      try {
+        return evaluate(parameters);
+      } catch (RuntimeException e) {
+        throw new UncheckedExecutionException(e); // Report errors the same way, whether the call is memoized or not
+      }
+    }
     try {
-      Hasher hasher = MURMUR3_128.newHasher();
-      hasher.putString(atom.name(), StandardCharsets.UTF_8);
-      hasher.putInt(atom.arity());
-      hasher.putInt(parameters.size());
-      parameters.forEach(bt -> hasher.putString(Strings.nullToEmpty(bt.asString()), StandardCharsets.UTF_8));
-      String key = hasher.hash().toString();
-      return cache_.get(key, () -> function.evaluate(parameters));
+      return memo.get(key, () -> evaluate(parameters));
     } catch (ExecutionException e) {
       // TODO
     }
     return null;
   }
 
+  private Cache<Key, BoxedType<?>> memo() {
+
+    @Var Cache<Key, BoxedType<?>> memo = memo_;
+
+    if (memo == null && memoization_.isEnabled()) {
+      synchronized (this) {
+        memo = memo_;
+        if (memo == null && memoization_.isEnabled()) {
+          memo = memoization_.build((key, value) -> Ints.saturatedCast(key.weight_ + weight(value)));
+          memo_ = memo;
+        }
+      }
+    }
+    return memo;
+  }
+
+  private static long weight(BoxedType<?> bt) {
+    if (bt == null) {
+      return 1;
+    }
+    if (bt.isString()) {
+      return bt.asString().length();
+    }
+    if (bt.isCollection()) {
+      return bt.asCollection().size();
+    }
+    if (bt.isMap()) {
+      return bt.asMap().size();
+    }
+    return 1;
+  }
+
+  /**
+   * The parameters of a memoized call. The hash is computed once and only scalar parameters are allowed.
+   */
+  private static final class Key {
+
+    private final Object[] values_;
+    private final int hash_;
+    private final long weight_;
+
+    private Key(Object[] values, long weight) {
+      values_ = values;
+      hash_ = Arrays.hashCode(values);
+      weight_ = weight;
+    }
+
+    static Key of(List<BoxedType<?>> parameters, int maxArgumentLength) {
+
+      Object[] values = new Object[parameters.size()];
+      @Var long weight = 0;
+
+      for (int i = 0; i < values.length; i++) {
+
+        BoxedType<?> bt = parameters.get(i);
+        Object value = bt == null ? null : bt.value();
+
+        if (value instanceof String) {
+          if (((String) value).length() > maxArgumentLength) {
+            return null;
+          }
+        } else if (value != null && !(value instanceof Number) && !(value instanceof Boolean)
+            && !(value instanceof Date)) {
+          return null;
+        }
+
+        values[i] = value;
+        weight += weight(bt);
+      }
+      return new Key(values, weight);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) obj;
+      return hash_ == key.hash_ && Arrays.equals(values_, key.values_);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash_;
+    }
+  }
+
   final static class Atom {
 
     private final String name_;
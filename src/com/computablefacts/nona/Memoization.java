@@ -0,0 +1,171 @@
+package com.computablefacts.nona;
+
+import com.computablefacts.Generated;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the results of a cacheable {@link Function} are memoized. A memoization is either disabled or bounded by a
+ * number of entries or by a total weight. The weight of an entry is roughly the number of characters held by its
+ * parameters and its result. Entries can also expire after a given time.
+ * <p>
+ * Calls with a parameter longer than {@link #maxArgumentLength()} characters, or with a collection or a map as a
+ * parameter, are never memoized : hashing them would cost about as much as the call itself.
+ */
+@CheckReturnValue
+final public class Memoization {
+
+  private static final int DEFAULT_MAX_ARGUMENT_LENGTH = 1024;
+  private static final Memoization DISABLED = new Memoization(0, -1, -1, -1, 0);
+  private static final Memoization DEFAULT = ofMaximumSize(1000).expireAfterWrite(1, TimeUnit.HOURS);
+
+  private final long maximumSize_; // -1 if the memoization is bounded by weight
+  private final long maximumWeight_; // -1 if the memoization is bounded by size
+  private final long expireAfterWriteInMs_; // -1 if entries do not expire
+  private final long expireAfterAccessInMs_; // -1 if entries do not expire
+  private final int maxArgumentLength_;
+
+  private Memoization(long maximumSize, long maximumWeight, long expireAfterWriteInMs, long expireAfterAccessInMs,
+      int maxArgumentLength) {
+    maximumSize_ = maximumSize;
+    maximumWeight_ = maximumWeight;
+    expireAfterWriteInMs_ = expireAfterWriteInMs;
+    expireAfterAccessInMs_ = expireAfterAccessInMs;
+    maxArgumentLength_ = maxArgumentLength;
+  }
+
+  /**
+   * The memoization used by the functions that have not been configured : at most 1000 entries, kept for at most one
+   * hour.
+   *
+   * @return the default memoization.
+   */
+  public static Memoization defaults() {
+    return DEFAULT;
+  }
+
+  /**
+   * Do not memoize anything.
+   *
+   * @return a disabled memoization.
+   */
+  public static Memoization disabled() {
+    return DISABLED;
+  }
+
+  /**
+   * Memoize at most {@code maximumSize} results.
+   *
+   * @param maximumSize the maximum number of entries.
+   * @return a memoization bounded by size.
+   */
+  public static Memoization ofMaximumSize(long maximumSize) {
+
+    Preconditions.checkArgument(maximumSize >= 0, "maximumSize must be >= 0");
+
+    return new Memoization(maximumSize, -1, -1, -1, DEFAULT_MAX_ARGUMENT_LENGTH);
+  }
+
+  /**
+   * Memoize results until the total weight of the entries reaches {@code maximumWeight}.
+   *
+   * @param maximumWeight the maximum total weight, roughly a number of characters.
+   * @return a memoization bounded by weight.
+   */
+  public static Memoization ofMaximumWeight(long maximumWeight) {
+
+    Preconditions.checkArgument(maximumWeight >= 0, "maximumWeight must be >= 0");
+
+    return new Memoization(-1, maximumWeight, -1, -1, DEFAULT_MAX_ARGUMENT_LENGTH);
+  }
+
+  /**
+   * Evict the entries a given time after they have been created.
+   *
+   * @param duration the time to live.
+   * @param unit     the unit of {@code duration}.
+   * @return a new memoization.
+   */
+  public Memoization expireAfterWrite(long duration, TimeUnit unit) {
+
+    Preconditions.checkArgument(duration >= 0, "duration must be >= 0");
+    Preconditions.checkNotNull(unit, "unit should not be null");
+
+    return new Memoization(maximumSize_, maximumWeight_, unit.toMillis(duration), expireAfterAccessInMs_,
+        maxArgumentLength_);
+  }
+
+  /**
+   * Evict the entries a given time after they have last been read or created.
+   *
+   * @param duration the time to idle.
+   * @param unit     the unit of {@code duration}.
+   * @return a new memoization.
+   */
+  public Memoization expireAfterAccess(long duration, TimeUnit unit) {
+
+    Preconditions.checkArgument(duration >= 0, "duration must be >= 0");
+    Preconditions.checkNotNull(unit, "unit should not be null");
+
+    return new Memoization(maximumSize_, maximumWeight_, expireAfterWriteInMs_, unit.toMillis(duration),
+        maxArgumentLength_);
+  }
+
+  /**
+   * Do not memoize the calls with a string parameter longer than {@code maxArgumentLength} characters.
+   *
+   * @param maxArgumentLength the maximum number of characters of a parameter.
+   * @return a new memoization.
+   */
+  public Memoization maxArgumentLength(int maxArgumentLength) {
+
+    Preconditions.checkArgument(maxArgumentLength >= 0, "maxArgumentLength must be >= 0");
+
+    return new Memoization(maximumSize_, maximumWeight_, expireAfterWriteInMs_, expireAfterAccessInMs_,
+        maxArgumentLength);
+  }
+
+  @Generated
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("maximum_size", maximumSize_).add("maximum_weight", maximumWeight_)
+        .add("expire_after_write_in_ms", expireAfterWriteInMs_)
+        .add("expire_after_access_in_ms", expireAfterAccessInMs_).add("max_argument_length", maxArgumentLength_)
+        .toString();
+  }
+
+  public boolean isEnabled() {
+    return maximumSize_ != 0 && maximumWeight_ != 0;
+  }
+
+  @Generated
+  public int maxArgumentLength() {
+    return maxArgumentLength_;
+  }
+
+  <K, V> Cache<K, V> build(Weigher<K, V> weigher) {
+
+    Preconditions.checkState(isEnabled(), "the memoization is disabled");
+
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+
+    if (maximumSize_ > 0) {
+      builder.maximumSize(maximumSize_);
+    }
+    if (expireAfterWriteInMs_ >= 0) {
+      builder.expireAfterWrite(expireAfterWriteInMs_, TimeUnit.MILLISECONDS);
+    }
+    if (expireAfterAccessInMs_ >= 0) {
+      builder.expireAfterAccess(expireAfterAccessInMs_, TimeUnit.MILLISECONDS);
+    }
+    if (maximumWeight_ > 0) {
+      return builder.maximumWeight(maximumWeight_).weigher(weigher).build();
+    }
+    return builder.build();
+  }
+}
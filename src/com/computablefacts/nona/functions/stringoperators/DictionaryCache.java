@@ -0,0 +1,115 @@
+package com.computablefacts.nona.functions.stringoperators;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A cache of structures built from dictionary files. The cache is bounded by the total weight of the structures, not by
+ * their number. A structure is rebuilt when the size or the modification time of its file changes. Files are checked at
+ * most once per second.
+ *
+ * @param <T> the type of structure built from a dictionary file.
+ */
+@CheckReturnValue
+final class DictionaryCache<T> {
+
+  private static final long CHECK_INTERVAL_IN_MS = 1000;
+
+  private final Cache<String, Entry<T>> cache_;
+  private final Function<File, T> loader_;
+
+  DictionaryCache(long maxWeight, ToIntFunction<T> weigher, Function<File, T> loader) {
+    cache_ = CacheBuilder.newBuilder().recordStats().maximumWeight(maxWeight)
+        .weigher((String file, Entry<T> entry) -> weigher.applyAsInt(entry.value_))
+        .expireAfterAccess(30, TimeUnit.MINUTES).build();
+    loader_ = loader;
+  }
+
+  /**
+   * Read a dictionary file (1 row = 1 entry). Rows are trimmed.
+   *
+   * @param file the dictionary file.
+   * @return the dictionary entries.
+   */
+  static List<String> entries(File file) throws IOException {
+
+    List<String> entries = new ArrayList<>();
+
+    try (BufferedReader br = Files.newBufferedReader(file.toPath(), UTF_8)) {
+
+      @Var String entry;
+
+      while ((entry = br.readLine()) != null) {
+        entries.add(entry.trim());
+      }
+    }
+    return entries;
+  }
+
+  T get(String file) {
+    try {
+      Entry<T> entry = cache_.get(file, () -> new Entry<>(new File(file), loader_));
+
+      if (!entry.isStale()) {
+        return entry.value_;
+      }
+
+      cache_.asMap().remove(file, entry);
+      return cache_.get(file, () -> new Entry<>(new File(file), loader_)).value_;
+    } catch (ExecutionException e) {
+      throw new UncheckedExecutionException(e.getCause());
+    }
+  }
+
+  /**
+   * A structure and the state of the file it has been built from.
+   */
+  private static final class Entry<T> {
+
+    private final File file_;
+    private final long lastModified_;
+    private final long length_;
+    private final T value_;
+    private volatile long lastCheck_;
+
+    Entry(File file, Function<File, T> loader) {
+      file_ = file;
+      lastModified_ = file.lastModified();
+      length_ = file.length();
+      value_ = loader.apply(file);
+      lastCheck_ = System.currentTimeMillis();
+    }
+
+    /**
+     * Check, at most once per {@link #CHECK_INTERVAL_IN_MS}, if the file has changed since the structure was built.
+     *
+     * @return true iif the structure must be rebuilt.
+     */
+    boolean isStale() {
+
+      long now = System.currentTimeMillis();
+
+      if (now - lastCheck_ < CHECK_INTERVAL_IN_MS) {
+        return false;
+      }
+
+      lastCheck_ = now;
+      return file_.lastModified() != lastModified_ || file_.length() != length_;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package com.computablefacts.nona.functions.stringoperators;
+
+import com.computablefacts.asterix.nlp.Span;
+import com.computablefacts.asterix.nlp.SpanSequence;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import me.xdrop.fuzzywuzzy.FuzzySearch;
+
+/**
+ * An index over the entries of a dictionary that finds the entries similar to a text without scoring the whole
+ * dictionary. Entries are scored using {@link FuzzySearch#ratio(String, String)}, the "simple" algorithm of
+ * {@link MatchFuzzy}.
+ * <p>
+ * The simple ratio of two strings a and b is {@code (|a| + |b| - d) / (|a| + |b|)} where d is the number of insertions
+ * and deletions needed to turn a into b. Hence, a minimum score bounds d, which in turn bounds :
+ * <ul>
+ * <li>the length of the candidates : {@code ||a| - |b|| <= d} ;</li>
+ * <li>the number of bigrams shared by the text and the candidates : {@code common >= max(|a|, |b|) - 1 - 2 * d}.</li>
+ * </ul>
+ * Both filters are lossless. Only the entries sharing enough bigrams with the text are scored, using an inverted index
+ * from bigrams to entries. Entries too short for the bigram filter to be meaningful are scored as long as their length
+ * is compatible with the minimum score.
+ * <p>
+ * An index is immutable and thread-safe.
+ */
+@CheckReturnValue
+final class FuzzyDictionary {
+
+  private final String[] entries_;
+  private final TreeMap<Integer, int[]> lengths_; // the entries, by length
+  private final Map<Integer, int[]> postings_; // the (entry, count) pairs, by bigram
+  private final int sizeInBytes_;
+
+  private FuzzyDictionary(String[] entries, TreeMap<Integer, int[]> lengths, Map<Integer, int[]> postings,
+      int sizeInBytes) {
+    entries_ = entries;
+    lengths_ = lengths;
+    postings_ = postings;
+    sizeInBytes_ = sizeInBytes;
+  }
+
+  /**
+   * Index a list of entries. Duplicate and empty entries are ignored.
+   *
+   * @param entries the entries.
+   * @return an index.
+   */
+  static FuzzyDictionary build(Iterable<String> entries) {
+
+    Preconditions.checkNotNull(entries, "entries should not be null");
+
+    Set<String> set = new LinkedHashSet<>();
+
+    for (String entry : entries) {
+      if (!Strings.isNullOrEmpty(entry)) {
+        set.add(entry);
+      }
+    }
+
+    String[] array = set.toArray(new String[0]);
+    Map<Integer, List<Integer>> lengths = new HashMap<>();
+    Map<Integer, int[]> postings = new HashMap<>();
+    Map<Integer, Integer> sizes = new HashMap<>();
+    @Var long sizeInBytes = 0;
+
+    for (int id = 0; id < array.length; id++) {
+
+      lengths.computeIfAbsent(array[id].length(), length -> new ArrayList<>()).add(id);
+      sizeInBytes += 2L * array[id].length() + 48;
+
+      for (Map.Entry<Integer, Integer> bigram : bigrams(array[id]).entrySet()) {
+
+        @Var int[] posting = postings.get(bigram.getKey());
+        int size = sizes.getOrDefault(bigram.getKey(), 0);
+
+        if (posting == null) {
+          posting = new int[4];
+          postings.put(bigram.getKey(), posting);
+        } else if (size == posting.length) {
+          posting = Arrays.copyOf(posting, 2 * size);
+          postings.put(bigram.getKey(), posting);
+        }
+
+        posting[size] = id;
+        posting[size + 1] = bigram.getValue();
+        sizes.put(bigram.getKey(), size + 2);
+      }
+    }
+
+    for (Map.Entry<Integer, int[]> posting : postings.entrySet()) {
+      posting.setValue(Arrays.copyOf(posting.getValue(), sizes.get(posting.getKey())));
+      sizeInBytes += 4L * posting.getValue().length + 48;
+    }
+
+    TreeMap<Integer, int[]> byLength = new TreeMap<>();
+    lengths.forEach((length, ids) -> byLength.put(length, ids.stream().mapToInt(Integer::intValue).toArray()));
+
+    return new FuzzyDictionary(array, byLength, postings, (int) Math.min(sizeInBytes, Integer.MAX_VALUE));
+  }
+
+  private static Map<Integer, Integer> bigrams(String text) {
+
+    Map<Integer, Integer> bigrams = new HashMap<>();
+
+    for (int i = 0; i + 1 < text.length(); i++) {
+      bigrams.merge((text.charAt(i) << 16) | text.charAt(i + 1), 1, Integer::sum);
+    }
+    return bigrams;
+  }
+
+  /**
+   * The maximum number of insertions and deletions between two strings whose lengths sum to {@code lensum} for them to
+   * reach a given score (scores are rounded to the nearest integer).
+   */
+  private static int maxDistance(int lensum, int minScore) {
+    return (int) Math.floor(lensum * (100.5 - minScore) / 100.0 + 1e-9);
+  }
+
+  /**
+   * Returns the number of entries.
+   *
+   * @return the number of entries.
+   */
+  int size() {
+    return entries_.length;
+  }
+
+  /**
+   * Returns an estimate of the memory used by the index.
+   *
+   * @return the size in bytes.
+   */
+  int sizeInBytes() {
+    return sizeInBytes_;
+  }
+
+  /**
+   * Find the entries most similar to a text.
+   *
+   * @param text     the text.
+   * @param minScore the minimum score, between 0 and 100.
+   * @param k        the maximum number of entries to return.
+   * @return the k best entries with a score greater than or equal to {@code minScore}, sorted by decreasing score. Each
+   * span covers a whole entry and has a {@code score} feature.
+   */
+  SpanSequence find(String text, int minScore, int k) {
+
+    Preconditions.checkNotNull(text, "text should not be null");
+    Preconditions.checkArgument(minScore >= 0 && minScore <= 100, "minScore must be between 0 and 100 : %s", minScore);
+    Preconditions.checkArgument(k > 0, "k must be > 0 : %s", k);
+
+    int length = text.length();
+
+    // Count the bigrams shared by the text and each entry
+    Map<Integer, Integer> common = new HashMap<>();
+
+    for (Map.Entry<Integer, Integer> bigram : bigrams(text).entrySet()) {
+
+      int[] posting = postings_.get(bigram.getKey());
+
+      if (posting != null) {
+        for (int i = 0; i < posting.length; i += 2) {
+          common.merge(posting[i], Math.min(posting[i + 1], bigram.getValue()), Integer::sum);
+        }
+      }
+    }
+
+    List<int[]> matches = new ArrayList<>();
+
+    // Score the entries sharing enough bigrams with the text
+    for (Map.Entry<Integer, Integer> entry : common.entrySet()) {
+
+      int id = entry.getKey();
+      int lengthEntry = entries_[id].length();
+      int maxDistance = maxDistance(length + lengthEntry, minScore);
+      int minCommon = Math.max(length, lengthEntry) - 1 - 2 * maxDistance;
+
+      if (minCommon > 0 && entry.getValue() >= minCommon && Math.abs(length - lengthEntry) <= maxDistance) {
+        score(text, id, minScore, matches);
+      }
+    }
+
+    // Score the entries for which the bigram filter is not selective, whether they share bigrams with the text or not
+    for (Map.Entry<Integer, int[]> entry : lengths_.entrySet()) {
+
+      int lengthEntry = entry.getKey();
+      int maxDistance = maxDistance(length + lengthEntry, minScore);
+      int minCommon = Math.max(length, lengthEntry) - 1 - 2 * maxDistance;
+
+      if (minCommon <= 0 && Math.abs(length - lengthEntry) <= maxDistance) {
+        for (int id : entry.getValue()) {
+          score(text, id, minScore, matches);
+        }
+      }
+    }
+
+    matches.sort((m1, m2) -> m1[1] != m2[1] ? m2[1] - m1[1] : m1[0] - m2[0]);
+
+    SpanSequence sequence = new SpanSequence();
+
+    for (int i = 0; i < Math.min(k, matches.size()); i++) {
+
+      String entry = entries_[matches.get(i)[0]];
+      Span span = new Span(entry, 0, entry.length());
+      span.setFeature(MatchFuzzyDictionary.FEATURE_SCORE, Integer.toString(matches.get(i)[1]));
+
+      sequence.add(span);
+    }
+    return sequence;
+  }
+
+  private void score(String text, int id, int minScore, List<int[]> matches) {
+
+    int score = FuzzySearch.ratio(text, entries_[id]);
+
+    if (score >= minScore) {
+      matches.add(new int[]{id, score});
+    }
+  }
+}
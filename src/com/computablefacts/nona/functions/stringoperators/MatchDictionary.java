@@ -1,59 +1,113 @@
 package com.computablefacts.nona.functions.stringoperators;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import com.computablefacts.asterix.BoxedType;
-import com.computablefacts.asterix.nlp.Span;
-import com.computablefacts.asterix.nlp.SpanSequence;
+import com.computablefacts.asterix.nlp.DictionaryAutomaton;
 import com.computablefacts.nona.Function;
 import com.computablefacts.nona.eCategory;
 import com.google.common.base.Preconditions;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.errorprone.annotations.CheckReturnValue;
-import com.google.errorprone.annotations.Var;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.Collection;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-import javax.validation.constraints.NotNull;
-import org.ahocorasick.trie.Emit;
-import org.ahocorasick.trie.Trie;
 
+/**
+ * Extract from a text all the words found in a dictionary file (1 row = 1 word).
+ * <p>
+ * The dictionary is compiled once into a {@link DictionaryAutomaton} that is written next to it, in a file with the
+ * {@link #EXTENSION} extension. Afterwards, the automaton is memory-mapped instead of being rebuilt, so it is shared by
+ * all the threads and processes using the same dictionary. The automaton records the length and the modification time
+ * of the dictionary it has been built from : it is rebuilt as soon as they differ from the dictionary file ones.
+ * A precompiled automaton can also be used directly in place of the dictionary file.
+ * <p>
+ * The automata in use are cached. The cache is bounded by the total size of the automata, not by their number. A
+ * dictionary file is checked at most once per second.
+ */
 @CheckReturnValue
 public class MatchDictionary extends Function {
 
-  private static final LoadingCache<String, Trie> cache_ = CacheBuilder.newBuilder().recordStats().maximumSize(10)
-      .expireAfterWrite(30, TimeUnit.MINUTES).build(new CacheLoader<String, Trie>() {
+  public static final String EXTENSION = ".acd";
+
+  private static final long MAX_WEIGHT_IN_BYTES = 512L * 1024 * 1024;
+  private static final DictionaryCache<DictionaryAutomaton> cache_ = new DictionaryCache<>(MAX_WEIGHT_IN_BYTES,
+      DictionaryAutomaton::sizeInBytes, MatchDictionary::load);
+
+  public MatchDictionary() {
+    super(eCategory.STRING_OPERATORS, "MATCH_DICTIONARY",
+        "MATCH_DICTIONARY(file, x) extract from string x all words found in a dictionary file (1 row = 1 word).");
+  }
+
+  /**
+   * Compile a dictionary file (1 row = 1 word) into an automaton file that can be later memory-mapped.
+   *
+   * @param dictionary the dictionary file.
+   * @param automaton  the automaton file.
+   */
+  public static void precompile(File dictionary, File automaton) throws IOException {
+
+    Preconditions.checkNotNull(dictionary, "dictionary should not be null");
+    Preconditions.checkNotNull(automaton, "automaton should not be null");
+
+    // Write the automaton to a temporary file first so other processes never map a partially written file
+    Path tmp = Files.createTempFile(automaton.getAbsoluteFile().getParentFile().toPath(), automaton.getName(), ".tmp");
+
+    try {
+      build(dictionary).writeTo(tmp.toFile());
+      Files.move(tmp, automaton.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
 
-        @Override
-        public Trie load(@NotNull String file) {
+  private static DictionaryAutomaton build(File dictionary) throws IOException {
 
-          // See https://github.com/robert-bor/aho-corasick for details
-          Trie.TrieBuilder builder = Trie.builder().ignoreCase().ignoreOverlaps().onlyWholeWords();
+    // Read the file state first : if the file changes while being read, the automaton will look stale and be rebuilt
+    long length = dictionary.length();
+    long lastModified = dictionary.lastModified();
 
-          try (BufferedReader br = Files.newBufferedReader(Paths.get(file), UTF_8)) {
+    return DictionaryAutomaton.build(DictionaryCache.entries(dictionary), length, lastModified);
+  }
 
-            @Var String keyword;
+  private static boolean isUpToDate(DictionaryAutomaton automaton, File dictionary) {
+    return automaton.sourceLength() == dictionary.length() && automaton.sourceLastModified() == dictionary.lastModified();
+  }
 
-            while ((keyword = br.readLine()) != null) {
-              builder.addKeyword(keyword.trim());
-            }
-          } catch (IOException e) {
-            // TODO
+  private static DictionaryAutomaton load(File file) {
+    try {
+      if (file.getName().endsWith(EXTENSION)) {
+        return DictionaryAutomaton.mapFrom(file);
+      }
+
+      File automaton = new File(file.getPath() + EXTENSION);
+
+      if (automaton.exists()) {
+        try {
+          DictionaryAutomaton mapped = DictionaryAutomaton.mapFrom(automaton);
+
+          if (isUpToDate(mapped, file)) {
+            return mapped;
           }
-          return builder.build();
+        } catch (IllegalStateException e) {
+          // The automaton is corrupted or has been written by another version : rebuild it
         }
-      });
+      }
+      try {
+        precompile(file, automaton);
+      } catch (IOException e) {
+        return build(file); // The automaton cannot be written next to the dictionary : keep it on-heap
+      }
+      return DictionaryAutomaton.mapFrom(automaton);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
 
-  public MatchDictionary() {
-    super(eCategory.STRING_OPERATORS, "MATCH_DICTIONARY",
-        "MATCH_DICTIONARY(file, x) extract from string x all words found in a dictionary file (1 row = 1 word).");
+  @Override
+  protected boolean isCacheable() {
+    return false; // The dictionary file may change
   }
 
   @Override
@@ -68,14 +122,6 @@ public class MatchDictionary extends Function {
     Preconditions.checkNotNull(text, "text should not be null");
     Preconditions.checkArgument(new File(file).exists(), "%s does not exist", file);
 
-    Trie trie = cache_.getUnchecked(file);
-    Collection<Emit> emits = trie.parseText(text);
-    SpanSequence sequence = new SpanSequence();
-
-    for (Emit emit : emits) {
-      Span span = new Span(text, emit.getStart(), emit.getEnd() + 1);
-      sequence.add(span);
-    }
-    return box(sequence);
+    return box(cache_.get(file).match(text));
   }
 }
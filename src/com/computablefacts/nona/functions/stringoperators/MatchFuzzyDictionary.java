@@ -0,0 +1,67 @@
+package com.computablefacts.nona.functions.stringoperators;
+
+import com.computablefacts.asterix.BoxedType;
+import com.computablefacts.nona.Function;
+import com.computablefacts.nona.eCategory;
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Find the entries of a dictionary file (1 row = 1 entry) most similar to a text, using the "simple" algorithm of
+ * {@link MatchFuzzy}. The dictionary is indexed once, so a lookup only scores the few entries that may reach the
+ * minimum score instead of the whole dictionary (see {@link FuzzyDictionary}).
+ * <p>
+ * The indexes in use are cached. The cache is bounded by the total size of the indexes, not by their number. A
+ * dictionary file is checked at most once per second.
+ */
+@CheckReturnValue
+public class MatchFuzzyDictionary extends Function {
+
+  public static final String FEATURE_SCORE = "score";
+
+  private static final long MAX_WEIGHT_IN_BYTES = 512L * 1024 * 1024;
+  private static final DictionaryCache<FuzzyDictionary> cache_ = new DictionaryCache<>(MAX_WEIGHT_IN_BYTES,
+      FuzzyDictionary::sizeInBytes, MatchFuzzyDictionary::load);
+
+  public MatchFuzzyDictionary() {
+    super(eCategory.STRING_OPERATORS, "MATCH_FUZZY_DICTIONARY",
+        "MATCH_FUZZY_DICTIONARY(file, m, k, x) returns the (at most) k entries of a dictionary file (1 row = 1 entry) that match x with a score greater than or equal to m using the \"simple\" algorithm, best first. "
+            + "m must be an integer between 0 and 100. k must be an integer greater than 0.");
+  }
+
+  private static FuzzyDictionary load(File file) {
+    try {
+      return FuzzyDictionary.build(DictionaryCache.entries(file));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  protected boolean isCacheable() {
+    return false; // The dictionary file may change
+  }
+
+  @Override
+  public BoxedType<?> evaluate(List<BoxedType<?>> parameters) {
+
+    Preconditions.checkArgument(parameters.size() == 4, "MATCH_FUZZY_DICTIONARY takes exactly four parameters.");
+    Preconditions.checkArgument(parameters.get(0).isString(), "%s should be a string", parameters.get(0));
+    Preconditions.checkArgument(parameters.get(1).isNumber(), "%s should be a number", parameters.get(1));
+    Preconditions.checkArgument(parameters.get(2).isNumber(), "%s should be a number", parameters.get(2));
+    Preconditions.checkArgument(parameters.get(3).isString(), "%s should be a string", parameters.get(3));
+
+    String file = parameters.get(0).asString();
+    int minScore = parameters.get(1).asInt();
+    int k = parameters.get(2).asInt();
+    String text = parameters.get(3).asString();
+
+    Preconditions.checkArgument(new File(file).exists(), "%s does not exist", file);
+
+    return box(cache_.get(file).find(text, minScore, k));
+  }
+}
@@ -50,24 +50,9 @@ public class MatchRegex extends Function {
 
     while (matcher.find()) {
 
-      int start = matcher.start();
-      int end = matcher.end();
-      String str = text.substring(start, end);
+      Span span = span(text, matcher.start(), matcher.end());
 
-      @Var int i = 0;
-      while (i < str.length() && isWhitespace(str.charAt(i))) { // Trim left
-        i++;
-      }
-
-      @Var int j = str.length() - 1;
-      while (j >= 0 && isWhitespace(str.charAt(j))) { // Trim right
-        j--;
-      }
-      j++;
-
-      if (i <= j) { // Take non-breaking spaces into account
-
-        Span span = new Span(text, start + i, end - (str.length() - j));
+      if (span != null) {
 
         for (int k = 1; k < matcher.groupCount() + 1; k++) {
           span.setGroup(k, matcher.group(k));
@@ -79,13 +64,35 @@ public class MatchRegex extends Function {
     return box(sequence);
   }
 
+  /**
+   * Build the span of a match, trimmed of its leading and trailing whitespaces.
+   *
+   * @param text  the matched text.
+   * @param start the match start.
+   * @param end   the match end.
+   * @return a span or null if the match is made of whitespaces only.
+   */
+  static Span span(String text, int start, int end) {
+
+    @Var int i = start;
+    while (i < end && isWhitespace(text.charAt(i))) { // Trim left
+      i++;
+    }
+
+    @Var int j = end;
+    while (j > i && isWhitespace(text.charAt(j - 1))) { // Trim right
+      j--;
+    }
+    return i < j || start == end ? new Span(text, i, j) : null; // Take non-breaking spaces into account
+  }
+
   /**
    * Check if a character is a whitespace. This method takes into account Unicode space characters.
    *
    * @param c character as a unicode code point.
    * @return true if c is a space character.
    */
-  private boolean isWhitespace(int c) {
+  private static boolean isWhitespace(int c) {
     return Character.isWhitespace(c) || Character.isSpaceChar(c);
   }
 }
@@ -0,0 +1,168 @@
+package com.computablefacts.nona.functions.stringoperators;
+
+import com.computablefacts.asterix.BoxedType;
+import com.computablefacts.asterix.nlp.Span;
+import com.computablefacts.asterix.nlp.SpanSequence;
+import com.computablefacts.nona.Function;
+import com.computablefacts.nona.eCategory;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import com.google.re2j.Matcher;
+import com.google.re2j.Pattern;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Match several regular expressions in a single pass over a text. The regular expressions are combined into a single
+ * RE2 alternation, so the matching time is linear in the length of the text, whatever the number of regular
+ * expressions.
+ * <p>
+ * As with any alternation, matches do not overlap : the leftmost match wins and, at a given position, the first
+ * regular expression that matches wins. Hence, unlike n calls to {@link MatchRegex}, a match overlapping a reported
+ * one is never reported. Each span has a {@code pattern} feature holding the index of the regular expression that
+ * matched, starting at 0, and the groups of this regular expression. Each span also has a {@code patterns} feature
+ * listing, in increasing order, the indices of all the regular expressions matching at the span position. Computing
+ * it costs at most one additional pass over the text per regular expression.
+ */
+@CheckReturnValue
+public class MatchRegexSet extends Function {
+
+  public static final String FEATURE_PATTERN = "pattern";
+  public static final String FEATURE_PATTERNS = "patterns";
+
+  private static final LoadingCache<List<String>, RegexSet> cache_ = CacheBuilder.newBuilder().recordStats()
+      .maximumSize(100).expireAfterWrite(1, TimeUnit.HOURS).build(new CacheLoader<List<String>, RegexSet>() {
+
+        @Override
+        public RegexSet load(List<String> key) {
+          return new RegexSet(key);
+        }
+      });
+
+  public MatchRegexSet() {
+    super(eCategory.STRING_OPERATORS, "MATCH_REGEX_SET",
+        "MATCH_REGEX_SET(x, y1, ..., yn) returns all substrings of x matching one of the regular expressions y1, ..., yn. "
+            + "Matches do not overlap : at a given position, only the match of the first regular expression is returned. "
+            + "The \"patterns\" feature of each match lists all the regular expressions matching at this position.");
+  }
+
+  @Override
+  public BoxedType<?> evaluate(List<BoxedType<?>> parameters) {
+
+    Preconditions.checkArgument(parameters.size() >= 2, "MATCH_REGEX_SET takes at least two parameters : %s",
+        parameters);
+
+    String text = parameters.get(0).asString();
+
+    Preconditions.checkNotNull(text, "text should not be null");
+
+    List<String> regexes = parameters.subList(1, parameters.size()).stream().map(BoxedType::asString)
+        .collect(Collectors.toList());
+
+    Preconditions.checkArgument(!regexes.contains(null), "regexes should not be null");
+
+    return box(cache_.getUnchecked(ImmutableList.copyOf(regexes)).match(text));
+  }
+
+  private static final class RegexSet {
+
+    private final Pattern pattern_;
+    private final Pattern[] patterns_; // each regular expression on its own
+    private final int[] offsets_; // the group wrapping each regular expression in the combined pattern
+    private final int[] nbGroups_; // the number of groups of each regular expression
+
+    RegexSet(List<String> regexes) {
+
+      StringBuilder builder = new StringBuilder();
+      @Var int offset = 1;
+
+      offsets_ = new int[regexes.size()];
+      nbGroups_ = new int[regexes.size()];
+      patterns_ = new Pattern[regexes.size()];
+
+      for (int i = 0; i < regexes.size(); i++) {
+
+        String regex = regexes.get(i);
+
+        offsets_[i] = offset;
+        patterns_[i] = Pattern.compile(regex); // Ensure each regex is valid on its own
+        nbGroups_[i] = patterns_[i].groupCount();
+        offset += nbGroups_[i] + 1;
+
+        if (i > 0) {
+          builder.append('|');
+        }
+        builder.append('(').append(regex).append(')');
+      }
+
+      pattern_ = Pattern.compile(builder.toString());
+    }
+
+    SpanSequence match(String text) {
+
+      SpanSequence sequence = new SpanSequence();
+      Matcher matcher = pattern_.matcher(text);
+      Matcher[] matchers = new Matcher[patterns_.length];
+      int[] next = new int[patterns_.length]; // the start of the leftmost match of each regex after the last check
+
+      Arrays.fill(next, Integer.MIN_VALUE);
+
+      while (matcher.find()) {
+
+        Span span = MatchRegex.span(text, matcher.start(), matcher.end());
+
+        if (span != null) {
+
+          @Var int i = 0;
+          while (i < offsets_.length - 1 && matcher.start(offsets_[i]) < 0) {
+            i++;
+          }
+
+          span.setFeature(FEATURE_PATTERN, Integer.toString(i));
+          span.setFeature(FEATURE_PATTERNS, patterns(text, matcher.start(), i, matchers, next));
+
+          for (int k = 1; k < nbGroups_[i] + 1; k++) {
+            span.setGroup(k, matcher.group(offsets_[i] + k));
+          }
+
+          sequence.add(span);
+        }
+      }
+      return sequence;
+    }
+
+    /**
+     * List the regular expressions matching at a given position. Positions must be checked in increasing order : the
+     * leftmost match of each regular expression is remembered, so the text is scanned at most once per regular
+     * expression.
+     */
+    private String patterns(String text, int start, int pattern, Matcher[] matchers, int[] next) {
+
+      StringBuilder builder = new StringBuilder();
+
+      for (int j = 0; j < patterns_.length; j++) {
+        if (j != pattern && next[j] < start && next[j] != -1) {
+
+          if (matchers[j] == null) {
+            matchers[j] = patterns_[j].matcher(text);
+          }
+          next[j] = matchers[j].find(start) ? matchers[j].start() : -1;
+        }
+        if (j == pattern || next[j] == start) {
+          if (builder.length() > 0) {
+            builder.append(',');
+          }
+          builder.append(j);
+        }
+      }
+      return builder.toString();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.computablefacts.asterix;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare the throughput of the {@link BloomFilter.eHashingStrategy} implementations.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=com.computablefacts.asterix.BloomFilterBenchmark
+ * -Dexec.classpathScope=test} or directly from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BloomFilterBenchmark {
+
+  private static final int NB_ELEMENTS = 100_000;
+
+  @Param({"MD5", "MURMUR3_128"})
+  public BloomFilter.eHashingStrategy strategy;
+
+  private BloomFilter<String> filter_;
+  private byte[][] elements_;
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder().include(BloomFilterBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+
+  @Setup
+  public void setup() {
+
+    filter_ = new BloomFilter<>(0.01, NB_ELEMENTS, strategy);
+    elements_ = new byte[NB_ELEMENTS][];
+
+    for (int i = 0; i < NB_ELEMENTS; i++) {
+      elements_[i] = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+      if (i % 2 == 0) {
+        filter_.add(elements_[i]);
+      }
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean containsSingleThread() {
+    return filter_.contains(elements_[ThreadLocalIndex.next(NB_ELEMENTS)]);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean containsFourThreads() {
+    return filter_.contains(elements_[ThreadLocalIndex.next(NB_ELEMENTS)]);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void addSingleThread() {
+    filter_.add(elements_[ThreadLocalIndex.next(NB_ELEMENTS)]);
+  }
+
+  private static final class ThreadLocalIndex {
+
+    private static final ThreadLocal<int[]> INDEX = ThreadLocal.withInitial(() -> new int[1]);
+
+    static int next(int max) {
+      int[] index = INDEX.get();
+      index[0] = (index[0] + 1) % max;
+      return index[0];
+    }
+  }
+}
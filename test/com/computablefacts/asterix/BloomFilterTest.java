@@ -3,17 +3,29 @@ package com.computablefacts.asterix;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import com.google.common.hash.Hashing;
 import com.google.errorprone.annotations.Var;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 
 /**
@@ -492,4 +504,168 @@ public class BloomFilterTest {
     result = instance.count();
     assertEquals(expResult, result);
   }
+
+  @Test
+  public void testMurmur3MatchesGuavaProbes() {
+
+    int k = 7;
+    int m = 10_000;
+
+    for (int len = 0; len < 64; len++) {
+
+      byte[] bytes = new byte[len];
+      r.nextBytes(bytes);
+
+      BitSet actual = new BitSet(m);
+      BloomFilter.eHashingStrategy.MURMUR3_128.add(bytes, k, m, new BloomFilter.BitArray() {
+
+        @Override
+        public boolean get(int bit) {
+          return actual.get(bit);
+        }
+
+        @Override
+        public void set(int bit) {
+          actual.set(bit);
+        }
+      });
+
+      ByteBuffer hash = ByteBuffer.wrap(Hashing.murmur3_128().hashBytes(bytes).asBytes())
+          .order(ByteOrder.LITTLE_ENDIAN);
+      long h1 = hash.getLong();
+      long h2 = hash.getLong();
+      BitSet expected = new BitSet(m);
+
+      @Var long combinedHash = h1;
+      for (int i = 0; i < k; i++) {
+        expected.set((int) ((combinedHash & Long.MAX_VALUE) % m));
+        combinedHash += h2;
+      }
+
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void testHashingStrategies() {
+
+    List<String> values = new ArrayList<>();
+
+    for (int i = 0; i < 100; i++) {
+      values.add(UUID.randomUUID().toString());
+    }
+
+    for (BloomFilter.eHashingStrategy strategy : BloomFilter.eHashingStrategy.values()) {
+
+      BloomFilter<String> instance = new BloomFilter<>(0.01, 100, strategy);
+      instance.addAll(values);
+
+      assertEquals(strategy, instance.hashingStrategy());
+      assertTrue(instance.containsAll(values));
+    }
+  }
+
+  @Test
+  public void testMd5StrategyIsBackwardCompatible() {
+
+    BloomFilter<String> instance = new BloomFilter<>(0.01, 100, BloomFilter.eHashingStrategy.MD5);
+    BitSet expected = new BitSet(instance.size());
+
+    for (int i = 0; i < 100; i++) {
+
+      byte[] bytes = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+      instance.add(bytes);
+
+      // This is how bits were set before the hashing strategy became configurable
+      for (int hash : BloomFilter.createHashes(bytes, instance.k())) {
+        expected.set(Math.abs(hash % instance.size()));
+      }
+    }
+
+    assertEquals(expected, instance.bitSet());
+  }
+
+  @Test
+  public void testStrategiesAreNotEqual() {
+
+    BloomFilter<String> md5 = new BloomFilter<>(0.01, 100, BloomFilter.eHashingStrategy.MD5);
+    BloomFilter<String> murmur3 = new BloomFilter<>(0.01, 100, BloomFilter.eHashingStrategy.MURMUR3_128);
+
+    assertNotEquals(md5, murmur3);
+    assertEquals(BloomFilter.eHashingStrategy.MURMUR3_128, new BloomFilter<String>(0.01, 100).hashingStrategy());
+  }
+
+  @Test
+  public void testConcurrentContains() throws Exception {
+
+    BloomFilter<String> instance = new BloomFilter<>(0.01, 10_000);
+    List<String> values = new ArrayList<>();
+
+    for (int i = 0; i < 10_000; i++) {
+      String value = UUID.randomUUID().toString();
+      values.add(value);
+      instance.add(value);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        futures.add(executor.submit(() -> instance.containsAll(values)));
+      }
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testDeserializeFilterSerializedBeforeHashingStrategies() throws IOException, ClassNotFoundException {
+
+    // new BloomFilter<>(0.01, 10) filled with "sugar" and "cane", serialized before the hashing strategy was added
+    String serialized = "rO0ABXNyACdjb20uY29tcHV0YWJsZWZhY3RzLmFzdGVyaXguQmxvb21GaWx0ZXL0KEFykVNl7QIABkkAC2JpdFNldFNpemVfRAAPYml0c1BlckVsZW1lbnRfSQAZZXhwZWN0ZWROdW1iZXJPZkVsZW1lbnRzX0kAAmtfSQAWbnVtYmVyT2ZBZGRlZEVsZW1lbnRzX0wAB2JpdFNldF90ABJMamF2YS91dGlsL0JpdFNldDt4cAAAAGVAJDKeeIYSnwAAAAoAAAAHAAAAAnNyABBqYXZhLnV0aWwuQml0U2V0bv2Ifjk0qyEDAAFbAARiaXRzdAACW0p4cHVyAAJbSnggBLUSsXWTAgAAeHAAAAACkAAACCEAAAAAAAAQIJMCQng=";
+
+    try (ObjectInputStream ois = new ObjectInputStream(
+        new ByteArrayInputStream(Base64.getDecoder().decode(serialized)))) {
+
+      @SuppressWarnings("unchecked") BloomFilter<String> bloomFilter = (BloomFilter<String>) ois.readObject();
+
+      assertEquals(BloomFilter.eHashingStrategy.MD5, bloomFilter.hashingStrategy());
+      assertEquals(2, bloomFilter.count());
+      assertTrue(bloomFilter.contains("sugar"));
+      assertTrue(bloomFilter.contains("cane"));
+
+      bloomFilter.add("canesugar");
+
+      assertTrue(bloomFilter.contains("canesugar"));
+    }
+  }
+
+  @Test
+  public void testReloadMd5FilledBitSet() {
+
+    BloomFilter<String> bloomFilter = new BloomFilter<>(0.01, 1000, BloomFilter.eHashingStrategy.MD5);
+    List<String> uuids = new ArrayList<>();
+
+    for (int i = 0; i < 1000; i++) {
+      String uuid = UUID.randomUUID().toString();
+      uuids.add(uuid);
+      bloomFilter.add(uuid);
+    }
+
+    @SuppressWarnings("deprecation") BloomFilter<String> reloaded1 = new BloomFilter<>(0.01, 1000, bloomFilter.count(),
+        bloomFilter.bitSet());
+
+    assertEquals(BloomFilter.eHashingStrategy.MD5, reloaded1.hashingStrategy());
+    assertTrue(reloaded1.containsAll(uuids));
+
+    @SuppressWarnings("deprecation") BloomFilter<String> reloaded2 = new BloomFilter<>(bloomFilter.size(), 1000,
+        bloomFilter.count(), bloomFilter.bitSet());
+
+    assertEquals(BloomFilter.eHashingStrategy.MD5, reloaded2.hashingStrategy());
+    assertTrue(reloaded2.containsAll(uuids));
+  }
 }
@@ -0,0 +1,230 @@
+package com.computablefacts.asterix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.errorprone.annotations.Var;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class ConcurrentBloomFilterTest {
+
+  private static List<String> uuids(int n) {
+    List<String> uuids = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      uuids.add(UUID.randomUUID().toString());
+    }
+    return uuids;
+  }
+
+  @Test
+  public void testAddAndContains() {
+
+    ConcurrentBloomFilter<String> filter = new ConcurrentBloomFilter<>(0.01, 1000);
+    List<String> uuids = uuids(1000);
+
+    for (String uuid : uuids) {
+      filter.add(uuid);
+      assertTrue(filter.contains(uuid));
+    }
+
+    assertEquals(1000, filter.count());
+    assertTrue(filter.containsAll(uuids));
+  }
+
+  @Test
+  public void testSameBitsAsBloomFilter() {
+
+    for (BloomFilter.eHashingStrategy strategy : BloomFilter.eHashingStrategy.values()) {
+
+      ConcurrentBloomFilter<String> concurrentFilter = new ConcurrentBloomFilter<>(0.01, 1000, strategy);
+      BloomFilter<String> filter = new BloomFilter<>(0.01, 1000, strategy);
+
+      for (String uuid : uuids(1000)) {
+        concurrentFilter.add(uuid);
+        filter.add(uuid);
+      }
+
+      assertEquals(filter.size(), concurrentFilter.size());
+      assertEquals(filter.k(), concurrentFilter.k());
+
+      for (int i = 0; i < filter.size(); i++) {
+        assertEquals(filter.getBit(i), concurrentFilter.getBit(i));
+      }
+    }
+  }
+
+  @Test
+  public void testFalsePositiveRate() {
+
+    ConcurrentBloomFilter<String> filter = new ConcurrentBloomFilter<>(0.01, 10_000);
+    filter.addAll(uuids(10_000));
+
+    @Var int nbFalsePositives = 0;
+
+    for (String uuid : uuids(10_000)) {
+      if (filter.contains(uuid)) {
+        nbFalsePositives++;
+      }
+    }
+
+    assertTrue(nbFalsePositives / 10_000.0 < 0.02);
+  }
+
+  @Test
+  public void testConcurrentAdds() throws Exception {
+
+    ConcurrentBloomFilter<String> filter = new ConcurrentBloomFilter<>(0.01, 40_000);
+    List<List<String>> batches = new ArrayList<>();
+
+    for (int i = 0; i < 4; i++) {
+      batches.add(uuids(10_000));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (List<String> batch : batches) {
+        futures.add(executor.submit(() -> filter.addAll(batch)));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(40_000, filter.count());
+
+    for (List<String> batch : batches) {
+      assertTrue(filter.containsAll(batch));
+    }
+  }
+
+  @Test
+  public void testUnionAndIntersect() {
+
+    ConcurrentBloomFilter<String> filter1 = new ConcurrentBloomFilter<>(0.01, 1000);
+    ConcurrentBloomFilter<String> filter2 = new ConcurrentBloomFilter<>(0.01, 1000);
+    List<String> uuids1 = uuids(300);
+    List<String> uuids2 = uuids(300);
+    List<String> common = uuids(300);
+
+    filter1.addAll(uuids1);
+    filter1.addAll(common);
+    filter2.addAll(uuids2);
+    filter2.addAll(common);
+
+    ConcurrentBloomFilter<String> union = filter1.union(filter2);
+
+    assertTrue(union.containsAll(uuids1));
+    assertTrue(union.containsAll(uuids2));
+    assertTrue(union.containsAll(common));
+    assertEquals(900, union.approximateNumberOfElements(), 45);
+
+    ConcurrentBloomFilter<String> intersection = filter1.intersect(filter2);
+
+    assertTrue(intersection.containsAll(common));
+    assertFalse(intersection.containsAll(uuids1));
+    assertFalse(intersection.containsAll(uuids2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnionOfIncompatibleFilters() {
+    ConcurrentBloomFilter<String> filter1 = new ConcurrentBloomFilter<>(0.01, 1000);
+    ConcurrentBloomFilter<String> filter2 = new ConcurrentBloomFilter<>(0.01, 2000);
+    ConcurrentBloomFilter<String> union = filter1.union(filter2);
+  }
+
+  @Test
+  public void testWriteToAndMapFrom() throws IOException {
+
+    File file = File.createTempFile("bloom-", ".bf");
+    file.deleteOnExit();
+
+    ConcurrentBloomFilter<String> filter = new ConcurrentBloomFilter<>(0.01, 1000);
+    List<String> uuids = uuids(1000);
+    filter.addAll(uuids);
+    filter.writeTo(file);
+
+    ConcurrentBloomFilter<String> mapped = ConcurrentBloomFilter.mapFrom(file);
+
+    assertTrue(mapped.isReadOnly());
+    assertEquals(filter.size(), mapped.size());
+    assertEquals(filter.k(), mapped.k());
+    assertEquals(filter.count(), mapped.count());
+    assertEquals(filter.hashingStrategy(), mapped.hashingStrategy());
+    assertEquals(filter.cardinality(), mapped.cardinality());
+    assertTrue(mapped.containsAll(uuids));
+    assertTrue(filter.isCompatible(mapped));
+
+    ConcurrentBloomFilter<String> copy = mapped.copy();
+    String uuid = UUID.randomUUID().toString();
+    copy.add(uuid);
+
+    assertFalse(copy.isReadOnly());
+    assertTrue(copy.contains(uuid));
+    assertTrue(copy.containsAll(uuids));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMappedFilterIsReadOnly() throws IOException {
+
+    File file = File.createTempFile("bloom-", ".bf");
+    file.deleteOnExit();
+
+    ConcurrentBloomFilter<String> filter = new ConcurrentBloomFilter<>(0.01, 1000);
+    filter.writeTo(file);
+
+    ConcurrentBloomFilter<String> mapped = ConcurrentBloomFilter.mapFrom(file);
+    mapped.add(UUID.randomUUID().toString());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMapFileWithUnknownHashingStrategy() throws IOException {
+
+    File file = File.createTempFile("bloom-", ".bf");
+    file.deleteOnExit();
+
+    ConcurrentBloomFilter<String> filter = new ConcurrentBloomFilter<>(0.01, 1000);
+    filter.writeTo(file);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.seek(8);
+      raf.writeInt(42);
+    }
+
+    ConcurrentBloomFilter<String> mapped = ConcurrentBloomFilter.mapFrom(file);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMapForeignFile() throws IOException {
+
+    File file = File.createTempFile("bloom-", ".bf");
+    file.deleteOnExit();
+
+    Files.write(file.toPath(), new byte[64]);
+
+    ConcurrentBloomFilter<String> mapped = ConcurrentBloomFilter.mapFrom(file);
+  }
+
+  @Test
+  public void testHashingStrategyIds() {
+    assertEquals(0, BloomFilter.eHashingStrategy.MD5.id());
+    assertEquals(1, BloomFilter.eHashingStrategy.MURMUR3_128.id());
+    assertEquals(BloomFilter.eHashingStrategy.MURMUR3_128, BloomFilter.eHashingStrategy.fromId(1));
+    assertNull(BloomFilter.eHashingStrategy.fromId(42));
+  }
+}
@@ -0,0 +1,81 @@
+package com.computablefacts.asterix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.errorprone.annotations.Var;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Test;
+
+public class ScalableBloomFilterTest {
+
+  private static List<String> uuids(int n) {
+    List<String> uuids = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      uuids.add(UUID.randomUUID().toString());
+    }
+    return uuids;
+  }
+
+  @Test
+  public void testStartsSmall() {
+
+    ScalableBloomFilter<String> filter = new ScalableBloomFilter<>(0.01, 100);
+    filter.add("a");
+
+    assertEquals(1, filter.nbSlices());
+    assertEquals(1, filter.count());
+    assertTrue(filter.size() < 2_000);
+  }
+
+  @Test
+  public void testGrows() {
+
+    ScalableBloomFilter<String> filter = new ScalableBloomFilter<>(0.01, 100);
+    List<String> uuids = uuids(10_000);
+    filter.addAll(uuids);
+
+    // 100 + 200 + 400 + ... + 6400 = 12700 >= 10000
+    assertEquals(7, filter.nbSlices());
+    assertEquals(10_000, filter.count());
+    assertTrue(filter.containsAll(uuids));
+  }
+
+  @Test
+  public void testFalsePositiveRateIsBounded() {
+
+    ScalableBloomFilter<String> filter = new ScalableBloomFilter<>(0.01, 100);
+    filter.addAll(uuids(10_000));
+
+    assertTrue(filter.falsePositiveProbability() <= filter.expectedFalsePositiveProbability());
+
+    @Var int nbFalsePositives = 0;
+
+    for (String uuid : uuids(10_000)) {
+      if (filter.contains(uuid)) {
+        nbFalsePositives++;
+      }
+    }
+
+    assertTrue(nbFalsePositives / 10_000.0 < 0.02);
+  }
+
+  @Test
+  public void testClear() {
+
+    ScalableBloomFilter<String> filter = new ScalableBloomFilter<>(0.01, 100);
+    List<String> uuids = uuids(1_000);
+    filter.addAll(uuids);
+    filter.clear();
+
+    assertEquals(1, filter.nbSlices());
+    assertEquals(0, filter.count());
+
+    filter.addAll(uuids);
+
+    assertEquals(4, filter.nbSlices()); // 100 + 200 + 400 + 800 >= 1000
+    assertTrue(filter.containsAll(uuids));
+  }
+}
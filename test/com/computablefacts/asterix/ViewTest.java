@@ -6,6 +6,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.errorprone.annotations.Var;
 import java.io.BufferedReader;
 import java.io.File;
@@ -23,6 +24,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -1097,6 +1103,175 @@ public class ViewTest {
     Assert.assertEquals(3, Sets.intersection(Sets.newHashSet("elephant", "rabbit", "duck"), result).size());
   }
 
+  @Test
+  public void testForEachRemainingInParallelIsBounded() {
+
+    AtomicInteger nbPulled = new AtomicInteger(0);
+    AtomicInteger nbProcessed = new AtomicInteger(0);
+    AtomicInteger maxInFlight = new AtomicInteger(0);
+    View<Integer> view = View.iterate(0, x -> x + 1).take(10_000).peek(x -> nbPulled.incrementAndGet());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      view.forEachRemainingInParallel(x -> {
+        maxInFlight.accumulateAndGet(nbPulled.get() - nbProcessed.get(), Math::max);
+        nbProcessed.incrementAndGet();
+      }, executor, 8);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(10_000, nbProcessed.get());
+    Assert.assertTrue(maxInFlight.get() <= 8);
+  }
+
+  @Test
+  public void testForEachRemainingInParallelOrdered() {
+
+    List<Integer> result = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      View.iterate(0, x -> x + 1).take(1_000).forEachRemainingInParallel(x -> {
+        if (x % 10 == 0) {
+          Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+        }
+        return 2 * x;
+      }, result::add, true, executor, 16);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(View.iterate(0, x -> x + 2).take(1_000).toList(), result);
+  }
+
+  @Test
+  public void testForEachRemainingInParallelUnordered() {
+
+    Set<Integer> result = new HashSet<>();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      View.iterate(0, x -> x + 1).take(1_000)
+          .forEachRemainingInParallel(x -> 2 * x, result::add, false, executor, 16);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(View.iterate(0, x -> x + 2).take(1_000).toSet(), result);
+  }
+
+  @Test(timeout = 10_000, expected = RejectedExecutionException.class)
+  public void testForEachRemainingInParallelWithShutdownExecutor() {
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    executor.shutdown();
+
+    View.iterate(0, x -> x + 1).take(1_000).forEachRemainingInParallel(x -> {
+    }, executor, 8);
+  }
+
+  @Test
+  public void testMapParallel() {
+
+    List<Integer> result = View.iterate(0, x -> x + 1).take(1_000).mapParallel(x -> {
+      if (x % 10 == 0) {
+        Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+      }
+      return 2 * x;
+    }, 4, 16).toList();
+
+    Assert.assertEquals(View.iterate(0, x -> x + 2).take(1_000).toList(), result);
+  }
+
+  @Test
+  public void testMapParallelUnordered() {
+
+    Set<Integer> result = View.iterate(0, x -> x + 1).take(1_000).mapParallel(x -> 2 * x, 4, 16, false).toSet();
+
+    Assert.assertEquals(View.iterate(0, x -> x + 2).take(1_000).toSet(), result);
+  }
+
+  @Test
+  public void testMapParallelIsLazyAndBounded() {
+
+    AtomicInteger nbPulled = new AtomicInteger(0);
+    View<Integer> view = View.iterate(0, x -> x + 1).peek(x -> nbPulled.incrementAndGet()).mapParallel(x -> x, 2, 8);
+
+    Assert.assertEquals(0, nbPulled.get());
+    Assert.assertEquals(Lists.newArrayList(0, 1, 2), view.take(3).toList());
+    Assert.assertTrue(nbPulled.get() <= 3 + 8);
+
+    view.close();
+  }
+
+  @Test
+  public void testMapParallelLimitsParallelism() {
+
+    AtomicInteger nbRunning = new AtomicInteger(0);
+    AtomicInteger maxRunning = new AtomicInteger(0);
+
+    List<Integer> result = View.iterate(0, x -> x + 1).take(200).mapParallel(x -> {
+      maxRunning.accumulateAndGet(nbRunning.incrementAndGet(), Math::max);
+      Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+      nbRunning.decrementAndGet();
+      return x;
+    }, 3, 32).toList();
+
+    Assert.assertEquals(200, result.size());
+    Assert.assertTrue(maxRunning.get() <= 3);
+  }
+
+  @Test
+  public void testMapParallelClosesUpstream() {
+
+    AtomicInteger nbClosed = new AtomicInteger(0);
+    View<Integer> view = View.of(Stream.iterate(0, x -> x + 1).onClose(nbClosed::incrementAndGet))
+        .mapParallel(x -> x, 2, 4);
+
+    Assert.assertEquals(0, (int) view.next());
+
+    view.close();
+
+    Assert.assertEquals(1, nbClosed.get());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMapParallelPropagatesExceptions() {
+    List<Integer> result = View.iterate(0, x -> x + 1).take(1_000).mapParallel(x -> {
+      if (x == 500) {
+        throw new IllegalArgumentException();
+      }
+      return x;
+    }, 4, 16).toList();
+  }
+
+  @Test
+  public void testFilterParallel() {
+
+    List<Integer> result = View.iterate(0, x -> x + 1).take(1_000).filterParallel(x -> x % 2 == 0, 4, 16).toList();
+
+    Assert.assertEquals(View.iterate(0, x -> x + 2).take(500).toList(), result);
+  }
+
+  @Test
+  public void testFlattenParallel() {
+
+    List<Integer> result = View.iterate(0, x -> x + 1).take(100)
+        .flattenParallel(x -> x % 2 == 0 ? View.of(x, x) : View.of(), 4, 16).toList();
+
+    Assert.assertEquals(View.iterate(0, x -> x + 2).take(50).flatten(x -> View.of(x, x)).toList(), result);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testForEachRemainingInParallelPropagatesExceptions() {
+    View.iterate(0, x -> x + 1).take(1_000).forEachRemainingInParallel(x -> {
+      if (x == 500) {
+        throw new IllegalArgumentException();
+      }
+    });
+  }
+
   @Test
   public void testMerge() {
 
@@ -0,0 +1,106 @@
+package com.computablefacts.asterix.nlp;
+
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DictionaryAutomatonTest {
+
+  @Test
+  public void testMatchIgnoresCase() {
+
+    DictionaryAutomaton automaton = DictionaryAutomaton.build(Lists.newArrayList("deep thought", "Forty-Two"));
+    SpanSequence spans = automaton.match("Deep Thought said forty-two.");
+
+    Assert.assertEquals(2, automaton.nbKeywords());
+    Assert.assertEquals(2, spans.size());
+    Assert.assertEquals("Deep Thought", spans.span(0).text());
+    Assert.assertEquals("forty-two", spans.span(1).text());
+    Assert.assertEquals(18, spans.span(1).begin());
+    Assert.assertEquals(27, spans.span(1).end());
+  }
+
+  @Test
+  public void testMatchOnlyWholeWords() {
+
+    DictionaryAutomaton automaton = DictionaryAutomaton.build(Lists.newArrayList("sugar"));
+    SpanSequence spans = automaton.match("sugarcane sugar canesugar sugar");
+
+    Assert.assertEquals(2, spans.size());
+    Assert.assertEquals(10, spans.span(0).begin());
+    Assert.assertEquals(26, spans.span(1).begin());
+  }
+
+  @Test
+  public void testRemoveOverlaps() {
+
+    DictionaryAutomaton automaton = DictionaryAutomaton.build(
+        Lists.newArrayList("new york", "york city", "new york city", "city"));
+    SpanSequence spans = automaton.match("new york city and the city");
+
+    Assert.assertEquals(Lists.newArrayList("new york city", "city"),
+        spans.stream().map(Span::text).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testFailLinks() {
+
+    DictionaryAutomaton automaton = DictionaryAutomaton.build(Lists.newArrayList("he", "she", "his", "hers"));
+    SpanSequence spans = automaton.match("ushers his she he");
+
+    Assert.assertEquals(Lists.newArrayList("his", "she", "he"),
+        spans.stream().map(Span::text).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testEmptyDictionary() {
+
+    DictionaryAutomaton automaton = DictionaryAutomaton.build(Lists.newArrayList("", ""));
+
+    Assert.assertEquals(0, automaton.nbKeywords());
+    Assert.assertEquals(0, automaton.match("some text").size());
+  }
+
+  @Test
+  public void testWriteThenMap() throws IOException {
+
+    DictionaryAutomaton automaton = DictionaryAutomaton.build(Lists.newArrayList("great question", "deep thought"));
+    File file = Files.createTempFile("automaton-", ".acd").toFile();
+    automaton.writeTo(file);
+
+    Assert.assertEquals(automaton.sizeInBytes(), file.length());
+
+    DictionaryAutomaton mapped = DictionaryAutomaton.mapFrom(file);
+    String text = "The Answer to the Great Question... said Deep Thought.";
+
+    Assert.assertEquals(2, mapped.nbKeywords());
+    Assert.assertEquals(automaton.match(text), mapped.match(text));
+    Assert.assertEquals(2, mapped.match(text).size());
+  }
+
+  @Test
+  public void testSourceIsWrittenThenMapped() throws IOException {
+
+    DictionaryAutomaton automaton = DictionaryAutomaton.build(Lists.newArrayList("deep thought"), 42, 1234567890L);
+    File file = Files.createTempFile("automaton-", ".acd").toFile();
+    automaton.writeTo(file);
+
+    DictionaryAutomaton mapped = DictionaryAutomaton.mapFrom(file);
+
+    Assert.assertEquals(42, mapped.sourceLength());
+    Assert.assertEquals(1234567890L, mapped.sourceLastModified());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMapInvalidFile() throws IOException {
+
+    File file = Files.createTempFile("automaton-", ".acd").toFile();
+    Files.write(file.toPath(), Lists.newArrayList("not an automaton"));
+
+    DictionaryAutomaton automaton = DictionaryAutomaton.mapFrom(file);
+  }
+}
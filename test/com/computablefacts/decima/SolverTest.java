@@ -84,4 +84,38 @@ public class SolverTest {
     Assert.assertTrue(WildcardMatcher.match(outContent_.toString(),
         "*{\"external_id\":\"*\",\"metadata\":[{\"type\":\"Comment\",\"key\":\"extracted_with\",\"value\":\"decima\"},{\"type\":\"Comment\",\"key\":\"extracted_by\",\"value\":\"decima\"},{\"type\":\"Comment\",\"key\":\"extraction_date\",\"value\":\"????-??-??T??:??:??*Z\"}],\"provenances\":[{\"source_store\":\"ACCUMULO/my_root/my_dataset/000|0000-00-00T00:00:00.000Z\",\"source_type\":\"STORAGE/ROOT/DATASET/DOC_ID\"}],\"values\":[\"bill\",\"alice\"],\"type\":\"son\",\"is_valid\":true,\"confidence_score\":1.0,\"start_date\":\"????-??-??T??:??:??*Z\"}*"));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testSolveQuestionsInParallelKeepsInputOrder() throws IOException {
+
+    List<String> facts = Lists.newArrayList("0.5::edge(a, b).", "0.6::edge(b, c).", "0.7::edge(a, c).",
+        "0.8::edge(c, d).");
+    List<String> rules = Lists.newArrayList("path(X, Y) :- edge(X, Y).", "path(X, Y) :- edge(X, Z), path(Z, Y).");
+    List<String> queries = Lists.newArrayList("path(c, d)?", "path(a, d)?", "path(a, b)?", "path(b, d)?",
+        "path(a, c)?", "path(a, d)?");
+
+    Path factz = Files.createTempFile("facts-", ".txt");
+    Files.write(factz, facts, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Path rulez = Files.createTempFile("rules-", ".txt");
+    Files.write(rulez, rules, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Path queriez = Files.createTempFile("queries-", ".txt");
+    Files.write(queriez, queries, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Path outputs = Files.createTempDirectory("outputs-");
+    Path sequential = outputs.resolve("sequential.txt");
+    Path parallel = outputs.resolve("parallel.txt");
+
+    Solver.main(new String[]{"-facts", factz.toString(), "-rules", rulez.toString(), "-queries", queriez.toString(),
+        "-output", sequential.toString()});
+    Solver.main(new String[]{"-facts", factz.toString(), "-rules", rulez.toString(), "-queries", queriez.toString(),
+        "-output", parallel.toString(), "-nb_threads", "4"});
+
+    List<String> expected = Lists.newArrayList("0.80000::path(\"c\", \"d\").", "0.63200::path(\"a\", \"d\").",
+        "0.50000::path(\"a\", \"b\").", "0.48000::path(\"b\", \"d\").", "0.79000::path(\"a\", \"c\").");
+
+    Assert.assertEquals(expected, Files.readAllLines(sequential, StandardCharsets.UTF_8));
+    Assert.assertEquals(expected, Files.readAllLines(parallel, StandardCharsets.UTF_8));
+  }
+}
@@ -492,6 +492,66 @@ public class AbstractKnowledgeBaseTest {
             1).equals(fact1)));
   }
 
+  @Test
+  public void testArgumentIndexesAreBuiltOnDemand() {
+
+    KnowledgeBaseMemoryBacked kb = new KnowledgeBaseMemoryBacked();
+
+    for (int i = 0; i < 100; i++) {
+      kb.azzert(parseFact(String.format("edge(\"%d\", \"%d\").", i, (i + 1) % 100)));
+    }
+
+    Predicate edge = new Predicate("edge", 2);
+
+    Assert.assertEquals(Sets.newHashSet(), kb.indexedPositions(edge));
+    Assert.assertEquals(100, kb.nbFacts(new Literal("edge", newVar(), newVar())));
+    Assert.assertEquals(Sets.newHashSet(), kb.indexedPositions(edge));
+
+    Assert.assertEquals(Sets.newHashSet(parseFact("edge(\"5\", \"6\").")),
+        Sets.newHashSet(kb.facts(new Literal("edge", newConst("5"), newVar()))));
+    Assert.assertEquals(Sets.newHashSet(0), kb.indexedPositions(edge));
+
+    Assert.assertEquals(Sets.newHashSet(parseFact("edge(\"5\", \"6\").")),
+        Sets.newHashSet(kb.facts(new Literal("edge", newVar(), newConst("6")))));
+    Assert.assertEquals(Sets.newHashSet(0, 1), kb.indexedPositions(edge));
+
+    Assert.assertEquals(0, kb.nbFacts(new Literal("edge", newConst("5"), newConst("7"))));
+    Assert.assertEquals(0, kb.nbFacts(new Literal("edge", newConst("100"), newVar())));
+  }
+
+  @Test
+  public void testArgumentIndexesAreMaintained() {
+
+    KnowledgeBaseMemoryBacked kb = new KnowledgeBaseMemoryBacked();
+
+    for (int i = 0; i < 100; i++) {
+      kb.azzert(parseFact(String.format("edge(\"%d\", \"%d\").", i, (i + 1) % 100)));
+    }
+
+    Assert.assertEquals(1, kb.nbFacts(new Literal("edge", newConst("5"), newVar())));
+
+    kb.azzert(parseFact("edge(\"5\", \"7\")."));
+    kb.azzert(parseFact("edge(\"5\", \"7\").")); // duplicate
+
+    Assert.assertEquals(2, kb.nbFacts(new Literal("edge", newConst("5"), newVar())));
+    Assert.assertEquals(101, kb.nbFacts(new Literal("edge", newVar(), newVar())));
+  }
+
+  @Test
+  public void testArgumentIndexesKeepRulesWithVariablesInHead() {
+
+    KnowledgeBaseMemoryBacked kb = new KnowledgeBaseMemoryBacked();
+
+    for (int i = 0; i < 100; i++) {
+      kb.azzert(parseRule(String.format("path(\"%d\", X) :- edge(\"%d\", X).", i, i)));
+    }
+    kb.azzert(parseRule("path(X, Y) :- edge(X, Y)."));
+
+    Assert.assertEquals(2, kb.nbRules(new Literal("path", newConst("5"), newVar())));
+    Assert.assertEquals(1, kb.nbRules(new Literal("path", newConst("100"), newVar())));
+    Assert.assertEquals(101, kb.nbRules(new Literal("path", newVar(), newConst("5"))));
+  }
+
   private Function mockMaterializeFacts1() {
     return new Function("MOCK_MATERIALIZE_FACTS") {
 
@@ -0,0 +1,118 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.Parser.parseClause;
+import static com.computablefacts.decima.problog.Parser.parseFact;
+import static com.computablefacts.decima.problog.Parser.parseQuery;
+import static com.computablefacts.decima.problog.Parser.parseRule;
+
+import com.google.common.collect.Sets;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BindingsTest {
+
+  @Test
+  public void testUnifyHead() {
+
+    Rule rule = parseRule("path(X, Y) :- edge(X, Z), path(Z, Y).");
+    Bindings bindings = new Bindings(rule.template());
+
+    Assert.assertTrue(bindings.unifyHead(parseQuery("path(\"a\", _)?")));
+    Assert.assertEquals(parseQuery("edge(\"a\", _)?").key(), bindings.key(0));
+    Assert.assertEquals(parseQuery("path(_, _)?").key(), bindings.key(1));
+    Assert.assertEquals(parseQuery("edge(\"a\", _)?").key(), bindings.body(0).key());
+  }
+
+  @Test
+  public void testUnifyHeadFails() {
+
+    Rule rule = parseRule("path(X, X) :- edge(X, X).");
+    Bindings bindings = new Bindings(rule.template());
+
+    Assert.assertFalse(bindings.unifyHead(parseQuery("path(\"a\", \"b\")?")));
+    Assert.assertFalse(bindings.unifyHead(parseQuery("edge(\"a\", \"a\")?")));
+    Assert.assertEquals(parseQuery("edge(_, _)?").key(), bindings.key(0)); // bindings are left untouched
+  }
+
+  @Test
+  public void testUnifyBodyAndUndo() {
+
+    Rule rule = parseRule("path(X, Y) :- edge(X, Z), path(Z, Y).");
+    Bindings bindings = new Bindings(rule.template());
+
+    Assert.assertTrue(bindings.unifyHead(parseQuery("path(\"a\", _)?")));
+
+    int mark = bindings.mark();
+
+    Assert.assertTrue(bindings.unifyBody(0, parseFact("edge(\"a\", \"b\").").head()));
+    Assert.assertEquals(parseQuery("path(\"b\", _)?").key(), bindings.key(1));
+    Assert.assertFalse(bindings.unifyBody(0, parseFact("edge(\"a\", \"c\").").head()));
+
+    bindings.undo(mark);
+
+    Assert.assertEquals(parseQuery("path(_, _)?").key(), bindings.key(1));
+    Assert.assertTrue(bindings.unifyBody(0, parseFact("edge(\"a\", \"c\").").head()));
+    Assert.assertEquals(parseQuery("path(\"c\", _)?").key(), bindings.key(1));
+  }
+
+  @Test
+  public void testAliasing() {
+
+    Rule rule = parseRule("same(X, Y) :- node(X), node(Y).");
+    Bindings bindings = new Bindings(rule.template());
+
+    Assert.assertTrue(bindings.unifyHead(parseQuery("same(U, U)?")));
+
+    Literal node1 = bindings.body(0);
+    Literal node2 = bindings.body(1);
+
+    Assert.assertFalse(node1.isGrounded());
+    Assert.assertEquals(node1, node2); // X and Y are mapped to the same variable
+
+    Assert.assertTrue(bindings.unifyBody(0, parseFact("node(\"a\").").head()));
+    Assert.assertEquals(parseQuery("node(\"a\")?").key(), bindings.key(1));
+    Assert.assertFalse(bindings.unifyBody(1, parseFact("node(\"b\").").head()));
+  }
+
+  @Test
+  public void testContinuation() {
+
+    Rule rule = parseRule("path(X, Y) :- edge(X, Z), path(Z, Y).");
+    Bindings bindings = new Bindings(rule.template());
+
+    Assert.assertTrue(bindings.unifyHead(parseQuery("path(\"a\", _)?")));
+
+    Continuation continuation1 = new Continuation(bindings);
+    Bindings bindings1 = continuation1.bindings();
+
+    Assert.assertTrue(bindings1.unifyBody(0, parseFact("edge(\"a\", \"b\").").head()));
+
+    Continuation continuation2 = continuation1.next(bindings1, parseFact("edge(\"a\", \"b\").").head());
+    Bindings bindings2 = continuation2.bindings();
+
+    Assert.assertTrue(bindings2.unifyBody(1, parseFact("path(\"b\", \"c\").").head()));
+    Assert.assertEquals(parseRule("path(\"a\", \"c\") :- edge(\"a\", \"b\"), path(\"b\", \"c\")."),
+        continuation2.proof(bindings2.head(), parseFact("path(\"b\", \"c\").").head()));
+
+    Assert.assertEquals(continuation1, new Continuation(bindings));
+    Assert.assertNotEquals(continuation1, continuation2);
+    Assert.assertEquals(0, continuation1.idx());
+    Assert.assertTrue(continuation2.isLast());
+  }
+
+  @Test
+  public void testSolveVariantsSharingTheSameTable() {
+
+    KnowledgeBaseMemoryBacked kb = new KnowledgeBaseMemoryBacked();
+    kb.azzert(parseClause("edge(\"a\", \"a\")."));
+    kb.azzert(parseClause("edge(\"a\", \"b\")."));
+    kb.azzert(parseClause("loop(X) :- edge(X, X)."));
+    kb.azzert(parseClause("both(X) :- edge(X, Y), loop(X)."));
+
+    Solver solver = new Solver(kb, new AbstractFunctions());
+    Set<Fact> facts = Sets.newHashSet(solver.solve(parseQuery("both(_)?")));
+
+    Assert.assertEquals(Sets.newHashSet(parseFact("both(\"a\").")), facts);
+  }
+}
@@ -10,7 +10,7 @@ public class ConstTest {
 
   @Test
   public void testHashcodeAndEquals() {
-    EqualsVerifier.forClass(Const.class).withIgnoredFields("value_").withNonnullFields("id_").verify();
+    EqualsVerifier.forClass(Const.class).withIgnoredFields("value_").verify();
   }
 
   @Test
@@ -4,7 +4,11 @@ import static com.computablefacts.decima.problog.AbstractTerm.newConst;
 import static com.computablefacts.decima.problog.AbstractTerm.newVar;
 import static com.computablefacts.decima.problog.Parser.parseRule;
 
+import com.computablefacts.asterix.BoxedType;
+import com.computablefacts.nona.Function;
+import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.junit.Assert;
 import org.junit.Test;
@@ -200,6 +204,46 @@ public class LiteralTest {
     Assert.assertEquals(newConst(true), newLiteral.terms().get(0));
   }
 
+  @Test
+  public void testMergeFunctionsWithSuccessiveSubstitutions() {
+
+    KnowledgeBaseMemoryBacked kb = new KnowledgeBaseMemoryBacked();
+    Rule rule = parseRule("is_ok(X, Y) :- fn_add(X, fn_mul(Y, 2), 1).");
+    Literal literal = rule.body().get(0);
+
+    for (int i = 0; i < 5; i++) {
+
+      Map<Var, AbstractTerm> subst = new HashMap<>(); // substitute Y with i
+      subst.put((Var) rule.head().terms().get(1), newConst(i));
+
+      Literal newLiteral = literal.subst(subst).execute(new Functions(kb).definitions()).next();
+
+      Assert.assertEquals(2, newLiteral.terms().size());
+      Assert.assertEquals(newConst(2 * i + 1), newLiteral.terms().get(0));
+      Assert.assertEquals(newConst(i), newLiteral.terms().get(1));
+    }
+  }
+
+  @Test
+  public void testFunctionRedefinedBetweenTwoExecutions() {
+
+    AbstractFunctions functions = new AbstractFunctions();
+    functions.register("scale", multiplyBy(2));
+
+    Literal literal = new Literal("fn_scale", newVar(), newConst(3));
+    Map<String, Function> definitions = functions.definitions();
+
+    Assert.assertSame(definitions, functions.definitions());
+    Assert.assertEquals(new Literal("fn_scale", newConst(6), newConst(3)), literal.execute(definitions).next());
+
+    functions.unregister("scale");
+    functions.register("scale", multiplyBy(3));
+
+    Assert.assertNotSame(definitions, functions.definitions());
+    Assert.assertEquals(new Literal("fn_scale", newConst(9), newConst(3)),
+        literal.execute(functions.definitions()).next());
+  }
+
   @Test
   public void testRelevantLiterals() {
 
@@ -290,6 +334,31 @@ public class LiteralTest {
     Assert.assertNotEquals(literal3.tag(), literal4.tag());
   }
 
+  @Test
+  public void testKey() {
+
+    Literal literal0 = new Literal("~edge", newConst("a"), newConst("b"));
+    Literal literal1 = new Literal("edge", newConst("a"), newConst("b"));
+    Literal literal2 = new Literal("edge", newConst("a"), newVar());
+    Literal literal3 = new Literal("edge", newConst("a"), newVar());
+    Literal literal4 = new Literal("edge", newConst("a"));
+
+    Assert.assertNotEquals(literal0.key(), literal1.key());
+    Assert.assertNotEquals(literal1.key(), literal2.key());
+    Assert.assertNotEquals(literal1.key(), literal4.key());
+
+    // Keys behave like tags : variables are anonymized
+    Assert.assertEquals(literal2.tag(), literal3.tag());
+    Assert.assertEquals(literal2.key(), literal3.key());
+    Assert.assertEquals(literal2.key().hashCode(), literal3.key().hashCode());
+
+    // Literals with the same key but distinct probabilities are not equal
+    Literal literal5 = new Literal(BigDecimal.valueOf(0.5), "edge", newConst("a"), newConst("b"));
+
+    Assert.assertEquals(literal1.key(), literal5.key());
+    Assert.assertNotEquals(literal1, literal5);
+  }
+
   @Test
   public void testToStringEncodesLf() {
 
@@ -305,4 +374,14 @@ public class LiteralTest {
 
     Assert.assertEquals("edge(\"b64_(YQ0KYg==)\")", literal.toString());
   }
+
+  private Function multiplyBy(int factor) {
+    return new Function("SCALE") {
+
+      @Override
+      public BoxedType<?> evaluate(List<BoxedType<?>> parameters) {
+        return box(parameters.get(0).asInt() * factor);
+      }
+    };
+  }
 }
@@ -11,7 +11,7 @@ public class RuleTest {
   public void testHashcodeAndEquals() {
     Literal blue = new Literal("red", newConst("abc"));
     Literal red = new Literal("blue", newConst(123));
-    EqualsVerifier.forClass(Rule.class).withIgnoredFields("isGrounded_").withPrefabValues(Literal.class, red, blue)
+    EqualsVerifier.forClass(Rule.class).withIgnoredFields("isGrounded_", "template_").withPrefabValues(Literal.class, red, blue)
         .verify();
   }
 }
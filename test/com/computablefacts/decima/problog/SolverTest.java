@@ -6,8 +6,20 @@ import static com.computablefacts.decima.problog.Parser.parseQuery;
 import static com.computablefacts.decima.problog.Parser.parseRule;
 import static com.computablefacts.decima.problog.TestUtils.checkAnswers;
 
+import com.computablefacts.decima.robdd.BddManager;
+import com.computablefacts.decima.robdd.BddNode;
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
 import com.google.common.collect.Sets;
+import com.google.errorprone.annotations.Var;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import nl.jqno.equalsverifier.EqualsVerifier;
 import org.junit.Assert;
 import org.junit.Test;
@@ -405,6 +417,275 @@ public class SolverTest {
     Assert.assertEquals(4, answers.size());
   }
 
+  @Test
+  public void testParallelSampleOfSizeMinus1() {
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try {
+      Solver solver = new Solver(bags(), new Functions(bags()), SubgoalMemoryBacked::new, pool);
+      Literal query = parseQuery("hasDifferentNumberOfItems(_, _)?");
+      Set<Fact> answers = Sets.newHashSet(solver.solve(query, -1));
+
+      Assert.assertEquals(Sets.newHashSet(new Solver(bags(), new Functions(bags())).solve(query, -1)), answers);
+      Assert.assertEquals(4, answers.size());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testParallelSampleOfSize1To5() {
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try {
+      for (int maxSampleSize = 1; maxSampleSize <= 5; maxSampleSize++) {
+
+        Solver solver = new Solver(bags(), new Functions(bags()), SubgoalMemoryBacked::new, pool);
+        Literal query = parseQuery("hasDifferentNumberOfItems(_, _)?");
+        Set<Fact> answers = Sets.newHashSet(solver.solve(query, maxSampleSize));
+
+        Assert.assertEquals(Math.min(4, maxSampleSize), answers.size());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testAdaptiveSubgoalsSpillToDisk() throws IOException {
+
+    KnowledgeBaseMemoryBacked kb = new KnowledgeBaseMemoryBacked();
+
+    for (int i = 0; i < 50; i++) {
+      kb.azzert(parseClause(String.format("edge(\"n%d\", \"n%d\").", i, i + 1)));
+    }
+
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Z), path(Z, Y)."));
+
+    Literal query = parseQuery("path(\"n0\", _)?");
+    Set<Fact> expected = Sets.newHashSet(new Solver(kb, new AbstractFunctions()).solve(query));
+
+    try (SubgoalStore store = new SubgoalStore(Files.createTempDirectory("problog").toFile().getAbsolutePath(), 1)) {
+
+      SubgoalAdaptive.Budget budget = new SubgoalAdaptive.Budget(store, 2_000, 10_000);
+      Solver solver = new Solver(kb, new AbstractFunctions(), literal -> new SubgoalAdaptive(literal, budget));
+      Set<Fact> actual = Sets.newHashSet(solver.solve(query));
+
+      Assert.assertEquals(50, expected.size());
+      Assert.assertEquals(expected, actual);
+      Assert.assertTrue(solver.nbSpilledSubgoals() > 0);
+      Assert.assertTrue(solver.nbSpilledSubgoals() < solver.nbSubgoals());
+      Assert.assertEquals(budget.nbSpilled(), solver.nbSpilledSubgoals());
+      Assert.assertTrue(budget.nbBytes() <= 10_000);
+    }
+  }
+
+  @Test(timeout = 60_000)
+  public void testParallelAdaptiveSubgoalsWithSampleSize() throws IOException {
+
+    KnowledgeBaseMemoryBacked kb = chain(200);
+    Literal query = parseQuery("path(\"n0\", _)?");
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try (SubgoalStore store = new SubgoalStore(Files.createTempDirectory("problog").toFile().getAbsolutePath(), 1)) {
+      for (int i = 0; i < 10; i++) {
+
+        // The root subgoal is locked while its facts are added : spilling it must not deadlock
+        SubgoalAdaptive.Budget budget = new SubgoalAdaptive.Budget(store, 500, 2_000);
+        Solver solver = new Solver(kb, new AbstractFunctions(), literal -> new SubgoalAdaptive(literal, budget), pool);
+        Set<Fact> answers = Sets.newHashSet(solver.solve(query, 100));
+
+        Assert.assertEquals(100, answers.size());
+        Assert.assertTrue(budget.nbSpilled() > 0);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testIncrementalTablingReusesCompletedTables() {
+
+    KnowledgeBaseMemoryBacked kb = graph();
+    AtomicInteger nbSubgoals = new AtomicInteger();
+    Solver solver = new Solver(kb, new AbstractFunctions(), literal -> {
+      nbSubgoals.incrementAndGet();
+      return new SubgoalMemoryBacked(literal);
+    }, null, true);
+
+    Set<Fact> answers1 = Sets.newHashSet(solver.solve(parseQuery("path(\"a\", _)?")));
+    int nbSubgoals1 = nbSubgoals.get();
+    Set<Fact> answers2 = Sets.newHashSet(solver.solve(parseQuery("path(\"a\", _)?")));
+    Set<Fact> answers3 = Sets.newHashSet(solver.solve(parseQuery("path(\"b\", _)?")));
+
+    Assert.assertEquals(3, answers1.size());
+    Assert.assertEquals(answers1, answers2);
+    Assert.assertEquals(1, answers3.size());
+    Assert.assertEquals(nbSubgoals1, nbSubgoals.get()); // path(b, _) has been tabled while solving path(a, _)
+  }
+
+  @Test
+  public void testIncrementalTablingExtendsTables() {
+
+    KnowledgeBaseMemoryBacked kb = graph();
+    Solver solver = new Solver(kb, new AbstractFunctions(), SubgoalMemoryBacked::new, null, true);
+
+    Assert.assertEquals(3, Sets.newHashSet(solver.solve(parseQuery("path(\"a\", _)?"))).size());
+
+    solver.azzert(parseClause("edge(\"c\", \"e\")."));
+    solver.azzert(parseClause("path(X, Y) :- link(X, Y)."));
+    solver.azzert(parseClause("link(\"e\", \"f\")."));
+
+    Set<Fact> actual = Sets.newHashSet(solver.solve(parseQuery("path(\"a\", _)?")));
+    Set<Fact> expected = Sets.newHashSet(new Solver(kb, new AbstractFunctions()).solve(parseQuery("path(\"a\", _)?")));
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(5, actual.size());
+    Assert.assertTrue(actual.contains(parseClause("path(\"a\", \"f\").")));
+  }
+
+  @Test
+  public void testIncrementalTablingInvalidatesNegatedTables() {
+
+    KnowledgeBaseMemoryBacked kb = graph();
+    kb.azzert(parseClause("node(\"a\")."));
+    kb.azzert(parseClause("node(\"e\")."));
+    kb.azzert(parseClause("unreachable(X) :- node(X), ~path(\"a\", X)."));
+
+    Solver solver = new Solver(kb, new AbstractFunctions(), SubgoalMemoryBacked::new, null, true);
+
+    Assert.assertEquals(Sets.newHashSet(parseClause("unreachable(\"a\")."), parseClause("unreachable(\"e\").")),
+        Sets.newHashSet(solver.solve(parseQuery("unreachable(_)?"))));
+
+    solver.azzert(parseClause("edge(\"d\", \"e\")."));
+
+    Assert.assertEquals(Sets.newHashSet(parseClause("unreachable(\"a\").")),
+        Sets.newHashSet(solver.solve(parseQuery("unreachable(_)?"))));
+  }
+
+  @Test
+  public void testIncrementalTablingDetectsExternalModifications() {
+
+    KnowledgeBaseMemoryBacked kb = graph();
+    Solver solver = new Solver(kb, new AbstractFunctions(), SubgoalMemoryBacked::new, null, true);
+
+    Assert.assertEquals(3, Sets.newHashSet(solver.solve(parseQuery("path(\"a\", _)?"))).size());
+
+    kb.azzert(parseClause("edge(\"c\", \"e\")."));
+
+    Assert.assertEquals(4, Sets.newHashSet(solver.solve(parseQuery("path(\"a\", _)?"))).size());
+  }
+
+  @Test
+  public void testStreamReturnsAllAnswers() {
+
+    KnowledgeBaseMemoryBacked kb = chain(50);
+    kb.azzert(parseClause("node(\"n0\")."));
+    kb.azzert(parseClause("node(\"z\")."));
+    kb.azzert(parseClause("unreachable(X) :- node(X), ~path(\"n0\", X)."));
+
+    for (String question : new String[]{"path(\"n0\", _)?", "unreachable(_)?"}) {
+
+      Literal query = parseQuery(question);
+      Set<Fact> expected = Sets.newHashSet(new Solver(kb, new AbstractFunctions()).solve(query));
+      Answers answers = new Solver(kb, new AbstractFunctions()).stream(query);
+      Set<Fact> actual = Sets.newHashSet(answers);
+
+      Assert.assertEquals(expected, actual);
+      Assert.assertEquals(expected.size(), answers.nbAnswers());
+      Assert.assertEquals(Answers.Status.COMPLETED, answers.status());
+    }
+  }
+
+  @Test
+  public void testStreamFirstAnswer() {
+
+    KnowledgeBaseMemoryBacked kb = chain(50);
+    Literal query = parseQuery("path(\"n0\", _)?");
+
+    Solver solver1 = new Solver(kb, new AbstractFunctions());
+    Assert.assertEquals(50, Sets.newHashSet(solver1.solve(query)).size());
+
+    Solver solver2 = new Solver(kb, new AbstractFunctions());
+    Answers answers = solver2.stream(query, -1, -1, 1);
+
+    Assert.assertTrue(answers.hasNext());
+    Assert.assertEquals(parseClause("path(\"n0\", \"n1\")."), answers.next());
+    Assert.assertFalse(answers.hasNext());
+    Assert.assertEquals(Answers.Status.MAX_NB_ANSWERS_REACHED, answers.status());
+    Assert.assertTrue(solver2.nbSubgoals() < solver1.nbSubgoals());
+  }
+
+  @Test
+  public void testStreamCancellation() {
+
+    KnowledgeBaseMemoryBacked kb = chain(50);
+    Literal query = parseQuery("path(\"n0\", _)?");
+    Solver solver = new Solver(kb, new AbstractFunctions());
+
+    try (Answers answers = solver.stream(query)) {
+
+      Assert.assertTrue(answers.hasNext());
+      Assert.assertNotNull(answers.next());
+
+      answers.cancel();
+
+      Assert.assertFalse(answers.hasNext());
+      Assert.assertEquals(Answers.Status.CANCELLED, answers.status());
+    }
+
+    // The tables left incomplete by the cancelled search must not be reused
+    Assert.assertEquals(50, Sets.newHashSet(solver.solve(query)).size());
+
+    // Evaluating another query cancels the stream
+    Answers answers = solver.stream(query);
+    Assert.assertEquals(50, Sets.newHashSet(solver.solve(query)).size());
+    Assert.assertFalse(answers.hasNext());
+    Assert.assertEquals(Answers.Status.CANCELLED, answers.status());
+  }
+
+  @Test
+  public void testStreamBudgets() throws InterruptedException {
+
+    KnowledgeBaseMemoryBacked kb = chain(300);
+    Literal query = parseQuery("path(\"n0\", _)?");
+
+    Answers answers1 = new Solver(kb, new AbstractFunctions()).stream(query, -1, 10, -1);
+
+    Assert.assertTrue(Sets.newHashSet(answers1).size() < 300);
+    Assert.assertEquals(Answers.Status.MAX_NB_SUBGOALS_REACHED, answers1.status());
+
+    // The answers are computed on demand : waiting longer than the budget between two answers always exhausts it
+    Answers answers2 = new Solver(kb, new AbstractFunctions()).stream(query, 10, -1, -1);
+    Set<Fact> facts2 = new HashSet<>();
+
+    if (answers2.hasNext()) {
+      facts2.add(answers2.next());
+    }
+
+    Thread.sleep(20);
+    answers2.forEachRemaining(facts2::add);
+
+    Assert.assertTrue(facts2.size() < 300);
+    Assert.assertEquals(Answers.Status.TIMED_OUT, answers2.status());
+  }
+
+  @Test
+  public void testStreamReusesCompletedTables() {
+
+    KnowledgeBaseMemoryBacked kb = graph();
+    Solver solver = new Solver(kb, new AbstractFunctions(), SubgoalMemoryBacked::new, null, true);
+
+    Set<Fact> expected = Sets.newHashSet(solver.solve(parseQuery("path(\"a\", _)?")));
+    Answers answers = solver.stream(parseQuery("path(\"a\", _)?"));
+
+    Assert.assertEquals(expected, Sets.newHashSet(answers));
+    Assert.assertEquals(Answers.Status.COMPLETED, answers.status());
+  }
+
   @Test
   public void testProofHashcodeAndEquals() {
     Literal blue = new Literal("red", newConst("abc"));
@@ -419,4 +700,76 @@ public class SolverTest {
     EqualsVerifier.forClass(Proofer.Node.class).withIgnoredFields("bodies_").withIgnoredFields("rules_")
         .withPrefabValues(Literal.class, red, blue).verify();
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testWeightedModelCountIsLinearInBddSize() {
+
+    // The parity function over n variables has 2 * n nodes but 2^n paths
+    int n = 200;
+    BddManager mgr = new BddManager(n);
+    BiMap<Integer, Literal> bddVars = HashBiMap.create();
+    @Var BddNode even = mgr.One;
+    @Var BddNode odd = mgr.Zero;
+
+    for (int i = n - 1; i >= 0; i--) {
+
+      bddVars.put(i, new Literal(BigDecimal.valueOf(0.3), "p", newConst(i)));
+
+      BddNode newEven = mgr.create(i, odd, even);
+      BddNode newOdd = mgr.create(i, even, odd);
+      even = newEven;
+      odd = newOdd;
+    }
+
+    // P(even) = (1 + (1 - 2p)^n) / 2
+    BigDecimal expected = BigDecimal.ONE.add(BigDecimal.valueOf(0.4).pow(n)).divide(BigDecimal.valueOf(2));
+
+    Assert.assertEquals(0, expected.compareTo(Proofer.exactWeightedModelCount(bddVars, even)));
+
+    Map.Entry<Double, Double> approximation = Proofer.approximateWeightedModelCount(bddVars, even);
+
+    Assert.assertTrue(approximation.getValue() > 0.0);
+    Assert.assertEquals(expected.doubleValue(), approximation.getKey(), approximation.getValue());
+  }
+
+  private KnowledgeBaseMemoryBacked graph() {
+
+    KnowledgeBaseMemoryBacked kb = new KnowledgeBaseMemoryBacked();
+    kb.azzert(parseClause("edge(\"a\", \"b\")."));
+    kb.azzert(parseClause("edge(\"b\", \"c\")."));
+    kb.azzert(parseClause("edge(\"a\", \"d\")."));
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Z), path(Z, Y)."));
+    return kb;
+  }
+
+  private KnowledgeBaseMemoryBacked chain(int length) {
+
+    KnowledgeBaseMemoryBacked kb = new KnowledgeBaseMemoryBacked();
+
+    for (int i = 0; i < length; i++) {
+      kb.azzert(parseClause(String.format("edge(\"n%d\", \"n%d\").", i, i + 1)));
+    }
+
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Z), path(Z, Y)."));
+    return kb;
+  }
+
+  private KnowledgeBaseMemoryBacked bags() {
+
+    // Create kb
+    KnowledgeBaseMemoryBacked kb = new KnowledgeBaseMemoryBacked();
+
+    // Init kb with facts
+    kb.azzert(parseClause("bagItems(\"red_bag\", 1)."));
+    kb.azzert(parseClause("bagItems(\"green_bag\", 2)."));
+    kb.azzert(parseClause("bagItems(\"blue_bag\", 2)."));
+
+    // Init kb with rules
+    kb.azzert(parseClause(
+        "hasDifferentNumberOfItems(X, Y) :- bagItems(X, A), bagItems(Y, B), fn_eq(U, A, B), fn_is_false(U)."));
+
+    return kb;
+  }
+}
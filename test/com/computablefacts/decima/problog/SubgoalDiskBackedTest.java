@@ -0,0 +1,111 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.Parser.parseFact;
+import static com.computablefacts.decima.problog.Parser.parseQuery;
+import static com.computablefacts.decima.problog.Parser.parseRule;
+
+import com.computablefacts.asterix.View;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SubgoalDiskBackedTest {
+
+  private static SubgoalStore newStore() throws IOException {
+    return new SubgoalStore(Files.createTempDirectory("problog").toFile().getAbsolutePath(), 1);
+  }
+
+  @Test
+  public void testEncodeDecodeFact() {
+
+    Fact fact = parseFact("0.3::edge(\"a\", \"b\", 1, \"c d\").");
+
+    Assert.assertEquals(fact, ClauseCodec.decode(ClauseCodec.encode(fact)));
+  }
+
+  @Test
+  public void testEncodeDecodeRule() {
+
+    Rule rule = parseRule("path(X, Y) :- edge(X, Z), path(Z, Y).");
+    Rule newRule = (Rule) ClauseCodec.decode(ClauseCodec.encode(rule));
+
+    Assert.assertArrayEquals(ClauseCodec.encode(rule), ClauseCodec.encode(newRule));
+    Assert.assertArrayEquals(ClauseCodec.encode(rule), ClauseCodec.encode(rule.rename()));
+  }
+
+  @Test
+  public void testFactsAndProofs() throws IOException {
+
+    try (SubgoalStore store = newStore()) {
+
+      SubgoalDiskBacked subgoal1 = new SubgoalDiskBacked(parseQuery("edge(\"a\", X)?"), store);
+      SubgoalDiskBacked subgoal2 = new SubgoalDiskBacked(parseQuery("edge(\"b\", X)?"), store);
+
+      for (int i = 0; i < 1000; i++) {
+        subgoal1.fact(parseFact(String.format("edge(\"a\", \"%d\").", i)));
+      }
+
+      subgoal2.fact(parseFact("edge(\"b\", \"0\")."));
+      subgoal2.proof(parseRule("edge(\"b\", \"0\") :- node(\"b\"), node(\"0\")."));
+
+      Assert.assertEquals(1000, subgoal1.nbFacts());
+      Assert.assertEquals(0, subgoal1.nbProofs());
+      Assert.assertEquals(1, subgoal2.nbFacts());
+      Assert.assertEquals(1, subgoal2.nbProofs());
+
+      List<Fact> facts = View.of(subgoal1.facts()).toList();
+
+      Assert.assertEquals(1000, facts.size());
+
+      for (int i = 0; i < 1000; i++) {
+        Assert.assertEquals(parseFact(String.format("edge(\"a\", \"%d\").", i)), facts.get(i));
+      }
+
+      Assert.assertTrue(subgoal1.contains(parseFact("edge(\"a\", \"999\").")));
+      Assert.assertFalse(subgoal1.contains(parseFact("edge(\"a\", \"1000\").")));
+      Assert.assertFalse(subgoal1.contains(parseFact("edge(\"b\", \"0\").")));
+      Assert.assertTrue(subgoal2.contains(parseFact("edge(\"b\", \"0\").")));
+
+      Assert.assertEquals(View.of(parseFact("edge(\"b\", \"0\").")).toList(), View.of(subgoal2.facts()).toList());
+      Assert.assertEquals(View.of(parseRule("edge(\"b\", \"0\") :- node(\"b\"), node(\"0\").")).toList(),
+          View.of(subgoal2.proofs()).toList());
+    }
+  }
+
+  @Test
+  public void testFactsAddedWhileIterating() throws IOException {
+
+    try (SubgoalStore store = newStore()) {
+
+      SubgoalDiskBacked subgoal = new SubgoalDiskBacked(parseQuery("edge(\"a\", X)?"), store);
+      subgoal.fact(parseFact("edge(\"a\", \"0\")."));
+
+      Iterator<Fact> facts = subgoal.facts();
+      @com.google.errorprone.annotations.Var int nbFacts = 0;
+
+      while (facts.hasNext()) {
+        facts.next();
+        if (++nbFacts < 500) {
+          subgoal.fact(parseFact(String.format("edge(\"a\", \"%d\").", nbFacts)));
+        }
+      }
+
+      Assert.assertEquals(500, nbFacts);
+      Assert.assertEquals(500, subgoal.nbFacts());
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReadAfterClose() throws IOException {
+
+    SubgoalStore store = newStore();
+    SubgoalDiskBacked subgoal = new SubgoalDiskBacked(parseQuery("edge(\"a\", X)?"), store);
+    subgoal.fact(parseFact("edge(\"a\", \"0\")."));
+    store.close();
+
+    Assert.assertFalse(subgoal.facts().hasNext());
+  }
+}
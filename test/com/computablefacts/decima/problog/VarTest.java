@@ -10,7 +10,19 @@ public class VarTest {
 
   @Test
   public void testHashcodeAndEquals() {
-    EqualsVerifier.forClass(Var.class).withNonnullFields("id_").withIgnoredFields("isWildcard_").verify();
+    EqualsVerifier.forClass(Var.class).withIgnoredFields("isWildcard_").verify();
+  }
+
+  @Test
+  public void testVarNeverEqualsConstWithTheSameCode() {
+
+    // Once the variable generator wraps around, a variable may get a non-negative code
+    Var var = new Var(5, false);
+    Const conzt = new Const(5, "five");
+
+    Assert.assertNotEquals(var, conzt);
+    Assert.assertNotEquals(conzt, var);
+    Assert.assertEquals("v4294967290", var.id());
   }
 
   @Test
@@ -8,8 +8,10 @@ import com.computablefacts.decima.problog.KnowledgeBaseMemoryBacked;
 import com.computablefacts.decima.problog.Literal;
 import com.computablefacts.decima.problog.Parser;
 import com.computablefacts.decima.problog.Proofer;
+import com.computablefacts.decima.problog.Solver;
 import com.computablefacts.decima.problog.SubgoalDiskBacked;
 import com.computablefacts.decima.problog.SubgoalMemoryBacked;
+import com.computablefacts.decima.problog.SubgoalStore;
 import com.computablefacts.nona.Function;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -20,6 +22,7 @@ import java.nio.file.Files;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -43,29 +46,123 @@ public abstract class AbstractTest {
     AbstractFunctions functions = new AbstractFunctions();
     functions().forEach(fn -> functions.register(fn.name(), fn));
 
-    for (Proofer solver : solvers(kb, functions)) {
-      for (Map.Entry<String, String> entry : queries().entrySet()) {
+    SubgoalStore store = store();
 
-        Literal query = Parser.parseQuery(entry.getKey());
-        Set<Fact> answers = Sets.newHashSet(solver.solve(query));
-        BigDecimal probability = solver.probability(query, 5).getOrThrow();
+    try {
+      for (Proofer solver : solvers(kb, functions, store)) {
+        for (Map.Entry<String, String> entry : queries().entrySet()) {
+
+          Literal query = Parser.parseQuery(entry.getKey());
+          Set<Fact> answers = Sets.newHashSet(solver.solve(query));
+          BigDecimal probability = solver.probability(query, 5).getOrThrow();
+
+          if (isApproximable()) {
+
+            Map.Entry<Double, Double> approximation = solver.approximateProbability(query).getOrThrow();
+
+            // The approximation must match the exact probability, up to its error bound and the rounding to 5 digits
+            Assert.assertEquals(
+                String.format("mismatch between the exact and the approximate probability for query %s", query),
+                probability.doubleValue(), approximation.getKey(),
+                approximation.getValue() + probability.ulp().doubleValue());
+
+            // Unfolding all the proofs must give the exact probability and unfolding only the best one a lower bound
+            BigDecimal kBestProbability = solver.kBestProbability(query, Integer.MAX_VALUE, 5).getOrThrow();
+            BigDecimal bestProbability = solver.kBestProbability(query, 1, 5).getOrThrow();
+
+            Assert.assertEquals(
+                String.format("mismatch between the exact and the k-best probability for query %s", query),
+                probability.doubleValue(), kBestProbability.doubleValue(), 2 * probability.ulp().doubleValue());
+            Assert.assertTrue(
+                String.format("the best proof probability (%s) should be a lower bound of the exact probability (%s) "
+                    + "for query %s", bestProbability, probability, query),
+                bestProbability.compareTo(probability) <= 0);
+          }
+
+          if (entry.getValue() == null) {
+            Assert.assertTrue(String.format("no answer should be returned for query %s", query), answers.isEmpty());
+          } else {
+
+            Fact fact = Parser.parseFact(entry.getValue());
+            Fact expected = new Fact(new Literal(fact.head().predicate().name(), fact.head().terms()));
+
+            Assert.assertTrue(String.format("missing answer for query %s : %s", query, expected),
+                factBelongsToAnswers(fact, answers));
+
+            Assert.assertEquals(String.format(
+                "mismatch between the fact expected probability (%s) and the fact actual probability (%s) for query %s",
+                fact.head().probability(), probability, query), 0, probability.compareTo(fact.head().probability()));
+          }
+        }
+      }
+    } finally {
+      if (store != null) {
+        store.close();
+      }
+    }
+
+    // The exact probability must belong to the (99.99%) confidence interval of the sampled probability
+    if (isSampleable()) {
+      for (String question : queries().keySet()) {
+
+        Literal query = Parser.parseQuery(question);
+        Proofer proofer = new Proofer(kb, functions);
+        BigDecimal probability = proofer.probability(query, 5).getOrThrow();
+        Proofer.Estimate estimate = proofer.sampledProbability(query, 500, 5_000, 42).getOrThrow();
+        Map.Entry<Double, Double> interval = estimate.confidenceInterval(3.9);
+
+        Assert.assertTrue(
+            String.format("the exact probability (%s) should belong to the confidence interval %s of the sampled "
+                + "probability (%s) for query %s", probability, interval, estimate, query),
+            interval.getKey() <= probability.doubleValue() && probability.doubleValue() <= interval.getValue());
+      }
+    }
+
+    // The variable order must not change the exact probability
+    if (isReorderable()) {
+      for (String question : queries().keySet()) {
+
+        Literal query = Parser.parseQuery(question);
+        BigDecimal probability = new Proofer(kb, functions).probability(query, 5).getOrThrow();
 
-        if (entry.getValue() == null) {
-          Assert.assertTrue(String.format("no answer should be returned for query %s", query), answers.isEmpty());
-        } else {
+        for (Proofer.VariableOrdering ordering : Proofer.VariableOrdering.values()) {
 
-          Fact fact = Parser.parseFact(entry.getValue());
-          Fact expected = new Fact(new Literal(fact.head().predicate().name(), fact.head().terms()));
+          Proofer proofer = new Proofer(kb, functions);
+          proofer.variableOrdering(ordering);
+          proofer.enableDynamicReordering(1);
 
-          Assert.assertTrue(String.format("missing answer for query %s : %s", query, expected),
-              factBelongsToAnswers(fact, answers));
+          BigDecimal reorderedProbability = proofer.probability(query, 5).getOrThrow();
+          Proofer.BddReport report = proofer.bddReport().getOrThrow();
 
-          Assert.assertEquals(String.format(
-              "mismatch between the fact expected probability (%s) and the fact actual probability (%s) for query %s",
-              fact.head().probability(), probability, query), 0, probability.compareTo(fact.head().probability()));
+          Assert.assertEquals(
+              String.format("mismatch between the exact probability with and without reordering (%s) for query %s",
+                  ordering, query), probability.doubleValue(), reorderedProbability.doubleValue(),
+              2 * probability.ulp().doubleValue());
+          Assert.assertTrue(report.nbNodesAfterReordering() <= report.nbNodesBeforeReordering());
         }
       }
     }
+
+    // The parallel evaluation mode must produce exactly the same answers as the sequential one
+    if (isParallelizable()) {
+
+      ForkJoinPool pool = new ForkJoinPool(4);
+
+      try {
+        for (String question : queries().keySet()) {
+
+          Literal query = Parser.parseQuery(question);
+          Set<Fact> expected = Sets.newHashSet(new Solver(kb, functions).solve(query));
+          Set<Fact> actual = Sets.newHashSet(
+              new Solver(kb, functions, SubgoalMemoryBacked::new, pool).solve(query));
+
+          Assert.assertEquals(String.format("mismatch between sequential and parallel answers for query %s", query),
+              expected, actual);
+        }
+      } finally {
+        pool.shutdown();
+      }
+    }
   }
 
   protected List<String> facts() {
@@ -80,14 +177,57 @@ public abstract class AbstractTest {
     return Lists.newArrayList();
   }
 
-  private List<Proofer> solvers(AbstractKnowledgeBase kb, AbstractFunctions functions) {
+  /**
+   * Check if the exact probabilities must be compared against the approximate and the k-best ones.
+   *
+   * @return true iif the approximate and the k-best probabilities must be checked.
+   */
+  protected boolean isApproximable() {
+    return false;
+  }
+
+  /**
+   * Check if the exact probabilities must be compared against the sampled ones. Only enable it for small programs whose
+   * semantics is the same for the exact and the sampled inference.
+   *
+   * @return true iif the sampled probabilities must be checked.
+   */
+  protected boolean isSampleable() {
+    return false;
+  }
+
+  /**
+   * Check if the exact probabilities must be compared against the ones computed with every variable ordering.
+   *
+   * @return true iif the variable orderings must be checked.
+   */
+  protected boolean isReorderable() {
+    return false;
+  }
+
+  /**
+   * Check if the answers of the parallel evaluation mode must be compared against the ones of the sequential one.
+   *
+   * @return true iif the parallel evaluation mode must be checked.
+   */
+  protected boolean isParallelizable() {
+    return false;
+  }
+
+  private SubgoalStore store() {
     try {
-      String path = Files.createTempDirectory("problog").toFile().getAbsolutePath();
-      return Lists.newArrayList(new Proofer(kb, functions, SubgoalMemoryBacked::new),
-          new Proofer(kb, functions, literal -> new SubgoalDiskBacked(literal, path)));
+      return new SubgoalStore(Files.createTempDirectory("problog").toFile().getAbsolutePath());
     } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private List<Proofer> solvers(AbstractKnowledgeBase kb, AbstractFunctions functions, SubgoalStore store) {
+    if (store == null) {
       return Lists.newArrayList(new Proofer(kb, functions, SubgoalMemoryBacked::new));
     }
+    return Lists.newArrayList(new Proofer(kb, functions, SubgoalMemoryBacked::new),
+        new Proofer(kb, functions, literal -> new SubgoalDiskBacked(literal, store)));
   }
 
   private boolean factBelongsToAnswers(Fact fact, Set<Fact> answers) {
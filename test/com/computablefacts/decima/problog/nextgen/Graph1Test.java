@@ -35,6 +35,16 @@ public class Graph1Test extends AbstractTest {
     return rules;
   }
 
+  @Override
+  protected boolean isApproximable() {
+    return true;
+  }
+
+  @Override
+  protected boolean isParallelizable() {
+    return true;
+  }
+
   @Override
   protected Map<String, String> queries() {
 
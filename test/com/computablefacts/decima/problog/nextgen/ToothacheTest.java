@@ -29,6 +29,26 @@ public class ToothacheTest extends AbstractTest {
     return rules;
   }
 
+  @Override
+  protected boolean isApproximable() {
+    return true;
+  }
+
+  @Override
+  protected boolean isSampleable() {
+    return true;
+  }
+
+  @Override
+  protected boolean isReorderable() {
+    return true;
+  }
+
+  @Override
+  protected boolean isParallelizable() {
+    return true;
+  }
+
   @Override
   protected Map<String, String> queries() {
 
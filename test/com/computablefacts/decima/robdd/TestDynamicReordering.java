@@ -0,0 +1,140 @@
+package com.computablefacts.decima.robdd;
+
+import com.google.common.collect.Lists;
+import com.google.errorprone.annotations.Var;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDynamicReordering extends TestBdd {
+
+  /**
+   * Build (x0 & x3) | (x1 & x4) | (x2 & x5) : the BDD is exponential with the initial variable order and linear with
+   * the order x0 < x3 < x1 < x4 < x2 < x5.
+   */
+  private static BddNode pairs(BddManager manager, List<BddNode> vars) {
+
+    @Var BddNode root = manager.Zero;
+
+    for (int i = 0; i < 3; i++) {
+      root = manager.or(root, manager.and(vars.get(i), vars.get(i + 3)));
+    }
+    return root;
+  }
+
+  private static List<BddNode> variables(BddManager manager) {
+    List<BddNode> vars = new ArrayList<>();
+    for (int i = 0; i < manager.N(); i++) {
+      vars.add(manager.create(i, manager.One, manager.Zero));
+    }
+    return vars;
+  }
+
+  @Test
+  public void testSiftingSharedRoots() {
+
+    BddManager manager = new BddManager(6);
+    List<BddNode> vars = variables(manager);
+    BddNode root = pairs(manager, vars);
+
+    Map<String, Boolean> truth = buildThruthTable(manager, root);
+    int sizeBefore = manager.size(root);
+
+    List<BddNode> roots = new ArrayList<>(vars);
+    roots.add(root);
+    manager.sifting(roots);
+
+    checkThruthTable(truth, root);
+    Assert.assertTrue(manager.size(root) < sizeBefore);
+
+    // The variables are still valid BDDs
+    for (int i = 0; i < vars.size(); i++) {
+      Assert.assertEquals(i, vars.get(i).index());
+      Assert.assertTrue(vars.get(i).high().isOne());
+      Assert.assertTrue(vars.get(i).low().isZero());
+    }
+  }
+
+  @Test
+  public void testLevels() {
+
+    BddManager manager = new BddManager(3);
+    BddNode root = manager.create(0, manager.create(1, manager.One, manager.Zero), manager.Zero);
+
+    Assert.assertEquals(0, manager.level(0));
+    Assert.assertEquals(1, manager.level(1));
+    Assert.assertEquals(3, manager.level(manager.One.index()));
+
+    manager.Swap(root, 0, 1);
+
+    Assert.assertEquals(1, manager.level(0));
+    Assert.assertEquals(0, manager.level(1));
+    Assert.assertEquals(1, root.index());
+  }
+
+  @Test
+  public void testIteAfterReordering() {
+
+    BddManager manager = new BddManager(6);
+    List<BddNode> vars = variables(manager);
+    BddNode root = pairs(manager, vars);
+
+    List<BddNode> roots = new ArrayList<>(vars);
+    roots.add(root);
+    manager.sifting(roots);
+
+    // Build the same function again, using the new variable order
+    BddNode copy = manager.reduce(pairs(manager, vars));
+    BddManager reference = new BddManager(6);
+    Map<String, Boolean> truth = buildThruthTable(reference, pairs(reference, variables(reference)));
+
+    checkThruthTable(truth, copy);
+
+    // The top variable of each node is above the variables of its children
+    for (BddNode node : copy.nodes()) {
+      if (node.value() == null) {
+        Assert.assertTrue(manager.level(node.index()) < manager.level(node.low().index()));
+        Assert.assertTrue(manager.level(node.index()) < manager.level(node.high().index()));
+      }
+    }
+  }
+
+  @Test
+  public void testReorderIfNeeded() {
+
+    BddManager manager = new BddManager(6);
+    List<BddNode> vars = variables(manager);
+
+    Assert.assertFalse(manager.isReorderingNeeded());
+    Assert.assertFalse(manager.reorderIfNeeded(vars));
+
+    manager.enableDynamicReordering(5);
+
+    @Var BddNode root = manager.Zero;
+    List<BddNode> roots = new ArrayList<>(vars);
+
+    for (int i = 0; i < 3; i++) {
+
+      root = manager.or(root, manager.and(vars.get(i), vars.get(i + 3)));
+
+      roots.add(root);
+      manager.reorderIfNeeded(roots);
+      roots.remove(roots.size() - 1);
+    }
+
+    BddManager reference = new BddManager(6);
+    Map<String, Boolean> truth = buildThruthTable(reference, pairs(reference, variables(reference)));
+
+    checkThruthTable(truth, root);
+    Assert.assertTrue(manager.nbReorderings() > 0);
+
+    // Hysteresis : the unique table must grow before the next reordering
+    Assert.assertFalse(manager.reorderIfNeeded(Lists.newArrayList(root)));
+
+    manager.disableDynamicReordering();
+
+    Assert.assertFalse(manager.isReorderingNeeded());
+  }
+}
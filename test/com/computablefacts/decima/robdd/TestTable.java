@@ -0,0 +1,91 @@
+package com.computablefacts.decima.robdd;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTable {
+
+  @Test
+  public void testPutGetDelete() {
+
+    BddManager manager = new BddManager(1000);
+    Table table = new Table();
+
+    for (int i = 0; i < 1000; i++) {
+      table.put(i, 0, 1, new BddNode(i, manager.One, manager.Zero));
+    }
+
+    Assert.assertEquals(1000, table.size());
+
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertEquals(i, table.get(i, 0, 1).index());
+      Assert.assertNull(table.get(i, 1, 0));
+    }
+
+    for (int i = 0; i < 1000; i += 2) {
+      table.delete(i, 0, 1);
+    }
+
+    Assert.assertEquals(500, table.size());
+
+    for (int i = 0; i < 1000; i++) {
+      if (i % 2 == 0) {
+        Assert.assertNull(table.get(i, 0, 1));
+      } else {
+        Assert.assertEquals(i, table.get(i, 0, 1).index());
+      }
+    }
+
+    Assert.assertTrue(table.nodes(0).isEmpty());
+    Assert.assertEquals(1, table.nodes(1).size());
+  }
+
+  @Test
+  public void testNodesAreUnique() {
+
+    BddManager manager = new BddManager(4);
+
+    BddNode a = manager.create(0, manager.One, manager.Zero);
+    BddNode b = manager.create(0, manager.One, manager.Zero);
+
+    Assert.assertSame(a, b);
+    Assert.assertSame(a, manager.get(0, manager.Zero.id(), manager.One.id()));
+  }
+
+  @Test
+  public void testComputedTableIsLossy() {
+
+    BddManager manager = new BddManager(4);
+    BddNode a = manager.create(0, manager.One, manager.Zero);
+    BddNode b = manager.create(1, manager.One, manager.Zero);
+    ComputedTable cache = new ComputedTable(1);
+
+    cache.put(1, 2, 3, a);
+
+    Assert.assertSame(a, cache.get(1, 2, 3));
+    Assert.assertNull(cache.get(3, 2, 1));
+
+    cache.put(3, 2, 1, b); // Evicts the previous entry
+
+    Assert.assertNull(cache.get(1, 2, 3));
+    Assert.assertSame(b, cache.get(3, 2, 1));
+
+    cache.clear();
+
+    Assert.assertNull(cache.get(3, 2, 1));
+  }
+
+  @Test
+  public void testIteIsCached() {
+
+    BddManager manager = new BddManager(4);
+
+    BddNode a = manager.create(0, manager.One, manager.Zero);
+    BddNode b = manager.create(1, manager.One, manager.Zero);
+
+    Assert.assertSame(manager.and(a, b), manager.and(a, b));
+    Assert.assertSame(manager.or(a, b), manager.or(a, b));
+    Assert.assertSame(manager.negate(a), manager.negate(a));
+    Assert.assertSame(a, manager.negate(manager.negate(a)));
+  }
+}
@@ -3,11 +3,14 @@ package com.computablefacts.nona;
 import com.computablefacts.asterix.BoxedType;
 import com.computablefacts.nona.functions.additiveoperators.Add;
 import com.computablefacts.nona.functions.multiplicativeoperators.Divide;
+import com.computablefacts.nona.functions.stringoperators.Concat;
 import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import nl.jqno.equalsverifier.EqualsVerifier;
 import org.junit.Assert;
 import org.junit.Test;
@@ -396,6 +399,76 @@ public class FunctionTest {
     Assert.assertEquals(BoxedType.of(2.5), fn.evaluate(functions));
   }
 
+  @Test
+  public void testMemoizationStats() {
+
+    Map<String, Function> functions = new HashMap<>();
+    functions.put("SUM", new Add());
+    functions.put("DIV", new Divide());
+
+    Function fn = new Function("DIV(SUM(1, 2, 3, 4), 4)");
+
+    Assert.assertEquals(BoxedType.of(2.5), fn.evaluate(functions));
+    Assert.assertEquals(BoxedType.of(2.5), fn.evaluate(functions));
+
+    Assert.assertEquals(1, functions.get("SUM").memoizationStats().missCount());
+    Assert.assertEquals(1, functions.get("SUM").memoizationStats().hitCount());
+    Assert.assertEquals(1, functions.get("DIV").memoizationStats().missCount());
+    Assert.assertEquals(1, functions.get("DIV").memoizationStats().hitCount());
+  }
+
+  @Test
+  public void testMemoizationDisabled() {
+
+    AtomicInteger nbCalls = new AtomicInteger();
+    Map<String, Function> functions = new HashMap<>();
+    functions.put("SUM", new Add() {
+
+      @Override
+      public BoxedType<?> evaluate(List<BoxedType<?>> parameters) {
+        nbCalls.incrementAndGet();
+        return super.evaluate(parameters);
+      }
+    });
+    functions.get("SUM").memoize(Memoization.disabled());
+
+    Function fn = new Function("SUM(1, 2)");
+
+    Assert.assertEquals(BoxedType.of(3), fn.evaluate(functions));
+    Assert.assertEquals(BoxedType.of(3), fn.evaluate(functions));
+    Assert.assertEquals(2, nbCalls.get());
+    Assert.assertEquals(0, functions.get("SUM").memoizationStats().requestCount());
+  }
+
+  @Test
+  public void testMemoizationSkipsLongArguments() {
+
+    Map<String, Function> functions = new HashMap<>();
+    functions.put("CONCAT", new Concat());
+    functions.get("CONCAT").memoize(Memoization.ofMaximumSize(10).maxArgumentLength(3));
+
+    Assert.assertEquals(BoxedType.of("abc"), new Function("CONCAT(a, bc)").evaluate(functions));
+    Assert.assertEquals(BoxedType.of("abcd"), new Function("CONCAT(a, bcd)").evaluate(functions));
+    Assert.assertEquals(BoxedType.of("abcde"), new Function("CONCAT(a, bcde)").evaluate(functions));
+
+    Assert.assertEquals(2, functions.get("CONCAT").memoizationStats().requestCount());
+  }
+
+  @Test
+  public void testMemoizationBoundedByWeight() {
+
+    Map<String, Function> functions = new HashMap<>();
+    functions.put("CONCAT", new Concat());
+    functions.get("CONCAT").memoize(Memoization.ofMaximumWeight(10).expireAfterAccess(1, TimeUnit.MINUTES));
+
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(BoxedType.of("ab" + i), new Function("CONCAT(ab, " + i + ")").evaluate(functions));
+    }
+
+    Assert.assertEquals(10, functions.get("CONCAT").memoizationStats().missCount());
+    Assert.assertTrue(functions.get("CONCAT").memoizationStats().evictionCount() > 0);
+  }
+
   @Test
   public void testFunctionAliasingWithSingleParameter() {
 
@@ -410,6 +483,89 @@ public class FunctionTest {
     Assert.assertFalse(new Function("IS_EVEN(1)").evaluate(definitions).asBool());
   }
 
+  @Test
+  public void testCompiledFunctionAliasing() {
+
+    Map<String, Function> definitions = Function.definitions();
+    definitions.put("IS_ODD", new Function("IS_ODD(x) := IF(EQUAL(MOD(x, 2), 0), false, true)"));
+    definitions.put("IS_EVEN", new Function("IS_EVEN(x) := NOT(IS_ODD(x))"));
+
+    CompiledFunction isOdd = new Function("IS_ODD(n)").compile(definitions, Lists.newArrayList("n"));
+    CompiledFunction isEven = new Function("IS_EVEN(n)").compile(definitions, Lists.newArrayList("n"));
+
+    Assert.assertEquals(Lists.newArrayList("n"), isOdd.variables());
+
+    Assert.assertFalse(isOdd.evaluate(BoxedType.of(2)).asBool());
+    Assert.assertTrue(isEven.evaluate(BoxedType.of(2)).asBool());
+
+    Assert.assertTrue(isOdd.evaluate(BoxedType.of(1)).asBool());
+    Assert.assertFalse(isEven.evaluate(BoxedType.of(1)).asBool());
+  }
+
+  @Test
+  public void testCompiledFunctionWithNamedVariables() {
+
+    Map<String, BoxedType<?>> substitutions = new HashMap<>();
+    substitutions.put("x", BoxedType.of(1));
+    substitutions.put("y", BoxedType.of(2));
+
+    CompiledFunction fn = new Function("ADD(x, y)").compile(Function.definitions(), Lists.newArrayList("x", "y"));
+
+    Assert.assertEquals(BoxedType.of(3), fn.evaluate(substitutions));
+    Assert.assertEquals(BoxedType.of(3), fn.evaluate(BoxedType.of(1), BoxedType.of(2)));
+  }
+
+  @Test
+  public void testCompiledFunctionWithUnboundVariable() {
+
+    CompiledFunction fn = new Function("CONCAT(x, y)").compile(Function.definitions(), Lists.newArrayList("x", "y"));
+
+    Assert.assertEquals(BoxedType.of("1y"), fn.evaluate(BoxedType.of(1)));
+    Assert.assertEquals(new Function("CONCAT(1, y)").evaluate(Function.definitions()), fn.evaluate(BoxedType.of(1)));
+  }
+
+  @Test
+  public void testCompiledFunctionShortCircuits() {
+
+    Map<String, Function> definitions = Function.definitions();
+    definitions.put("FAIL", new Function(eCategory.ASSIGNMENT_OPERATORS, "FAIL", "For tests only.") {
+
+      @Override
+      public BoxedType<?> evaluate(List<BoxedType<?>> parameters) {
+        throw new IllegalStateException("FAIL should not be evaluated");
+      }
+    });
+
+    Assert.assertEquals(BoxedType.of(1), new Function("IF(true, 1, FAIL())").compile(definitions).evaluate());
+    Assert.assertEquals(BoxedType.of(false), new Function("AND(false, FAIL())").compile(definitions).evaluate());
+    Assert.assertEquals(BoxedType.of(true), new Function("OR(true, FAIL())").compile(definitions).evaluate());
+    Assert.assertEquals(BoxedType.of("b"),
+        new Function("SWITCH(2, 1, FAIL(), 2, b, _, FAIL())").compile(definitions).evaluate());
+    Assert.assertEquals(BoxedType.of("c"),
+        new Function("WHICH(false, FAIL(), _, c)").compile(definitions).evaluate());
+  }
+
+  @Test
+  public void testCompiledRecursiveFunction() {
+
+    Map<String, Function> definitions = Function.definitions();
+    definitions.put("FACT", new Function("FACT(n) := IF(LTE(n, 1), 1, MUL(n, FACT(SUB(n, 1))))"));
+
+    CompiledFunction fn = new Function("FACT(n)").compile(definitions, Lists.newArrayList("n"));
+
+    Assert.assertEquals(BoxedType.of(1), fn.evaluate(BoxedType.of(1)));
+    Assert.assertEquals(BoxedType.of(120), fn.evaluate(BoxedType.of(5)));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCompileFunctionWithArityMismatch() {
+
+    Map<String, Function> definitions = Function.definitions();
+    definitions.put("IS_ODD", new Function("IS_ODD(x) := IF(EQUAL(MOD(x, 2), 0), false, true)"));
+
+    CompiledFunction fn = new Function("IS_ODD(1, 2)").compile(definitions);
+  }
+
   @Test
   public void testParseNotAFunctionAliasing() {
     Function function = new Function("CONCAT(\"LHS\", " + Function.wrap(" := ") + ", \"RHS\")");
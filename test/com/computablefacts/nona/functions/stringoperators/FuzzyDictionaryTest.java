@@ -0,0 +1,111 @@
+package com.computablefacts.nona.functions.stringoperators;
+
+import com.computablefacts.asterix.nlp.Span;
+import com.computablefacts.asterix.nlp.SpanSequence;
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import me.xdrop.fuzzywuzzy.FuzzySearch;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FuzzyDictionaryTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMinScore() {
+    SpanSequence spans = FuzzyDictionary.build(Lists.newArrayList("sugar")).find("sugar", 101, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidK() {
+    SpanSequence spans = FuzzyDictionary.build(Lists.newArrayList("sugar")).find("sugar", 50, 0);
+  }
+
+  @Test
+  public void testDuplicateAndEmptyEntriesAreIgnored() {
+
+    FuzzyDictionary dictionary = FuzzyDictionary.build(Lists.newArrayList("sugar", "", "sugar", null, "cane"));
+
+    Assert.assertEquals(2, dictionary.size());
+  }
+
+  @Test
+  public void testTopK() {
+
+    FuzzyDictionary dictionary = FuzzyDictionary.build(Lists.newArrayList("sugarcane", "sugar", "sugarcanes", "cane"));
+    SpanSequence spans = dictionary.find("sugarcane", 50, 2);
+
+    Assert.assertEquals(Lists.newArrayList("sugarcane", "sugarcanes"), texts(spans));
+  }
+
+  @Test
+  public void testShortEntries() {
+
+    FuzzyDictionary dictionary = FuzzyDictionary.build(Lists.newArrayList("a", "b", "ab", "ba"));
+
+    Assert.assertEquals(Lists.newArrayList("ab", "a", "b", "ba"), texts(dictionary.find("ab", 50, 10)));
+    Assert.assertEquals(Lists.newArrayList("a"), texts(dictionary.find("a", 100, 10)));
+  }
+
+  @Test
+  public void testSameResultsAsAFullScan() {
+
+    Random random = new Random(42);
+    List<String> entries = new ArrayList<>();
+
+    for (int i = 0; i < 2000; i++) {
+      entries.add(randomString(random));
+    }
+
+    FuzzyDictionary dictionary = FuzzyDictionary.build(entries);
+
+    for (int i = 0; i < 200; i++) {
+
+      String text = random.nextBoolean() ? mutate(random, entries.get(random.nextInt(entries.size())))
+          : randomString(random);
+      int minScore = 40 + random.nextInt(61);
+
+      List<String> expected = entries.stream().distinct().filter(entry -> FuzzySearch.ratio(text, entry) >= minScore)
+          .sorted((e1, e2) -> {
+            int score1 = FuzzySearch.ratio(text, e1);
+            int score2 = FuzzySearch.ratio(text, e2);
+            return score1 != score2 ? score2 - score1 : entries.indexOf(e1) - entries.indexOf(e2);
+          }).limit(5).collect(Collectors.toList());
+
+      Assert.assertEquals(text + " / " + minScore, expected, texts(dictionary.find(text, minScore, 5)));
+    }
+  }
+
+  private static List<String> texts(SpanSequence spans) {
+    List<String> texts = new ArrayList<>();
+    for (Span span : spans) {
+      texts.add(span.text());
+    }
+    return texts;
+  }
+
+  private static String randomString(Random random) {
+    StringBuilder builder = new StringBuilder();
+    int length = 1 + random.nextInt(12);
+    for (int i = 0; i < length; i++) {
+      builder.append((char) ('a' + random.nextInt(4)));
+    }
+    return builder.toString();
+  }
+
+  private static String mutate(Random random, String string) {
+    StringBuilder builder = new StringBuilder(string);
+    int nbEdits = random.nextInt(3);
+    for (int i = 0; i < nbEdits && builder.length() > 1; i++) {
+      int position = random.nextInt(builder.length());
+      if (random.nextBoolean()) {
+        builder.deleteCharAt(position);
+      } else {
+        builder.insert(position, (char) ('a' + random.nextInt(4)));
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -4,10 +4,13 @@ import com.computablefacts.asterix.nlp.Span;
 import com.computablefacts.asterix.nlp.SpanSequence;
 import com.computablefacts.nona.Function;
 import com.google.common.collect.Lists;
+import com.google.errorprone.annotations.Var;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.Test;
@@ -52,4 +55,100 @@ public class MatchDictionaryTest {
     Assert.assertTrue(spans.stream().map(Span::text).collect(Collectors.toSet()).contains("Forty-two"));
     Assert.assertTrue(spans.stream().map(Span::text).collect(Collectors.toSet()).contains("Deep Thought"));
   }
+
+  @Test
+  public void testAutomatonIsWrittenNextToTheDictionary() throws IOException {
+
+    // Create dictionary
+    List<String> keywords = Lists.newArrayList("sugar");
+    Path file = Files.createTempFile("dico-", ".txt");
+    Files.write(file, keywords);
+
+    // Execute function
+    Function fn = new Function(
+        "MATCH_DICTIONARY(" + Function.wrap(file.toString()) + ", " + Function.wrap("sugarcane sugar canesugar") + ")");
+    SpanSequence spans = (SpanSequence) fn.evaluate(Function.definitions()).value();
+
+    Assert.assertEquals(1, spans.size());
+    Assert.assertTrue(new File(file + MatchDictionary.EXTENSION).exists());
+  }
+
+  @Test
+  public void testPrecompiledDictionary() throws IOException {
+
+    // Create dictionary
+    List<String> keywords = Lists.newArrayList("great question", "forty-two", "deep thought");
+    Path file = Files.createTempFile("dico-", ".txt");
+    Files.write(file, keywords);
+
+    File automaton = Files.createTempFile("dico-", MatchDictionary.EXTENSION).toFile();
+    MatchDictionary.precompile(file.toFile(), automaton);
+
+    // Execute function
+    Function fn = new Function("MATCH_DICTIONARY(" + Function.wrap(automaton.toString()) + ", " + Function.wrap(
+        "The Answer to the Great Question... Of Life,\nthe Universe and Everything... Is... Forty-two,' said\nDeep Thought, with infinite majesty and calm.")
+        + ")");
+    SpanSequence spans = (SpanSequence) fn.evaluate(Function.definitions()).value();
+
+    Assert.assertEquals(3, spans.size());
+    Assert.assertEquals(Lists.newArrayList("Great Question", "Forty-two", "Deep Thought"),
+        spans.stream().map(Span::text).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testDictionaryIsReloadedWhenItChanges() throws Exception {
+
+    // Create dictionary
+    Path file = Files.createTempFile("dico-", ".txt");
+    Files.write(file, Lists.newArrayList("sugar"));
+
+    Function fn = new Function(
+        "MATCH_DICTIONARY(" + Function.wrap(file.toString()) + ", " + Function.wrap("sugarcane sugar canesugar") + ")");
+
+    Map<String, Function> definitions = Function.definitions();
+    @Var SpanSequence spans = (SpanSequence) fn.evaluate(definitions).value();
+
+    Assert.assertEquals(1, spans.size());
+    Assert.assertEquals("sugar", spans.span(0).text());
+
+    // Update dictionary
+    Thread.sleep(1100);
+    Files.write(file, Lists.newArrayList("sugarcane", "canesugar"));
+
+    spans = (SpanSequence) fn.evaluate(definitions).value();
+
+    Assert.assertEquals(2, spans.size());
+    Assert.assertEquals("sugarcane", spans.span(0).text());
+    Assert.assertEquals("canesugar", spans.span(1).text());
+  }
+
+  @Test
+  public void testAutomatonIsRebuiltWhenTheDictionaryChangesWithinTheSameTimestamp() throws Exception {
+
+    // Create dictionary
+    Path file = Files.createTempFile("dico-", ".txt");
+    Files.write(file, Lists.newArrayList("sugar"));
+
+    long lastModified = file.toFile().lastModified();
+
+    Function fn = new Function(
+        "MATCH_DICTIONARY(" + Function.wrap(file.toString()) + ", " + Function.wrap("sugarcane sugar canesugar") + ")");
+
+    Map<String, Function> definitions = Function.definitions();
+    @Var SpanSequence spans = (SpanSequence) fn.evaluate(definitions).value();
+
+    Assert.assertEquals(1, spans.size());
+    Assert.assertEquals("sugar", spans.span(0).text());
+
+    // Update dictionary but keep its timestamp (as cp -p or rsync -t would do)
+    Thread.sleep(1100);
+    Files.write(file, Lists.newArrayList("sugarcane", "canesugar"));
+    Assert.assertTrue(file.toFile().setLastModified(lastModified));
+
+    spans = (SpanSequence) fn.evaluate(definitions).value();
+
+    Assert.assertEquals(2, spans.size());
+    Assert.assertEquals("sugarcane", spans.span(0).text());
+    Assert.assertEquals("canesugar", spans.span(1).text());
+  }
 }
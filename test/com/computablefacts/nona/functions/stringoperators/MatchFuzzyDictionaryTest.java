@@ -0,0 +1,79 @@
+package com.computablefacts.nona.functions.stringoperators;
+
+import com.computablefacts.asterix.nlp.SpanSequence;
+import com.computablefacts.nona.Function;
+import com.google.common.collect.Lists;
+import com.google.errorprone.annotations.Var;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MatchFuzzyDictionaryTest {
+
+  @Test
+  public void testBestMatchesFirst() throws IOException {
+
+    // Create dictionary
+    List<String> entries = Lists.newArrayList("mysimilarstring", "mysimilarstrings", "anotherstring", "mysmilarstring");
+    Path file = Files.createTempFile("dico-", ".txt");
+    Files.write(file, entries);
+
+    // Execute function
+    Function fn = new Function(
+        "MATCH_FUZZY_DICTIONARY(" + Function.wrap(file.toString()) + ", 90, 2, " + Function.wrap("mysimilarstring")
+            + ")");
+    SpanSequence spans = (SpanSequence) fn.evaluate(Function.definitions()).value();
+
+    Assert.assertEquals(2, spans.size());
+    Assert.assertEquals("mysimilarstring", spans.span(0).text());
+    Assert.assertEquals("100", spans.span(0).getFeature(MatchFuzzyDictionary.FEATURE_SCORE));
+    Assert.assertEquals("mysimilarstrings", spans.span(1).text());
+    Assert.assertEquals("97", spans.span(1).getFeature(MatchFuzzyDictionary.FEATURE_SCORE));
+  }
+
+  @Test
+  public void testNoMatch() throws IOException {
+
+    // Create dictionary
+    List<String> entries = Lists.newArrayList("sugar", "cane");
+    Path file = Files.createTempFile("dico-", ".txt");
+    Files.write(file, entries);
+
+    // Execute function
+    Function fn = new Function(
+        "MATCH_FUZZY_DICTIONARY(" + Function.wrap(file.toString()) + ", 80, 10, " + Function.wrap("mysimilarstring")
+            + ")");
+    SpanSequence spans = (SpanSequence) fn.evaluate(Function.definitions()).value();
+
+    Assert.assertEquals(0, spans.size());
+  }
+
+  @Test
+  public void testDictionaryIsReloadedWhenItChanges() throws Exception {
+
+    // Create dictionary
+    Path file = Files.createTempFile("dico-", ".txt");
+    Files.write(file, Lists.newArrayList("sugar"));
+
+    Function fn = new Function(
+        "MATCH_FUZZY_DICTIONARY(" + Function.wrap(file.toString()) + ", 80, 10, " + Function.wrap("sugarcane") + ")");
+
+    Map<String, Function> definitions = Function.definitions();
+    @Var SpanSequence spans = (SpanSequence) fn.evaluate(definitions).value();
+
+    Assert.assertEquals(0, spans.size());
+
+    // Update dictionary
+    Thread.sleep(1100);
+    Files.write(file, Lists.newArrayList("sugar", "sugarcanes"));
+
+    spans = (SpanSequence) fn.evaluate(definitions).value();
+
+    Assert.assertEquals(1, spans.size());
+    Assert.assertEquals("sugarcanes", spans.span(0).text());
+  }
+}
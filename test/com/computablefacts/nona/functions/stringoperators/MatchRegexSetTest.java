@@ -0,0 +1,99 @@
+package com.computablefacts.nona.functions.stringoperators;
+
+import com.computablefacts.asterix.BoxedType;
+import com.computablefacts.asterix.nlp.Span;
+import com.computablefacts.asterix.nlp.SpanSequence;
+import com.computablefacts.nona.Function;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MatchRegexSetTest {
+
+  @Test
+  public void testExtractSeveralPatterns() {
+
+    String text = "GUATEMALA CITY, 4 FEB 90 (ACAN-EFE) THE ARMY ATTACKED THE FARM 2 DAYS AGO";
+
+    Span span1 = new Span(text, 16, 24);
+    span1.setFeature(MatchRegexSet.FEATURE_PATTERN, "1");
+    span1.setFeature(MatchRegexSet.FEATURE_PATTERNS, "1");
+    span1.setGroup(1, "4");
+    span1.setGroup(2, "FEB");
+    span1.setGroup(3, "90");
+
+    Span span2 = new Span(text, 63, 73);
+    span2.setFeature(MatchRegexSet.FEATURE_PATTERN, "0");
+    span2.setFeature(MatchRegexSet.FEATURE_PATTERNS, "0");
+    span2.setGroup(1, "2");
+
+    SpanSequence sequence = new SpanSequence();
+    sequence.add(span1);
+    sequence.add(span2);
+
+    String textWrapped = Function.wrap(text);
+    String regex1Wrapped = Function.wrap("(?is:([1-9][0-9]?)\\s+days\\s+ago)");
+    String regex2Wrapped = Function.wrap(
+        "(?is:([0-9]{1,2})\\s+(JAN|FEB|MAR|APR|MAY|JUN|JUL|AUG|SEP|OCT|NOV|DEC)\\s+([0-9]{2}))");
+    String function = String.format("MATCH_REGEX_SET(%s, %s, %s)", textWrapped, regex1Wrapped, regex2Wrapped);
+
+    Function fn = new Function(function);
+    SpanSequence actual = (SpanSequence) fn.evaluate(Function.definitions()).value();
+
+    Assert.assertEquals(BoxedType.of(sequence), BoxedType.of(actual));
+    Assert.assertEquals("FEB", actual.span(0).getGroup(2));
+    Assert.assertEquals("2", actual.span(1).getGroup(1));
+  }
+
+  @Test
+  public void testMatchesDoNotOverlap() {
+
+    String text = "john.doe@example.com";
+
+    Span span = new Span(text, 0, 20);
+    span.setFeature(MatchRegexSet.FEATURE_PATTERN, "0");
+    span.setFeature(MatchRegexSet.FEATURE_PATTERNS, "0");
+
+    SpanSequence sequence = new SpanSequence();
+    sequence.add(span);
+
+    String textWrapped = Function.wrap(text);
+    String regex1Wrapped = Function.wrap("[a-z.]+@[a-z]+\\.com");
+    String regex2Wrapped = Function.wrap("example");
+    String function = String.format("MATCH_REGEX_SET(%s, %s, %s)", textWrapped, regex1Wrapped, regex2Wrapped);
+
+    Function fn = new Function(function);
+    Assert.assertEquals(BoxedType.of(sequence), fn.evaluate(Function.definitions()));
+  }
+
+  @Test
+  public void testOverlappingPatternsAreListed() {
+
+    String textWrapped = Function.wrap("foobar foo");
+    String function = String.format("MATCH_REGEX_SET(%s, %s, %s, %s)", textWrapped, Function.wrap("foo"),
+        Function.wrap("foobar"), Function.wrap("bar"));
+
+    Function fn = new Function(function);
+    SpanSequence actual = (SpanSequence) fn.evaluate(Function.definitions()).value();
+
+    Assert.assertEquals(3, actual.size());
+    Assert.assertEquals("foo", actual.span(0).text());
+    Assert.assertEquals("0", actual.span(0).getFeature(MatchRegexSet.FEATURE_PATTERN));
+    Assert.assertEquals("0,1", actual.span(0).getFeature(MatchRegexSet.FEATURE_PATTERNS));
+    Assert.assertEquals("bar", actual.span(1).text());
+    Assert.assertEquals("2", actual.span(1).getFeature(MatchRegexSet.FEATURE_PATTERNS));
+    Assert.assertEquals("foo", actual.span(2).text());
+    Assert.assertEquals(7, actual.span(2).begin());
+    Assert.assertEquals("0", actual.span(2).getFeature(MatchRegexSet.FEATURE_PATTERNS));
+  }
+
+  @Test
+  public void testNoMatch() {
+
+    String textWrapped = Function.wrap("no digit here");
+    String regexWrapped = Function.wrap("[0-9]+");
+    String function = String.format("MATCH_REGEX_SET(%s, %s)", textWrapped, regexWrapped);
+
+    Function fn = new Function(function);
+    Assert.assertEquals(BoxedType.of(new SpanSequence()), fn.evaluate(Function.definitions()));
+  }
+}